@@ -0,0 +1,38 @@
+package com.github.maxstupo.flatengine;
+
+import java.awt.RenderingHints;
+
+/**
+ * The resampling used by the {@link SpriteCache} when it renders scaled sprites.
+ * 
+ * @author Maxstupo
+ */
+public enum ScaleQuality {
+    /** Nearest neighbour, keeps hard pixel edges. */
+    NEAREST(RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR),
+
+    /** Bilinear interpolation. */
+    BILINEAR(RenderingHints.VALUE_INTERPOLATION_BILINEAR),
+
+    /** Bicubic interpolation. */
+    BICUBIC(RenderingHints.VALUE_INTERPOLATION_BICUBIC),
+
+    /** Bilinear interpolation, halving the size in steps when shrinking by more than half so no source pixels are skipped. */
+    PROGRESSIVE(RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+    private final Object interpolation;
+
+    private ScaleQuality(Object interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    /**
+     * Returns the {@link RenderingHints#KEY_INTERPOLATION} value of this quality.
+     * 
+     * @return the interpolation rendering hint value.
+     */
+    public Object getInterpolation() {
+        return interpolation;
+    }
+
+}
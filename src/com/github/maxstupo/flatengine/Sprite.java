@@ -1,12 +1,13 @@
 package com.github.maxstupo.flatengine;
 
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 
 /**
- * This class represents a image linked with an id.
+ * This class represents a image linked with an id. Rotated and resized draws use pre-rendered variants from the {@link SpriteCache}.
  * 
  * @author Maxstupo
  */
@@ -15,6 +16,13 @@ public class Sprite {
     private final BufferedImage image;
     private final String id;
 
+    /** The rotated variants of this sprite, indexed by rotation step and managed by the {@link SpriteCache}. */
+    SpriteCache.Entry[] rotations;
+    int rotationGeneration;
+
+    /** The first resized variant of this sprite, managed by the {@link SpriteCache}. */
+    SpriteCache.Entry scaled;
+
     /**
      * Create a new {@link Sprite} object.
      * 
@@ -43,7 +51,9 @@ public class Sprite {
     }
 
     /**
-     * Draw this sprite at the given x,y position with the size of width and height.
+     * Draw this sprite at the given x,y position with the size of width and height. The resized image is rendered once by a worker of the
+     * {@link SpriteCache} and cached, until then this sprite is drawn scaled directly with the interpolation of the
+     * {@link SpriteCache#getScaleQuality() scale quality}.
      * 
      * @param g
      *            the graphics context to draw to.
@@ -57,11 +67,30 @@ public class Sprite {
      *            the height to draw this sprite.
      */
     public void draw(Graphics2D g, float x, float y, float width, float height) {
-        g.drawImage(image, (int) x, (int) y, (int) width, (int) height, null);
+        int w = (int) width;
+        int h = (int) height;
+        if (w == getWidth() && h == getHeight()) {
+            draw(g, x, y);
+            return;
+        }
+
+        SpriteCache cache = SpriteCache.get();
+        BufferedImage scaled = cache.getScaled(this, w, h);
+        if (scaled != null) {
+            g.drawImage(scaled, (int) x, (int) y, null);
+            return;
+        }
+
+        // Draw with the interpolation the variant is resampled with, so the sprite doesn't change once the variant is cached.
+        Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, cache.getScaleQuality().getInterpolation());
+        g.drawImage(image, (int) x, (int) y, w, h, null);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, (interpolation != null) ? interpolation : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
     }
 
     /**
-     * Draw this sprite at the given x,y position rotated by rotation at the origin of rotationX,rotationY.
+     * Draw this sprite at the given x,y position rotated by rotation at the origin of rotationX,rotationY. The rotation is rounded to the nearest
+     * {@link SpriteCache#getRotationSteps() rotation step} and drawn with a cached pre-rotated image.
      * 
      * @param g
      *            the graphics context to draw to.
@@ -77,14 +106,25 @@ public class Sprite {
      *            the y origin for rotation.
      */
     public void draw(Graphics2D g, float x, float y, double rotation, double rotationX, double rotationY) {
-        Graphics2D gg = (Graphics2D) g.create();
-        gg.rotate(rotation, rotationX, rotationY);
-        draw(gg, x, y);
-        gg.dispose();
+        SpriteCache cache = SpriteCache.get();
+        int step = cache.getRotationStep(rotation);
+        double angle = step * (Math.PI * 2 / cache.getRotationSteps());
+
+        // Rotating the whole image around the origin is the same as moving its center around the origin and rotating it around its center.
+        double sin = Math.sin(angle);
+        double cos = Math.cos(angle);
+        double dx = (int) x + getWidth() / 2.0 - rotationX;
+        double dy = (int) y + getHeight() / 2.0 - rotationY;
+        double centerX = rotationX + dx * cos - dy * sin;
+        double centerY = rotationY + dx * sin + dy * cos;
+
+        BufferedImage rotated = (step == 0) ? image : cache.getRotated(this, step);
+        g.drawImage(rotated, (int) Math.round(centerX - rotated.getWidth() / 2.0), (int) Math.round(centerY - rotated.getHeight() / 2.0), null);
     }
 
     /**
-     * Draw this sprite at the given x,y position with the size of width,height rotated by rotation at the origin of rotationX,rotationY.
+     * Draw this sprite at the given x,y position with the size of width,height rotated by rotation at the origin of rotationX,rotationY. Draws at
+     * the size of this sprite use the cached rotations of {@link #draw(Graphics2D, float, float, double, double, double)}.
      * 
      * @param g
      *            the graphics context to draw to.
@@ -104,6 +144,11 @@ public class Sprite {
      *            the y origin for rotation.
      */
     public void draw(Graphics2D g, float x, float y, float width, float height, double rotation, double rotationX, double rotationY) {
+        if ((int) width == getWidth() && (int) height == getHeight()) {
+            draw(g, x, y, rotation, rotationX, rotationY);
+            return;
+        }
+
         Graphics2D gg = (Graphics2D) g.create();
         gg.rotate(rotation, rotationX, rotationY);
         draw(gg, x, y, width, height);
@@ -116,7 +161,8 @@ public class Sprite {
      * @param angleDegrees
      *            the angle in degrees.
      * @return a new sprite.
-     * @deprecated Creates a new sprite object which makes calling this method bad for a game engine.
+     * @deprecated Creates a new sprite object which makes calling this method bad for a game engine, use
+     *             {@link #draw(Graphics2D, float, float, double, double, double)} which draws cached rotations.
      */
     @Deprecated
     public Sprite rotate(float angleDegrees) {
@@ -128,6 +174,15 @@ public class Sprite {
         return new Sprite(img, id);
     }
 
+    /**
+     * Returns the image of this sprite.
+     * 
+     * @return the image of this sprite.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
     /**
      * Returns the width in pixels of this sprite.
      * 
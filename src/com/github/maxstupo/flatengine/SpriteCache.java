@@ -0,0 +1,551 @@
+package com.github.maxstupo.flatengine;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class caches pre-rendered variants of {@link Sprite}s, so drawing a rotated or resized sprite is a plain image draw instead of a transformed
+ * one. Rotations are quantised to a configurable number of steps per full turn, sizes are cached exactly. Both are resampled with the
+ * {@link ScaleQuality} of this cache, {@link ScaleQuality#NEAREST} by default which matches an uncached draw with the default rendering hints, so
+ * pixel art stays sharp. Rotated variants are rendered the first time they're drawn.
+ * <p>
+ * Resized variants are resampled off the render path by a worker thread, until a variant is ready the sprite is drawn scaled directly with the same
+ * interpolation, so it looks the same before and after its variant is cached. Each sprite has at most one resize in flight and keeps at most
+ * {@value #MAX_SCALED_VARIANTS} sizes, so a node that is resized every frame only draws scaled directly instead of filling the cache. {@link #prepareScaled(Sprite, int, int)} renders a size immediately, e.g. while loading a screen.
+ * <p>
+ * Variants are kept in least recently used order and the oldest are evicted when their total size exceeds the memory budget. Each sprite stores its
+ * own variants, so a cache hit doesn't allocate or hash. This class isn't thread safe, sprites should only be drawn from the render thread, the
+ * worker only reads the source image of a sprite.
+ * 
+ * @author Maxstupo
+ */
+public class SpriteCache {
+
+    /** The default memory budget, in bytes. */
+    public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+    /** The default number of rotation steps per full turn. */
+    public static final int DEFAULT_ROTATION_STEPS = 64;
+
+    /** The maximum number of resized variants kept per sprite, the least recently used size of a sprite is discarded first. */
+    public static final int MAX_SCALED_VARIANTS = 8;
+
+    private static final SpriteCache INSTANCE = new SpriteCache();
+
+    private long budget = DEFAULT_BUDGET;
+    private long usedBytes;
+    private int entryCount;
+
+    private int rotationSteps = DEFAULT_ROTATION_STEPS;
+    private ScaleQuality scaleQuality = ScaleQuality.NEAREST;
+    private boolean isScaledAsync = true;
+
+    /** The generation of the rotation steps, sprites holding variants of older steps discard them. */
+    private int rotationGeneration;
+
+    /** The generation of the resized variants, variants resampled for an older generation are discarded when they complete. */
+    private int scaleGeneration;
+
+    private ExecutorService executor;
+    private final Queue<Entry> completed = new ConcurrentLinkedQueue<>();
+
+    /** The most recently used entry, the least recently used is head.prev. */
+    private final Entry head = new Entry(null, Entry.ROTATED, 0, null);
+
+    private long hits;
+    private long misses;
+
+    private SpriteCache() {
+        head.prev = head;
+        head.next = head;
+    }
+
+    /**
+     * Returns the sprite cache used by all sprites.
+     * 
+     * @return the sprite cache used by all sprites.
+     */
+    public static SpriteCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the rotated variant of the given sprite for the given rotation step, rendering it if it isn't cached.
+     */
+    BufferedImage getRotated(Sprite sprite, int step) {
+        Entry[] rotations = sprite.rotations;
+        if (rotations == null || sprite.rotationGeneration != rotationGeneration) { // Entries of an older generation were unlinked by clear().
+            rotations = sprite.rotations = new Entry[rotationSteps];
+            sprite.rotationGeneration = rotationGeneration;
+        }
+
+        Entry entry = rotations[step];
+        if (entry != null) {
+            hits++;
+            unlink(entry);
+            link(entry);
+            return entry.image;
+        }
+
+        misses++;
+        entry = new Entry(sprite, Entry.ROTATED, step, renderRotated(sprite.getImage(), step * (Math.PI * 2 / rotationSteps), scaleQuality));
+        rotations[step] = entry;
+        link(entry);
+        evict(entry);
+        return entry.image;
+    }
+
+    /**
+     * Returns the variant of the given sprite resized to the given size, requesting it from the worker if it isn't cached.
+     * 
+     * @return the resized variant, or null if it isn't ready yet or is too large to cache, and the sprite should be drawn scaled directly.
+     */
+    BufferedImage getScaled(Sprite sprite, int width, int height) {
+        addCompleted();
+
+        int key = scaledKey(width, height);
+        if (key == -1)
+            return null;
+
+        boolean isPending = false;
+        for (Entry entry = sprite.scaled, previous = null; entry != null; previous = entry, entry = entry.nextVariant) {
+            if (entry.image == null) {
+                isPending = true;
+                if (entry.key == key)
+                    return null;
+
+            } else if (entry.key == key) {
+                hits++;
+                unlink(entry);
+                link(entry);
+                if (previous != null) { // Keep the variants of the sprite in most recently used order.
+                    previous.nextVariant = entry.nextVariant;
+                    entry.nextVariant = sprite.scaled;
+                    sprite.scaled = entry;
+                }
+                return entry.image;
+            }
+        }
+
+        misses++;
+        if (!isScaledAsync) {
+            Entry entry = addScaled(sprite, key, width, height);
+            return (entry != null) ? entry.image : null;
+        }
+        if (!isPending && 4L * width * height <= budget)
+            requestScaled(sprite, key, width, height);
+        return null;
+    }
+
+    /**
+     * Adds a pending variant to the given sprite and resamples it on the worker, it's linked into the cache by {@link #addCompleted()}.
+     */
+    private void requestScaled(Sprite sprite, int key, int width, int height) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "SpriteCache-1");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Entry entry = new Entry(sprite, Entry.SCALED, key, null);
+        entry.generation = scaleGeneration;
+        addVariant(sprite, entry);
+
+        BufferedImage image = sprite.getImage();
+        ScaleQuality quality = scaleQuality;
+        executor.execute(() -> {
+            try {
+                entry.rendered = renderScaled(image, width, height, quality);
+            } finally {
+                completed.add(entry);
+            }
+        });
+    }
+
+    /**
+     * Links the variants resampled by the worker into the cache, discarding variants that were removed or are of an older generation.
+     */
+    private void addCompleted() {
+        Entry entry;
+        while ((entry = completed.poll()) != null) {
+            if (entry.isRemoved)
+                continue;
+            if (entry.generation != scaleGeneration || entry.rendered == null) {
+                remove(entry);
+                continue;
+            }
+
+            entry.image = entry.rendered;
+            entry.rendered = null;
+            entry.bytes = 4L * entry.image.getWidth() * entry.image.getHeight();
+            link(entry);
+            evict(entry);
+        }
+    }
+
+    /**
+     * Renders the variant of the given sprite resized to the given size now if it isn't cached, so the first draw at that size uses it instead of
+     * drawing scaled directly. Use this when loading a screen, e.g. for the icons of an inventory. Must be called from the render thread.
+     * 
+     * @param sprite
+     *            the sprite.
+     * @param width
+     *            the width the sprite will be drawn at.
+     * @param height
+     *            the height the sprite will be drawn at.
+     */
+    public void prepareScaled(Sprite sprite, int width, int height) {
+        addCompleted();
+
+        int key = scaledKey(width, height);
+        if (key == -1)
+            return;
+
+        for (Entry entry = sprite.scaled; entry != null; entry = entry.nextVariant) {
+            if (entry.key == key) {
+                if (entry.image != null)
+                    return;
+                remove(entry); // Render now rather than wait for the worker.
+                break;
+            }
+        }
+        addScaled(sprite, key, width, height);
+    }
+
+    private Entry addScaled(Sprite sprite, int key, int width, int height) {
+        if (4L * width * height > budget)
+            return null;
+
+        Entry entry = new Entry(sprite, Entry.SCALED, key, renderScaled(sprite.getImage(), width, height, scaleQuality));
+        addVariant(sprite, entry);
+        link(entry);
+        evict(entry);
+        return entry;
+    }
+
+    /**
+     * Adds the given variant as the most recently used of its sprite, removing the least recently used variants over
+     * {@value #MAX_SCALED_VARIANTS}.
+     */
+    private void addVariant(Sprite sprite, Entry entry) {
+        entry.nextVariant = sprite.scaled;
+        sprite.scaled = entry;
+
+        int count = 1;
+        for (Entry variant = entry; variant.nextVariant != null; count++) {
+            if (count >= MAX_SCALED_VARIANTS) {
+                remove(variant.nextVariant);
+            } else {
+                variant = variant.nextVariant;
+            }
+        }
+    }
+
+    /**
+     * Returns the key of a scaled variant, or -1 if the size can't be cached.
+     */
+    private static int scaledKey(int width, int height) {
+        if (width <= 0 || height <= 0 || width > 0x7FFF || height > 0xFFFF)
+            return -1;
+        return (width << 16) | height;
+    }
+
+    /**
+     * Returns a new image of the given image resized to the given size.
+     */
+    private static BufferedImage renderScaled(BufferedImage image, int width, int height, ScaleQuality quality) {
+        BufferedImage source = image;
+        if (quality == ScaleQuality.PROGRESSIVE) {
+            int w = source.getWidth();
+            int h = source.getHeight();
+            while (w / 2 >= width && h / 2 >= height) {
+                w /= 2;
+                h /= 2;
+                source = resample(source, w, h, quality);
+            }
+        }
+        return resample(source, width, height, quality);
+    }
+
+    private static BufferedImage resample(BufferedImage image, int width, int height, ScaleQuality quality) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, quality.getInterpolation());
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * Returns a new image of the given image rotated clockwise around its center, sized to fit the rotated corners.
+     */
+    private static BufferedImage renderRotated(BufferedImage image, double angle, ScaleQuality quality) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double sin = Math.abs(Math.sin(angle));
+        double cos = Math.abs(Math.cos(angle));
+        int rotatedWidth = (int) Math.ceil(width * cos + height * sin);
+        int rotatedHeight = (int) Math.ceil(width * sin + height * cos);
+
+        BufferedImage rotated = new BufferedImage(Math.max(1, rotatedWidth), Math.max(1, rotatedHeight), BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = rotated.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, quality.getInterpolation());
+        g.rotate(angle, rotatedWidth / 2.0, rotatedHeight / 2.0);
+        g.translate((rotatedWidth - width) / 2.0, (rotatedHeight - height) / 2.0);
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return rotated;
+    }
+
+    /**
+     * Returns the rotation step nearest the given rotation.
+     */
+    int getRotationStep(double rotation) {
+        return (int) Math.floorMod(Math.round(rotation * rotationSteps / (Math.PI * 2)), (long) rotationSteps);
+    }
+
+    private void link(Entry entry) {
+        entry.prev = head;
+        entry.next = head.next;
+        head.next.prev = entry;
+        head.next = entry;
+        usedBytes += entry.bytes;
+        entryCount++;
+    }
+
+    private void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+        usedBytes -= entry.bytes;
+        entryCount--;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is within budget, the given entry is always kept.
+     */
+    private void evict(Entry keep) {
+        while (usedBytes > budget && head.prev != head) {
+            Entry oldest = head.prev;
+            if (oldest == keep)
+                break;
+            remove(oldest);
+        }
+    }
+
+    /**
+     * Unlinks the given entry and removes it from its sprite.
+     */
+    private void remove(Entry entry) {
+        if (entry.prev != null) // Pending variants aren't linked until resampled.
+            unlink(entry);
+        entry.isRemoved = true;
+        Sprite sprite = entry.sprite;
+        if (entry.kind == Entry.ROTATED) {
+            sprite.rotations[entry.key] = null;
+
+        } else if (sprite.scaled == entry) {
+            sprite.scaled = entry.nextVariant;
+
+        } else {
+            for (Entry previous = sprite.scaled; previous != null; previous = previous.nextVariant) {
+                if (previous.nextVariant == entry) {
+                    previous.nextVariant = entry.nextVariant;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the memory budget, evicting the least recently used variants if the cache is over it.
+     * 
+     * @param budget
+     *            the memory budget, in bytes.
+     * @throws IllegalArgumentException
+     *             if budget is negative.
+     */
+    public void setBudget(long budget) throws IllegalArgumentException {
+        if (budget < 0)
+            throw new IllegalArgumentException("budget can't be negative: " + budget);
+        this.budget = budget;
+        evict(null);
+    }
+
+    /**
+     * Sets the number of rotation steps per full turn, discarding all rotated variants. More steps are smoother but use more memory.
+     * 
+     * @param steps
+     *            the number of rotation steps.
+     * @throws IllegalArgumentException
+     *             if steps is less than one.
+     */
+    public void setRotationSteps(int steps) throws IllegalArgumentException {
+        if (steps < 1)
+            throw new IllegalArgumentException("steps must be at least one: " + steps);
+        this.rotationSteps = steps;
+        clear();
+    }
+
+    /**
+     * Sets the resampling used to render rotated and scaled variants and to draw sprites scaled directly while their variant isn't ready,
+     * discarding all cached variants. The default is {@link ScaleQuality#NEAREST}.
+     * 
+     * @param scaleQuality
+     *            the resampling quality.
+     * @throws IllegalArgumentException
+     *             if scaleQuality is null.
+     */
+    public void setScaleQuality(ScaleQuality scaleQuality) throws IllegalArgumentException {
+        if (scaleQuality == null)
+            throw new IllegalArgumentException("scaleQuality can't be null!");
+        if (scaleQuality == this.scaleQuality)
+            return;
+
+        this.scaleQuality = scaleQuality;
+        clear();
+    }
+
+    /**
+     * Discards all cached variants.
+     */
+    public void clear() {
+        while (head.next != head)
+            remove(head.next);
+        rotationGeneration++;
+        scaleGeneration++;
+    }
+
+    /**
+     * Sets if resized variants are resampled by the worker thread, which is the default. When false a missing variant is resampled by the draw
+     * that needs it.
+     * 
+     * @param isScaledAsync
+     *            true to resample resized variants on the worker thread.
+     */
+    public void setScaledAsync(boolean isScaledAsync) {
+        this.isScaledAsync = isScaledAsync;
+    }
+
+    /**
+     * Returns true if resized variants are resampled by the worker thread.
+     * 
+     * @return true if resized variants are resampled by the worker thread.
+     */
+    public boolean isScaledAsync() {
+        return isScaledAsync;
+    }
+
+    /**
+     * Returns the resampling used to render rotated and scaled variants.
+     * 
+     * @return the resampling used to render rotated and scaled variants.
+     */
+    public ScaleQuality getScaleQuality() {
+        return scaleQuality;
+    }
+
+    /**
+     * Returns the memory budget, in bytes.
+     * 
+     * @return the memory budget.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns the number of rotation steps per full turn.
+     * 
+     * @return the number of rotation steps per full turn.
+     */
+    public int getRotationSteps() {
+        return rotationSteps;
+    }
+
+    /**
+     * Returns the size of all cached variants, in bytes.
+     * 
+     * @return the size of all cached variants.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of cached variants.
+     * 
+     * @return the number of cached variants.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of draws that used a cached variant.
+     * 
+     * @return the number of draws that used a cached variant.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of draws that had to render or request a variant.
+     * 
+     * @return the number of draws that had to render or request a variant.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [entries=%s, usedBytes=%s, budget=%s, rotationSteps=%s, scaleQuality=%s, hits=%s, misses=%s]", getClass().getSimpleName(), entryCount, usedBytes, budget, rotationSteps, scaleQuality, hits, misses);
+    }
+
+    /**
+     * A cached variant, linked into the least recently used list.
+     */
+    static class Entry {
+
+        static final int ROTATED = 0;
+        static final int SCALED = 1;
+
+        final Sprite sprite;
+        final int kind;
+        final int key;
+
+        /** The variant image, null while it's being resampled by the worker. */
+        BufferedImage image;
+        long bytes;
+
+        /** The image resampled by the worker, handed to the render thread through the completed queue. */
+        BufferedImage rendered;
+        int generation;
+        boolean isRemoved;
+
+        Entry prev;
+        Entry next;
+
+        /** The next scaled variant of the same sprite. */
+        Entry nextVariant;
+
+        Entry(Sprite sprite, int kind, int key, BufferedImage image) {
+            this.sprite = sprite;
+            this.kind = kind;
+            this.key = key;
+            this.image = image;
+            this.bytes = (image != null) ? 4L * image.getWidth() * image.getHeight() : 0;
+        }
+    }
+
+}
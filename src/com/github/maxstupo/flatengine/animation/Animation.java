@@ -1,29 +1,515 @@
 package com.github.maxstupo.flatengine.animation;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.github.maxstupo.flatengine.Sprite;
 
 /**
- * @author Maxstupo
+ * This class is a sequence of key frames played back with a {@link PlayMode}. An animation holds no playback state, each method takes the time since
+ * the animation started (the state time), so a single instance can be shared by any number of animated objects that each only store a float.
+ * <p>
+ * Frames may have different durations. The start time of each frame is precomputed into a cumulative table, along with a lookup table of buckets no
+ * longer than the shortest frame, so the frame shown at any state time is found in constant time.
+ * <p>
+ * Animations compiled by {@link AnimationDef#compile(ImageSetStore)} are shared and their play mode can't be changed, use
+ * {@link #withPlayMode(PlayMode)} to get an animation with a different play mode that shares the same frames.
  *
+ * @author Maxstupo
  */
 public class Animation {
 
+    /** The maximum number of buckets in the frame lookup table, animations with very uneven frame durations may step a few frames per lookup. */
+    private static final int MAX_BUCKETS = 4096;
+
+    private final Sprite[] keyFrames;
+    private final float[] durations;
+    private final float[] offsets;
+    private final float[] origins;
+
+    /** The start time of each frame, with the total duration as an extra last element. */
+    private final float[] startTimes;
+    private final float duration;
+    private final float shortestDuration;
+
+    private final float bucketSize;
+    private final int[] bucketFrames;
+
+    private PlayMode playMode = PlayMode.LOOP;
+    private boolean isShared;
+
     /**
+     * Create a new {@link Animation} object where every frame has the same duration and no offset or origin.
+     *
      * @param frameDuration
+     *            the duration of each frame, in seconds.
+     * @param keyFrames
+     *            the key frames.
+     * @throws IllegalArgumentException
+     *             if there are no key frames or frameDuration isn't positive.
+     */
+    public Animation(float frameDuration, List<Sprite> keyFrames) throws IllegalArgumentException {
+        this(filled(keyFrames.size(), frameDuration), keyFrames.toArray(new Sprite[keyFrames.size()]), null, null);
+    }
+
+    /**
+     * Create a new {@link Animation} object.
+     *
+     * @param frameDurations
+     *            the duration of each frame, in seconds.
      * @param keyFrames
+     *            the key frames.
+     * @param offsets
+     *            the x and y offset of each frame interleaved, or null for no offsets.
+     * @param origins
+     *            the x and y origin of each frame interleaved, or null for no origins.
+     * @throws IllegalArgumentException
+     *             if there are no key frames, a duration isn't positive, or the arrays don't have a value for each frame.
      */
-    public Animation(float frameDuration, List<Sprite> keyFrames) {
-        // TODO Auto-generated constructor stub
+    public Animation(float[] frameDurations, Sprite[] keyFrames, float[] offsets, float[] origins) throws IllegalArgumentException {
+        int count = keyFrames.length;
+        if (count == 0)
+            throw new IllegalArgumentException("An animation needs at least one key frame!");
+        if (frameDurations.length != count || (offsets != null && offsets.length != count * 2) || (origins != null && origins.length != count * 2))
+            throw new IllegalArgumentException("Frame data doesn't match the number of key frames: " + count);
+
+        this.keyFrames = keyFrames.clone();
+        this.durations = frameDurations.clone();
+        this.offsets = (offsets != null) ? offsets.clone() : new float[count * 2];
+        this.origins = (origins != null) ? origins.clone() : new float[count * 2];
+
+        this.startTimes = new float[count + 1];
+        float shortest = Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (!(durations[i] > 0))
+                throw new IllegalArgumentException("Frame duration must be positive: " + durations[i]);
+            startTimes[i + 1] = startTimes[i] + durations[i];
+            shortest = Math.min(shortest, durations[i]);
+        }
+        this.duration = startTimes[count];
+        this.shortestDuration = shortest;
+
+        int buckets = (int) Math.min(MAX_BUCKETS, Math.ceil(duration / shortest));
+        this.bucketSize = duration / buckets;
+        this.bucketFrames = new int[buckets];
+        for (int b = 0, frame = 0; b < buckets; b++) {
+            while (frame + 1 < count && startTimes[frame + 1] <= b * bucketSize)
+                frame++;
+            bucketFrames[b] = frame;
+        }
     }
 
     /**
+     * Create a new {@link Animation} object sharing the frame tables of the given animation, which are never modified.
+     */
+    private Animation(Animation animation, PlayMode playMode) {
+        this.keyFrames = animation.keyFrames;
+        this.durations = animation.durations;
+        this.offsets = animation.offsets;
+        this.origins = animation.origins;
+        this.startTimes = animation.startTimes;
+        this.duration = animation.duration;
+        this.shortestDuration = animation.shortestDuration;
+        this.bucketSize = animation.bucketSize;
+        this.bucketFrames = animation.bucketFrames;
+        this.playMode = playMode;
+    }
+
+    /**
+     * Returns a new animation with the given play mode that shares the frames of this animation, without copying them.
+     *
      * @param playMode
+     *            the play mode.
+     * @return a new animation with the given play mode.
+     * @throws IllegalArgumentException
+     *             if playMode is null.
+     */
+    public Animation withPlayMode(PlayMode playMode) throws IllegalArgumentException {
+        if (playMode == null)
+            throw new IllegalArgumentException("playMode can't be null!");
+        return new Animation(this, playMode);
+    }
+
+    /**
+     * Marks this animation as shared, after which its play mode can't be changed.
      */
-    public void setPlayMode(PlayMode playMode) {
-        // TODO Auto-generated method stub
+    void setShared() {
+        this.isShared = true;
+    }
+
+    private static float[] filled(int count, float value) {
+        float[] array = new float[count];
+        Arrays.fill(array, value);
+        return array;
+    }
+
+    /**
+     * Returns the frame shown at the given time within one forward playthrough.
+     */
+    private int frameAt(float time) {
+        if (time <= 0)
+            return 0;
+        if (time >= duration)
+            return keyFrames.length - 1;
+
+        int frame = bucketFrames[Math.min(bucketFrames.length - 1, (int) (time / bucketSize))];
+        while (frame + 1 < keyFrames.length && startTimes[frame + 1] <= time)
+            frame++;
+        return frame;
+    }
+
+    /**
+     * Returns the index of the key frame shown at the given state time.
+     *
+     * @param stateTime
+     *            the time since the animation started, in seconds.
+     * @return the index of the key frame shown at the given state time.
+     */
+    public int getKeyFrameIndex(float stateTime) {
+        int count = keyFrames.length;
+        if (count == 1)
+            return 0;
+
+        switch (playMode) {
+            case ONCE:
+                return frameAt(stateTime);
+
+            case REVERSED:
+                return (stateTime >= duration) ? 0 : frameAt(duration - Math.max(0, stateTime));
+
+            case PINGPONG: {
+                float back = durations[0] + durations[count - 1];
+                float period = duration * 2 - back;
+                float time = mod(stateTime, period);
+                if (time < duration)
+                    return frameAt(time);
+
+                // Mirror into the forward table, just below the start of the last frame so the turning frames aren't repeated.
+                return frameAt(Math.nextDown(startTimes[count - 1] - (time - duration)));
+            }
+
+            case RANDOM: {
+                long step = (long) Math.floor(stateTime / duration) * count + frameAt(mod(stateTime, duration));
+                return (int) ((mix(step) >>> 1) % count);
+            }
+
+            case LOOP:
+            default:
+                return frameAt(mod(stateTime, duration));
+        }
+    }
+
+    /**
+     * Returns the nearest state time after (or before) the given state time at which the shown frame may change. Used to walk the frames passed by
+     * a large step, some returned times may not change the frame.
+     */
+    float getFrameBoundary(float stateTime, boolean isForward) {
+        float period = getCycleDuration();
+        float base = isForward ? (float) Math.floor(stateTime / period) * period : (float) Math.ceil(stateTime / period) * period - period;
+
+        float boundary = getCycleBoundary(stateTime - base, period, isForward);
+        float time = base + boundary;
+        if (isForward ? time <= stateTime : time >= stateTime) { // Rounding of the cycle base can land on the given time again.
+            time = base + getCycleBoundary(boundary, period, isForward);
+            if (isForward ? time <= stateTime : time >= stateTime)
+                time = isForward ? Math.nextUp(stateTime) : Math.nextDown(stateTime);
+        }
+        return time;
+    }
+
+    /**
+     * Returns the nearest time within one cycle after (or before) the given time within the cycle at which the shown frame may change.
+     */
+    private float getCycleBoundary(float local, float period, boolean isForward) {
+        float boundary = isForward ? period : 0;
+        if (keyFrames.length > 1) {
+            if (playMode != PlayMode.REVERSED) {
+                int frame = isForward ? firstStartAbove(local) : lastStartBelow(local);
+                if (frame != -1)
+                    boundary = isForward ? Math.min(boundary, startTimes[frame]) : Math.max(boundary, startTimes[frame]);
+            }
+            if (playMode == PlayMode.REVERSED || playMode == PlayMode.PINGPONG) {
+                // The frames played backwards start at the mirrored end times, the end of frame one is the end of a ping-pong cycle.
+                float mirror = (playMode == PlayMode.PINGPONG) ? duration + startTimes[keyFrames.length - 1] : duration;
+                int first = (playMode == PlayMode.PINGPONG) ? 2 : 1;
+                float time = isForward ? mirroredAbove(mirror, first, local) : mirroredBelow(mirror, first, local);
+                if (!Float.isNaN(time))
+                    boundary = isForward ? Math.min(boundary, time) : Math.max(boundary, time);
+            }
+        }
+        return boundary;
+    }
+
+    /**
+     * Returns the smallest mirrored start time, mirror minus the start time of a frame from first on, above the given time, or NaN if there is none.
+     */
+    private float mirroredAbove(float mirror, int first, float time) {
+        int low = first;
+        int high = keyFrames.length - 1;
+        float found = Float.NaN;
+        while (low <= high) { // The mirrored times decrease with the frame.
+            int mid = (low + high) >>> 1;
+            float mirrored = mirror - startTimes[mid];
+            if (mirrored > time) {
+                found = mirrored;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the largest mirrored start time, mirror minus the start time of a frame from first on, below the given time, or NaN if there is none.
+     */
+    private float mirroredBelow(float mirror, int first, float time) {
+        int low = first;
+        int high = keyFrames.length - 1;
+        float found = Float.NaN;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            float mirrored = mirror - startTimes[mid];
+            if (mirrored < time) {
+                found = mirrored;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the first frame, other than frame zero, that starts after the given time, or -1 if there is none.
+     */
+    private int firstStartAbove(float time) {
+        int low = 1;
+        int high = keyFrames.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (startTimes[mid] > time) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the last frame, other than frame zero, that starts before the given time, or -1 if there is none.
+     */
+    private int lastStartBelow(float time) {
+        int low = 1;
+        int high = keyFrames.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (startTimes[mid] < time) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static float mod(float time, float period) {
+        float value = time % period;
+        return (value < 0) ? value + period : value;
+    }
+
+    /**
+     * Scrambles the given step into a well distributed random value, so random frames are deterministic for a state time.
+     */
+    private static long mix(long step) {
+        step ^= step >>> 33;
+        step *= 0xFF51AFD7ED558CCDL;
+        step ^= step >>> 33;
+        return step;
+    }
+
+    /**
+     * Returns the key frame shown at the given state time.
+     *
+     * @param stateTime
+     *            the time since the animation started, in seconds.
+     * @return the key frame shown at the given state time.
+     */
+    public Sprite getKeyFrame(float stateTime) {
+        return keyFrames[getKeyFrameIndex(stateTime)];
+    }
+
+    /**
+     * Returns true if the animation has finished at the given state time. Only {@link PlayMode#ONCE} and {@link PlayMode#REVERSED} animations finish.
+     *
+     * @param stateTime
+     *            the time since the animation started, in seconds.
+     * @return true if the animation has finished at the given state time.
+     */
+    public boolean isAnimationFinished(float stateTime) {
+        return (playMode == PlayMode.ONCE || playMode == PlayMode.REVERSED) && stateTime >= duration;
+    }
+
+    /**
+     * Returns the number of times the animation has completed at the given state time. A {@link PlayMode#PINGPONG} cycle counts as one loop.
+     *
+     * @param stateTime
+     *            the time since the animation started, in seconds.
+     * @return the number of times the animation has completed at the given state time.
+     */
+    public int getLoopCount(float stateTime) {
+        if (playMode == PlayMode.ONCE || playMode == PlayMode.REVERSED)
+            return (stateTime >= duration) ? 1 : 0;
+        return (int) Math.max(0, Math.floor(stateTime / getCycleDuration()));
+    }
+
+    /**
+     * Returns the time a full cycle of the animation takes with the current play mode, in seconds.
+     *
+     * @return the time a full cycle of the animation takes.
+     */
+    public float getCycleDuration() {
+        int count = keyFrames.length;
+        if (playMode == PlayMode.PINGPONG && count > 1)
+            return duration * 2 - durations[0] - durations[count - 1];
+        return duration;
+    }
+
+    /**
+     * Returns the key frame at the given index.
+     *
+     * @param index
+     *            the key frame index.
+     * @return the key frame at the given index.
+     */
+    public Sprite getKeyFrameAt(int index) {
+        return keyFrames[index];
+    }
+
+    /**
+     * Returns the number of key frames.
+     *
+     * @return the number of key frames.
+     */
+    public int getKeyFrameCount() {
+        return keyFrames.length;
+    }
+
+    /**
+     * Returns the duration of the given key frame, in seconds.
+     *
+     * @param index
+     *            the key frame index.
+     * @return the duration of the given key frame.
+     */
+    public float getFrameDuration(int index) {
+        return durations[index];
+    }
+
+    /**
+     * Returns the x offset of the given key frame.
+     *
+     * @param index
+     *            the key frame index.
+     * @return the x offset of the given key frame.
+     */
+    public float getOffsetX(int index) {
+        return offsets[index * 2];
+    }
+
+    /**
+     * Returns the y offset of the given key frame.
+     *
+     * @param index
+     *            the key frame index.
+     * @return the y offset of the given key frame.
+     */
+    public float getOffsetY(int index) {
+        return offsets[index * 2 + 1];
+    }
+
+    /**
+     * Returns the x origin of the given key frame.
+     *
+     * @param index
+     *            the key frame index.
+     * @return the x origin of the given key frame.
+     */
+    public float getOriginX(int index) {
+        return origins[index * 2];
+    }
+
+    /**
+     * Returns the y origin of the given key frame.
+     *
+     * @param index
+     *            the key frame index.
+     * @return the y origin of the given key frame.
+     */
+    public float getOriginY(int index) {
+        return origins[index * 2 + 1];
+    }
+
+    /**
+     * Returns the duration of one forward playthrough of all frames, in seconds.
+     *
+     * @return the duration of one forward playthrough of all frames.
+     */
+    public float getAnimationDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the duration of the shortest frame, a step shorter than this can pass at most one frame change.
+     */
+    float getShortestFrameDuration() {
+        return shortestDuration;
+    }
+
+    /**
+     * Sets the play mode of this animation. Affects every object sharing this animation.
+     *
+     * @param playMode
+     *            the play mode.
+     * @throws IllegalArgumentException
+     *             if playMode is null.
+     * @throws IllegalStateException
+     *             if this animation is shared by a {@link CompiledAnimation}, see {@link #withPlayMode(PlayMode)}.
+     */
+    public void setPlayMode(PlayMode playMode) throws IllegalArgumentException, IllegalStateException {
+        if (playMode == null)
+            throw new IllegalArgumentException("playMode can't be null!");
+        if (isShared)
+            throw new IllegalStateException("The play mode of a shared animation can't be changed, use withPlayMode() instead!");
+        this.playMode = playMode;
+    }
+
+    /**
+     * Returns true if this animation is shared by a {@link CompiledAnimation} and its play mode can't be changed.
+     *
+     * @return true if this animation is shared.
+     */
+    public boolean isShared() {
+        return isShared;
+    }
+
+    /**
+     * Returns the play mode of this animation.
+     *
+     * @return the play mode of this animation.
+     */
+    public PlayMode getPlayMode() {
+        return playMode;
+    }
 
+    @Override
+    public String toString() {
+        return String.format("%s [keyFrames=%s, duration=%s, playMode=%s]", getClass().getSimpleName(), keyFrames.length, duration, playMode);
     }
 
 }
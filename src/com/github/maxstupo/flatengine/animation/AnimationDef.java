@@ -1,6 +1,7 @@
 package com.github.maxstupo.flatengine.animation;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -8,7 +9,8 @@ import com.github.maxstupo.flatengine.Sprite;
 import com.github.maxstupo.flatengine.util.math.Vector2f;
 
 /**
- * This class defines an animation, a set of key frames and the image set used.
+ * This class defines an animation, a set of key frames and the image set used. Frames are stored in primitive arrays, and are
+ * {@link #compile(ImageSetStore) compiled} once per {@link ImageSetStore} into a cached immutable form.
  * 
  * @author Maxstupo
  */
@@ -17,11 +19,15 @@ public class AnimationDef {
     private final String imageSet;
     private final float frameDuration;
 
-    private final List<Integer> frames = new ArrayList<Integer>();
-    private final List<Vector2f> offsets = new ArrayList<>();
-    private final List<Vector2f> origins = new ArrayList<>();
+    private int[] frames = new int[8];
+    private float[] offsets = new float[16];
+    private float[] origins = new float[16];
+    private int frameCount;
     private final PlayMode playMode;
 
+    /** Incremented each time a frame is added, so compiled forms of older frames are discarded. */
+    private int version;
+
     private AnimationDef(String imageSet, PlayMode mode, float frameDuration) {
         this.imageSet = imageSet;
         this.playMode = mode;
@@ -29,20 +35,43 @@ public class AnimationDef {
     }
 
     /**
-     * Returns a new animation object, representing this {@link AnimationDef}.
+     * Returns the animation representing this {@link AnimationDef}. The animation is compiled once per store and shared by every caller, so
+     * repeated calls don't allocate. Animations are stateless and the play mode of the shared animation can't be changed, use
+     * {@link Animation#withPlayMode(PlayMode)} for a different play mode.
      * 
      * @param imageSets
      *            the image set store, containing the image set this {@link AnimationDef} uses.
-     * @return a new animation object, representing this {@link AnimationDef}.
+     * @return the animation representing this {@link AnimationDef}, or null if the image set isn't within the store or there are no frames.
      */
     public Animation createAnimation(ImageSetStore imageSets) {
-        List<Sprite> keyFrames = getKeyFrames(imageSets);
-        if (keyFrames == null)
+        CompiledAnimation compiled = compile(imageSets);
+        return (compiled != null) ? compiled.getAnimation() : null;
+    }
+
+    /**
+     * Returns the compiled form of this {@link AnimationDef} for the given store. The compiled form is cached by the store until a frame is added to
+     * this definition, or it's removed with {@link ImageSetStore#removeCompiled(AnimationDef)}.
+     * 
+     * @param imageSets
+     *            the image set store, containing the image set this {@link AnimationDef} uses.
+     * @return the compiled form, or null if the image set isn't within the store or there are no frames.
+     */
+    public CompiledAnimation compile(ImageSetStore imageSets) {
+        CompiledAnimation compiled = imageSets.getCompiled(this);
+        if (compiled != null && compiled.isCurrent())
+            return compiled;
+
+        ImageSet imageSet = imageSets.get(getImageSetName());
+        if (imageSet == null || frameCount == 0)
             return null;
 
-        Animation animation = new Animation(frameDuration, keyFrames);
-        animation.setPlayMode(playMode);
-        return animation;
+        Sprite[] keyFrames = new Sprite[frameCount];
+        for (int i = 0; i < frameCount; i++)
+            keyFrames[i] = imageSet.getSprite(frames[i]);
+
+        compiled = new CompiledAnimation(this, version, Arrays.copyOf(frames, frameCount), Arrays.copyOf(offsets, frameCount * 2), Arrays.copyOf(origins, frameCount * 2), keyFrames);
+        imageSets.putCompiled(this, compiled);
+        return compiled;
     }
 
     /**
@@ -50,19 +79,28 @@ public class AnimationDef {
      * 
      * @param imageSets
      *            the image set store, containing the image set this {@link AnimationDef} uses.
-     * @return a list of texture regions representing this animation.
+     * @return an unmodifiable list of texture regions representing this animation, or null if the image set isn't within the store.
      */
     public List<Sprite> getKeyFrames(ImageSetStore imageSets) {
-        ImageSet imageSet = imageSets.get(getImageSetName());
-        if (imageSet == null)
+        if (frameCount == 0)
+            return (imageSets.get(getImageSetName()) != null) ? Collections.<Sprite> emptyList() : null;
+
+        CompiledAnimation compiled = compile(imageSets);
+        if (compiled == null)
             return null;
 
-        List<Sprite> keyFrames = new ArrayList<>();
-        for (int index : getImageSetIndexes()) {
-            Sprite region = imageSet.getSprite(index);
-            keyFrames.add(region);
-        }
-        return keyFrames;
+        return new AbstractList<Sprite>() {
+
+            @Override
+            public Sprite get(int index) {
+                return compiled.getKeyFrame(index);
+            }
+
+            @Override
+            public int size() {
+                return compiled.getFrameCount();
+            }
+        };
     }
 
     /**
@@ -82,9 +120,19 @@ public class AnimationDef {
      * @return this object for chaining.
      */
     public AnimationDef frame(int index, float offsetX, float offsetY, float originX, float originY) {
-        frames.add(index);
-        offsets.add(new Vector2f(offsetX, offsetY));
-        origins.add(new Vector2f(originX, originY));
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+            offsets = Arrays.copyOf(offsets, frameCount * 4);
+            origins = Arrays.copyOf(origins, frameCount * 4);
+        }
+
+        frames[frameCount] = index;
+        offsets[frameCount * 2] = offsetX;
+        offsets[frameCount * 2 + 1] = offsetY;
+        origins[frameCount * 2] = originX;
+        origins[frameCount * 2 + 1] = originY;
+        frameCount++;
+        version++;
         return this;
     }
 
@@ -215,7 +263,7 @@ public class AnimationDef {
 
     @Override
     public String toString() {
-        return String.format("%s [imageSet=%s, frameDuration=%s, frames=%s]", getClass().getSimpleName(), imageSet, frameDuration, frames);
+        return String.format("%s [imageSet=%s, frameDuration=%s, frames=%s]", getClass().getSimpleName(), imageSet, frameDuration, getImageSetIndexes());
     }
 
     /**
@@ -225,7 +273,18 @@ public class AnimationDef {
      * @see Collections#unmodifiableList(List)
      */
     public List<Integer> getImageSetIndexes() {
-        return Collections.unmodifiableList(frames);
+        return Collections.unmodifiableList(new AbstractList<Integer>() {
+
+            @Override
+            public Integer get(int index) {
+                return getImageSetIndex(index);
+            }
+
+            @Override
+            public int size() {
+                return frameCount;
+            }
+        });
     }
 
     /**
@@ -236,7 +295,18 @@ public class AnimationDef {
      * @return the image set index for the specific key frame index.
      */
     public int getImageSetIndex(int keyFrameIndex) {
-        return frames.get(keyFrameIndex);
+        if (keyFrameIndex < 0 || keyFrameIndex >= frameCount)
+            throw new IndexOutOfBoundsException("Key frame index: " + keyFrameIndex + ", frames: " + frameCount);
+        return frames[keyFrameIndex];
+    }
+
+    /**
+     * Returns the number of key frames.
+     * 
+     * @return the number of key frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
     }
 
     /**
@@ -247,7 +317,8 @@ public class AnimationDef {
      * @return the specific key frame offset.
      */
     public Vector2f getOffsetForFrame(int keyFrameIndex) {
-        return offsets.get(keyFrameIndex);
+        getImageSetIndex(keyFrameIndex); // Bounds check.
+        return new Vector2f(offsets[keyFrameIndex * 2], offsets[keyFrameIndex * 2 + 1]);
     }
 
     /**
@@ -258,7 +329,8 @@ public class AnimationDef {
      * @return the specific key frame offset.
      */
     public Vector2f getOriginForFrame(int keyFrameIndex) {
-        return origins.get(keyFrameIndex);
+        getImageSetIndex(keyFrameIndex); // Bounds check.
+        return new Vector2f(origins[keyFrameIndex * 2], origins[keyFrameIndex * 2 + 1]);
     }
 
     /**
@@ -288,4 +360,11 @@ public class AnimationDef {
         return playMode;
     }
 
+    /**
+     * Returns the number of times a frame has been added, used to detect outdated compiled forms.
+     */
+    int getVersion() {
+        return version;
+    }
+
 }
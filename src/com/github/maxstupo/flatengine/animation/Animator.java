@@ -0,0 +1,657 @@
+package com.github.maxstupo.flatengine.animation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.Sprite;
+import com.github.maxstupo.flatengine.util.HandleRegistry;
+import com.github.maxstupo.flatengine.util.LongHashMap;
+
+/**
+ * This class plays animations for any number of objects. The playback state of each object (the animation id, state time, speed, loop counter and
+ * shown frame) is kept in primitive arrays packed by a {@link HandleRegistry}, so {@link #update(float)} advances every state in one pass over the
+ * arrays, split over the common {@link ForkJoinPool} when there are many states.
+ * <p>
+ * Animations are registered once and referred to by an int id. Each animation id is a state of a simple state machine: a state can move to another
+ * animation when it finishes, or when a trigger is sent with {@link #trigger(int, int)}. Frame events and finished events fired during an update are
+ * collected and passed to the {@link IAnimatorListener} in a single call.
+ * <p>
+ * The state time of looping animations is wrapped each cycle, except for {@link PlayMode#RANDOM} animations which need the unwrapped time to pick a
+ * different frame each cycle.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the owner type of the states, the owner of a state is passed back with {@link #getOwner(int)}.
+ */
+public class Animator<T> {
+
+    /** The event id fired when a {@link PlayMode#ONCE} or {@link PlayMode#REVERSED} animation finishes. */
+    public static final int EVENT_FINISHED = -1;
+
+    /** The minimum number of states to advance in parallel, and the number of states advanced per task. */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final byte FLAG_FRAME_EVENT = 1;
+    private static final byte FLAG_FINISHED = 2;
+
+    private final ImageSetStore imageSets;
+
+    private Animation[] animations = new Animation[16];
+    private int[][] frameEvents = new int[16][];
+    private int[] finishTransitions = new int[16];
+    private int animationCount;
+
+    /** Trigger transitions, keyed by the animation id in the high bits and the trigger in the low bits. */
+    private final LongHashMap<Integer> transitions = new LongHashMap<>();
+
+    private final HandleRegistry<T> states = new HandleRegistry<>();
+    private int[] animationIds = new int[64];
+    private float[] times = new float[64];
+    private float[] previousTimes = new float[64];
+    private float[] speeds = new float[64];
+    private int[] loops = new int[64];
+    private int[] frames = new int[64];
+    private byte[] flags = new byte[64];
+
+    private int[] eventHandles = new int[16];
+    private int[] eventAnimations = new int[16];
+    private int[] eventIds = new int[16];
+    private int eventCount;
+
+    private IAnimatorListener<T> listener;
+
+    /**
+     * Create a new {@link Animator} object.
+     * 
+     * @param imageSets
+     *            the image set store, used to compile the {@link AnimationDef}s given to {@link #addAnimation(AnimationDef)}.
+     */
+    public Animator(ImageSetStore imageSets) {
+        this.imageSets = imageSets;
+    }
+
+    /**
+     * Registers the animation of the given definition. The compiled animation is shared with other users of the definition.
+     * 
+     * @param def
+     *            the animation definition.
+     * @return the animation id.
+     * @throws IllegalArgumentException
+     *             if the image set of the definition isn't within the image set store, or the definition has no frames.
+     */
+    public int addAnimation(AnimationDef def) throws IllegalArgumentException {
+        Animation animation = def.createAnimation(imageSets);
+        if (animation == null)
+            throw new IllegalArgumentException("Can't compile animation, the image set is missing or there are no frames: " + def);
+        return addAnimation(animation);
+    }
+
+    /**
+     * Registers the given animation.
+     * 
+     * @param animation
+     *            the animation.
+     * @return the animation id.
+     * @throws IllegalArgumentException
+     *             if animation is null.
+     */
+    public int addAnimation(Animation animation) throws IllegalArgumentException {
+        if (animation == null)
+            throw new IllegalArgumentException("animation can't be null!");
+
+        if (animationCount == animations.length) {
+            animations = Arrays.copyOf(animations, animationCount * 2);
+            frameEvents = Arrays.copyOf(frameEvents, animationCount * 2);
+            finishTransitions = Arrays.copyOf(finishTransitions, animationCount * 2);
+        }
+
+        animations[animationCount] = animation;
+        finishTransitions[animationCount] = -1;
+        return animationCount++;
+    }
+
+    /**
+     * Sets the event fired when a state shows the given frame of the given animation. Events are only fired when the shown frame changes during an
+     * update, not when an animation is started. The events of frames passed over by a large update are fired too, in the order the frames were
+     * passed, but at most one cycle of frames is walked per update so an update longer than a cycle fires each event once.
+     * 
+     * @param animation
+     *            the animation id.
+     * @param frame
+     *            the key frame index.
+     * @param event
+     *            the event id, a positive number, or zero to remove the event.
+     * @throws IllegalArgumentException
+     *             if the animation id or frame is out of range, or event is negative.
+     */
+    public void setFrameEvent(int animation, int frame, int event) throws IllegalArgumentException {
+        checkAnimation(animation);
+        if (frame < 0 || frame >= animations[animation].getKeyFrameCount() || event < 0)
+            throw new IllegalArgumentException("Invalid frame event: frame=" + frame + ", event=" + event);
+
+        if (frameEvents[animation] == null)
+            frameEvents[animation] = new int[animations[animation].getKeyFrameCount()];
+        frameEvents[animation][frame] = event;
+    }
+
+    /**
+     * Sets the animation a state moves to when the given animation finishes. Only {@link PlayMode#ONCE} and {@link PlayMode#REVERSED} animations
+     * finish.
+     * 
+     * @param from
+     *            the animation id.
+     * @param to
+     *            the animation id to move to, or -1 to stay on the last frame.
+     * @throws IllegalArgumentException
+     *             if an animation id is out of range.
+     */
+    public void setFinishTransition(int from, int to) throws IllegalArgumentException {
+        checkAnimation(from);
+        if (to != -1)
+            checkAnimation(to);
+        finishTransitions[from] = to;
+    }
+
+    /**
+     * Adds a transition taken when the given trigger is sent to a state playing the given animation, replacing any transition with the same
+     * animation and trigger.
+     * 
+     * @param from
+     *            the animation id.
+     * @param trigger
+     *            the trigger id.
+     * @param to
+     *            the animation id to move to.
+     * @throws IllegalArgumentException
+     *             if an animation id is out of range.
+     */
+    public void addTransition(int from, int trigger, int to) throws IllegalArgumentException {
+        checkAnimation(from);
+        checkAnimation(to);
+        transitions.put(transitionKey(from, trigger), to);
+    }
+
+    private static long transitionKey(int animation, int trigger) {
+        return ((long) animation << 32) | (trigger & 0xFFFFFFFFL);
+    }
+
+    private void checkAnimation(int animation) throws IllegalArgumentException {
+        if (animation < 0 || animation >= animationCount)
+            throw new IllegalArgumentException("Unknown animation id: " + animation);
+    }
+
+    /**
+     * Creates a new state playing the given animation from the start.
+     * 
+     * @param owner
+     *            the owner of the state.
+     * @param animation
+     *            the animation id.
+     * @return the state handle.
+     * @throws IllegalArgumentException
+     *             if owner is null or the animation id is out of range.
+     */
+    public int create(T owner, int animation) throws IllegalArgumentException {
+        checkAnimation(animation);
+
+        int index = states.size();
+        if (index == animationIds.length) {
+            int capacity = index * 2;
+            animationIds = Arrays.copyOf(animationIds, capacity);
+            times = Arrays.copyOf(times, capacity);
+            previousTimes = Arrays.copyOf(previousTimes, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+            loops = Arrays.copyOf(loops, capacity);
+            frames = Arrays.copyOf(frames, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+
+        int handle = states.add(owner);
+        speeds[index] = 1;
+        flags[index] = 0;
+        start(index, animation);
+        return handle;
+    }
+
+    /**
+     * Destroys the given state, the handle becomes stale.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return true if the state was destroyed, false if the handle was already stale.
+     */
+    public boolean destroy(int handle) {
+        int index = states.denseIndexOf(handle);
+        if (index == -1)
+            return false;
+
+        int last = states.size() - 1;
+        states.remove(handle); // The registry moves the last state into the gap, so do the same.
+        animationIds[index] = animationIds[last];
+        times[index] = times[last];
+        previousTimes[index] = previousTimes[last];
+        speeds[index] = speeds[last];
+        loops[index] = loops[last];
+        frames[index] = frames[last];
+        flags[index] = flags[last];
+        return true;
+    }
+
+    /**
+     * Destroys all states.
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Plays the given animation from the start, unless the state is already playing it.
+     * 
+     * @param handle
+     *            the state handle.
+     * @param animation
+     *            the animation id.
+     * @throws IllegalArgumentException
+     *             if the handle is stale or the animation id is out of range.
+     */
+    public void play(int handle, int animation) throws IllegalArgumentException {
+        checkAnimation(animation);
+        int index = indexOf(handle);
+        if (animationIds[index] != animation)
+            start(index, animation);
+    }
+
+    /**
+     * Plays the current animation of the given state from the start.
+     * 
+     * @param handle
+     *            the state handle.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public void restart(int handle) throws IllegalArgumentException {
+        int index = indexOf(handle);
+        start(index, animationIds[index]);
+    }
+
+    /**
+     * Sends a trigger to the given state, taking the transition added for its current animation and the trigger.
+     * 
+     * @param handle
+     *            the state handle.
+     * @param trigger
+     *            the trigger id.
+     * @return true if a transition was taken.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public boolean trigger(int handle, int trigger) throws IllegalArgumentException {
+        int index = indexOf(handle);
+        Integer to = transitions.get(transitionKey(animationIds[index], trigger));
+        if (to == null)
+            return false;
+
+        start(index, to);
+        return true;
+    }
+
+    private void start(int index, int animation) {
+        animationIds[index] = animation;
+        times[index] = 0;
+        loops[index] = 0;
+        frames[index] = animations[animation].getKeyFrameIndex(0);
+    }
+
+    private int indexOf(int handle) throws IllegalArgumentException {
+        int index = states.denseIndexOf(handle);
+        if (index == -1)
+            throw new IllegalArgumentException("Stale animator handle: " + handle);
+        return index;
+    }
+
+    /**
+     * Advances all states by the given time, then passes the fired events to the listener in one call.
+     * 
+     * @param delta
+     *            the time since the last update, in seconds.
+     */
+    public void update(float delta) {
+        int size = states.size();
+        if (size >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new AdvanceTask(this, delta, 0, size));
+        } else {
+            advance(delta, 0, size);
+        }
+
+        eventCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (flags[i] == 0)
+                continue;
+
+            int handle = states.getDenseHandle(i);
+            int animation = animationIds[i];
+            if ((flags[i] & FLAG_FRAME_EVENT) != 0)
+                addFrameEvents(i, handle, animation, delta * speeds[i]);
+
+            if ((flags[i] & FLAG_FINISHED) != 0) {
+                addEvent(handle, animation, EVENT_FINISHED);
+                if (finishTransitions[animation] != -1)
+                    start(i, finishTransitions[animation]);
+            }
+            flags[i] = 0;
+        }
+
+        if (eventCount > 0 && listener != null)
+            listener.onEvents(this, eventCount, eventHandles, eventAnimations, eventIds);
+    }
+
+    /**
+     * Advances the states between start (inclusive) and end (exclusive), only touching the arrays at those indexes.
+     */
+    private void advance(float delta, int start, int end) {
+        for (int i = start; i < end; i++) {
+            Animation animation = animations[animationIds[i]];
+            float step = delta * speeds[i];
+            float time = times[i] + step;
+            previousTimes[i] = times[i];
+
+            switch (animation.getPlayMode()) {
+                case ONCE:
+                case REVERSED:
+                    time = Math.max(0, time);
+                    if (time >= animation.getAnimationDuration() && loops[i] == 0) {
+                        loops[i] = 1;
+                        flags[i] |= FLAG_FINISHED;
+                    }
+                    break;
+
+                case RANDOM:
+                    if (time < 0) {
+                        time = 0;
+                    } else {
+                        loops[i] = animation.getLoopCount(time);
+                    }
+                    break;
+
+                case LOOP:
+                case PINGPONG:
+                default:
+                    float cycle = animation.getCycleDuration();
+                    if (time >= cycle || time < 0) {
+                        float wraps = (float) Math.floor(time / cycle);
+                        time = Math.max(0, Math.min(Math.nextDown(cycle), time - wraps * cycle));
+                        loops[i] += (int) Math.abs(wraps);
+                    }
+                    break;
+            }
+            times[i] = time;
+
+            // A step shorter than every frame can only have passed the frames it lands on.
+            int frame = animation.getKeyFrameIndex(time);
+            if (frameEvents[animationIds[i]] != null && (frame != frames[i] || Math.abs(step) >= animation.getShortestFrameDuration()))
+                flags[i] |= FLAG_FRAME_EVENT;
+            frames[i] = frame;
+        }
+    }
+
+    /**
+     * Adds the events of the frames the given state passed during the last step, in the order they were shown, ending with the frame it landed on.
+     * At most one cycle of frames is walked.
+     */
+    private void addFrameEvents(int index, int handle, int animation, float step) {
+        Animation anim = animations[animation];
+        int[] events = frameEvents[animation];
+
+        // Only looping and ping-pong states wrap their time, the others stored the time they stopped at.
+        PlayMode mode = anim.getPlayMode();
+        float from = previousTimes[index];
+        float to = (mode == PlayMode.LOOP || mode == PlayMode.PINGPONG) ? from + step : times[index];
+        if (mode == PlayMode.ONCE || mode == PlayMode.REVERSED) {
+            float duration = anim.getAnimationDuration(); // The frame doesn't change outside of one playthrough.
+            from = Math.max(0, Math.min(duration, from));
+            to = Math.max(0, Math.min(duration, to));
+        } else if (Math.abs(step) > anim.getCycleDuration()) {
+            from = to - Math.copySign(anim.getCycleDuration(), step);
+        }
+        boolean isForward = to > from;
+
+        int shown = anim.getKeyFrameIndex(from);
+        float start = from;
+        for (int n = anim.getKeyFrameCount() * 2 + 3; n > 0 && start != to; n--) {
+            float boundary = anim.getFrameBoundary(start, isForward);
+            float end = isForward ? Math.min(boundary, to) : Math.max(boundary, to);
+
+            int frame = anim.getKeyFrameIndex((start + end) * 0.5f); // The middle of the frame, clear of the boundaries.
+            if (frame != shown) {
+                shown = frame;
+                if (events[frame] != 0)
+                    addEvent(handle, animation, events[frame]);
+            }
+            start = end;
+        }
+
+        if (frames[index] != shown && events[frames[index]] != 0)
+            addEvent(handle, animation, events[frames[index]]);
+    }
+
+    private void addEvent(int handle, int animation, int event) {
+        if (eventCount == eventIds.length) {
+            eventHandles = Arrays.copyOf(eventHandles, eventCount * 2);
+            eventAnimations = Arrays.copyOf(eventAnimations, eventCount * 2);
+            eventIds = Arrays.copyOf(eventIds, eventCount * 2);
+        }
+        eventHandles[eventCount] = handle;
+        eventAnimations[eventCount] = animation;
+        eventIds[eventCount++] = event;
+    }
+
+    /**
+     * Sets the listener that receives the events fired during each update.
+     * 
+     * @param listener
+     *            the listener, or null for none.
+     */
+    public void setListener(IAnimatorListener<T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the playback speed of the given state, negative speeds play the animation backwards.
+     * 
+     * @param handle
+     *            the state handle.
+     * @param speed
+     *            the speed multiplier, one is normal speed.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public void setSpeed(int handle, float speed) throws IllegalArgumentException {
+        speeds[indexOf(handle)] = speed;
+    }
+
+    /**
+     * Returns the playback speed of the given state.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the playback speed of the given state.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public float getSpeed(int handle) throws IllegalArgumentException {
+        return speeds[indexOf(handle)];
+    }
+
+    /**
+     * Returns the state time of the given state, in seconds.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the state time of the given state.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public float getTime(int handle) throws IllegalArgumentException {
+        return times[indexOf(handle)];
+    }
+
+    /**
+     * Returns the number of times the current animation of the given state has completed.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the number of times the current animation of the given state has completed.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public int getLoopCount(int handle) throws IllegalArgumentException {
+        return loops[indexOf(handle)];
+    }
+
+    /**
+     * Returns true if the current animation of the given state has finished. Only {@link PlayMode#ONCE} and {@link PlayMode#REVERSED} animations
+     * finish.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return true if the current animation of the given state has finished.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public boolean isFinished(int handle) throws IllegalArgumentException {
+        int index = indexOf(handle);
+        return animations[animationIds[index]].isAnimationFinished(times[index]);
+    }
+
+    /**
+     * Returns the animation id the given state is playing.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the animation id the given state is playing.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public int getAnimationId(int handle) throws IllegalArgumentException {
+        return animationIds[indexOf(handle)];
+    }
+
+    /**
+     * Returns the index of the key frame the given state shows.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the index of the key frame the given state shows.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public int getKeyFrameIndex(int handle) throws IllegalArgumentException {
+        return frames[indexOf(handle)];
+    }
+
+    /**
+     * Returns the key frame the given state shows.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the key frame the given state shows.
+     * @throws IllegalArgumentException
+     *             if the handle is stale.
+     */
+    public Sprite getKeyFrame(int handle) throws IllegalArgumentException {
+        int index = indexOf(handle);
+        return animations[animationIds[index]].getKeyFrameAt(frames[index]);
+    }
+
+    /**
+     * Returns the owner of the given state.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return the owner of the given state, or null if the handle is stale.
+     */
+    public T getOwner(int handle) {
+        return states.get(handle);
+    }
+
+    /**
+     * Returns true if the given state handle isn't stale.
+     * 
+     * @param handle
+     *            the state handle.
+     * @return true if the given state handle isn't stale.
+     */
+    public boolean isAlive(int handle) {
+        return states.isValid(handle);
+    }
+
+    /**
+     * Returns the animation with the given id.
+     * 
+     * @param animation
+     *            the animation id.
+     * @return the animation with the given id.
+     * @throws IllegalArgumentException
+     *             if the animation id is out of range.
+     */
+    public Animation getAnimation(int animation) throws IllegalArgumentException {
+        checkAnimation(animation);
+        return animations[animation];
+    }
+
+    /**
+     * Returns the number of registered animations.
+     * 
+     * @return the number of registered animations.
+     */
+    public int getAnimationCount() {
+        return animationCount;
+    }
+
+    /**
+     * Returns the number of states.
+     * 
+     * @return the number of states.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [animations=%s, states=%s, transitions=%s]", getClass().getSimpleName(), animationCount, states.size(), transitions.size());
+    }
+
+    /**
+     * Splits the states of an animator over the common {@link ForkJoinPool}.
+     */
+    private static class AdvanceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Animator<?> animator;
+        private final float delta;
+        private final int start;
+        private final int end;
+
+        AdvanceTask(Animator<?> animator, float delta, int start, int end) {
+            this.animator = animator;
+            this.delta = delta;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                animator.advance(delta, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new AdvanceTask(animator, delta, start, mid), new AdvanceTask(animator, delta, mid, end));
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.github.maxstupo.flatengine.animation;
+
+import com.github.maxstupo.flatengine.Sprite;
+
+/**
+ * This class is the immutable compiled form of an {@link AnimationDef} for a specific {@link ImageSetStore}: the frames as primitive arrays, the key
+ * frames resolved from the image set, and a shared {@link Animation}. Compiled animations are cached by the store, see
+ * {@link AnimationDef#compile(ImageSetStore)}.
+ * 
+ * @author Maxstupo
+ */
+public final class CompiledAnimation {
+
+    private final AnimationDef def;
+    private final int version;
+
+    private final int[] imageSetIndexes;
+    private final float[] offsets;
+    private final float[] origins;
+    private final Sprite[] keyFrames;
+
+    private final Animation animation;
+
+    /**
+     * Create a new {@link CompiledAnimation} object, the given arrays are owned by this object.
+     */
+    CompiledAnimation(AnimationDef def, int version, int[] imageSetIndexes, float[] offsets, float[] origins, Sprite[] keyFrames) {
+        this.def = def;
+        this.version = version;
+        this.imageSetIndexes = imageSetIndexes;
+        this.offsets = offsets;
+        this.origins = origins;
+        this.keyFrames = keyFrames;
+
+        float[] durations = new float[keyFrames.length];
+        for (int i = 0; i < durations.length; i++)
+            durations[i] = def.getFrameDuration();
+
+        this.animation = new Animation(durations, keyFrames, offsets, origins);
+        this.animation.setPlayMode(def.getPlayMode());
+        this.animation.setShared();
+    }
+
+    /**
+     * Returns true if this compiled form was made from the current frames of its definition.
+     */
+    boolean isCurrent() {
+        return version == def.getVersion();
+    }
+
+    /**
+     * Returns the animation of this compiled form. The animation is shared by every caller, so its play mode can't be changed, see
+     * {@link Animation#withPlayMode(PlayMode)}.
+     * 
+     * @return the animation of this compiled form.
+     */
+    public Animation getAnimation() {
+        return animation;
+    }
+
+    /**
+     * Returns the definition this was compiled from.
+     * 
+     * @return the definition this was compiled from.
+     */
+    public AnimationDef getDef() {
+        return def;
+    }
+
+    /**
+     * Returns the number of key frames.
+     * 
+     * @return the number of key frames.
+     */
+    public int getFrameCount() {
+        return keyFrames.length;
+    }
+
+    /**
+     * Returns the image set index of the given key frame.
+     * 
+     * @param frame
+     *            the key frame index.
+     * @return the image set index of the given key frame.
+     */
+    public int getImageSetIndex(int frame) {
+        return imageSetIndexes[frame];
+    }
+
+    /**
+     * Returns the resolved sprite of the given key frame.
+     * 
+     * @param frame
+     *            the key frame index.
+     * @return the sprite of the given key frame, or null if the image set index is out of range.
+     */
+    public Sprite getKeyFrame(int frame) {
+        return keyFrames[frame];
+    }
+
+    /**
+     * Returns the x offset of the given key frame.
+     * 
+     * @param frame
+     *            the key frame index.
+     * @return the x offset of the given key frame.
+     */
+    public float getOffsetX(int frame) {
+        return offsets[frame * 2];
+    }
+
+    /**
+     * Returns the y offset of the given key frame.
+     * 
+     * @param frame
+     *            the key frame index.
+     * @return the y offset of the given key frame.
+     */
+    public float getOffsetY(int frame) {
+        return offsets[frame * 2 + 1];
+    }
+
+    /**
+     * Returns the x origin of the given key frame.
+     * 
+     * @param frame
+     *            the key frame index.
+     * @return the x origin of the given key frame.
+     */
+    public float getOriginX(int frame) {
+        return origins[frame * 2];
+    }
+
+    /**
+     * Returns the y origin of the given key frame.
+     * 
+     * @param frame
+     *            the key frame index.
+     * @return the y origin of the given key frame.
+     */
+    public float getOriginY(int frame) {
+        return origins[frame * 2 + 1];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [imageSet=%s, frames=%s, version=%s]", getClass().getSimpleName(), def.getImageSetName(), keyFrames.length, version);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.github.maxstupo.flatengine.animation;
+
+/**
+ * This interface receives the events of an {@link Animator}, batched once per {@link Animator#update(float)}.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the owner type of the animator states.
+ */
+public interface IAnimatorListener<T> {
+
+    /**
+     * Called once per update with every event fired during it. The arrays are reused by the animator, they are only valid during this call and only
+     * the first count elements are set. States may be created or destroyed from within this method.
+     * 
+     * @param animator
+     *            the animator that fired the events.
+     * @param count
+     *            the number of events.
+     * @param handles
+     *            the state handle of each event.
+     * @param animations
+     *            the animation id that fired each event.
+     * @param events
+     *            the event id, either a frame event set with {@link Animator#setFrameEvent(int, int, int)} or {@link Animator#EVENT_FINISHED}.
+     */
+    void onEvents(Animator<T> animator, int count, int[] handles, int[] animations, int[] events);
+
+}
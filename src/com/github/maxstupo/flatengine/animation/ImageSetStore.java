@@ -1,16 +1,19 @@
 package com.github.maxstupo.flatengine.animation;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 /**
- * This class stores {@link ImageSet}s based on their ids, allowing for easy retrieval via {@link #get(String)} or {@link #get(String, ImageSet)}.
+ * This class stores {@link ImageSet}s based on their ids, allowing for easy retrieval via {@link #get(String)} or {@link #get(String, ImageSet)}. It
+ * also caches the {@link CompiledAnimation compiled form} of each {@link AnimationDef} resolved against this store.
  * 
  * @author Maxstupo
  */
 public class ImageSetStore {
 
     private final Map<String, ImageSet> imageSets = new HashMap<>();
+    private final Map<AnimationDef, CompiledAnimation> compiled = new IdentityHashMap<>();
 
     /**
      * Creates an empty {@link ImageSetStore} object.
@@ -44,6 +47,47 @@ public class ImageSetStore {
         imageSets.put(imageSet.getId(), imageSet);
     }
 
+    /**
+     * Returns the cached compiled form of the given definition, which may be outdated.
+     */
+    CompiledAnimation getCompiled(AnimationDef def) {
+        return compiled.get(def);
+    }
+
+    /**
+     * Caches the compiled form of the given definition.
+     */
+    void putCompiled(AnimationDef def, CompiledAnimation animation) {
+        compiled.put(def, animation);
+    }
+
+    /**
+     * Removes the cached compiled form of the given definition, e.g. when the definition is no longer used. It's compiled again if used later.
+     * 
+     * @param def
+     *            the animation definition.
+     * @return true if a compiled form was cached.
+     */
+    public boolean removeCompiled(AnimationDef def) {
+        return compiled.remove(def) != null;
+    }
+
+    /**
+     * Removes the cached compiled form of every definition.
+     */
+    public void clearCompiled() {
+        compiled.clear();
+    }
+
+    /**
+     * Returns the number of definitions with a cached compiled form.
+     * 
+     * @return the number of definitions with a cached compiled form.
+     */
+    public int getCompiledCount() {
+        return compiled.size();
+    }
+
     /**
      * Returns a {@link ImageSet} that has the given id, or the given defaultValue if the id isn't registered.
      * 
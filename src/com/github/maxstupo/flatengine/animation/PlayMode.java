@@ -2,11 +2,23 @@ package com.github.maxstupo.flatengine.animation;
 
 /**
  * The play mode used by the {@link Animation} class.
- * 
+ *
  * @author Maxstupo
  */
 public enum PlayMode {
     /** Keep repeating the animation. */
-    LOOP
+    LOOP,
+
+    /** Play the animation once, stopping on the last frame. */
+    ONCE,
+
+    /** Keep playing the animation forwards then backwards, without repeating the first and last frames. */
+    PINGPONG,
+
+    /** Play the animation backwards once, stopping on the first frame. */
+    REVERSED,
+
+    /** Keep showing a random frame, each for the duration of the frame it replaces. */
+    RANDOM
 
 }
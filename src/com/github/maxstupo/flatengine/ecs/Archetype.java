@@ -0,0 +1,215 @@
+package com.github.maxstupo.flatengine.ecs;
+
+import java.util.Arrays;
+
+import com.github.maxstupo.flatengine.util.HandleRegistry;
+
+/**
+ * This class is a table of all entities with exactly the same set of component types. Each field of each component is stored in its own primitive
+ * array indexed by row, so a system iterating a few fields over many entities reads contiguous memory.
+ * <p>
+ * Rows are kept packed: removing an entity moves the last row into its place. The arrays returned by {@link #getFloats(ComponentType, int)} and
+ * {@link #getInts(ComponentType, int)} are replaced when the table grows, so they should be fetched again after entities are created.
+ * 
+ * @author Maxstupo
+ */
+public class Archetype {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long mask;
+    private final ComponentType[] types;
+
+    /** The field arrays of each component type, indexed by component type id then field. Null for types not within this archetype. */
+    private final float[][][] floats = new float[ComponentType.MAX_TYPES][][];
+    private final int[][][] ints = new int[ComponentType.MAX_TYPES][][];
+
+    private int[] entities = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Create a new {@link Archetype} object.
+     * 
+     * @param types
+     *            the component types of this archetype.
+     */
+    Archetype(ComponentType[] types) {
+        this.types = types;
+        this.mask = ComponentType.maskOf(types);
+
+        for (ComponentType type : types) {
+            if (type.isFloat()) {
+                floats[type.getId()] = new float[type.getFieldCount()][INITIAL_CAPACITY];
+            } else {
+                ints[type.getId()] = new int[type.getFieldCount()][INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * Appends a row with all fields zeroed.
+     * 
+     * @return the new row.
+     */
+    int addRow(int entity) {
+        if (size == entities.length)
+            grow(size * 2);
+
+        int row = size++;
+        entities[row] = entity;
+        for (ComponentType type : types) {
+            if (type.isFloat()) {
+                for (float[] field : floats[type.getId()])
+                    field[row] = 0;
+            } else {
+                for (int[] field : ints[type.getId()])
+                    field[row] = 0;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Removes the given row by moving the last row into it.
+     * 
+     * @return the entity that was moved into the given row, or {@link HandleRegistry#NULL_HANDLE} if the removed row was the last row.
+     */
+    int removeRow(int row) {
+        int last = --size;
+        if (row == last)
+            return HandleRegistry.NULL_HANDLE;
+
+        entities[row] = entities[last];
+        for (ComponentType type : types) {
+            if (type.isFloat()) {
+                for (float[] field : floats[type.getId()])
+                    field[row] = field[last];
+            } else {
+                for (int[] field : ints[type.getId()])
+                    field[row] = field[last];
+            }
+        }
+        return entities[row];
+    }
+
+    /**
+     * Copies the fields of all component types shared with the given archetype from the given row into the given row of the given archetype.
+     */
+    void copyRow(int row, Archetype dst, int dstRow) {
+        for (ComponentType type : types) {
+            int id = type.getId();
+            if (type.isFloat() && dst.floats[id] != null) {
+                for (int i = 0; i < type.getFieldCount(); i++)
+                    dst.floats[id][i][dstRow] = floats[id][i][row];
+            } else if (!type.isFloat() && dst.ints[id] != null) {
+                for (int i = 0; i < type.getFieldCount(); i++)
+                    dst.ints[id][i][dstRow] = ints[id][i][row];
+            }
+        }
+    }
+
+    private void grow(int capacity) {
+        entities = Arrays.copyOf(entities, capacity);
+        for (ComponentType type : types) {
+            int id = type.getId();
+            for (int i = 0; i < type.getFieldCount(); i++) {
+                if (type.isFloat()) {
+                    floats[id][i] = Arrays.copyOf(floats[id][i], capacity);
+                } else {
+                    ints[id][i] = Arrays.copyOf(ints[id][i], capacity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the array of the given field of the given float component type, indexed by row.
+     * 
+     * @param type
+     *            the component type.
+     * @param field
+     *            the field index.
+     * @return the array of the given field, only the first {@link #size()} elements are valid.
+     * @throws IllegalArgumentException
+     *             if this archetype doesn't have the given component type, or it isn't a float component type.
+     */
+    public float[] getFloats(ComponentType type, int field) throws IllegalArgumentException {
+        float[][] fields = floats[type.getId()];
+        if (fields == null)
+            throw new IllegalArgumentException("Archetype doesn't have float component: " + type.getName());
+        return fields[field];
+    }
+
+    /**
+     * Returns the array of the given field of the given int component type, indexed by row.
+     * 
+     * @param type
+     *            the component type.
+     * @param field
+     *            the field index.
+     * @return the array of the given field, only the first {@link #size()} elements are valid.
+     * @throws IllegalArgumentException
+     *             if this archetype doesn't have the given component type, or it isn't an int component type.
+     */
+    public int[] getInts(ComponentType type, int field) throws IllegalArgumentException {
+        int[][] fields = ints[type.getId()];
+        if (fields == null)
+            throw new IllegalArgumentException("Archetype doesn't have int component: " + type.getName());
+        return fields[field];
+    }
+
+    /**
+     * Returns the entity handle stored in the given row.
+     * 
+     * @param row
+     *            the row.
+     * @return the entity handle stored in the given row.
+     */
+    public int getEntity(int row) {
+        return entities[row];
+    }
+
+    /**
+     * Returns true if this archetype has the given component type.
+     * 
+     * @param type
+     *            the component type.
+     * @return true if this archetype has the given component type.
+     */
+    public boolean has(ComponentType type) {
+        return (mask & type.getMask()) != 0;
+    }
+
+    /**
+     * Returns the combined mask of the component types of this archetype.
+     * 
+     * @return the combined mask of the component types of this archetype.
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns a copy of the component types of this archetype.
+     * 
+     * @return a copy of the component types of this archetype.
+     */
+    public ComponentType[] getTypes() {
+        return types.clone();
+    }
+
+    /**
+     * Returns the number of entities (rows) within this archetype.
+     * 
+     * @return the number of entities within this archetype.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [mask=%s, size=%s, capacity=%s]", getClass().getSimpleName(), Long.toHexString(mask), size, entities.length);
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.github.maxstupo.flatengine.ecs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class describes a component that can be stored by an {@link EntityWorld}. A component is a fixed number of float or int fields, e.g. a
+ * position is two floats. Each field of a component is stored in its own primitive array within each {@link Archetype}.
+ * <p>
+ * Component types are identified by a bit within a long mask, so at most {@value #MAX_TYPES} component types can be created.
+ * 
+ * @author Maxstupo
+ */
+public final class ComponentType {
+
+    /** The maximum number of component types. */
+    public static final int MAX_TYPES = 64;
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+    private final int fieldCount;
+    private final boolean isFloat;
+
+    private ComponentType(String name, int fieldCount, boolean isFloat) throws IllegalArgumentException, IllegalStateException {
+        if (fieldCount < 1)
+            throw new IllegalArgumentException("fieldCount must be greater than zero: " + fieldCount);
+
+        int id = nextId.getAndIncrement();
+        if (id >= MAX_TYPES)
+            throw new IllegalStateException("Can't create more than " + MAX_TYPES + " component types!");
+
+        this.name = name;
+        this.id = id;
+        this.fieldCount = fieldCount;
+        this.isFloat = isFloat;
+    }
+
+    /**
+     * Creates a new component type made of float fields.
+     * 
+     * @param name
+     *            the name of the component, only used for debugging.
+     * @param fieldCount
+     *            the number of fields.
+     * @return a new component type.
+     * @throws IllegalArgumentException
+     *             if fieldCount is less than one.
+     * @throws IllegalStateException
+     *             if {@value #MAX_TYPES} component types have already been created.
+     */
+    public static ComponentType floats(String name, int fieldCount) throws IllegalArgumentException, IllegalStateException {
+        return new ComponentType(name, fieldCount, true);
+    }
+
+    /**
+     * Creates a new component type made of int fields.
+     * 
+     * @param name
+     *            the name of the component, only used for debugging.
+     * @param fieldCount
+     *            the number of fields.
+     * @return a new component type.
+     * @throws IllegalArgumentException
+     *             if fieldCount is less than one.
+     * @throws IllegalStateException
+     *             if {@value #MAX_TYPES} component types have already been created.
+     */
+    public static ComponentType ints(String name, int fieldCount) throws IllegalArgumentException, IllegalStateException {
+        return new ComponentType(name, fieldCount, false);
+    }
+
+    /**
+     * Returns the combined mask of the given component types.
+     * 
+     * @param types
+     *            the component types.
+     * @return the combined mask of the given component types.
+     */
+    public static long maskOf(ComponentType... types) {
+        long mask = 0;
+        for (ComponentType type : types)
+            mask |= type.getMask();
+        return mask;
+    }
+
+    /**
+     * Returns the name of this component type.
+     * 
+     * @return the name of this component type.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the id of this component type, between zero and {@value #MAX_TYPES}.
+     * 
+     * @return the id of this component type.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the bit of this component type within an archetype mask.
+     * 
+     * @return the bit of this component type within an archetype mask.
+     */
+    public long getMask() {
+        return 1L << id;
+    }
+
+    /**
+     * Returns the number of fields of this component type.
+     * 
+     * @return the number of fields of this component type.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns true if the fields of this component type are floats, false if they are ints.
+     * 
+     * @return true if the fields of this component type are floats.
+     */
+    public boolean isFloat() {
+        return isFloat;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [name=%s, id=%s, fieldCount=%s, isFloat=%s]", getClass().getSimpleName(), name, id, fieldCount, isFloat);
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.maxstupo.flatengine.ecs;
+
+import com.github.maxstupo.flatengine.util.AbstractSpatialObject;
+import com.github.maxstupo.flatengine.util.ISpatialIndex;
+
+/**
+ * This class is an entry within a {@link ISpatialIndex} that refers to an entity of an {@link EntityWorld}, so spatial queries return entity handles.
+ * Proxies are created and kept in sync by an {@link EntitySpatialBridge}.
+ * 
+ * @author Maxstupo
+ */
+public class EntityProxy extends AbstractSpatialObject<EntityProxy> {
+
+    private final int entity;
+
+    /**
+     * Create a new {@link EntityProxy} object.
+     * 
+     * @param index
+     *            the spatial index that owns this proxy.
+     * @param entity
+     *            the entity handle.
+     */
+    public EntityProxy(ISpatialIndex<EntityProxy> index, int entity) {
+        super(index, null);
+        this.entity = entity;
+    }
+
+    /**
+     * Returns the handle of the entity this proxy refers to.
+     * 
+     * @return the handle of the entity this proxy refers to.
+     */
+    public int getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [entity=%s, x=%s, y=%s]", getClass().getSimpleName(), entity, getX(), getY());
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + entity;
+        result = prime * result + ((getIndex() == null) ? 0 : System.identityHashCode(getIndex()));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        EntityProxy other = (EntityProxy) obj;
+        if (entity != other.entity)
+            return false;
+        if (getIndex() != other.getIndex())
+            return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.github.maxstupo.flatengine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.maxstupo.flatengine.util.HandleRegistry;
+import com.github.maxstupo.flatengine.util.ISpatialIndex;
+
+/**
+ * This class keeps a {@link ISpatialIndex} in sync with the positions of entities. Each attached entity gets an {@link EntityProxy} within the index,
+ * and {@link #sync()} copies the two fields of the position component into the proxies of entities that have moved, so the index can be queried for
+ * entity handles.
+ * 
+ * @author Maxstupo
+ */
+public class EntitySpatialBridge {
+
+    private final EntityWorld world;
+    private final ComponentType position;
+    private final ISpatialIndex<EntityProxy> index;
+
+    private EntityProxy[] proxies = new EntityProxy[64];
+    private final List<EntityProxy> attached = new ArrayList<>();
+
+    /**
+     * Create a new {@link EntitySpatialBridge} object.
+     * 
+     * @param world
+     *            the world the entities are in.
+     * @param position
+     *            the float component holding the x and y position within its first two fields.
+     * @param index
+     *            the spatial index the proxies are added to.
+     * @throws IllegalArgumentException
+     *             if position isn't a float component with at least two fields.
+     */
+    public EntitySpatialBridge(EntityWorld world, ComponentType position, ISpatialIndex<EntityProxy> index) throws IllegalArgumentException {
+        if (!position.isFloat() || position.getFieldCount() < 2)
+            throw new IllegalArgumentException("position must be a float component with two fields: " + position.getName());
+        this.world = world;
+        this.position = position;
+        this.index = index;
+    }
+
+    /**
+     * Adds a proxy for the given entity to the spatial index.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return the proxy of the entity, or the existing proxy if the entity is already attached.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale, or the entity doesn't have the position component.
+     */
+    public EntityProxy attach(int entity) throws IllegalArgumentException {
+        EntityProxy proxy = getProxy(entity);
+        if (proxy != null)
+            return proxy;
+
+        float x = world.getFloat(entity, position, 0);
+        float y = world.getFloat(entity, position, 1);
+
+        int slot = HandleRegistry.indexOf(entity);
+        if (slot >= proxies.length)
+            proxies = Arrays.copyOf(proxies, Math.max(slot + 1, proxies.length * 2));
+
+        proxy = new EntityProxy(index, entity);
+        proxy.setPosition(x, y);
+        index.add(proxy);
+
+        proxies[slot] = proxy;
+        attached.add(proxy);
+        return proxy;
+    }
+
+    /**
+     * Removes the proxy of the given entity from the spatial index.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return false if the entity isn't attached.
+     */
+    public boolean detach(int entity) {
+        EntityProxy proxy = getProxy(entity);
+        if (proxy == null)
+            return false;
+
+        index.remove(proxy);
+        proxies[HandleRegistry.indexOf(entity)] = null;
+        attached.remove(proxy);
+        return true;
+    }
+
+    /**
+     * Moves the proxies of all attached entities to the current position of their entity. Proxies of entities that have been destroyed or lost the
+     * position component are detached.
+     */
+    public void sync() {
+        for (int i = attached.size() - 1; i >= 0; i--) {
+            EntityProxy proxy = attached.get(i);
+            int entity = proxy.getEntity();
+
+            if (!world.has(entity, position)) {
+                index.remove(proxy);
+                if (proxies[HandleRegistry.indexOf(entity)] == proxy) // The slot may already belong to a newer entity.
+                    proxies[HandleRegistry.indexOf(entity)] = null;
+                attached.set(i, attached.get(attached.size() - 1));
+                attached.remove(attached.size() - 1);
+                continue;
+            }
+
+            Archetype archetype = world.getArchetype(entity);
+            int row = world.getRow(entity);
+            float x = archetype.getFloats(position, 0)[row];
+            float y = archetype.getFloats(position, 1)[row];
+
+            if (x != proxy.getX() || y != proxy.getY())
+                proxy.setPosition(x, y);
+        }
+    }
+
+    /**
+     * Returns the proxy of the given entity.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return the proxy of the given entity, or null if the entity isn't attached.
+     */
+    public EntityProxy getProxy(int entity) {
+        int slot = HandleRegistry.indexOf(entity);
+        if (slot >= proxies.length)
+            return null;
+
+        EntityProxy proxy = proxies[slot];
+        return (proxy != null && proxy.getEntity() == entity) ? proxy : null;
+    }
+
+    /**
+     * Returns the spatial index the proxies are added to.
+     * 
+     * @return the spatial index the proxies are added to.
+     */
+    public ISpatialIndex<EntityProxy> getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of attached entities.
+     * 
+     * @return the number of attached entities.
+     */
+    public int getAttachedCount() {
+        return attached.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [position=%s, attached=%s]", getClass().getSimpleName(), position.getName(), attached.size());
+    }
+
+}
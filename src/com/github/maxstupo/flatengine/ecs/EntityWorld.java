@@ -0,0 +1,358 @@
+package com.github.maxstupo.flatengine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.util.HandleRegistry;
+import com.github.maxstupo.flatengine.util.LongHashMap;
+
+/**
+ * This class stores entities and their components in {@link Archetype archetype} tables, one table for each distinct set of component types. Entities
+ * are identified by a generational {@link HandleRegistry handle}, so a handle kept after its entity was destroyed is detected as stale.
+ * <p>
+ * Systems are run over every archetype containing the required component types with {@link #forEach(IEntitySystem, ComponentType...)}, and get
+ * direct access to the primitive field arrays of each table. Adding or removing a component moves the entity to another table, so it's more costly
+ * than reading or writing fields.
+ * 
+ * @author Maxstupo
+ */
+public class EntityWorld {
+
+    /** The minimum number of rows to run a system in parallel, and the number of rows processed per task. */
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    private final HandleRegistry<Archetype> entities = new HandleRegistry<>();
+    private int[] rows = new int[64];
+
+    private final LongHashMap<Archetype> archetypesByMask = new LongHashMap<>();
+    private final List<Archetype> archetypes = new ArrayList<>();
+
+    /**
+     * Creates a new entity with the given component types, all fields are zeroed.
+     * 
+     * @param types
+     *            the component types.
+     * @return the handle of the new entity.
+     */
+    public int create(ComponentType... types) {
+        Archetype archetype = getOrCreateArchetype(ComponentType.maskOf(types), types);
+
+        int entity = entities.add(archetype);
+        setRow(entity, archetype.addRow(entity));
+        return entity;
+    }
+
+    /**
+     * Destroys the given entity.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return false if the entity handle is stale.
+     */
+    public boolean destroy(int entity) {
+        Archetype archetype = entities.get(entity);
+        if (archetype == null)
+            return false;
+
+        removeRow(archetype, getRow(entity));
+        entities.remove(entity);
+        return true;
+    }
+
+    /**
+     * Adds the given component type to the given entity, the fields of the component are zeroed. Does nothing if the entity already has the
+     * component.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale.
+     */
+    public void addComponent(int entity, ComponentType type) throws IllegalArgumentException {
+        Archetype archetype = getArchetype(entity);
+        if (archetype.has(type))
+            return;
+
+        ComponentType[] types = archetype.getTypes();
+        types = Arrays.copyOf(types, types.length + 1);
+        types[types.length - 1] = type;
+        move(entity, archetype, getOrCreateArchetype(archetype.getMask() | type.getMask(), types));
+    }
+
+    /**
+     * Removes the given component type from the given entity. Does nothing if the entity doesn't have the component.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale.
+     */
+    public void removeComponent(int entity, ComponentType type) throws IllegalArgumentException {
+        Archetype archetype = getArchetype(entity);
+        if (!archetype.has(type))
+            return;
+
+        List<ComponentType> types = new ArrayList<>(Arrays.asList(archetype.getTypes()));
+        types.remove(type);
+        move(entity, archetype, getOrCreateArchetype(archetype.getMask() & ~type.getMask(), types.toArray(new ComponentType[types.size()])));
+    }
+
+    private void move(int entity, Archetype from, Archetype to) {
+        int row = getRow(entity);
+        int newRow = to.addRow(entity);
+        from.copyRow(row, to, newRow);
+        removeRow(from, row);
+
+        entities.set(entity, to);
+        setRow(entity, newRow);
+    }
+
+    private void removeRow(Archetype archetype, int row) {
+        int moved = archetype.removeRow(row);
+        if (moved != HandleRegistry.NULL_HANDLE)
+            setRow(moved, row);
+    }
+
+    private Archetype getOrCreateArchetype(long mask, ComponentType[] types) {
+        Archetype archetype = archetypesByMask.get(mask);
+        if (archetype == null) {
+            archetype = new Archetype(types.clone());
+            archetypesByMask.put(mask, archetype);
+            archetypes.add(archetype);
+        }
+        return archetype;
+    }
+
+    private void setRow(int entity, int row) {
+        int index = HandleRegistry.indexOf(entity);
+        if (index >= rows.length)
+            rows = Arrays.copyOf(rows, Math.max(index + 1, rows.length * 2));
+        rows[index] = row;
+    }
+
+    /**
+     * Runs the given system over all entities that have all of the given component types, one call for each matching archetype.
+     * 
+     * @param system
+     *            the system.
+     * @param required
+     *            the component types an entity must have.
+     */
+    public void forEach(IEntitySystem system, ComponentType... required) {
+        long mask = ComponentType.maskOf(required);
+        for (int i = 0; i < archetypes.size(); i++) {
+            Archetype archetype = archetypes.get(i);
+            if ((archetype.getMask() & mask) == mask && archetype.size() > 0)
+                system.update(archetype, 0, archetype.size());
+        }
+    }
+
+    /**
+     * Runs the given system over all entities that have all of the given component types. Large archetypes are split into row ranges processed in
+     * parallel over the common {@link ForkJoinPool}, so the system must only write to the rows it's given.
+     * 
+     * @param system
+     *            the system.
+     * @param required
+     *            the component types an entity must have.
+     */
+    public void forEachParallel(IEntitySystem system, ComponentType... required) {
+        long mask = ComponentType.maskOf(required);
+        for (int i = 0; i < archetypes.size(); i++) {
+            Archetype archetype = archetypes.get(i);
+            if ((archetype.getMask() & mask) != mask || archetype.size() == 0)
+                continue;
+
+            if (archetype.size() >= PARALLEL_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(new SystemTask(system, archetype, 0, archetype.size()));
+            } else {
+                system.update(archetype, 0, archetype.size());
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given entity handle isn't stale.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return true if the given entity handle isn't stale.
+     */
+    public boolean isAlive(int entity) {
+        return entities.isValid(entity);
+    }
+
+    /**
+     * Returns true if the given entity has the given component type.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @return true if the given entity has the given component type, false if it doesn't or the entity handle is stale.
+     */
+    public boolean has(int entity, ComponentType type) {
+        Archetype archetype = entities.get(entity);
+        return archetype != null && archetype.has(type);
+    }
+
+    /**
+     * Returns the value of the given field of the given float component of the given entity.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @param field
+     *            the field index.
+     * @return the value of the field.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale, or the entity doesn't have the given float component.
+     */
+    public float getFloat(int entity, ComponentType type, int field) throws IllegalArgumentException {
+        return getArchetype(entity).getFloats(type, field)[getRow(entity)];
+    }
+
+    /**
+     * Sets the value of the given field of the given float component of the given entity.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @param field
+     *            the field index.
+     * @param value
+     *            the new value.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale, or the entity doesn't have the given float component.
+     */
+    public void setFloat(int entity, ComponentType type, int field, float value) throws IllegalArgumentException {
+        getArchetype(entity).getFloats(type, field)[getRow(entity)] = value;
+    }
+
+    /**
+     * Returns the value of the given field of the given int component of the given entity.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @param field
+     *            the field index.
+     * @return the value of the field.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale, or the entity doesn't have the given int component.
+     */
+    public int getInt(int entity, ComponentType type, int field) throws IllegalArgumentException {
+        return getArchetype(entity).getInts(type, field)[getRow(entity)];
+    }
+
+    /**
+     * Sets the value of the given field of the given int component of the given entity.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @param type
+     *            the component type.
+     * @param field
+     *            the field index.
+     * @param value
+     *            the new value.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale, or the entity doesn't have the given int component.
+     */
+    public void setInt(int entity, ComponentType type, int field, int value) throws IllegalArgumentException {
+        getArchetype(entity).getInts(type, field)[getRow(entity)] = value;
+    }
+
+    /**
+     * Returns the archetype the given entity is stored in.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return the archetype the given entity is stored in.
+     * @throws IllegalArgumentException
+     *             if the entity handle is stale.
+     */
+    public Archetype getArchetype(int entity) throws IllegalArgumentException {
+        Archetype archetype = entities.get(entity);
+        if (archetype == null)
+            throw new IllegalArgumentException("Entity handle is stale: " + entity);
+        return archetype;
+    }
+
+    /**
+     * Returns the row of the given entity within its {@link #getArchetype(int) archetype}. The row changes when other entities are removed from the
+     * archetype.
+     * 
+     * @param entity
+     *            the entity handle.
+     * @return the row of the given entity, undefined if the entity handle is stale.
+     */
+    public int getRow(int entity) {
+        return rows[HandleRegistry.indexOf(entity)];
+    }
+
+    /**
+     * Returns the number of entities.
+     * 
+     * @return the number of entities.
+     */
+    public int getEntityCount() {
+        return entities.size();
+    }
+
+    /**
+     * Returns the number of archetypes, including empty ones.
+     * 
+     * @return the number of archetypes.
+     */
+    public int getArchetypeCount() {
+        return archetypes.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [entities=%s, archetypes=%s]", getClass().getSimpleName(), entities.size(), archetypes.size());
+    }
+
+    /**
+     * Splits the rows of an archetype over the common {@link ForkJoinPool}.
+     */
+    private static class SystemTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IEntitySystem system;
+        private final Archetype archetype;
+        private final int start;
+        private final int end;
+
+        SystemTask(IEntitySystem system, Archetype archetype, int start, int end) {
+            this.system = system;
+            this.archetype = archetype;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                system.update(archetype, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new SystemTask(system, archetype, start, mid), new SystemTask(system, archetype, mid, end));
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.github.maxstupo.flatengine.ecs;
+
+/**
+ * This interface is used to process a range of rows of an {@link Archetype}, see {@link EntityWorld#forEach(IEntitySystem, ComponentType...)}. A
+ * system should fetch the field arrays it needs once per call and loop over the rows.
+ * 
+ * @author Maxstupo
+ */
+public interface IEntitySystem {
+
+    /**
+     * Processes the given rows of the given archetype. Entities must not be created, destroyed or change components during this call.
+     * 
+     * @param archetype
+     *            the archetype.
+     * @param start
+     *            the first row, inclusive.
+     * @param end
+     *            the last row, exclusive.
+     */
+    void update(Archetype archetype, int start, int end);
+}
@@ -9,6 +9,7 @@ import java.util.List;
 
 import com.github.maxstupo.flatengine.IEventListener;
 import com.github.maxstupo.flatengine.screen.AbstractScreen;
+import com.github.maxstupo.flatengine.util.TextMetrics;
 import com.github.maxstupo.flatengine.util.UtilGraphics;
 
 /**
@@ -215,12 +216,8 @@ public class GuiList<T> extends GuiContainer implements IEventListener<GuiButton
     protected void renderFirst(Graphics2D g) {
         super.renderFirst(g);
 
-        int maxHeight = -1;
-        for (T t : items) {
-            int height = UtilGraphics.getStringBounds(g, getItemText(t)).height;
-            maxHeight = Math.max(maxHeight, height);
-        }
-        calculatedItemHeight = maxHeight;
+        // Every line of a font has the same height, so the items don't need measuring.
+        calculatedItemHeight = items.isEmpty() ? -1 : TextMetrics.getFontMetrics(g, g.getFont()).getHeight() + 2;
         isItemNodesDirty = true;
     }
 
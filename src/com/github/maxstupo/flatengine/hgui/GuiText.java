@@ -4,13 +4,17 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 
 import com.github.maxstupo.flatengine.screen.AbstractScreen;
+import com.github.maxstupo.flatengine.util.GlyphAtlas;
 import com.github.maxstupo.flatengine.util.UtilGraphics;
 import com.github.maxstupo.flatengine.util.math.Vector2i;
 
 /**
- * This GUI node represents a label containing text.
+ * This GUI node represents a label containing text. By default the text is composed once from the glyphs of a {@link GlyphAtlas} into an image,
+ * so each frame draws a single image instead of sending the string through the text pipeline. The image is composed again when the text, font or
+ * color changes, see {@link #setTextCached(boolean)}.
  * 
  * @author Maxstupo
  */
@@ -22,6 +26,15 @@ public class GuiText extends AbstractAlignableGuiNode {
     protected Color textColor = Color.WHITE;
     private Font textFont = null;
 
+    private boolean isTextCached = true;
+    private GlyphAtlas atlas;
+    private Color textImageColor;
+    private BufferedImage textImage;
+    private int textImageX;
+    private int textImageY;
+
+    private final Dimension textBounds = new Dimension();
+
     /**
      * Create a new {@link GuiText} object, with an empty label.
      * 
@@ -90,7 +103,20 @@ public class GuiText extends AbstractAlignableGuiNode {
     protected void render(Graphics2D g) {
         Vector2i gpos = getGlobalPosition();
 
-        if (getText() != null) {
+        if (getText() == null || getText().isEmpty())
+            return;
+
+        if (isTextCached() && getTextFont() != null && getTextColor() != null) {
+            if (textImage == null || isTextImageOutdated(g)) {
+                GlyphAtlas atlas = this.atlas = GlyphAtlas.get(g, getTextFont());
+                textImageColor = getTextColor();
+                textImage = atlas.renderString(getText(), textImageColor);
+                textImageX = atlas.getStringOffsetX(getText());
+                textImageY = atlas.getStringOffsetY(getText());
+            }
+            g.drawImage(textImage, gpos.x + textImageX, gpos.y + textImageY, null);
+
+        } else {
             Font defaultFont = g.getFont();
             Color defaultColor = g.getColor();
             {
@@ -104,15 +130,23 @@ public class GuiText extends AbstractAlignableGuiNode {
         }
     }
 
+    /**
+     * Returns true if the font, color or text antialiasing changed since the text image was composed, the color field may be changed directly by
+     * subclasses.
+     */
+    private boolean isTextImageOutdated(Graphics2D g) {
+        return atlas == null || !atlas.getFont().equals(getTextFont()) || atlas.isAntialiased() != GlyphAtlas.isAntialiased(g) || !textImageColor.equals(getTextColor());
+    }
+
     @Override
     protected void renderFirst(Graphics2D g) {
 
         if (getTextFont() == null)
             setTextFont(g.getFont());
 
-        Dimension bounds = UtilGraphics.getStringBounds(g, getText(), getTextFont());
+        UtilGraphics.getStringBounds(g, getText(), getTextFont(), textBounds);
 
-        setSize(bounds.width, bounds.height);
+        setSize(textBounds.width, textBounds.height);
 
         super.renderFirst(g); // Update alignable node, with the new GUI text size.
     }
@@ -127,6 +161,7 @@ public class GuiText extends AbstractAlignableGuiNode {
     public GuiText setText(String text) {
         if (this.text == null || !this.text.equals(text)) {
             this.text = text;
+            this.textImage = null;
             setGraphicsCalculationsDirty();
         }
         return this;
@@ -159,6 +194,29 @@ public class GuiText extends AbstractAlignableGuiNode {
         return this;
     }
 
+    /**
+     * Sets if the text is composed once into an image and drawn with a single image copy, which is the default. Text that changes nearly every frame
+     * (e.g. counters) is cheaper drawn directly, as the image is composed again whenever the text, font or color changes.
+     * 
+     * @param isTextCached
+     *            true to cache the text as an image.
+     * @return this object for chaining.
+     */
+    public GuiText setTextCached(boolean isTextCached) {
+        this.isTextCached = isTextCached;
+        this.textImage = null;
+        return this;
+    }
+
+    /**
+     * Returns true if the text is rendered once into an image.
+     * 
+     * @return true if the text is rendered once into an image.
+     */
+    public boolean isTextCached() {
+        return isTextCached;
+    }
+
     /**
      * Returns the text.
      * 
@@ -35,6 +35,13 @@ public class Camera {
 
     private float smoothing = DEFAULT_SMOOTHING;
 
+    /** The natural log of the smoothing, so the lerp factor is a single exp instead of a pow. */
+    private double logSmoothing = Math.log(DEFAULT_SMOOTHING);
+
+    /** The lerp factor of the last delta time, reused while the delta time doesn't change. */
+    private float lerpFactor;
+    private float lerpFactorDeltaTime = Float.NaN;
+
     /**
      * Create a new {@link Camera} object.
      * 
@@ -98,13 +105,28 @@ public class Camera {
             targetPosition(x, y);
 
         } else {
-            float n = (float) (1f - Math.pow(smoothing, deltaTime));
+            float n = getLerpFactor(deltaTime);
 
             targetPosition(UtilMath.lerpF(oldTargetPosition.x, x, n), UtilMath.lerpF(oldTargetPosition.y, y, n));
         }
 
     }
 
+    /**
+     * Returns the lerp factor for the given delta time, equal to {@code 1 - smoothing^deltaTime}.
+     */
+    private float getLerpFactor(float deltaTime) {
+        if (deltaTime != lerpFactorDeltaTime) {
+            lerpFactorDeltaTime = deltaTime;
+            if (smoothing > 0) {
+                lerpFactor = (float) -Math.expm1(deltaTime * logSmoothing);
+            } else {
+                lerpFactor = (deltaTime > 0) ? 1 : 0;
+            }
+        }
+        return lerpFactor;
+    }
+
     /**
      * Targets the camera at the given position.
      * 
@@ -246,6 +268,42 @@ public class Camera {
         return (x < -tileSize || y < -(tileSize * 3f) || x > viewportWidth || y > viewportHeight);
     }
 
+    /**
+     * Returns the x position of the top-left corner of the viewport.
+     * 
+     * @return the x position of the viewport, in tiles.
+     */
+    public float getX() {
+        return cameraPosition.x;
+    }
+
+    /**
+     * Returns the y position of the top-left corner of the viewport.
+     * 
+     * @return the y position of the viewport, in tiles.
+     */
+    public float getY() {
+        return cameraPosition.y;
+    }
+
+    /**
+     * Returns the width of the viewport in tiles.
+     * 
+     * @return the width of the viewport in tiles.
+     */
+    public float getViewportTileWidth() {
+        return viewportWidth / tileSize;
+    }
+
+    /**
+     * Returns the height of the viewport in tiles.
+     * 
+     * @return the height of the viewport in tiles.
+     */
+    public float getViewportTileHeight() {
+        return viewportHeight / tileSize;
+    }
+
     /**
      * Sets the smoothing value to the given value.
      * 
@@ -254,6 +312,8 @@ public class Camera {
      */
     public void setSmoothing(float smoothing) {
         this.smoothing = smoothing;
+        this.logSmoothing = Math.log(smoothing);
+        this.lerpFactorDeltaTime = Float.NaN;
     }
 
     /**
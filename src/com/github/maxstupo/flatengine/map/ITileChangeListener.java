@@ -0,0 +1,27 @@
+package com.github.maxstupo.flatengine.map;
+
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+
+/**
+ * This interface is used for events called by a {@link TiledMap} when a tile of one of its {@link TileLayer}s changes.
+ * 
+ * @author Maxstupo
+ */
+public interface ITileChangeListener {
+
+    /**
+     * Called after a tile has been changed via {@link TileLayer#setTileAt(int, int, int)}.
+     * 
+     * @param layer
+     *            the layer that changed.
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @param oldGid
+     *            the global tile id before the change.
+     * @param newGid
+     *            the global tile id after the change.
+     */
+    void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid);
+}
@@ -0,0 +1,210 @@
+package com.github.maxstupo.flatengine.map;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * This class is an image with one pixel per map tile (e.g. a light map or fog of war mask) that is drawn over a map. The image is scaled into a
+ * cached view slightly larger than the camera viewport, so rendering is a single image draw unless the camera leaves the cached area or the tile size
+ * changes. Only the areas marked dirty via {@link #markDirty(int, int, int, int)} are rescaled into the view.
+ * 
+ * @author Maxstupo
+ */
+public class TileOverlay {
+
+    /** The number of tiles cached outside of the camera viewport, so small camera movements don't require the overlay to be rescaled. */
+    public static final int VIEW_MARGIN = 4;
+
+    private final int width;
+    private final int height;
+    private final boolean smooth;
+
+    private final BufferedImage image;
+    private final int[] pixels;
+
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+
+    private BufferedImage view;
+    private int viewX;
+    private int viewY;
+    private int viewColumns;
+    private int viewRows;
+    private int viewTileSize;
+
+    /**
+     * Create a new {@link TileOverlay} object with all pixels transparent.
+     * 
+     * @param width
+     *            the number of tiles in width.
+     * @param height
+     *            the number of tiles in height.
+     * @param smooth
+     *            true to scale the overlay with bilinear interpolation, false to give each tile a solid color.
+     */
+    public TileOverlay(int width, int height, boolean smooth) {
+        this.width = width;
+        this.height = height;
+        this.smooth = smooth;
+        this.image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        clearDirty();
+    }
+
+    /**
+     * Marks the given tile area as changed, it will be rescaled into the cached view the next time this overlay is rendered.
+     * 
+     * @param minX
+     *            the left edge of the area, inclusive.
+     * @param minY
+     *            the top edge of the area, inclusive.
+     * @param maxX
+     *            the right edge of the area, exclusive.
+     * @param maxY
+     *            the bottom edge of the area, exclusive.
+     */
+    public void markDirty(int minX, int minY, int maxX, int maxY) {
+        dirtyMinX = Math.min(dirtyMinX, minX);
+        dirtyMinY = Math.min(dirtyMinY, minY);
+        dirtyMaxX = Math.max(dirtyMaxX, maxX);
+        dirtyMaxY = Math.max(dirtyMaxY, maxY);
+    }
+
+    /**
+     * Marks every tile as changed.
+     */
+    public void markAllDirty() {
+        markDirty(0, 0, width, height);
+    }
+
+    private void clearDirty() {
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Renders this overlay using the given camera.
+     * 
+     * @param g
+     *            the graphics context to render to.
+     * @param camera
+     *            the camera.
+     */
+    public void render(Graphics2D g, Camera camera) {
+        int tileSize = camera.getTileSize();
+        int minX = (int) Math.floor(camera.getX());
+        int minY = (int) Math.floor(camera.getY());
+        int maxX = (int) Math.ceil(camera.getX() + camera.getViewportTileWidth());
+        int maxY = (int) Math.ceil(camera.getY() + camera.getViewportTileHeight());
+
+        boolean covered = view != null && tileSize == viewTileSize && minX >= viewX && minY >= viewY && maxX <= viewX + viewColumns && maxY <= viewY + viewRows;
+        if (!covered) {
+            createView(minX - VIEW_MARGIN, minY - VIEW_MARGIN, maxX - minX + VIEW_MARGIN * 2, maxY - minY + VIEW_MARGIN * 2, tileSize);
+        } else if (dirtyMinX < dirtyMaxX) {
+            drawView(dirtyMinX - 1, dirtyMinY - 1, dirtyMaxX + 1, dirtyMaxY + 1);
+        }
+        clearDirty();
+
+        g.drawImage(view, Math.round((viewX - camera.getX()) * tileSize), Math.round((viewY - camera.getY()) * tileSize), null);
+    }
+
+    private void createView(int x, int y, int columns, int rows, int tileSize) {
+        if (view == null || view.getWidth() < columns * tileSize || view.getHeight() < rows * tileSize)
+            view = new BufferedImage(columns * tileSize, rows * tileSize, BufferedImage.TYPE_INT_ARGB);
+
+        viewX = x;
+        viewY = y;
+        viewColumns = view.getWidth() / tileSize;
+        viewRows = view.getHeight() / tileSize;
+        viewTileSize = tileSize;
+
+        drawView(viewX, viewY, viewX + viewColumns, viewY + viewRows);
+    }
+
+    /**
+     * Redraws the given tile area of the cached view. Each scaled tile depends on its neighbours due to interpolation, so the source area drawn is
+     * one tile larger than the clipped area.
+     */
+    private void drawView(int minX, int minY, int maxX, int maxY) {
+        Graphics2D vg = view.createGraphics();
+        try {
+            vg.translate(-viewX * viewTileSize, -viewY * viewTileSize);
+            vg.setClip(minX * viewTileSize, minY * viewTileSize, (maxX - minX) * viewTileSize, (maxY - minY) * viewTileSize);
+
+            vg.setComposite(AlphaComposite.Clear);
+            vg.fillRect(minX * viewTileSize, minY * viewTileSize, (maxX - minX) * viewTileSize, (maxY - minY) * viewTileSize);
+
+            int sx1 = Math.max(0, minX - 1);
+            int sy1 = Math.max(0, minY - 1);
+            int sx2 = Math.min(width, maxX + 1);
+            int sy2 = Math.min(height, maxY + 1);
+            if (sx1 >= sx2 || sy1 >= sy2)
+                return;
+
+            vg.setComposite(AlphaComposite.Src);
+            vg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, smooth ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            vg.drawImage(image, sx1 * viewTileSize, sy1 * viewTileSize, sx2 * viewTileSize, sy2 * viewTileSize, sx1, sy1, sx2, sy2, null);
+        } finally {
+            vg.dispose();
+        }
+    }
+
+    /**
+     * Returns the pixels of this overlay, pixel <code>x,y</code> is stored at index <code>x + y * width</code> as an ARGB color. After changing
+     * pixels {@link #markDirty(int, int, int, int)} must be called.
+     * 
+     * @return the pixels of this overlay.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns the unscaled image of this overlay, with one pixel per tile.
+     * 
+     * @return the unscaled image of this overlay.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the number of tiles in width.
+     * 
+     * @return the number of tiles in width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of tiles in height.
+     * 
+     * @return the number of tiles in height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns true if this overlay is scaled with bilinear interpolation.
+     * 
+     * @return true if this overlay is scaled with bilinear interpolation.
+     */
+    public boolean isSmooth() {
+        return smooth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, smooth=%s]", getClass().getSimpleName(), width, height, smooth);
+    }
+
+}
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.github.maxstupo.flatengine.map.collision.TileCollisionGrid;
 import com.github.maxstupo.flatengine.map.layer.AbstractMapLayer;
 import com.github.maxstupo.flatengine.map.layer.TileLayer;
 import com.github.maxstupo.flatengine.map.tile.TilesetStore;
@@ -50,6 +51,10 @@ public class TiledMap {
     private final List<TileLayer> backgroundLayers = new ArrayList<>();
     private final List<TileLayer> foregroundLayers = new ArrayList<>();
 
+    private final List<ITileChangeListener> tileListeners = new ArrayList<>();
+
+    private TileCollisionGrid collisionGrid;
+
     /**
      * Create a new {@link TiledMap} object.
      * 
@@ -171,6 +176,78 @@ public class TiledMap {
         return this;
     }
 
+    /**
+     * Compiles the collision data of all tile layers into a {@link TileCollisionGrid}. The grid is kept in sync with
+     * {@link TileLayer#setTileAt(int, int, int)} afterwards.
+     * <p>
+     * Note: Should be called after adding all {@link TileLayer}s and tilesets, calling it again will rebuild the grid.
+     * 
+     * @return the collision grid of this map.
+     */
+    public TileCollisionGrid buildCollisionGrid() {
+        if (collisionGrid == null) {
+            collisionGrid = new TileCollisionGrid(this);
+        } else {
+            collisionGrid.rebuild();
+        }
+        return collisionGrid;
+    }
+
+    /**
+     * Returns the collision grid of this map. If {@link #buildCollisionGrid()} hasn't been called yet it will be.
+     * 
+     * @return the collision grid of this map.
+     */
+    public TileCollisionGrid getCollisionGrid() {
+        if (collisionGrid == null)
+            buildCollisionGrid();
+        return collisionGrid;
+    }
+
+    /**
+     * Notifies the collision grid and all tile listeners that a tile has changed. This is called by {@link TileLayer#setTileAt(int, int, int)}.
+     * 
+     * @param layer
+     *            the layer that changed.
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @param oldGid
+     *            the global tile id before the change.
+     * @param newGid
+     *            the global tile id after the change.
+     */
+    public void fireTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        if (collisionGrid != null)
+            collisionGrid.updateCell(x, y);
+
+        for (int i = 0; i < tileListeners.size(); i++)
+            tileListeners.get(i).onTileChanged(layer, x, y, oldGid, newGid);
+    }
+
+    /**
+     * Adds a listener that will be notified when a tile of any {@link TileLayer} in this map changes. Listeners are called after the collision grid
+     * has been updated.
+     * 
+     * @param listener
+     *            the listener to add.
+     */
+    public void addTileListener(ITileChangeListener listener) {
+        if (listener != null && !tileListeners.contains(listener))
+            tileListeners.add(listener);
+    }
+
+    /**
+     * Removes the given tile listener.
+     * 
+     * @param listener
+     *            the listener to remove.
+     */
+    public void removeTileListener(ITileChangeListener listener) {
+        tileListeners.remove(listener);
+    }
+
     /**
      * Returns the first layer that matches the given id, will be cast to the given type.
      * 
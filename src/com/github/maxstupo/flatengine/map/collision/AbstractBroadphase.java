@@ -0,0 +1,205 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.Arrays;
+
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+
+/**
+ * This class is the base for all broadphases. It stores the shape, bounds and static flag of each proxy in primitive arrays indexed by proxy id, and
+ * keeps separate lists of the static and dynamic proxies.
+ * 
+ * @author Maxstupo
+ */
+public abstract class AbstractBroadphase implements IBroadphase {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The shape of each proxy, or null if the proxy id is free. */
+    protected AbstractBasicShape[] shapes = new AbstractBasicShape[INITIAL_CAPACITY];
+
+    /** The left edge of the bounds of each proxy. */
+    protected float[] minX = new float[INITIAL_CAPACITY];
+    /** The top edge of the bounds of each proxy. */
+    protected float[] minY = new float[INITIAL_CAPACITY];
+    /** The right edge of the bounds of each proxy. */
+    protected float[] maxX = new float[INITIAL_CAPACITY];
+    /** The bottom edge of the bounds of each proxy. */
+    protected float[] maxY = new float[INITIAL_CAPACITY];
+
+    /** True for each static proxy. */
+    protected boolean[] statics = new boolean[INITIAL_CAPACITY];
+
+    /** The ids of all dynamic proxies, only the first {@link #dynamicCount} are valid. */
+    protected int[] dynamics = new int[INITIAL_CAPACITY];
+    /** The number of dynamic proxies. */
+    protected int dynamicCount;
+
+    /** The ids of all static proxies, only the first {@link #staticCount} are valid. */
+    protected int[] staticProxies = new int[INITIAL_CAPACITY];
+    /** The number of static proxies. */
+    protected int staticCount;
+
+    /** Incremented each time a static proxy is added, removed or refreshed. */
+    protected int staticVersion;
+    /** Incremented each time a dynamic proxy is added or removed. */
+    protected int dynamicVersion;
+
+    private int[] listIndex = new int[INITIAL_CAPACITY];
+
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextId;
+
+    private final Rectangle tempBounds = new Rectangle();
+
+    @Override
+    public int add(AbstractBasicShape shape, boolean isStatic) {
+        if (shape == null)
+            throw new IllegalArgumentException("shape can't be null!");
+
+        int proxy = (freeCount > 0) ? freeIds[--freeCount] : nextId++;
+        if (proxy >= shapes.length)
+            grow(proxy + 1);
+
+        shapes[proxy] = shape;
+        statics[proxy] = isStatic;
+        readBounds(proxy);
+
+        if (isStatic) {
+            if (staticCount == staticProxies.length)
+                staticProxies = Arrays.copyOf(staticProxies, staticCount * 2);
+            listIndex[proxy] = staticCount;
+            staticProxies[staticCount++] = proxy;
+            staticVersion++;
+        } else {
+            if (dynamicCount == dynamics.length)
+                dynamics = Arrays.copyOf(dynamics, dynamicCount * 2);
+            listIndex[proxy] = dynamicCount;
+            dynamics[dynamicCount++] = proxy;
+            dynamicVersion++;
+        }
+        return proxy;
+    }
+
+    @Override
+    public boolean remove(int proxy) {
+        if (!isValid(proxy))
+            return false;
+
+        int index = listIndex[proxy];
+        if (statics[proxy]) {
+            int last = staticProxies[--staticCount];
+            staticProxies[index] = last;
+            listIndex[last] = index;
+            staticVersion++;
+        } else {
+            int last = dynamics[--dynamicCount];
+            dynamics[index] = last;
+            listIndex[last] = index;
+            dynamicVersion++;
+        }
+
+        shapes[proxy] = null;
+        if (freeCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = proxy;
+        return true;
+    }
+
+    @Override
+    public void refresh(int proxy) {
+        if (!isValid(proxy))
+            return;
+        readBounds(proxy);
+        if (statics[proxy])
+            staticVersion++;
+    }
+
+    @Override
+    public void update() {
+        for (int i = 0; i < dynamicCount; i++)
+            readBounds(dynamics[i]);
+        build();
+    }
+
+    /**
+     * Updates the internal structure of this broadphase after the bounds of the dynamic proxies have been re-read. Static structures only need
+     * rebuilding when {@link #staticVersion} changes.
+     */
+    protected abstract void build();
+
+    private void readBounds(int proxy) {
+        shapes[proxy].getBounds(tempBounds);
+        minX[proxy] = tempBounds.getX();
+        minY[proxy] = tempBounds.getY();
+        maxX[proxy] = tempBounds.getX() + tempBounds.getWidth();
+        maxY[proxy] = tempBounds.getY() + tempBounds.getHeight();
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, shapes.length * 2);
+        shapes = Arrays.copyOf(shapes, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        statics = Arrays.copyOf(statics, capacity);
+        listIndex = Arrays.copyOf(listIndex, capacity);
+    }
+
+    /**
+     * Returns true if the bounds of the given proxies overlap. Touching bounds count as overlapping.
+     * 
+     * @param a
+     *            the first proxy id.
+     * @param b
+     *            the second proxy id.
+     * @return true if the bounds of the given proxies overlap.
+     */
+    protected boolean overlaps(int a, int b) {
+        return minX[a] <= maxX[b] && maxX[a] >= minX[b] && minY[a] <= maxY[b] && maxY[a] >= minY[b];
+    }
+
+    /**
+     * Returns true if the given proxy id is in use.
+     * 
+     * @param proxy
+     *            the proxy id.
+     * @return true if the given proxy id is in use.
+     */
+    public boolean isValid(int proxy) {
+        return proxy >= 0 && proxy < shapes.length && shapes[proxy] != null;
+    }
+
+    @Override
+    public AbstractBasicShape getShape(int proxy) {
+        return isValid(proxy) ? shapes[proxy] : null;
+    }
+
+    @Override
+    public boolean isStatic(int proxy) {
+        return isValid(proxy) && statics[proxy];
+    }
+
+    @Override
+    public int getDynamicCount() {
+        return dynamicCount;
+    }
+
+    @Override
+    public int getDynamicProxy(int index) {
+        return dynamics[index];
+    }
+
+    @Override
+    public int getProxyCount() {
+        return staticCount + dynamicCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [staticCount=%s, dynamicCount=%s]", getClass().getSimpleName(), staticCount, dynamicCount);
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+/**
+ * This class stores the result of a ray cast or sweep against a {@link StaticBvh}. Results are meant to be reused between queries to avoid
+ * allocation.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the type of item stored in the bvh.
+ */
+public class BvhHit<T> {
+
+    /** True if the query hit something. */
+    public boolean hit;
+
+    /** The fraction of the movement (0.0 - 1.0) completed before the hit, or 1.0 if nothing was hit. */
+    public float time = 1;
+
+    /** The x component of the surface normal that was hit, zero if the query started inside the shape. */
+    public float normalX;
+
+    /** The y component of the surface normal that was hit, zero if the query started inside the shape. */
+    public float normalY;
+
+    /** The item that was hit, or null if nothing was hit. */
+    public T item;
+
+    /** The primitive index of the item that was hit within the bvh, or -1 if nothing was hit. */
+    public int index = -1;
+
+    /**
+     * Resets this result to represent a query that hit nothing.
+     * 
+     * @return this object for chaining.
+     */
+    public BvhHit<T> reset() {
+        hit = false;
+        time = 1;
+        normalX = normalY = 0;
+        item = null;
+        index = -1;
+        return this;
+    }
+
+    /**
+     * Sets this result to the given hit, if the given time is earlier than the current hit time.
+     * 
+     * @param time
+     *            the fraction of movement before the hit.
+     * @param normalX
+     *            the x component of the surface normal.
+     * @param normalY
+     *            the y component of the surface normal.
+     * @param item
+     *            the item that was hit.
+     * @param index
+     *            the primitive index of the item.
+     * @return true if this result was updated.
+     */
+    public boolean offer(float time, float normalX, float normalY, T item, int index) {
+        if (hit && time >= this.time)
+            return false;
+
+        this.hit = true;
+        this.time = time;
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.item = item;
+        this.index = index;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [hit=%s, time=%s, normalX=%s, normalY=%s, item=%s, index=%s]", getClass().getSimpleName(), hit, time, normalX, normalY, item, index);
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.Arrays;
+
+/**
+ * This class is a broadphase that hashes the bounds of each proxy into the cells of an unbounded uniform grid. Only proxies sharing a cell are
+ * compared, and a pair sharing several cells is only reported by the cell containing the upper left corner of their overlap.
+ * <p>
+ * Static proxies are hashed into a separate table that is only rebuilt when a static proxy changes, dynamic proxies are rehashed each
+ * {@link #update()}. Works best when most shapes are smaller than a cell.
+ * 
+ * @author Maxstupo
+ */
+public class GridBroadphase extends AbstractBroadphase {
+
+    /** The default size of each cell. */
+    public static final float DEFAULT_CELL_SIZE = 4;
+
+    private final float cellSize;
+
+    private final CellTable dynamicTable = new CellTable();
+    private final CellTable staticTable = new CellTable();
+    private int builtStaticVersion = -1;
+
+    /**
+     * Create a new {@link GridBroadphase} object with a cell size of {@value #DEFAULT_CELL_SIZE}.
+     */
+    public GridBroadphase() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Create a new {@link GridBroadphase} object.
+     * 
+     * @param cellSize
+     *            the size of each cell, ideally slightly larger than the typical shape.
+     * @throws IllegalArgumentException
+     *             if cellSize isn't positive.
+     */
+    public GridBroadphase(float cellSize) throws IllegalArgumentException {
+        if (cellSize <= 0)
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    protected void build() {
+        if (builtStaticVersion != staticVersion) {
+            staticTable.build(staticProxies, staticCount);
+            builtStaticVersion = staticVersion;
+        }
+        dynamicTable.build(dynamics, dynamicCount);
+    }
+
+    @Override
+    public int findPairs(PairList out) {
+        out.clear();
+
+        CellTable table = dynamicTable;
+        for (int bucket = 0; bucket < table.bucketCount; bucket++) {
+            int end = table.bucketStart[bucket + 1];
+
+            for (int i = table.bucketStart[bucket]; i < end; i++) {
+                int cx = table.cellX[i];
+                int cy = table.cellY[i];
+                int a = table.proxies[i];
+
+                for (int j = i + 1; j < end; j++) { // Dynamic against dynamic.
+                    if (table.cellX[j] == cx && table.cellY[j] == cy)
+                        testPair(out, a, table.proxies[j], cx, cy);
+                }
+
+                if (staticTable.entryCount == 0)
+                    continue;
+
+                int staticBucket = staticTable.hash(cx, cy);
+                int staticEnd = staticTable.bucketStart[staticBucket + 1];
+                for (int j = staticTable.bucketStart[staticBucket]; j < staticEnd; j++) { // Dynamic against static.
+                    if (staticTable.cellX[j] == cx && staticTable.cellY[j] == cy)
+                        testPair(out, a, staticTable.proxies[j], cx, cy);
+                }
+            }
+        }
+        return out.size();
+    }
+
+    private void testPair(PairList out, int a, int b, int cx, int cy) {
+        if (!overlaps(a, b))
+            return;
+        if (cell(Math.max(minX[a], minX[b])) != cx || cell(Math.max(minY[a], minY[b])) != cy) // Reported by another shared cell.
+            return;
+        out.add(a, b);
+    }
+
+    private int cell(float value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    /**
+     * Returns the size of each cell.
+     * 
+     * @return the size of each cell.
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [cellSize=%s, staticCount=%s, dynamicCount=%s]", getClass().getSimpleName(), cellSize, staticCount, dynamicCount);
+    }
+
+    /**
+     * A hash table of cell entries, grouped into buckets with a counting sort so building and iterating doesn't allocate once the table has grown.
+     */
+    private class CellTable {
+
+        int[] cellX = new int[0];
+        int[] cellY = new int[0];
+        int[] proxies = new int[0];
+        int entryCount;
+
+        int[] bucketStart = new int[1];
+        int bucketCount;
+        private int mask;
+
+        private int[] tempX = new int[0];
+        private int[] tempY = new int[0];
+        private int[] tempProxies = new int[0];
+
+        void build(int[] ids, int count) {
+            entryCount = 0;
+            for (int i = 0; i < count; i++) {
+                int id = ids[i];
+                int columns = cell(maxX[id]) - cell(minX[id]) + 1;
+                int rows = cell(maxY[id]) - cell(minY[id]) + 1;
+                entryCount += columns * rows;
+            }
+
+            bucketCount = Integer.highestOneBit(Math.max(1, entryCount * 2 - 1)) << 1;
+            mask = bucketCount - 1;
+            if (bucketStart.length < bucketCount + 1)
+                bucketStart = new int[bucketCount + 1];
+            Arrays.fill(bucketStart, 0, bucketCount + 1, 0);
+
+            if (tempX.length < entryCount) {
+                int capacity = Math.max(entryCount, tempX.length * 2);
+                tempX = new int[capacity];
+                tempY = new int[capacity];
+                tempProxies = new int[capacity];
+                cellX = new int[capacity];
+                cellY = new int[capacity];
+                proxies = new int[capacity];
+            }
+
+            int entry = 0;
+            for (int i = 0; i < count; i++) {
+                int id = ids[i];
+                int x1 = cell(minX[id]);
+                int y1 = cell(minY[id]);
+                int x2 = cell(maxX[id]);
+                int y2 = cell(maxY[id]);
+
+                for (int y = y1; y <= y2; y++) {
+                    for (int x = x1; x <= x2; x++) {
+                        tempX[entry] = x;
+                        tempY[entry] = y;
+                        tempProxies[entry] = id;
+                        bucketStart[hash(x, y) + 1]++;
+                        entry++;
+                    }
+                }
+            }
+
+            for (int i = 0; i < bucketCount; i++)
+                bucketStart[i + 1] += bucketStart[i];
+
+            for (int i = 0; i < entryCount; i++) { // Scatter into buckets, using the bucket starts as cursors.
+                int index = bucketStart[hash(tempX[i], tempY[i])]++;
+                cellX[index] = tempX[i];
+                cellY[index] = tempY[i];
+                proxies[index] = tempProxies[i];
+            }
+
+            for (int i = bucketCount; i > 0; i--) // Restore the bucket starts shifted by the scatter.
+                bucketStart[i] = bucketStart[i - 1];
+            bucketStart[0] = 0;
+        }
+
+        int hash(int x, int y) {
+            int h = x * 0x9E3779B1 ^ y * 0x85EBCA77;
+            return (h ^ (h >>> 15)) & mask;
+        }
+    }
+
+}
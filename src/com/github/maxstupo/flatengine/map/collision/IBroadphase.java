@@ -0,0 +1,102 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+
+/**
+ * This interface is used for broadphase collision detection. A broadphase stores the bounds of many shapes, and finds the pairs of shapes whose bounds
+ * overlap so only those pairs need to be tested with {@link AbstractBasicShape#intersects(AbstractBasicShape)}.
+ * <p>
+ * Shapes are registered as proxies identified by an int. Static proxies are expected to rarely move and are never paired with each other, dynamic
+ * proxies have their bounds re-read each {@link #update()}.
+ * 
+ * @author Maxstupo
+ */
+public interface IBroadphase {
+
+    /**
+     * Adds the given shape to this broadphase.
+     * 
+     * @param shape
+     *            the shape.
+     * @param isStatic
+     *            true if the shape will rarely move.
+     * @return the proxy id of the shape.
+     * @throws IllegalArgumentException
+     *             if shape is null.
+     */
+    int add(AbstractBasicShape shape, boolean isStatic) throws IllegalArgumentException;
+
+    /**
+     * Removes the given proxy from this broadphase, its id may be reused by a later {@link #add(AbstractBasicShape, boolean)}.
+     * 
+     * @param proxy
+     *            the proxy id.
+     * @return false if the given proxy doesn't exist.
+     */
+    boolean remove(int proxy);
+
+    /**
+     * Re-reads the bounds of the given proxy. Only needed for static proxies that have moved, dynamic proxies are refreshed by {@link #update()}.
+     * 
+     * @param proxy
+     *            the proxy id.
+     */
+    void refresh(int proxy);
+
+    /**
+     * Re-reads the bounds of all dynamic proxies and updates the internal structure of this broadphase. Should be called once per tick after shapes
+     * have moved and before {@link #findPairs(PairList)}.
+     */
+    void update();
+
+    /**
+     * Finds all pairs of proxies whose bounds overlap, as of the last {@link #update()}. Each pair is reported once and pairs of two static proxies
+     * are never reported.
+     * 
+     * @param out
+     *            the list the pairs are added to, it's cleared first.
+     * @return the number of pairs found.
+     */
+    int findPairs(PairList out);
+
+    /**
+     * Returns the shape of the given proxy.
+     * 
+     * @param proxy
+     *            the proxy id.
+     * @return the shape of the given proxy, or null if the proxy doesn't exist.
+     */
+    AbstractBasicShape getShape(int proxy);
+
+    /**
+     * Returns true if the given proxy is static.
+     * 
+     * @param proxy
+     *            the proxy id.
+     * @return true if the given proxy is static.
+     */
+    boolean isStatic(int proxy);
+
+    /**
+     * Returns the number of dynamic proxies within this broadphase.
+     * 
+     * @return the number of dynamic proxies within this broadphase.
+     */
+    int getDynamicCount();
+
+    /**
+     * Returns the proxy id of the given dynamic proxy, the order of dynamic proxies changes as proxies are removed.
+     * 
+     * @param index
+     *            the index of the dynamic proxy, between zero and {@link #getDynamicCount()}.
+     * @return the proxy id of the given dynamic proxy.
+     */
+    int getDynamicProxy(int index);
+
+    /**
+     * Returns the number of proxies within this broadphase.
+     * 
+     * @return the number of proxies within this broadphase.
+     */
+    int getProxyCount();
+}
@@ -0,0 +1,217 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.layer.AbstractMapLayer;
+import com.github.maxstupo.flatengine.map.layer.ObjectLayer;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.map.object.MapObject;
+import com.github.maxstupo.flatengine.map.tile.Tile;
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.Circle;
+import com.github.maxstupo.flatengine.util.math.Ellipse;
+import com.github.maxstupo.flatengine.util.math.Polygon;
+import com.github.maxstupo.flatengine.util.math.Polyline;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+
+/**
+ * This class builds a {@link StaticBvh} over the static collision shapes of a {@link TiledMap}: the shapes of all map objects of the
+ * {@link ObjectLayer}s, and the collision objects of the tiles of the {@link TileLayer}s placed at their cells. Fully solid tiles (see
+ * {@link TileCollisionGrid}) are merged into one rectangle per horizontal run, reported as map objects of type {@value TileCollisionGrid#PROPERTY_SOLID}
+ * without a layer. Layers with the boolean property {@value TileCollisionGrid#PROPERTY_COLLISION} set to false are ignored.
+ * <p>
+ * Tile changes mark the bvh dirty, and {@link #update()} rebuilds it on another thread while queries keep using the previous tree. Object layers
+ * don't notify changes, so {@link #markDirty()} should be called after adding map objects.
+ * 
+ * @author Maxstupo
+ */
+public class MapCollisionBvh implements ITileChangeListener {
+
+    private final TiledMap map;
+    private final StaticBvh<MapObject> bvh;
+
+    private boolean isDirty;
+    private CompletableFuture<Void> pending;
+
+    /**
+     * Create a new {@link MapCollisionBvh} object with a leaf size of {@value StaticBvh#DEFAULT_LEAF_SIZE}, builds it on the calling thread and
+     * registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     */
+    public MapCollisionBvh(TiledMap map) {
+        this(map, StaticBvh.DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Create a new {@link MapCollisionBvh} object, builds it on the calling thread and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param leafSize
+     *            the maximum number of shapes within each leaf.
+     * @throws IllegalArgumentException
+     *             if leafSize is less than one.
+     */
+    public MapCollisionBvh(TiledMap map, int leafSize) throws IllegalArgumentException {
+        this.map = map;
+        this.bvh = new StaticBvh<>(leafSize);
+
+        rebuild();
+        map.addTileListener(this);
+    }
+
+    /**
+     * Collects the collision shapes of the map and rebuilds the bvh on the calling thread.
+     */
+    public void rebuild() {
+        collect();
+        bvh.build();
+        isDirty = false;
+    }
+
+    /**
+     * Starts rebuilding the bvh on the common fork join pool if the map has changed and no rebuild is already running. The shapes are collected on
+     * the calling thread, so this should be called from the thread that edits the map, usually once per tick.
+     * 
+     * @return true if a rebuild was started.
+     */
+    public boolean update() {
+        if (!isDirty || isBuilding())
+            return false;
+
+        collect();
+        isDirty = false;
+        pending = bvh.buildAsync();
+        return true;
+    }
+
+    private void collect() {
+        bvh.clear();
+        TileCollisionGrid grid = map.getCollisionGrid();
+
+        for (AbstractMapLayer layer : map.getLayers()) {
+            if (!layer.getProperties().get(TileCollisionGrid.PROPERTY_COLLISION, Boolean.class, true))
+                continue;
+
+            if (layer instanceof ObjectLayer) {
+                for (MapObject obj : ((ObjectLayer) layer).getObjects()) {
+                    if (obj.getShape() != null)
+                        bvh.add(obj, obj.getShape());
+                }
+
+            } else if (layer instanceof TileLayer) {
+                TileLayer tileLayer = (TileLayer) layer;
+
+                for (int y = 0; y < map.getHeight(); y++) {
+                    for (int x = 0; x < map.getWidth(); x++) {
+                        if (grid.isSolid(x, y))
+                            continue;
+
+                        Tile tile = map.getTilesetStore().getTileByGlobalId(tileLayer.getTileAt(x, y));
+                        if (tile == null)
+                            continue;
+
+                        for (MapObject obj : tile.getCollisionObjects()) {
+                            AbstractBasicShape shape = translate(obj.getShape(), x, y);
+                            if (shape != null)
+                                bvh.add(obj, shape);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int y = 0; y < map.getHeight(); y++) { // Merge solid cells into horizontal runs.
+            int start = -1;
+            for (int x = 0; x <= map.getWidth(); x++) {
+                boolean isSolid = x < map.getWidth() && grid.isSolid(x, y);
+                if (isSolid && start == -1) {
+                    start = x;
+                } else if (!isSolid && start != -1) {
+                    Rectangle run = new Rectangle(start, y, x - start, 1);
+                    bvh.add(new MapObject(null, -1, "", TileCollisionGrid.PROPERTY_SOLID, run), run);
+                    start = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the given tile collision shape moved to the given cell, or null if the shape type isn't supported.
+     */
+    private static AbstractBasicShape translate(AbstractBasicShape shape, float x, float y) {
+        if (shape instanceof Rectangle) {
+            Rectangle r = (Rectangle) shape;
+            return new Rectangle(x + r.getX(), y + r.getY(), r.getWidth(), r.getHeight());
+        } else if (shape instanceof Circle) {
+            Circle c = (Circle) shape;
+            return new Circle(x + c.getX(), y + c.getY(), c.getRadius());
+        } else if (shape instanceof Ellipse) {
+            Ellipse e = (Ellipse) shape;
+            return new Ellipse(x + e.getX(), y + e.getY(), e.getRadiusX(), e.getRadiusY());
+        } else if (shape instanceof Polygon) {
+            return new Polygon(x + shape.getX(), y + shape.getY(), ((Polygon) shape).getVertices());
+        } else if (shape instanceof Polyline) {
+            return new Polyline(x + shape.getX(), y + shape.getY(), ((Polyline) shape).getVertices());
+        }
+        return null;
+    }
+
+    @Override
+    public void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        if (isDirty || !layer.getProperties().get(TileCollisionGrid.PROPERTY_COLLISION, Boolean.class, true))
+            return;
+        isDirty = hasCollision(oldGid) || hasCollision(newGid);
+    }
+
+    private boolean hasCollision(int gid) {
+        Tile tile = map.getTilesetStore().getTileByGlobalId(gid);
+        return tile != null && (tile.getProperties().get(TileCollisionGrid.PROPERTY_SOLID, Boolean.class, false) || !tile.getCollisionObjects().isEmpty());
+    }
+
+    /**
+     * Marks the bvh as needing a rebuild on the next {@link #update()}, should be called after changing the map objects of the map.
+     */
+    public void markDirty() {
+        isDirty = true;
+    }
+
+    /**
+     * Unregisters this bvh from the map, it will no longer be marked dirty by tile changes.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+    }
+
+    /**
+     * Returns true if the map has changed since the bvh was last built.
+     * 
+     * @return true if the map has changed since the bvh was last built.
+     */
+    public boolean isDirty() {
+        return isDirty;
+    }
+
+    /**
+     * Returns true if a rebuild started by {@link #update()} is still running.
+     * 
+     * @return true if a rebuild is still running.
+     */
+    public boolean isBuilding() {
+        return pending != null && !pending.isDone();
+    }
+
+    /**
+     * Returns the bvh, queries always use the last completed build.
+     * 
+     * @return the bvh.
+     */
+    public StaticBvh<MapObject> getBvh() {
+        return bvh;
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+
+/**
+ * This class is a reusable list of proxy id pairs, filled by {@link IBroadphase#findPairs(PairList)}. The pairs are stored interleaved in a single int
+ * array that only grows, so a list reused each tick doesn't allocate once it has reached its peak size.
+ * 
+ * @author Maxstupo
+ */
+public class PairList {
+
+    /** The minimum number of pairs before the narrowphase is split over multiple threads. */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    private int[] pairs;
+    private int count;
+
+    private boolean[] hits = new boolean[0];
+
+    /**
+     * Create a new {@link PairList} object with a capacity of 64 pairs.
+     */
+    public PairList() {
+        this(64);
+    }
+
+    /**
+     * Create a new {@link PairList} object.
+     * 
+     * @param capacity
+     *            the initial number of pairs, the list will grow when needed.
+     */
+    public PairList(int capacity) {
+        this.pairs = new int[Math.max(1, capacity) * 2];
+    }
+
+    /**
+     * Adds the given pair to this list.
+     * 
+     * @param a
+     *            the first proxy id.
+     * @param b
+     *            the second proxy id.
+     */
+    public void add(int a, int b) {
+        if (count * 2 == pairs.length)
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        pairs[count * 2] = a;
+        pairs[count * 2 + 1] = b;
+        count++;
+    }
+
+    /**
+     * Removes all pairs from this list.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Removes all pairs whose shapes don't intersect, using {@link AbstractBasicShape#intersects(AbstractBasicShape)}. Large lists are tested in
+     * parallel over the common {@link ForkJoinPool}, the order of the remaining pairs is kept.
+     * 
+     * @param broadphase
+     *            the broadphase the pairs were found by.
+     * @return the number of remaining pairs.
+     */
+    public int retainIntersecting(IBroadphase broadphase) {
+        if (hits.length < count)
+            hits = new boolean[pairs.length / 2];
+
+        if (count >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new NarrowphaseTask(broadphase, 0, count));
+        } else {
+            testRange(broadphase, 0, count);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (!hits[i])
+                continue;
+            pairs[kept * 2] = pairs[i * 2];
+            pairs[kept * 2 + 1] = pairs[i * 2 + 1];
+            kept++;
+        }
+        count = kept;
+        return count;
+    }
+
+    private void testRange(IBroadphase broadphase, int start, int end) {
+        for (int i = start; i < end; i++) {
+            AbstractBasicShape a = broadphase.getShape(pairs[i * 2]);
+            AbstractBasicShape b = broadphase.getShape(pairs[i * 2 + 1]);
+            hits[i] = a != null && b != null && a.intersects(b);
+        }
+    }
+
+    /**
+     * Returns the first proxy id of the given pair.
+     * 
+     * @param index
+     *            the pair index.
+     * @return the first proxy id of the given pair.
+     */
+    public int getA(int index) {
+        return pairs[index * 2];
+    }
+
+    /**
+     * Returns the second proxy id of the given pair.
+     * 
+     * @param index
+     *            the pair index.
+     * @return the second proxy id of the given pair.
+     */
+    public int getB(int index) {
+        return pairs[index * 2 + 1];
+    }
+
+    /**
+     * Returns the number of pairs within this list.
+     * 
+     * @return the number of pairs within this list.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns true if this list has no pairs.
+     * 
+     * @return true if this list has no pairs.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [size=%s, capacity=%s]", getClass().getSimpleName(), count, pairs.length / 2);
+    }
+
+    /**
+     * Splits the narrowphase tests over the common {@link ForkJoinPool}.
+     */
+    private class NarrowphaseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IBroadphase broadphase;
+        private final int start;
+        private final int end;
+
+        NarrowphaseTask(IBroadphase broadphase, int start, int end) {
+            this.broadphase = broadphase;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD / 2) {
+                testRange(broadphase, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new NarrowphaseTask(broadphase, start, mid), new NarrowphaseTask(broadphase, mid, end));
+        }
+    }
+
+}
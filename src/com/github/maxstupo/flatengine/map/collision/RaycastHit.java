@@ -0,0 +1,46 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+/**
+ * This class stores the result of a single ray cast by a {@link TileRaycaster}. Results are meant to be reused between queries to avoid allocation.
+ * 
+ * @author Maxstupo
+ */
+public class RaycastHit {
+
+    /** True if the ray hit a blocked cell. */
+    public boolean hit;
+
+    /** The distance along the ray to the hit, in tiles. */
+    public float distance;
+
+    /** The x position of the cell that was hit. */
+    public int cellX;
+
+    /** The y position of the cell that was hit. */
+    public int cellY;
+
+    /** The x component of the surface normal that was hit, zero if the ray started inside a blocked cell. */
+    public float normalX;
+
+    /** The y component of the surface normal that was hit, zero if the ray started inside a blocked cell. */
+    public float normalY;
+
+    /**
+     * Resets this result to represent a ray that hit nothing.
+     * 
+     * @return this object for chaining.
+     */
+    public RaycastHit reset() {
+        hit = false;
+        distance = 0;
+        cellX = cellY = 0;
+        normalX = normalY = 0;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [hit=%s, distance=%s, cellX=%s, cellY=%s, normalX=%s, normalY=%s]", getClass().getSimpleName(), hit, distance, cellX, cellY, normalX, normalY);
+    }
+
+}
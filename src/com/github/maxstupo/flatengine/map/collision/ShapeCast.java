@@ -0,0 +1,240 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.AbstractPolyShape;
+import com.github.maxstupo.flatengine.util.math.Circle;
+import com.github.maxstupo.flatengine.util.math.Ellipse;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+import com.github.maxstupo.flatengine.util.math.ShapeDispatcher;
+
+/**
+ * This class contains the ray and sweep tests against single shapes used by {@link StaticBvh}. Each test returns the fraction of the movement before
+ * the hit or {@link #MISS}, and stores the hit normal in the first two elements of a scratch array of at least {@link #SCRATCH_SIZE} elements.
+ * 
+ * @author Maxstupo
+ */
+final class ShapeCast {
+
+    /** Returned by a test that didn't hit. */
+    static final float MISS = -1;
+
+    /** The minimum length of the scratch array given to each test. */
+    static final int SCRATCH_SIZE = 4;
+
+    private ShapeCast() {
+    }
+
+    /**
+     * Casts the segment from o to o + d against the given shape. A segment starting inside the shape hits at time zero with a zero normal.
+     */
+    static float ray(AbstractBasicShape shape, float ox, float oy, float dx, float dy, float[] normal) {
+        switch (shape.getType()) {
+            case RECTANGLE:
+                Rectangle r = (Rectangle) shape;
+                return rayBox(r.getX(), r.getY(), r.getX() + r.getWidth(), r.getY() + r.getHeight(), ox, oy, dx, dy, true, normal);
+            case CIRCLE:
+                Circle c = (Circle) shape;
+                return rayEllipse(c.getX(), c.getY(), c.getRadius(), c.getRadius(), ox, oy, dx, dy, true, normal);
+            case ELLIPSE:
+                Ellipse e = (Ellipse) shape;
+                return rayEllipse(e.getX(), e.getY(), e.getRadiusX(), e.getRadiusY(), ox, oy, dx, dy, true, normal);
+            case POLYGON:
+                if (ShapeDispatcher.contains(shape, ox, oy))
+                    return inside(normal);
+                return rayEdges((AbstractPolyShape) shape, true, ox, oy, dx, dy, normal);
+            case POLYLINE:
+                return rayEdges((AbstractPolyShape) shape, false, ox, oy, dx, dy, normal);
+            default:
+                return MISS;
+        }
+    }
+
+    /**
+     * Sweeps the moving shape with the given bounds by d against the static shape with the given bounds. Shapes already overlapping at the start are
+     * ignored, allowing objects to move out of them. Circles and rectangles are exact against each other, other shapes are treated as their bounding
+     * boxes.
+     */
+    static float sweep(AbstractBasicShape moving, float minX, float minY, float maxX, float maxY, float dx, float dy, AbstractBasicShape shape, float sMinX, float sMinY, float sMaxX, float sMaxY, float[] normal) {
+        boolean isMovingRound = moving instanceof Circle;
+        boolean isShapeRound = shape instanceof Circle;
+
+        if (isMovingRound && isShapeRound) {
+            Circle a = (Circle) moving;
+            Circle b = (Circle) shape;
+            float radius = a.getRadius() + b.getRadius();
+            return rayEllipse(b.getX(), b.getY(), radius, radius, a.getX(), a.getY(), dx, dy, false, normal);
+
+        } else if (isMovingRound) {
+            Circle a = (Circle) moving;
+            return rayRoundedBox(sMinX, sMinY, sMaxX, sMaxY, a.getRadius(), a.getX(), a.getY(), dx, dy, normal);
+
+        } else if (isShapeRound) { // A box moving against a circle is the circle moving backwards against the box.
+            Circle b = (Circle) shape;
+            float time = rayRoundedBox(minX, minY, maxX, maxY, b.getRadius(), b.getX(), b.getY(), -dx, -dy, normal);
+            normal[0] = -normal[0];
+            normal[1] = -normal[1];
+            return time;
+        }
+
+        return rayBox(sMinX - (maxX - minX), sMinY - (maxY - minY), sMaxX, sMaxY, minX, minY, dx, dy, false, normal);
+    }
+
+    private static float inside(float[] normal) {
+        normal[0] = normal[1] = 0;
+        return 0;
+    }
+
+    /**
+     * Casts a segment against a box using the slab method.
+     */
+    private static float rayBox(float minX, float minY, float maxX, float maxY, float ox, float oy, float dx, float dy, boolean reportInside, float[] normal) {
+        if (ox > minX && ox < maxX && oy > minY && oy < maxY)
+            return reportInside ? inside(normal) : MISS;
+
+        float txEntry, txExit, tyEntry, tyExit;
+        if (dx != 0) {
+            float t1 = (minX - ox) / dx;
+            float t2 = (maxX - ox) / dx;
+            txEntry = Math.min(t1, t2);
+            txExit = Math.max(t1, t2);
+        } else {
+            if (ox <= minX || ox >= maxX)
+                return MISS;
+            txEntry = Float.NEGATIVE_INFINITY;
+            txExit = Float.POSITIVE_INFINITY;
+        }
+
+        if (dy != 0) {
+            float t1 = (minY - oy) / dy;
+            float t2 = (maxY - oy) / dy;
+            tyEntry = Math.min(t1, t2);
+            tyExit = Math.max(t1, t2);
+        } else {
+            if (oy <= minY || oy >= maxY)
+                return MISS;
+            tyEntry = Float.NEGATIVE_INFINITY;
+            tyExit = Float.POSITIVE_INFINITY;
+        }
+
+        float entry = Math.max(txEntry, tyEntry);
+        float exit = Math.min(txExit, tyExit);
+        if (entry >= exit || entry < 0 || entry > 1) // Missed, already overlapping, or out of reach.
+            return MISS;
+
+        if (txEntry > tyEntry) {
+            normal[0] = (dx > 0) ? -1 : 1;
+            normal[1] = 0;
+        } else {
+            normal[0] = 0;
+            normal[1] = (dy > 0) ? -1 : 1;
+        }
+        return entry;
+    }
+
+    /**
+     * Casts a segment against an axis aligned ellipse, by scaling the ellipse into a unit circle.
+     */
+    private static float rayEllipse(float cx, float cy, float rx, float ry, float ox, float oy, float dx, float dy, boolean reportInside, float[] normal) {
+        if (rx <= 0 || ry <= 0)
+            return MISS;
+
+        float px = (ox - cx) / rx;
+        float py = (oy - cy) / ry;
+        float vx = dx / rx;
+        float vy = dy / ry;
+
+        float c = px * px + py * py - 1;
+        if (c < 0)
+            return reportInside ? inside(normal) : MISS;
+
+        float a = vx * vx + vy * vy;
+        float b = px * vx + py * vy;
+        if (a == 0 || b >= 0) // Not moving, or moving away.
+            return MISS;
+
+        float discriminant = b * b - a * c;
+        if (discriminant < 0)
+            return MISS;
+
+        float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        if (t < 0 || t > 1)
+            return MISS;
+
+        float nx = (px + vx * t) / rx; // Gradient of the ellipse at the hit point.
+        float ny = (py + vy * t) / ry;
+        float length = (float) Math.sqrt(nx * nx + ny * ny);
+        normal[0] = nx / length;
+        normal[1] = ny / length;
+        return t;
+    }
+
+    /**
+     * Casts a segment against a box with its edges pushed out by the given radius and rounded corners, the area a circle touches when moving over a
+     * box.
+     */
+    private static float rayRoundedBox(float minX, float minY, float maxX, float maxY, float radius, float ox, float oy, float dx, float dy, float[] normal) {
+        float best = MISS;
+        best = closest(best, rayBox(minX - radius, minY, maxX + radius, maxY, ox, oy, dx, dy, false, normal), normal);
+        best = closest(best, rayBox(minX, minY - radius, maxX, maxY + radius, ox, oy, dx, dy, false, normal), normal);
+        best = closest(best, rayEllipse(minX, minY, radius, radius, ox, oy, dx, dy, false, normal), normal);
+        best = closest(best, rayEllipse(maxX, minY, radius, radius, ox, oy, dx, dy, false, normal), normal);
+        best = closest(best, rayEllipse(maxX, maxY, radius, radius, ox, oy, dx, dy, false, normal), normal);
+        best = closest(best, rayEllipse(minX, maxY, radius, radius, ox, oy, dx, dy, false, normal), normal);
+
+        normal[0] = normal[2];
+        normal[1] = normal[3];
+        return best;
+    }
+
+    /**
+     * Returns the earlier of the given times, keeping the normal of the earliest time in the last two elements of the scratch array.
+     */
+    private static float closest(float best, float time, float[] normal) {
+        if (time == MISS || (best != MISS && time >= best))
+            return best;
+        normal[2] = normal[0];
+        normal[3] = normal[1];
+        return time;
+    }
+
+    /**
+     * Casts a segment against the edges of the given poly shape, the normal faces the start of the segment.
+     */
+    private static float rayEdges(AbstractPolyShape shape, boolean closed, float ox, float oy, float dx, float dy, float[] normal) {
+        int count = shape.getVertexCount();
+        int edges = closed ? count : count - 1;
+        float sx = shape.getX();
+        float sy = shape.getY();
+
+        float best = MISS;
+        for (int i = 0; i < edges; i++) {
+            int j = (i + 1) % count;
+            float ax = sx + shape.getVertexX(i);
+            float ay = sy + shape.getVertexY(i);
+            float ex = sx + shape.getVertexX(j) - ax;
+            float ey = sy + shape.getVertexY(j) - ay;
+
+            float denominator = dx * ey - dy * ex;
+            if (denominator == 0) // Parallel.
+                continue;
+
+            float t = ((ax - ox) * ey - (ay - oy) * ex) / denominator;
+            float u = ((ax - ox) * dy - (ay - oy) * dx) / denominator;
+            if (t < 0 || t > 1 || u < 0 || u > 1 || (best != MISS && t >= best))
+                continue;
+
+            float length = (float) Math.sqrt(ex * ex + ey * ey);
+            float nx = -ey / length;
+            float ny = ex / length;
+            if (nx * dx + ny * dy > 0) {
+                nx = -nx;
+                ny = -ny;
+            }
+            normal[0] = nx;
+            normal[1] = ny;
+            best = t;
+        }
+        return best;
+    }
+
+}
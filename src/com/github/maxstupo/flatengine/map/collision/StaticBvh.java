@@ -0,0 +1,721 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+import com.github.maxstupo.flatengine.util.math.ShapeDispatcher;
+
+/**
+ * This class is a bounding volume hierarchy over shapes that never move, such as map object and tile collision shapes. The tree is built with a
+ * binned surface area heuristic and flattened into primitive arrays, so queries visit only the nodes near them without allocating.
+ * <p>
+ * Items are added with {@link #add(Object, AbstractBasicShape)} and become queryable after the next {@link #build()}. A build snapshots the items, so
+ * {@link #buildAsync()} can rebuild the tree on another thread while queries keep using the previous tree. All queries may be called from any
+ * thread.
+ * <p>
+ * The bvh is meant to be used alongside an {@link IBroadphase} holding the moving shapes, see {@link #findPairs(IBroadphase, PairList)}.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the item type.
+ */
+public class StaticBvh<T> {
+
+    /** The default maximum number of primitives within each leaf. */
+    public static final int DEFAULT_LEAF_SIZE = 4;
+
+    private static final int BINS = 16;
+
+    /** The cost of visiting a node relative to testing a primitive, used by the surface area heuristic. */
+    private static final float TRAVERSAL_COST = 1f;
+
+    private final int leafSize;
+
+    private final List<T> items = new ArrayList<>();
+    private final List<AbstractBasicShape> shapes = new ArrayList<>();
+
+    private volatile Tree<T> tree = new Tree<>(0);
+    private int buildVersion;
+
+    private final ThreadLocal<QueryScratch> scratch = ThreadLocal.withInitial(QueryScratch::new);
+
+    /**
+     * Create a new {@link StaticBvh} object with a leaf size of {@value #DEFAULT_LEAF_SIZE}.
+     */
+    public StaticBvh() {
+        this(DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Create a new {@link StaticBvh} object.
+     * 
+     * @param leafSize
+     *            the maximum number of primitives within each leaf.
+     * @throws IllegalArgumentException
+     *             if leafSize is less than one.
+     */
+    public StaticBvh(int leafSize) throws IllegalArgumentException {
+        if (leafSize < 1)
+            throw new IllegalArgumentException("leafSize must be greater than zero: " + leafSize);
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Adds the given item, it will be queryable after the next build.
+     * 
+     * @param item
+     *            the item.
+     * @param shape
+     *            the shape of the item, must not be moved or resized after it has been built into the tree.
+     * @throws IllegalArgumentException
+     *             if shape is null.
+     */
+    public void add(T item, AbstractBasicShape shape) throws IllegalArgumentException {
+        if (shape == null)
+            throw new IllegalArgumentException("shape can't be null!");
+        items.add(item);
+        shapes.add(shape);
+    }
+
+    /**
+     * Removes all items, the current tree is kept until the next build.
+     */
+    public void clear() {
+        items.clear();
+        shapes.clear();
+    }
+
+    /**
+     * Builds the tree from the current items on the calling thread.
+     */
+    public void build() {
+        publish(snapshot().call());
+    }
+
+    /**
+     * Builds the tree from the current items on the common {@link ForkJoinPool}. The items are copied before this method returns, so they can be
+     * changed while building. Queries use the previous tree until the build completes, and an older build never replaces a newer one.
+     * 
+     * @return a future completed once the new tree is in use.
+     */
+    public CompletableFuture<Void> buildAsync() {
+        Builder<T> builder = snapshot();
+        return CompletableFuture.supplyAsync(builder::call, ForkJoinPool.commonPool()).thenAccept(this::publish);
+    }
+
+    private synchronized Builder<T> snapshot() {
+        @SuppressWarnings("unchecked")
+        T[] itemArray = (T[]) items.toArray();
+        return new Builder<>(++buildVersion, itemArray, shapes.toArray(new AbstractBasicShape[shapes.size()]), leafSize);
+    }
+
+    private synchronized void publish(Tree<T> built) {
+        if (built.version > tree.version)
+            tree = built;
+    }
+
+    /**
+     * Adds all items with bounds overlapping the given rectangle to the given list.
+     * 
+     * @param x
+     *            x position of the rectangle, top-left origin.
+     * @param y
+     *            y position of the rectangle, top-left origin.
+     * @param width
+     *            the width of the rectangle.
+     * @param height
+     *            the height of the rectangle.
+     * @param out
+     *            the list the items will be added to.
+     * @return the number of items added.
+     */
+    public int queryBounds(float x, float y, float width, float height, List<? super T> out) {
+        Tree<T> t = tree;
+        QueryScratch s = scratch.get();
+        int found = 0;
+
+        int size = s.push(0, 0);
+        while (size > 0) {
+            int node = s.stack[--size];
+            if (!t.overlapsNode(node, x, y, x + width, y + height))
+                continue;
+
+            if (t.nodeCount[node] > 0) {
+                int end = t.nodeFirst[node] + t.nodeCount[node];
+                for (int i = t.nodeFirst[node]; i < end; i++) {
+                    if (t.overlapsPrimitive(i, x, y, x + width, y + height)) {
+                        out.add(t.items[i]);
+                        found++;
+                    }
+                }
+            } else {
+                size = s.push(size, t.nodeFirst[node]);
+                size = s.push(size, node + 1);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds all items whose shape intersects the given shape to the given list, using {@link ShapeDispatcher#intersects(AbstractBasicShape,
+     * AbstractBasicShape)}.
+     * 
+     * @param shape
+     *            the shape.
+     * @param out
+     *            the list the items will be added to.
+     * @return the number of items added.
+     */
+    public int queryShape(AbstractBasicShape shape, List<? super T> out) {
+        Tree<T> t = tree;
+        QueryScratch s = scratch.get();
+        shape.getBounds(s.bounds);
+        float minX = s.bounds.getX();
+        float minY = s.bounds.getY();
+        float maxX = minX + s.bounds.getWidth();
+        float maxY = minY + s.bounds.getHeight();
+        int found = 0;
+
+        int size = s.push(0, 0);
+        while (size > 0) {
+            int node = s.stack[--size];
+            if (!t.overlapsNode(node, minX, minY, maxX, maxY))
+                continue;
+
+            if (t.nodeCount[node] > 0) {
+                int end = t.nodeFirst[node] + t.nodeCount[node];
+                for (int i = t.nodeFirst[node]; i < end; i++) {
+                    if (t.overlapsPrimitive(i, minX, minY, maxX, maxY) && ShapeDispatcher.intersects(t.shapes[i], shape)) {
+                        out.add(t.items[i]);
+                        found++;
+                    }
+                }
+            } else {
+                size = s.push(size, t.nodeFirst[node]);
+                size = s.push(size, node + 1);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds all items whose shape contains the given point to the given list.
+     * 
+     * @param x
+     *            the x position of the point.
+     * @param y
+     *            the y position of the point.
+     * @param out
+     *            the list the items will be added to.
+     * @return the number of items added.
+     */
+    public int queryPoint(float x, float y, List<? super T> out) {
+        Tree<T> t = tree;
+        QueryScratch s = scratch.get();
+        int found = 0;
+
+        int size = s.push(0, 0);
+        while (size > 0) {
+            int node = s.stack[--size];
+            if (!t.overlapsNode(node, x, y, x, y))
+                continue;
+
+            if (t.nodeCount[node] > 0) {
+                int end = t.nodeFirst[node] + t.nodeCount[node];
+                for (int i = t.nodeFirst[node]; i < end; i++) {
+                    if (t.overlapsPrimitive(i, x, y, x, y) && ShapeDispatcher.contains(t.shapes[i], x, y)) {
+                        out.add(t.items[i]);
+                        found++;
+                    }
+                }
+            } else {
+                size = s.push(size, t.nodeFirst[node]);
+                size = s.push(size, node + 1);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Casts the segment from the given position along the given movement and finds the first shape hit. A segment starting inside a shape hits it
+     * at time zero with a zero normal.
+     * 
+     * @param x
+     *            the x position the segment starts at.
+     * @param y
+     *            the y position the segment starts at.
+     * @param dx
+     *            the movement along the x axis.
+     * @param dy
+     *            the movement along the y axis.
+     * @param out
+     *            the result of the cast, will be reset before use.
+     * @return true if the segment hit something.
+     */
+    public boolean raycast(float x, float y, float dx, float dy, BvhHit<T> out) {
+        out.reset();
+        Tree<T> t = tree;
+        QueryScratch s = scratch.get();
+        float inverseX = 1f / dx;
+        float inverseY = 1f / dy;
+
+        int size = s.push(0, 0);
+        while (size > 0) {
+            int node = s.stack[--size];
+            if (t.nodeCount.length == 0 || !rayOverlaps(t.nodeMinX[node], t.nodeMinY[node], t.nodeMaxX[node], t.nodeMaxY[node], x, y, inverseX, inverseY, out.time))
+                continue;
+
+            if (t.nodeCount[node] > 0) {
+                int end = t.nodeFirst[node] + t.nodeCount[node];
+                for (int i = t.nodeFirst[node]; i < end; i++) {
+                    float time = ShapeCast.ray(t.shapes[i], x, y, dx, dy, s.normal);
+                    if (time != ShapeCast.MISS)
+                        out.offer(time, s.normal[0], s.normal[1], t.items[i], i);
+                }
+            } else {
+                size = s.push(size, t.nodeFirst[node]);
+                size = s.push(size, node + 1);
+            }
+        }
+        return out.hit;
+    }
+
+    /**
+     * Sweeps the given shape along the given movement and finds the first shape hit. Shapes already overlapping the given shape at the start of the
+     * movement are ignored, allowing objects to move out of them. Circles and rectangles are exact against each other, other shapes are treated as
+     * their bounding boxes.
+     * 
+     * @param shape
+     *            the moving shape.
+     * @param dx
+     *            the movement along the x axis.
+     * @param dy
+     *            the movement along the y axis.
+     * @param out
+     *            the result of the sweep, will be reset before use.
+     * @return true if the shape hit something.
+     */
+    public boolean sweep(AbstractBasicShape shape, float dx, float dy, BvhHit<T> out) {
+        out.reset();
+        Tree<T> t = tree;
+        QueryScratch s = scratch.get();
+        shape.getBounds(s.bounds);
+        float minX = s.bounds.getX();
+        float minY = s.bounds.getY();
+        float width = s.bounds.getWidth();
+        float height = s.bounds.getHeight();
+        float inverseX = 1f / dx;
+        float inverseY = 1f / dy;
+
+        int size = s.push(0, 0);
+        while (size > 0) {
+            int node = s.stack[--size];
+            if (t.nodeCount.length == 0 || !rayOverlaps(t.nodeMinX[node] - width, t.nodeMinY[node] - height, t.nodeMaxX[node], t.nodeMaxY[node], minX, minY, inverseX, inverseY, out.time))
+                continue;
+
+            if (t.nodeCount[node] > 0) {
+                int end = t.nodeFirst[node] + t.nodeCount[node];
+                for (int i = t.nodeFirst[node]; i < end; i++) {
+                    float time = ShapeCast.sweep(shape, minX, minY, minX + width, minY + height, dx, dy, t.shapes[i], t.primMinX[i], t.primMinY[i], t.primMaxX[i], t.primMaxY[i], s.normal);
+                    if (time != ShapeCast.MISS)
+                        out.offer(time, s.normal[0], s.normal[1], t.items[i], i);
+                }
+            } else {
+                size = s.push(size, t.nodeFirst[node]);
+                size = s.push(size, node + 1);
+            }
+        }
+        return out.hit;
+    }
+
+    /**
+     * Returns true if the segment from o with the given inverse direction enters the given box before the given time.
+     */
+    private static boolean rayOverlaps(float minX, float minY, float maxX, float maxY, float ox, float oy, float inverseX, float inverseY, float maxTime) {
+        float t1 = (minX - ox) * inverseX;
+        float t2 = (maxX - ox) * inverseX;
+        float t3 = (minY - oy) * inverseY;
+        float t4 = (maxY - oy) * inverseY;
+
+        if (Float.isNaN(t1) || Float.isNaN(t2)) { // Not moving along x and starting on a box edge.
+            t1 = Float.NEGATIVE_INFINITY;
+            t2 = Float.POSITIVE_INFINITY;
+        }
+        if (Float.isNaN(t3) || Float.isNaN(t4)) {
+            t3 = Float.NEGATIVE_INFINITY;
+            t4 = Float.POSITIVE_INFINITY;
+        }
+
+        float entry = Math.max(Math.min(t1, t2), Math.min(t3, t4));
+        float exit = Math.min(Math.max(t1, t2), Math.max(t3, t4));
+        return entry <= exit && exit >= 0 && entry <= maxTime;
+    }
+
+    /**
+     * Finds the dynamic proxies of the given broadphase whose shapes intersect a shape within this bvh, as of the last {@link IBroadphase#update()}.
+     * The first id of each pair is the proxy id, the second is the primitive index of this bvh, see {@link #getItem(int)}.
+     * 
+     * @param broadphase
+     *            the broadphase holding the moving shapes.
+     * @param out
+     *            the list the pairs are added to, it's cleared first.
+     * @return the number of pairs found.
+     */
+    public int findPairs(IBroadphase broadphase, PairList out) {
+        out.clear();
+        Tree<T> t = tree;
+        QueryScratch s = scratch.get();
+
+        for (int d = 0; d < broadphase.getDynamicCount(); d++) {
+            int proxy = broadphase.getDynamicProxy(d);
+            AbstractBasicShape shape = broadphase.getShape(proxy);
+            shape.getBounds(s.bounds);
+            float minX = s.bounds.getX();
+            float minY = s.bounds.getY();
+            float maxX = minX + s.bounds.getWidth();
+            float maxY = minY + s.bounds.getHeight();
+
+            int size = s.push(0, 0);
+            while (size > 0) {
+                int node = s.stack[--size];
+                if (!t.overlapsNode(node, minX, minY, maxX, maxY))
+                    continue;
+
+                if (t.nodeCount[node] > 0) {
+                    int end = t.nodeFirst[node] + t.nodeCount[node];
+                    for (int i = t.nodeFirst[node]; i < end; i++) {
+                        if (t.overlapsPrimitive(i, minX, minY, maxX, maxY) && ShapeDispatcher.intersects(shape, t.shapes[i]))
+                            out.add(proxy, i);
+                    }
+                } else {
+                    size = s.push(size, t.nodeFirst[node]);
+                    size = s.push(size, node + 1);
+                }
+            }
+        }
+        return out.size();
+    }
+
+    /**
+     * Returns the item of the given primitive index, as reported by {@link BvhHit#index} and {@link #findPairs(IBroadphase, PairList)}. Primitive
+     * indexes change with each build.
+     * 
+     * @param index
+     *            the primitive index.
+     * @return the item of the given primitive index.
+     */
+    public T getItem(int index) {
+        return tree.items[index];
+    }
+
+    /**
+     * Returns the shape of the given primitive index.
+     * 
+     * @param index
+     *            the primitive index.
+     * @return the shape of the given primitive index.
+     */
+    public AbstractBasicShape getShape(int index) {
+        return tree.shapes[index];
+    }
+
+    /**
+     * Returns the number of items within the current tree.
+     * 
+     * @return the number of items within the current tree.
+     */
+    public int getPrimitiveCount() {
+        return tree.items.length;
+    }
+
+    /**
+     * Returns the number of nodes within the current tree.
+     * 
+     * @return the number of nodes within the current tree.
+     */
+    public int getNodeCount() {
+        return tree.nodeCount.length;
+    }
+
+    /**
+     * Returns the maximum number of primitives within each leaf.
+     * 
+     * @return the maximum number of primitives within each leaf.
+     */
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [leafSize=%s, primitives=%s, nodes=%s]", getClass().getSimpleName(), leafSize, getPrimitiveCount(), getNodeCount());
+    }
+
+    /**
+     * The per-thread traversal stack and scratch objects used by queries.
+     */
+    private static class QueryScratch {
+
+        int[] stack = new int[64];
+        final float[] normal = new float[ShapeCast.SCRATCH_SIZE];
+        final Rectangle bounds = new Rectangle();
+
+        int push(int size, int node) {
+            if (size == stack.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(stack, 0, grown, 0, size);
+                stack = grown;
+            }
+            stack[size] = node;
+            return size + 1;
+        }
+    }
+
+    /**
+     * An immutable flattened tree. Nodes are stored depth first, so the left child of an inner node is the next node and the right child is stored in
+     * {@link #nodeFirst}. Leaf nodes store the range of their primitives, which are reordered so each leaf is contiguous.
+     */
+    private static class Tree<T> {
+
+        final int version;
+
+        float[] nodeMinX = new float[0];
+        float[] nodeMinY = new float[0];
+        float[] nodeMaxX = new float[0];
+        float[] nodeMaxY = new float[0];
+        /** The first primitive of a leaf, or the right child of an inner node. */
+        int[] nodeFirst = new int[0];
+        /** The number of primitives of a leaf, or zero for an inner node. */
+        int[] nodeCount = new int[0];
+
+        float[] primMinX = new float[0];
+        float[] primMinY = new float[0];
+        float[] primMaxX = new float[0];
+        float[] primMaxY = new float[0];
+        AbstractBasicShape[] shapes = new AbstractBasicShape[0];
+        T[] items;
+
+        @SuppressWarnings("unchecked")
+        Tree(int version) {
+            this.version = version;
+            this.items = (T[]) new Object[0];
+        }
+
+        boolean overlapsNode(int node, float minX, float minY, float maxX, float maxY) {
+            return node < nodeCount.length && nodeMinX[node] <= maxX && nodeMaxX[node] >= minX && nodeMinY[node] <= maxY && nodeMaxY[node] >= minY;
+        }
+
+        boolean overlapsPrimitive(int i, float minX, float minY, float maxX, float maxY) {
+            return primMinX[i] <= maxX && primMaxX[i] >= minX && primMinY[i] <= maxY && primMaxY[i] >= minY;
+        }
+    }
+
+    /**
+     * Builds a tree from a snapshot of the items, using a binned surface area heuristic. In two dimensions the surface area of a box is its
+     * perimeter.
+     */
+    private static class Builder<T> {
+
+        private final T[] items;
+        private final AbstractBasicShape[] shapes;
+        private final int leafSize;
+        private final Tree<T> tree;
+
+        private final int[] order;
+        private final float[] centerX;
+        private final float[] centerY;
+        private int nodes;
+
+        private final int[] binCount = new int[BINS];
+        private final float[] binBounds = new float[BINS * 4];
+        private final float[] rightCost = new float[BINS];
+
+        Builder(int version, T[] items, AbstractBasicShape[] shapes, int leafSize) {
+            this.items = items;
+            this.shapes = shapes;
+            this.leafSize = leafSize;
+            this.tree = new Tree<>(version);
+
+            int count = items.length;
+            this.order = new int[count];
+            this.centerX = new float[count];
+            this.centerY = new float[count];
+        }
+
+        Tree<T> call() {
+            int count = items.length;
+            float[] minX = new float[count];
+            float[] minY = new float[count];
+            float[] maxX = new float[count];
+            float[] maxY = new float[count];
+
+            Rectangle bounds = new Rectangle();
+            for (int i = 0; i < count; i++) {
+                shapes[i].getBounds(bounds);
+                minX[i] = bounds.getX();
+                minY[i] = bounds.getY();
+                maxX[i] = bounds.getX() + bounds.getWidth();
+                maxY[i] = bounds.getY() + bounds.getHeight();
+                centerX[i] = (minX[i] + maxX[i]) * 0.5f;
+                centerY[i] = (minY[i] + maxY[i]) * 0.5f;
+                order[i] = i;
+            }
+
+            int capacity = Math.max(0, count * 2 - 1);
+            tree.nodeMinX = new float[capacity];
+            tree.nodeMinY = new float[capacity];
+            tree.nodeMaxX = new float[capacity];
+            tree.nodeMaxY = new float[capacity];
+            tree.nodeFirst = new int[capacity];
+            tree.nodeCount = new int[capacity];
+
+            if (count > 0)
+                buildNode(0, count, minX, minY, maxX, maxY);
+
+            tree.nodeMinX = Arrays.copyOf(tree.nodeMinX, nodes);
+            tree.nodeMinY = Arrays.copyOf(tree.nodeMinY, nodes);
+            tree.nodeMaxX = Arrays.copyOf(tree.nodeMaxX, nodes);
+            tree.nodeMaxY = Arrays.copyOf(tree.nodeMaxY, nodes);
+            tree.nodeFirst = Arrays.copyOf(tree.nodeFirst, nodes);
+            tree.nodeCount = Arrays.copyOf(tree.nodeCount, nodes);
+
+            @SuppressWarnings("unchecked")
+            T[] sortedItems = (T[]) new Object[count];
+            tree.items = sortedItems;
+            tree.shapes = new AbstractBasicShape[count];
+            tree.primMinX = new float[count];
+            tree.primMinY = new float[count];
+            tree.primMaxX = new float[count];
+            tree.primMaxY = new float[count];
+            for (int i = 0; i < count; i++) {
+                int p = order[i];
+                tree.items[i] = items[p];
+                tree.shapes[i] = shapes[p];
+                tree.primMinX[i] = minX[p];
+                tree.primMinY[i] = minY[p];
+                tree.primMaxX[i] = maxX[p];
+                tree.primMaxY[i] = maxY[p];
+            }
+            return tree;
+        }
+
+        private void buildNode(int start, int end, float[] minX, float[] minY, float[] maxX, float[] maxY) {
+            int node = nodes++;
+
+            float bMinX = Float.POSITIVE_INFINITY, bMinY = Float.POSITIVE_INFINITY;
+            float bMaxX = Float.NEGATIVE_INFINITY, bMaxY = Float.NEGATIVE_INFINITY;
+            float cMinX = Float.POSITIVE_INFINITY, cMinY = Float.POSITIVE_INFINITY;
+            float cMaxX = Float.NEGATIVE_INFINITY, cMaxY = Float.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                int p = order[i];
+                bMinX = Math.min(bMinX, minX[p]);
+                bMinY = Math.min(bMinY, minY[p]);
+                bMaxX = Math.max(bMaxX, maxX[p]);
+                bMaxY = Math.max(bMaxY, maxY[p]);
+                cMinX = Math.min(cMinX, centerX[p]);
+                cMinY = Math.min(cMinY, centerY[p]);
+                cMaxX = Math.max(cMaxX, centerX[p]);
+                cMaxY = Math.max(cMaxY, centerY[p]);
+            }
+            tree.nodeMinX[node] = bMinX;
+            tree.nodeMinY[node] = bMinY;
+            tree.nodeMaxX[node] = bMaxX;
+            tree.nodeMaxY[node] = bMaxY;
+
+            int count = end - start;
+            boolean axisX = cMaxX - cMinX >= cMaxY - cMinY;
+            float cMin = axisX ? cMinX : cMinY;
+            float extent = axisX ? cMaxX - cMinX : cMaxY - cMinY;
+
+            if (count <= 1 || extent <= 0) { // Centers all in one place, splitting can't separate them.
+                makeLeaf(node, start, count);
+                return;
+            }
+
+            float[] centers = axisX ? centerX : centerY;
+            float scale = BINS / extent;
+
+            Arrays.fill(binCount, 0);
+            for (int b = 0; b < BINS; b++) {
+                binBounds[b * 4] = binBounds[b * 4 + 1] = Float.POSITIVE_INFINITY;
+                binBounds[b * 4 + 2] = binBounds[b * 4 + 3] = Float.NEGATIVE_INFINITY;
+            }
+            for (int i = start; i < end; i++) {
+                int p = order[i];
+                int b = Math.min(BINS - 1, (int) ((centers[p] - cMin) * scale));
+                binCount[b]++;
+                binBounds[b * 4] = Math.min(binBounds[b * 4], minX[p]);
+                binBounds[b * 4 + 1] = Math.min(binBounds[b * 4 + 1], minY[p]);
+                binBounds[b * 4 + 2] = Math.max(binBounds[b * 4 + 2], maxX[p]);
+                binBounds[b * 4 + 3] = Math.max(binBounds[b * 4 + 3], maxY[p]);
+            }
+
+            // Sweep from the right storing the cost of each right side, then sweep from the left to find the cheapest split.
+            float rMinX = Float.POSITIVE_INFINITY, rMinY = Float.POSITIVE_INFINITY;
+            float rMaxX = Float.NEGATIVE_INFINITY, rMaxY = Float.NEGATIVE_INFINITY;
+            int rCount = 0;
+            for (int b = BINS - 1; b > 0; b--) {
+                rCount += binCount[b];
+                rMinX = Math.min(rMinX, binBounds[b * 4]);
+                rMinY = Math.min(rMinY, binBounds[b * 4 + 1]);
+                rMaxX = Math.max(rMaxX, binBounds[b * 4 + 2]);
+                rMaxY = Math.max(rMaxY, binBounds[b * 4 + 3]);
+                rightCost[b] = (rCount == 0) ? 0 : rCount * ((rMaxX - rMinX) + (rMaxY - rMinY));
+            }
+
+            float lMinX = Float.POSITIVE_INFINITY, lMinY = Float.POSITIVE_INFINITY;
+            float lMaxX = Float.NEGATIVE_INFINITY, lMaxY = Float.NEGATIVE_INFINITY;
+            int lCount = 0;
+            int bestSplit = -1;
+            float bestCost = Float.POSITIVE_INFINITY;
+            for (int b = 1; b < BINS; b++) {
+                lCount += binCount[b - 1];
+                lMinX = Math.min(lMinX, binBounds[(b - 1) * 4]);
+                lMinY = Math.min(lMinY, binBounds[(b - 1) * 4 + 1]);
+                lMaxX = Math.max(lMaxX, binBounds[(b - 1) * 4 + 2]);
+                lMaxY = Math.max(lMaxY, binBounds[(b - 1) * 4 + 3]);
+                if (lCount == 0 || lCount == count)
+                    continue;
+
+                float cost = lCount * ((lMaxX - lMinX) + (lMaxY - lMinY)) + rightCost[b];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestSplit = b;
+                }
+            }
+
+            float area = (bMaxX - bMinX) + (bMaxY - bMinY);
+            float leafCost = count * area;
+            float splitCost = TRAVERSAL_COST * area + bestCost;
+            if (bestSplit == -1 || (count <= leafSize && leafCost <= splitCost)) {
+                makeLeaf(node, start, count);
+                return;
+            }
+
+            int mid = start;
+            for (int i = start; i < end; i++) { // Partition the primitives left of the split to the front.
+                int p = order[i];
+                if (Math.min(BINS - 1, (int) ((centers[p] - cMin) * scale)) < bestSplit) {
+                    order[i] = order[mid];
+                    order[mid++] = p;
+                }
+            }
+
+            buildNode(start, mid, minX, minY, maxX, maxY);
+            tree.nodeFirst[node] = nodes;
+            tree.nodeCount[node] = 0;
+            buildNode(mid, end, minX, minY, maxX, maxY);
+        }
+
+        private void makeLeaf(int node, int start, int count) {
+            tree.nodeFirst[node] = start;
+            tree.nodeCount[node] = count;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.Arrays;
+
+/**
+ * This class is a broadphase that keeps the proxies sorted by the left edge of their bounds, and sweeps along the x axis keeping a list of the
+ * proxies whose x range is still open. Proxies only move a little between ticks, so the sort order is kept with an insertion sort that runs in close
+ * to linear time.
+ * <p>
+ * Static and dynamic proxies are sorted separately and merged during the sweep, so static proxies are only compared against dynamic ones. Works well
+ * with shapes of widely varying sizes, but degrades when many shapes share the same x range.
+ * 
+ * @author Maxstupo
+ */
+public class SweepAndPruneBroadphase extends AbstractBroadphase {
+
+    private int[] dynamicOrder = new int[0];
+    private int[] staticOrder = new int[0];
+    private int builtDynamicVersion = -1;
+    private int builtStaticVersion = -1;
+
+    private int[] activeDynamics = new int[0];
+    private int[] activeStatics = new int[0];
+
+    private long[] sortKeys = new long[0];
+
+    @Override
+    protected void build() {
+        if (builtStaticVersion != staticVersion) {
+            staticOrder = sort(staticProxies, staticCount, staticOrder);
+            builtStaticVersion = staticVersion;
+        }
+
+        if (builtDynamicVersion != dynamicVersion) {
+            dynamicOrder = sort(dynamics, dynamicCount, dynamicOrder);
+            builtDynamicVersion = dynamicVersion;
+        } else {
+            insertionSort(dynamicOrder, dynamicCount);
+        }
+    }
+
+    /**
+     * Fully sorts the given proxies by their left edge, used when proxies have been added or removed.
+     */
+    private int[] sort(int[] ids, int count, int[] out) {
+        if (sortKeys.length < count)
+            sortKeys = new long[Math.max(count, sortKeys.length * 2)];
+
+        for (int i = 0; i < count; i++) {
+            int bits = Float.floatToIntBits(minX[ids[i]]);
+            bits ^= (bits >> 31) & 0x7FFFFFFF; // Negative floats sort in reverse as ints.
+            sortKeys[i] = ((long) bits << 32) | (ids[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(sortKeys, 0, count);
+
+        if (out.length < count)
+            out = new int[Math.max(count, out.length * 2)];
+        for (int i = 0; i < count; i++)
+            out[i] = (int) sortKeys[i];
+        return out;
+    }
+
+    private void insertionSort(int[] order, int count) {
+        for (int i = 1; i < count; i++) {
+            int id = order[i];
+            float key = minX[id];
+
+            int j = i - 1;
+            while (j >= 0 && minX[order[j]] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = id;
+        }
+    }
+
+    @Override
+    public int findPairs(PairList out) {
+        out.clear();
+        if (dynamicCount == 0)
+            return 0;
+
+        if (activeDynamics.length < dynamicCount)
+            activeDynamics = new int[dynamicOrder.length];
+        if (activeStatics.length < staticCount)
+            activeStatics = new int[staticOrder.length];
+
+        int activeDynamicCount = 0;
+        int activeStaticCount = 0;
+
+        int d = 0;
+        int s = 0;
+        // Statics past the last dynamic still need sweeping while any dynamic is open.
+        while (d < dynamicCount || (s < staticCount && activeDynamicCount > 0)) {
+            boolean isStatic = s < staticCount && (d == dynamicCount || minX[staticOrder[s]] < minX[dynamicOrder[d]]);
+            int proxy = isStatic ? staticOrder[s++] : dynamicOrder[d++];
+            float left = minX[proxy];
+
+            for (int i = activeDynamicCount - 1; i >= 0; i--) {
+                int other = activeDynamics[i];
+                if (maxX[other] < left) { // Closed, no later proxy can overlap it.
+                    activeDynamics[i] = activeDynamics[--activeDynamicCount];
+                } else if (minY[proxy] <= maxY[other] && maxY[proxy] >= minY[other]) {
+                    out.add(other, proxy);
+                }
+            }
+
+            if (isStatic) {
+                activeStatics[activeStaticCount++] = proxy;
+                continue;
+            }
+
+            for (int i = activeStaticCount - 1; i >= 0; i--) {
+                int other = activeStatics[i];
+                if (maxX[other] < left) {
+                    activeStatics[i] = activeStatics[--activeStaticCount];
+                } else if (minY[proxy] <= maxY[other] && maxY[proxy] >= minY[other]) {
+                    out.add(proxy, other);
+                }
+            }
+            activeDynamics[activeDynamicCount++] = proxy;
+        }
+        return out.size();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+/**
+ * This class stores the result of a swept collision query. Results are meant to be reused between queries to avoid allocation.
+ * 
+ * @author Maxstupo
+ */
+public class SweepResult {
+
+    /** True if the sweep hit something. */
+    public boolean hit;
+
+    /** The fraction of the movement (0.0 - 1.0) completed before the hit, or 1.0 if nothing was hit. */
+    public float time = 1;
+
+    /** The x component of the surface normal that was hit. */
+    public float normalX;
+
+    /** The y component of the surface normal that was hit. */
+    public float normalY;
+
+    /** The x position of the cell that was hit. */
+    public int cellX;
+
+    /** The y position of the cell that was hit. */
+    public int cellY;
+
+    /**
+     * Resets this result to represent a movement that hit nothing.
+     * 
+     * @return this object for chaining.
+     */
+    public SweepResult reset() {
+        hit = false;
+        time = 1;
+        normalX = normalY = 0;
+        cellX = cellY = 0;
+        return this;
+    }
+
+    /**
+     * Sets this result to the given hit, if the given time is earlier than the current hit time.
+     * 
+     * @param time
+     *            the fraction of movement before the hit.
+     * @param normalX
+     *            the x component of the surface normal.
+     * @param normalY
+     *            the y component of the surface normal.
+     * @param cellX
+     *            the x position of the cell.
+     * @param cellY
+     *            the y position of the cell.
+     * @return true if this result was updated.
+     */
+    public boolean offer(float time, float normalX, float normalY, int cellX, int cellY) {
+        if (hit && time >= this.time)
+            return false;
+
+        this.hit = true;
+        this.time = time;
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.cellX = cellX;
+        this.cellY = cellY;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [hit=%s, time=%s, normalX=%s, normalY=%s, cellX=%s, cellY=%s]", getClass().getSimpleName(), hit, time, normalX, normalY, cellX, cellY);
+    }
+
+}
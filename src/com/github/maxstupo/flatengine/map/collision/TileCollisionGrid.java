@@ -0,0 +1,689 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.layer.AbstractMapLayer;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.map.object.MapObject;
+import com.github.maxstupo.flatengine.map.tile.Tile;
+import com.github.maxstupo.flatengine.map.tile.TilesetStore;
+import com.github.maxstupo.flatengine.util.BitGrid;
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.Circle;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+
+/**
+ * This class compiles the collision data of all {@link TileLayer}s of a {@link TiledMap} into a packed per-cell representation, allowing for fast
+ * collision queries without walking layers and tiles.
+ * <p>
+ * A tile is fully solid if it has the boolean property {@value #PROPERTY_SOLID} set to true, or if one of its collision objects is a rectangle
+ * covering the whole tile. Otherwise the collision objects of the tile are stored as a shape set referenced by each cell using that tile. Tile layers
+ * with the boolean property {@value #PROPERTY_COLLISION} set to false are ignored.
+ * <p>
+ * All positions are measured in tiles. The grid is updated by the map whenever {@link TileLayer#setTileAt(int, int, int)} is called.
+ * 
+ * @author Maxstupo
+ */
+public class TileCollisionGrid {
+
+    /** The tile property that marks a tile as fully solid. */
+    public static final String PROPERTY_SOLID = "solid";
+
+    /** The layer property that when set to false excludes a tile layer from collision. */
+    public static final String PROPERTY_COLLISION = "collision";
+
+    private static final float EPSILON = 0.0001f;
+
+    private final TiledMap map;
+
+    private final int width;
+    private final int height;
+
+    private final List<TileLayer> layers = new ArrayList<>();
+
+    private final BitGrid solid;
+    private final BitGrid blocked;
+    private final int[] cellShapes;
+
+    private boolean[] gidSolid = new boolean[0];
+    private int[] gidShapes = new int[0];
+
+    private final List<float[]> setRects = new ArrayList<>();
+    private final List<float[]> setCircles = new ArrayList<>();
+    private final Map<Long, Integer> mergedSets = new HashMap<>();
+
+    private boolean isBoundsSolid = true;
+
+    private int version;
+
+    private final Rectangle tempBounds = new Rectangle();
+
+    /**
+     * Create a new {@link TileCollisionGrid} object, and compiles the collision data of the given map.
+     * 
+     * @param map
+     *            the map.
+     */
+    public TileCollisionGrid(TiledMap map) {
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.solid = new BitGrid(width, height);
+        this.blocked = new BitGrid(width, height);
+        this.cellShapes = new int[width * height];
+
+        rebuild();
+    }
+
+    /**
+     * Recompiles the collision data of all tiles and cells. Should be called after adding tile layers or tilesets to the map.
+     */
+    public void rebuild() {
+        layers.clear();
+        for (AbstractMapLayer layer : map.getLayers()) {
+            if (layer instanceof TileLayer && layer.getProperties().get(PROPERTY_COLLISION, Boolean.class, true))
+                layers.add((TileLayer) layer);
+        }
+
+        compileTiles();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                updateCell(x, y);
+        }
+        version++;
+    }
+
+    private void compileTiles() {
+        TilesetStore store = map.getTilesetStore();
+        int count = store.getGlobalIdCount();
+
+        gidSolid = new boolean[count];
+        gidShapes = new int[count];
+        setRects.clear();
+        setCircles.clear();
+        mergedSets.clear();
+
+        setRects.add(new float[0]); // Shape set 0 is always empty.
+        setCircles.add(new float[0]);
+
+        List<float[]> rects = new ArrayList<>();
+        List<float[]> circles = new ArrayList<>();
+
+        for (int gid = 1; gid < count; gid++) {
+            Tile tile = store.getTileByGlobalId(gid);
+            if (tile == null)
+                continue;
+
+            if (tile.getProperties().get(PROPERTY_SOLID, Boolean.class, false)) {
+                gidSolid[gid] = true;
+                continue;
+            }
+
+            rects.clear();
+            circles.clear();
+
+            for (MapObject obj : tile.getCollisionObjects()) {
+                AbstractBasicShape shape = obj.getShape();
+                if (shape == null)
+                    continue;
+
+                if (shape instanceof Circle) {
+                    Circle c = (Circle) shape;
+                    circles.add(new float[] { c.getX(), c.getY(), c.getRadius() });
+
+                } else {
+                    shape.getBounds(tempBounds);
+                    if (tempBounds.getX() <= EPSILON && tempBounds.getY() <= EPSILON && tempBounds.getX() + tempBounds.getWidth() >= 1 - EPSILON && tempBounds.getY() + tempBounds.getHeight() >= 1 - EPSILON && shape instanceof Rectangle) {
+                        gidSolid[gid] = true;
+                        break;
+                    }
+                    rects.add(new float[] { tempBounds.getX(), tempBounds.getY(), tempBounds.getWidth(), tempBounds.getHeight() });
+                }
+            }
+
+            if (!gidSolid[gid] && (!rects.isEmpty() || !circles.isEmpty()))
+                gidShapes[gid] = addShapeSet(flatten(rects, 4), flatten(circles, 3));
+        }
+    }
+
+    private static float[] flatten(List<float[]> list, int stride) {
+        float[] array = new float[list.size() * stride];
+        for (int i = 0; i < list.size(); i++)
+            System.arraycopy(list.get(i), 0, array, i * stride, stride);
+        return array;
+    }
+
+    private int addShapeSet(float[] rects, float[] circles) {
+        setRects.add(rects);
+        setCircles.add(circles);
+        return setRects.size() - 1;
+    }
+
+    /**
+     * Returns a shape set containing the shapes of both given sets. Merged sets are cached, so cells stacking the same tiles share one set.
+     */
+    private int mergeShapeSets(int a, int b) {
+        long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+
+        Integer merged = mergedSets.get(key);
+        if (merged == null) {
+            float[] rects = concat(setRects.get(a), setRects.get(b));
+            float[] circles = concat(setCircles.get(a), setCircles.get(b));
+
+            merged = addShapeSet(rects, circles);
+            mergedSets.put(key, merged);
+        }
+        return merged;
+    }
+
+    private static float[] concat(float[] a, float[] b) {
+        float[] array = new float[a.length + b.length];
+        System.arraycopy(a, 0, array, 0, a.length);
+        System.arraycopy(b, 0, array, a.length, b.length);
+        return array;
+    }
+
+    /**
+     * Recompiles the given cell from the tiles of all collision layers. This is called by the map when a tile changes.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the collision of the cell changed.
+     */
+    public boolean updateCell(int x, int y) {
+        if (!solid.isValid(x, y))
+            return false;
+
+        boolean isSolid = false;
+        int shapes = 0;
+
+        for (int i = 0; i < layers.size(); i++) {
+            int gid = layers.get(i).getTileAt(x, y);
+            if (gid <= 0 || gid >= gidSolid.length)
+                continue;
+
+            if (gidSolid[gid]) {
+                isSolid = true;
+                shapes = 0;
+                break;
+            }
+
+            int set = gidShapes[gid];
+            if (set != 0)
+                shapes = (shapes == 0) ? set : mergeShapeSets(shapes, set);
+        }
+
+        int index = x + y * width;
+        boolean changed = solid.set(index, isSolid);
+        changed |= blocked.set(index, isSolid || shapes != 0);
+        changed |= cellShapes[index] != shapes;
+        cellShapes[index] = shapes;
+
+        if (changed)
+            version++;
+        return changed;
+    }
+
+    /**
+     * Returns true if the given cell is fully solid. Cells outside the map are solid if {@link #isBoundsSolid()} is true.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given cell is fully solid.
+     */
+    public boolean isSolid(int x, int y) {
+        return solid.get(x, y, isBoundsSolid);
+    }
+
+    /**
+     * Returns true if the given cell contains any collision, either being fully solid or containing collision shapes. Cells outside the map are
+     * blocked if {@link #isBoundsSolid()} is true.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given cell contains any collision.
+     */
+    public boolean isBlocked(int x, int y) {
+        return blocked.get(x, y, isBoundsSolid);
+    }
+
+    /**
+     * Returns true if the given point is inside a solid cell or a collision shape.
+     * 
+     * @param x
+     *            the x position.
+     * @param y
+     *            the y position.
+     * @return true if the given point collides.
+     */
+    public boolean overlapsPoint(float x, float y) {
+        int cx = (int) Math.floor(x);
+        int cy = (int) Math.floor(y);
+
+        if (!solid.isValid(cx, cy))
+            return isBoundsSolid;
+        int index = cx + cy * width;
+        if (solid.get(index))
+            return true;
+
+        int set = cellShapes[index];
+        if (set == 0)
+            return false;
+
+        float lx = x - cx;
+        float ly = y - cy;
+
+        float[] rects = setRects.get(set);
+        for (int i = 0; i < rects.length; i += 4) {
+            if (lx >= rects[i] && ly >= rects[i + 1] && lx <= rects[i] + rects[i + 2] && ly <= rects[i + 1] + rects[i + 3])
+                return true;
+        }
+
+        float[] circles = setCircles.get(set);
+        for (int i = 0; i < circles.length; i += 3) {
+            float dx = lx - circles[i];
+            float dy = ly - circles[i + 1];
+            if (dx * dx + dy * dy < circles[i + 2] * circles[i + 2])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the given box overlaps a solid cell or a collision shape. Boxes only touching a shape don't overlap it.
+     * 
+     * @param x
+     *            x position of the box, top-left origin.
+     * @param y
+     *            y position of the box, top-left origin.
+     * @param w
+     *            the width of the box.
+     * @param h
+     *            the height of the box.
+     * @return true if the given box overlaps any collision.
+     */
+    public boolean overlapsBox(float x, float y, float w, float h) {
+        int minCx = (int) Math.floor(x);
+        int minCy = (int) Math.floor(y);
+        int maxCx = (int) Math.ceil(x + w) - 1;
+        int maxCy = (int) Math.ceil(y + h) - 1;
+
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+
+                if (!solid.isValid(cx, cy)) {
+                    if (isBoundsSolid)
+                        return true;
+                    continue;
+                }
+
+                int index = cx + cy * width;
+                if (solid.get(index))
+                    return true;
+
+                int set = cellShapes[index];
+                if (set == 0)
+                    continue;
+
+                float lx = x - cx;
+                float ly = y - cy;
+
+                float[] rects = setRects.get(set);
+                for (int i = 0; i < rects.length; i += 4) {
+                    if (lx < rects[i] + rects[i + 2] && lx + w > rects[i] && ly < rects[i + 1] + rects[i + 3] && ly + h > rects[i + 1])
+                        return true;
+                }
+
+                float[] circles = setCircles.get(set);
+                for (int i = 0; i < circles.length; i += 3) {
+                    float dx = circles[i] - Math.max(lx, Math.min(circles[i], lx + w));
+                    float dy = circles[i + 1] - Math.max(ly, Math.min(circles[i + 1], ly + h));
+                    if (dx * dx + dy * dy < circles[i + 2] * circles[i + 2])
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the given circle overlaps a solid cell or a collision shape.
+     * 
+     * @param cx
+     *            the center point of the circle along the x axis.
+     * @param cy
+     *            the center point of the circle along the y axis.
+     * @param radius
+     *            the radius of the circle.
+     * @return true if the given circle overlaps any collision.
+     */
+    public boolean overlapsCircle(float cx, float cy, float radius) {
+        int minCx = (int) Math.floor(cx - radius);
+        int minCy = (int) Math.floor(cy - radius);
+        int maxCx = (int) Math.ceil(cx + radius) - 1;
+        int maxCy = (int) Math.ceil(cy + radius) - 1;
+
+        float r2 = radius * radius;
+
+        for (int y = minCy; y <= maxCy; y++) {
+            for (int x = minCx; x <= maxCx; x++) {
+
+                boolean isValid = solid.isValid(x, y);
+                int index = x + y * width;
+
+                if ((!isValid && isBoundsSolid) || (isValid && solid.get(index))) {
+                    if (distanceSquaredToBox(cx, cy, x, y, 1, 1) < r2)
+                        return true;
+                    continue;
+                }
+                if (!isValid || cellShapes[index] == 0)
+                    continue;
+
+                int set = cellShapes[index];
+
+                float[] rects = setRects.get(set);
+                for (int i = 0; i < rects.length; i += 4) {
+                    if (distanceSquaredToBox(cx, cy, x + rects[i], y + rects[i + 1], rects[i + 2], rects[i + 3]) < r2)
+                        return true;
+                }
+
+                float[] circles = setCircles.get(set);
+                for (int i = 0; i < circles.length; i += 3) {
+                    float dx = cx - (x + circles[i]);
+                    float dy = cy - (y + circles[i + 1]);
+                    float r = radius + circles[i + 2];
+                    if (dx * dx + dy * dy < r * r)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static float distanceSquaredToBox(float px, float py, float x, float y, float w, float h) {
+        float dx = px - Math.max(x, Math.min(px, x + w));
+        float dy = py - Math.max(y, Math.min(py, y + h));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Sweeps the given box along the given movement and finds the first collision. Shapes the box already overlaps at the start of the movement are
+     * ignored, allowing objects to move out of them. Circle collision shapes are treated as their bounding boxes.
+     * 
+     * @param x
+     *            x position of the box, top-left origin.
+     * @param y
+     *            y position of the box, top-left origin.
+     * @param w
+     *            the width of the box.
+     * @param h
+     *            the height of the box.
+     * @param dx
+     *            the movement along the x axis.
+     * @param dy
+     *            the movement along the y axis.
+     * @param out
+     *            the result of the sweep, will be reset before use.
+     * @return true if the box hit something.
+     */
+    public boolean sweepBox(float x, float y, float w, float h, float dx, float dy, SweepResult out) {
+        out.reset();
+
+        int minCx = (int) Math.floor(Math.min(x, x + dx));
+        int minCy = (int) Math.floor(Math.min(y, y + dy));
+        int maxCx = (int) Math.ceil(Math.max(x + w, x + w + dx));
+        int maxCy = (int) Math.ceil(Math.max(y + h, y + h + dy));
+
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+
+                boolean isValid = solid.isValid(cx, cy);
+                int index = cx + cy * width;
+
+                if ((!isValid && isBoundsSolid) || (isValid && solid.get(index))) {
+                    sweepBoxAgainstBox(x, y, w, h, dx, dy, cx, cy, 1, 1, cx, cy, out);
+                    continue;
+                }
+                if (!isValid || cellShapes[index] == 0)
+                    continue;
+
+                int set = cellShapes[index];
+
+                float[] rects = setRects.get(set);
+                for (int i = 0; i < rects.length; i += 4)
+                    sweepBoxAgainstBox(x, y, w, h, dx, dy, cx + rects[i], cy + rects[i + 1], rects[i + 2], rects[i + 3], cx, cy, out);
+
+                float[] circles = setCircles.get(set);
+                for (int i = 0; i < circles.length; i += 3) {
+                    float r = circles[i + 2];
+                    sweepBoxAgainstBox(x, y, w, h, dx, dy, cx + circles[i] - r, cy + circles[i + 1] - r, r * 2, r * 2, cx, cy, out);
+                }
+            }
+        }
+        return out.hit;
+    }
+
+    /**
+     * Sweeps the given circle along the given movement and finds the first collision. Shapes the circle already overlaps at the start of the
+     * movement are ignored, allowing objects to move out of them. Collisions against solid cells and rectangles treat the circle as its bounding box.
+     * 
+     * @param cx
+     *            the center point of the circle along the x axis.
+     * @param cy
+     *            the center point of the circle along the y axis.
+     * @param radius
+     *            the radius of the circle.
+     * @param dx
+     *            the movement along the x axis.
+     * @param dy
+     *            the movement along the y axis.
+     * @param out
+     *            the result of the sweep, will be reset before use.
+     * @return true if the circle hit something.
+     */
+    public boolean sweepCircle(float cx, float cy, float radius, float dx, float dy, SweepResult out) {
+        out.reset();
+
+        float x = cx - radius;
+        float y = cy - radius;
+        float size = radius * 2;
+
+        int minCx = (int) Math.floor(Math.min(x, x + dx));
+        int minCy = (int) Math.floor(Math.min(y, y + dy));
+        int maxCx = (int) Math.ceil(Math.max(x + size, x + size + dx));
+        int maxCy = (int) Math.ceil(Math.max(y + size, y + size + dy));
+
+        for (int gy = minCy; gy <= maxCy; gy++) {
+            for (int gx = minCx; gx <= maxCx; gx++) {
+
+                boolean isValid = solid.isValid(gx, gy);
+                int index = gx + gy * width;
+
+                if ((!isValid && isBoundsSolid) || (isValid && solid.get(index))) {
+                    sweepBoxAgainstBox(x, y, size, size, dx, dy, gx, gy, 1, 1, gx, gy, out);
+                    continue;
+                }
+                if (!isValid || cellShapes[index] == 0)
+                    continue;
+
+                int set = cellShapes[index];
+
+                float[] rects = setRects.get(set);
+                for (int i = 0; i < rects.length; i += 4)
+                    sweepBoxAgainstBox(x, y, size, size, dx, dy, gx + rects[i], gy + rects[i + 1], rects[i + 2], rects[i + 3], gx, gy, out);
+
+                float[] circles = setCircles.get(set);
+                for (int i = 0; i < circles.length; i += 3)
+                    sweepCircleAgainstCircle(cx, cy, radius, dx, dy, gx + circles[i], gy + circles[i + 1], circles[i + 2], gx, gy, out);
+            }
+        }
+        return out.hit;
+    }
+
+    /**
+     * Sweeps box b against the static box a, using a ray cast against a expanded by the size of b.
+     */
+    private static void sweepBoxAgainstBox(float bx, float by, float bw, float bh, float dx, float dy, float ax, float ay, float aw, float ah, int cellX, int cellY, SweepResult out) {
+        float minX = ax - bw;
+        float minY = ay - bh;
+        float maxX = ax + aw;
+        float maxY = ay + ah;
+
+        float txEntry, txExit, tyEntry, tyExit;
+
+        if (dx > 0) {
+            txEntry = (minX - bx) / dx;
+            txExit = (maxX - bx) / dx;
+        } else if (dx < 0) {
+            txEntry = (maxX - bx) / dx;
+            txExit = (minX - bx) / dx;
+        } else {
+            if (bx <= minX || bx >= maxX)
+                return;
+            txEntry = Float.NEGATIVE_INFINITY;
+            txExit = Float.POSITIVE_INFINITY;
+        }
+
+        if (dy > 0) {
+            tyEntry = (minY - by) / dy;
+            tyExit = (maxY - by) / dy;
+        } else if (dy < 0) {
+            tyEntry = (maxY - by) / dy;
+            tyExit = (minY - by) / dy;
+        } else {
+            if (by <= minY || by >= maxY)
+                return;
+            tyEntry = Float.NEGATIVE_INFINITY;
+            tyExit = Float.POSITIVE_INFINITY;
+        }
+
+        float entry = Math.max(txEntry, tyEntry);
+        float exit = Math.min(txExit, tyExit);
+
+        if (entry >= exit || entry < 0 || entry > 1) // Missed, already overlapping, or out of reach.
+            return;
+
+        if (txEntry > tyEntry) {
+            out.offer(entry, -Math.signum(dx), 0, cellX, cellY);
+        } else {
+            out.offer(entry, 0, -Math.signum(dy), cellX, cellY);
+        }
+    }
+
+    private static void sweepCircleAgainstCircle(float cx, float cy, float radius, float dx, float dy, float ox, float oy, float oradius, int cellX, int cellY, SweepResult out) {
+        float r = radius + oradius;
+        float px = cx - ox;
+        float py = cy - oy;
+
+        float c = px * px + py * py - r * r;
+        if (c < 0) // Already overlapping.
+            return;
+
+        float a = dx * dx + dy * dy;
+        float b = px * dx + py * dy;
+        if (a == 0 || b >= 0) // Not moving, or moving away.
+            return;
+
+        float discriminant = b * b - a * c;
+        if (discriminant < 0)
+            return;
+
+        float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        if (t < 0 || t > 1)
+            return;
+
+        out.offer(t, (px + dx * t) / r, (py + dy * t) / r, cellX, cellY);
+    }
+
+    /**
+     * Sets if cells outside the map are treated as fully solid. Enabled by default.
+     * 
+     * @param isBoundsSolid
+     *            true to treat cells outside the map as solid.
+     */
+    public void setBoundsSolid(boolean isBoundsSolid) {
+        this.isBoundsSolid = isBoundsSolid;
+    }
+
+    /**
+     * Returns true if cells outside the map are treated as fully solid.
+     * 
+     * @return true if cells outside the map are treated as fully solid.
+     */
+    public boolean isBoundsSolid() {
+        return isBoundsSolid;
+    }
+
+    /**
+     * Returns the packed grid of fully solid cells. The returned grid is live and must not be modified.
+     * 
+     * @return the packed grid of fully solid cells.
+     */
+    public BitGrid getSolidGrid() {
+        return solid;
+    }
+
+    /**
+     * Returns the packed grid of cells containing any collision (fully solid or collision shapes). The returned grid is live and must not be
+     * modified.
+     * 
+     * @return the packed grid of cells containing any collision.
+     */
+    public BitGrid getBlockedGrid() {
+        return blocked;
+    }
+
+    /**
+     * Returns a counter that is incremented each time the collision of any cell changes. Can be used to detect if cached data derived from this grid
+     * is stale.
+     * 
+     * @return the version of this grid.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the map this grid was compiled from.
+     * 
+     * @return the map this grid was compiled from.
+     */
+    public TiledMap getMap() {
+        return map;
+    }
+
+    /**
+     * Returns the number of cells in width.
+     * 
+     * @return the number of cells in width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of cells in height.
+     * 
+     * @return the number of cells in height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, layers=%s, shapeSets=%s, isBoundsSolid=%s, version=%s]", getClass().getSimpleName(), width, height, layers.size(), setRects.size(), isBoundsSolid, version);
+    }
+
+}
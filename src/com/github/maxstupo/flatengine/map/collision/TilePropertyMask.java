@@ -0,0 +1,128 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.layer.AbstractMapLayer;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.map.tile.Tile;
+import com.github.maxstupo.flatengine.map.tile.TilesetStore;
+import com.github.maxstupo.flatengine.util.BitGrid;
+
+/**
+ * This class packs a boolean tile property (e.g. <code>opaque</code>) of all {@link TileLayer}s of a map into a {@link BitGrid}. A cell is set if any
+ * tile layer has a tile at that cell with the property set to true. The mask is kept in sync with {@link TileLayer#setTileAt(int, int, int)} until
+ * {@link #dispose()} is called.
+ * 
+ * @author Maxstupo
+ */
+public class TilePropertyMask implements ITileChangeListener {
+
+    private final TiledMap map;
+    private final String property;
+
+    private final BitGrid grid;
+    private final List<TileLayer> layers = new ArrayList<>();
+
+    private boolean[] gidValues = new boolean[0];
+
+    private int version;
+
+    /**
+     * Create a new {@link TilePropertyMask} object, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param property
+     *            the boolean tile property.
+     */
+    public TilePropertyMask(TiledMap map, String property) {
+        this.map = map;
+        this.property = property;
+        this.grid = new BitGrid(map.getWidth(), map.getHeight());
+
+        rebuild();
+        map.addTileListener(this);
+    }
+
+    /**
+     * Recompiles the property of all tiles and cells. Should be called after adding tile layers or tilesets to the map.
+     */
+    public void rebuild() {
+        layers.clear();
+        for (AbstractMapLayer layer : map.getLayers()) {
+            if (layer instanceof TileLayer)
+                layers.add((TileLayer) layer);
+        }
+
+        TilesetStore store = map.getTilesetStore();
+        gidValues = new boolean[store.getGlobalIdCount()];
+        for (int gid = 1; gid < gidValues.length; gid++) {
+            Tile tile = store.getTileByGlobalId(gid);
+            gidValues[gid] = tile != null && tile.getProperties().get(property, Boolean.class, false);
+        }
+
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++)
+                updateCell(x, y);
+        }
+        version++;
+    }
+
+    private boolean updateCell(int x, int y) {
+        boolean value = false;
+        for (int i = 0; i < layers.size() && !value; i++) {
+            int gid = layers.get(i).getTileAt(x, y);
+            value = gid > 0 && gid < gidValues.length && gidValues[gid];
+        }
+        return grid.set(x, y, value);
+    }
+
+    @Override
+    public void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        if (updateCell(x, y))
+            version++;
+    }
+
+    /**
+     * Unregisters this mask from the map, it will no longer be kept in sync.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+    }
+
+    /**
+     * Returns the packed grid of cells with the property set. The returned grid is live and must not be modified.
+     * 
+     * @return the packed grid of cells with the property set.
+     */
+    public BitGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the tile property this mask represents.
+     * 
+     * @return the tile property this mask represents.
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Returns a counter that is incremented each time any cell of this mask changes.
+     * 
+     * @return the version of this mask.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [map=%s, property=%s, grid=%s]", getClass().getSimpleName(), map, property, grid);
+    }
+
+}
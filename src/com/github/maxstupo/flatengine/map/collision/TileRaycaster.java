@@ -0,0 +1,318 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.util.BitGrid;
+
+/**
+ * This class casts rays through a packed grid of blocked cells using grid traversal (DDA), visiting each cell along the ray exactly once. The grid
+ * can be the blocked or solid grid of a {@link TileCollisionGrid}, the grid of a {@link TilePropertyMask} (e.g. <code>opaque</code> tiles), or any
+ * other {@link BitGrid}.
+ * <p>
+ * Rays can be cast one at a time into a {@link RaycastHit}, or in batches using packed float arrays which can be processed in parallel. Casting rays
+ * never allocates (except for the fork/join tasks of parallel batches), and is safe to do from multiple threads as long as the grid isn't modified.
+ * <p>
+ * All positions and distances are measured in tiles.
+ * 
+ * @author Maxstupo
+ */
+public class TileRaycaster {
+
+    /** The number of floats per ray in a batch: origin x, origin y, direction x, direction y, max distance. */
+    public static final int RAY_STRIDE = 5;
+
+    /** The number of floats per result in a batch: distance (-1 if nothing was hit), cell x, cell y, normal x, normal y. */
+    public static final int HIT_STRIDE = 5;
+
+    /** The number of floats per segment in a line of sight batch: start x, start y, end x, end y. */
+    public static final int SEGMENT_STRIDE = 4;
+
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private final BitGrid grid;
+
+    private boolean isBoundsSolid = true;
+
+    /**
+     * Create a new {@link TileRaycaster} object that casts rays against the blocked cells of the given collision grid.
+     * 
+     * @param collisionGrid
+     *            the collision grid.
+     */
+    public TileRaycaster(TileCollisionGrid collisionGrid) {
+        this(collisionGrid.getBlockedGrid());
+        setBoundsSolid(collisionGrid.isBoundsSolid());
+    }
+
+    /**
+     * Create a new {@link TileRaycaster} object.
+     * 
+     * @param grid
+     *            the grid of blocked cells, it isn't copied so changes to it are visible to later rays.
+     */
+    public TileRaycaster(BitGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Casts a ray and stores the first blocked cell hit in the given result.
+     * 
+     * @param originX
+     *            the x position the ray starts at.
+     * @param originY
+     *            the y position the ray starts at.
+     * @param dirX
+     *            the x direction of the ray, doesn't need to be normalized.
+     * @param dirY
+     *            the y direction of the ray, doesn't need to be normalized.
+     * @param maxDistance
+     *            the max distance the ray can travel.
+     * @param out
+     *            the result of the ray, will be reset before use.
+     * @return true if the ray hit a blocked cell.
+     */
+    public boolean raycast(float originX, float originY, float dirX, float dirY, float maxDistance, RaycastHit out) {
+        out.reset();
+        return cast(originX, originY, dirX, dirY, maxDistance, out, null, 0);
+    }
+
+    /**
+     * Returns true if there are no blocked cells between the two given points.
+     * 
+     * @param x0
+     *            the x position of the first point.
+     * @param y0
+     *            the y position of the first point.
+     * @param x1
+     *            the x position of the second point.
+     * @param y1
+     *            the y position of the second point.
+     * @return true if there are no blocked cells between the two given points.
+     */
+    public boolean hasLineOfSight(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+        if (distance == 0)
+            return !isBlocked((int) Math.floor(x0), (int) Math.floor(y0));
+        return !cast(x0, y0, dx, dy, distance, null, null, 0);
+    }
+
+    /**
+     * Casts a batch of rays. Each ray is read from the rays array at <code>i * {@value #RAY_STRIDE}</code>, and each result is written to the results
+     * array at <code>i * {@value #HIT_STRIDE}</code>.
+     * 
+     * @param rays
+     *            the packed rays, see {@link #RAY_STRIDE}.
+     * @param results
+     *            the packed results, see {@link #HIT_STRIDE}.
+     * @param count
+     *            the number of rays to cast.
+     * @param parallel
+     *            true to split the batch over the common {@link ForkJoinPool}, worthwhile for large batches.
+     */
+    public void raycastAll(float[] rays, float[] results, int count, boolean parallel) {
+        if (parallel && count > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BatchTask(rays, results, null, 0, count));
+        } else {
+            raycastRange(rays, results, 0, count);
+        }
+    }
+
+    /**
+     * Tests line of sight for a batch of segments. Each segment is read from the segments array at <code>i * {@value #SEGMENT_STRIDE}</code>, and the
+     * result is written to <code>results[i]</code>.
+     * 
+     * @param segments
+     *            the packed segments, see {@link #SEGMENT_STRIDE}.
+     * @param results
+     *            the results, true if the segment has line of sight.
+     * @param count
+     *            the number of segments to test.
+     * @param parallel
+     *            true to split the batch over the common {@link ForkJoinPool}, worthwhile for large batches.
+     */
+    public void lineOfSightAll(float[] segments, boolean[] results, int count, boolean parallel) {
+        if (parallel && count > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BatchTask(segments, null, results, 0, count));
+        } else {
+            lineOfSightRange(segments, results, 0, count);
+        }
+    }
+
+    private void raycastRange(float[] rays, float[] results, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int r = i * RAY_STRIDE;
+            cast(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], null, results, i * HIT_STRIDE);
+        }
+    }
+
+    private void lineOfSightRange(float[] segments, boolean[] results, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int s = i * SEGMENT_STRIDE;
+            results[i] = hasLineOfSight(segments[s], segments[s + 1], segments[s + 2], segments[s + 3]);
+        }
+    }
+
+    /**
+     * Traverses the grid along the ray. The hit is written into the given result object or packed array when not null.
+     */
+    private boolean cast(float ox, float oy, float dx, float dy, float maxDistance, RaycastHit hit, float[] results, int offset) {
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+
+        int cx = (int) Math.floor(ox);
+        int cy = (int) Math.floor(oy);
+
+        if (isBlocked(cx, cy))
+            return store(0, cx, cy, 0, 0, hit, results, offset);
+
+        if (length == 0)
+            return miss(results, offset);
+
+        dx /= length;
+        dy /= length;
+
+        int stepX = (dx > 0) ? 1 : -1;
+        int stepY = (dy > 0) ? 1 : -1;
+
+        float deltaX = (dx != 0) ? Math.abs(1f / dx) : Float.POSITIVE_INFINITY;
+        float deltaY = (dy != 0) ? Math.abs(1f / dy) : Float.POSITIVE_INFINITY;
+
+        float maxX = (dx != 0) ? ((dx > 0) ? (cx + 1 - ox) : (ox - cx)) * deltaX : Float.POSITIVE_INFINITY;
+        float maxY = (dy != 0) ? ((dy > 0) ? (cy + 1 - oy) : (oy - cy)) * deltaY : Float.POSITIVE_INFINITY;
+
+        while (true) {
+            float t;
+            float nx = 0;
+            float ny = 0;
+
+            if (maxX < maxY) {
+                t = maxX;
+                cx += stepX;
+                maxX += deltaX;
+                nx = -stepX;
+            } else {
+                t = maxY;
+                cy += stepY;
+                maxY += deltaY;
+                ny = -stepY;
+            }
+
+            if (t > maxDistance)
+                return miss(results, offset);
+
+            if (!grid.isValid(cx, cy)) {
+                if (isBoundsSolid)
+                    return store(t, cx, cy, nx, ny, hit, results, offset);
+                return miss(results, offset);
+            }
+
+            if (grid.get(cx + cy * grid.getWidth()))
+                return store(t, cx, cy, nx, ny, hit, results, offset);
+        }
+    }
+
+    private static boolean store(float distance, int cx, int cy, float nx, float ny, RaycastHit hit, float[] results, int offset) {
+        if (hit != null) {
+            hit.hit = true;
+            hit.distance = distance;
+            hit.cellX = cx;
+            hit.cellY = cy;
+            hit.normalX = nx;
+            hit.normalY = ny;
+        }
+        if (results != null) {
+            results[offset] = distance;
+            results[offset + 1] = cx;
+            results[offset + 2] = cy;
+            results[offset + 3] = nx;
+            results[offset + 4] = ny;
+        }
+        return true;
+    }
+
+    private static boolean miss(float[] results, int offset) {
+        if (results != null) {
+            results[offset] = -1;
+            results[offset + 1] = results[offset + 2] = results[offset + 3] = results[offset + 4] = 0;
+        }
+        return false;
+    }
+
+    private boolean isBlocked(int cx, int cy) {
+        return grid.get(cx, cy, isBoundsSolid);
+    }
+
+    /**
+     * Sets if cells outside the grid block rays. Enabled by default, if disabled rays leaving the grid hit nothing.
+     * 
+     * @param isBoundsSolid
+     *            true to treat cells outside the grid as blocked.
+     */
+    public void setBoundsSolid(boolean isBoundsSolid) {
+        this.isBoundsSolid = isBoundsSolid;
+    }
+
+    /**
+     * Returns true if cells outside the grid block rays.
+     * 
+     * @return true if cells outside the grid block rays.
+     */
+    public boolean isBoundsSolid() {
+        return isBoundsSolid;
+    }
+
+    /**
+     * Returns the grid of blocked cells rays are cast against.
+     * 
+     * @return the grid of blocked cells.
+     */
+    public BitGrid getGrid() {
+        return grid;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [grid=%s, isBoundsSolid=%s]", getClass().getSimpleName(), grid, isBoundsSolid);
+    }
+
+    /**
+     * Splits a batch into halves until it is small enough to process directly.
+     */
+    private class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float[] input;
+        private final float[] hits;
+        private final boolean[] sights;
+        private final int start;
+        private final int end;
+
+        BatchTask(float[] input, float[] hits, boolean[] sights, int start, int end) {
+            this.input = input;
+            this.hits = hits;
+            this.sights = sights;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                if (hits != null) {
+                    raycastRange(input, hits, start, end);
+                } else {
+                    lineOfSightRange(input, sights, start, end);
+                }
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new BatchTask(input, hits, sights, start, mid), new BatchTask(input, hits, sights, mid, end));
+        }
+    }
+
+}
@@ -0,0 +1,397 @@
+package com.github.maxstupo.flatengine.map.fov;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.map.Camera;
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TileOverlay;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.collision.TilePropertyMask;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.map.light.LightMap;
+import com.github.maxstupo.flatengine.util.BitGrid;
+
+/**
+ * This class tracks which tiles of a map are visible to, and have been explored by, a set of {@link Viewer}s. The field of view of each viewer is
+ * computed with a {@link ShadowCaster} over the tiles with the {@value LightMap#PROPERTY_OPAQUE} property set to true.
+ * <p>
+ * Each tile stores how many viewers can see it, so {@link #update()} only recomputes the viewers that moved to another tile, or that are near a
+ * tile that changed opacity, and only touches the tiles they gained or lost. When many viewers need recomputing they are computed in parallel.
+ * <p>
+ * The fog is rendered as a cached {@link TileOverlay}, and should be rendered between {@link TiledMap#renderBackgroundLayers(Graphics2D, Camera)} and
+ * {@link TiledMap#renderForegroundLayers(Graphics2D, Camera)}.
+ * 
+ * @author Maxstupo
+ */
+public class FogOfWar implements ITileChangeListener {
+
+    /** The default color of tiles that have never been seen. */
+    public static final Color DEFAULT_UNEXPLORED_COLOR = Color.BLACK;
+
+    /** The default color of tiles that have been seen, but aren't currently visible. */
+    public static final Color DEFAULT_EXPLORED_COLOR = new Color(0, 0, 0, 160);
+
+    /** The minimum number of viewers to recompute before the work is split over multiple threads. */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    private final TiledMap map;
+    private final TilePropertyMask opaque;
+    private final int width;
+    private final int height;
+
+    private final List<Viewer> viewers = new ArrayList<>();
+    private Viewer[] pending = new Viewer[0];
+
+    private final BitGrid visible;
+    private final BitGrid explored;
+    private final int[] visibleCounts;
+
+    private final ThreadLocal<ShadowCaster> casters;
+
+    private final TileOverlay overlay;
+    private int unexploredPixel;
+    private int exploredPixel;
+
+    private int opaqueVersion;
+
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+
+    /**
+     * Create a new {@link FogOfWar} object with no tiles explored, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     */
+    public FogOfWar(TiledMap map) {
+        this.map = map;
+        this.opaque = new TilePropertyMask(map, LightMap.PROPERTY_OPAQUE);
+        this.opaqueVersion = opaque.getVersion();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+
+        this.visible = new BitGrid(width, height);
+        this.explored = new BitGrid(width, height);
+        this.visibleCounts = new int[width * height];
+
+        final BitGrid grid = opaque.getGrid();
+        this.casters = ThreadLocal.withInitial(() -> new ShadowCaster(grid));
+
+        this.overlay = new TileOverlay(width, height, true);
+        this.unexploredPixel = DEFAULT_UNEXPLORED_COLOR.getRGB();
+        this.exploredPixel = DEFAULT_EXPLORED_COLOR.getRGB();
+        Arrays.fill(overlay.getPixels(), unexploredPixel);
+        overlay.markAllDirty();
+        flushDirty();
+
+        map.addTileListener(this);
+    }
+
+    /**
+     * Adds the given viewer to this fog of war, its field of view will be computed by the next {@link #update()}.
+     * 
+     * @param viewer
+     *            the viewer.
+     * @return false if the viewer already belongs to a fog of war.
+     */
+    public boolean addViewer(Viewer viewer) {
+        if (viewer.getOwner() != null)
+            return false;
+        viewer.setOwner(this);
+        viewer.dirty = true;
+        viewers.add(viewer);
+        return true;
+    }
+
+    /**
+     * Removes the given viewer from this fog of war, the tiles only it could see are hidden immediately.
+     * 
+     * @param viewer
+     *            the viewer.
+     * @return false if the viewer doesn't belong to this fog of war.
+     */
+    public boolean removeViewer(Viewer viewer) {
+        if (viewer.getOwner() != this)
+            return false;
+        viewers.remove(viewer);
+        viewer.setOwner(null);
+
+        hide(viewer.cells, viewer.cellCount);
+        viewer.cellCount = 0;
+        flushDirty();
+        return true;
+    }
+
+    /**
+     * Recomputes the field of view of all viewers that have moved to another tile, changed view distance or are near a tile that changed opacity.
+     * Called by {@link #render(Graphics2D, Camera)}, but can be called earlier to query visibility.
+     */
+    public void update() {
+        int count = 0;
+        for (int i = 0; i < viewers.size(); i++) {
+            Viewer viewer = viewers.get(i);
+            if (!viewer.dirty)
+                continue;
+            if (count == pending.length)
+                pending = Arrays.copyOf(pending, Math.max(16, count * 2));
+            pending[count++] = viewer;
+        }
+        if (count == 0)
+            return;
+
+        if (count >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new ComputeTask(0, count));
+        } else {
+            computeRange(0, count);
+        }
+
+        for (int i = 0; i < count; i++) { // Applying the changes touches shared state, so is done on this thread.
+            Viewer viewer = pending[i];
+            pending[i] = null;
+
+            hide(viewer.cells, viewer.cellCount);
+            reveal(viewer.nextCells, viewer.nextCellCount);
+
+            int[] cells = viewer.cells;
+            viewer.cells = viewer.nextCells;
+            viewer.cellCount = viewer.nextCellCount;
+            viewer.nextCells = cells;
+            viewer.nextCellCount = 0;
+            viewer.dirty = false;
+        }
+        flushDirty();
+    }
+
+    private void computeRange(int start, int end) {
+        ShadowCaster caster = casters.get();
+
+        for (int i = start; i < end; i++) {
+            Viewer viewer = pending[i];
+            int count = caster.compute(viewer.getX(), viewer.getY(), viewer.getRadius());
+
+            if (viewer.nextCells.length < count)
+                viewer.nextCells = new int[count];
+            System.arraycopy(caster.getCells(), 0, viewer.nextCells, 0, count);
+            viewer.nextCellCount = count;
+        }
+    }
+
+    private void hide(int[] cells, int count) {
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (--visibleCounts[cell] == 0) {
+                visible.set(cell, false);
+                setPixel(cell, exploredPixel);
+            }
+        }
+    }
+
+    private void reveal(int[] cells, int count) {
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (visibleCounts[cell]++ == 0) {
+                visible.set(cell, true);
+                explored.set(cell, true);
+                setPixel(cell, 0);
+            }
+        }
+    }
+
+    private void setPixel(int cell, int pixel) {
+        int[] pixels = overlay.getPixels();
+        if (pixels[cell] == pixel)
+            return;
+        pixels[cell] = pixel;
+
+        int x = cell % width;
+        int y = cell / width;
+        dirtyMinX = Math.min(dirtyMinX, x);
+        dirtyMinY = Math.min(dirtyMinY, y);
+        dirtyMaxX = Math.max(dirtyMaxX, x + 1);
+        dirtyMaxY = Math.max(dirtyMaxY, y + 1);
+    }
+
+    private void flushDirty() {
+        if (dirtyMinX < dirtyMaxX)
+            overlay.markDirty(dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY);
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        if (opaque.getVersion() == opaqueVersion) // The change didn't affect an occluder.
+            return;
+        opaqueVersion = opaque.getVersion();
+
+        for (int i = 0; i < viewers.size(); i++) {
+            Viewer viewer = viewers.get(i);
+            if (Math.abs(viewer.getX() - x) <= viewer.getRadius() && Math.abs(viewer.getY() - y) <= viewer.getRadius())
+                viewer.dirty = true;
+        }
+    }
+
+    /**
+     * Renders the fog over the map using the given camera, after calling {@link #update()}.
+     * 
+     * @param g
+     *            the graphics context to render to.
+     * @param camera
+     *            the camera.
+     */
+    public void render(Graphics2D g, Camera camera) {
+        update();
+        overlay.render(g, camera);
+    }
+
+    /**
+     * Marks every tile as unexplored, tiles currently visible stay explored.
+     */
+    public void resetExplored() {
+        explored.set(visible);
+
+        int[] pixels = overlay.getPixels();
+        for (int i = 0; i < visibleCounts.length; i++)
+            pixels[i] = visible.get(i) ? 0 : unexploredPixel;
+        overlay.markAllDirty();
+    }
+
+    /**
+     * Sets the colors used to render tiles that aren't currently visible.
+     * 
+     * @param unexplored
+     *            the color of tiles that have never been seen.
+     * @param explored
+     *            the color of tiles that have been seen, but aren't currently visible.
+     * @throws IllegalArgumentException
+     *             if either color is null.
+     */
+    public void setColors(Color unexplored, Color explored) throws IllegalArgumentException {
+        if (unexplored == null || explored == null)
+            throw new IllegalArgumentException("colors can't be null!");
+        this.unexploredPixel = unexplored.getRGB();
+        this.exploredPixel = explored.getRGB();
+
+        int[] pixels = overlay.getPixels();
+        for (int i = 0; i < visibleCounts.length; i++) {
+            if (!this.visible.get(i))
+                pixels[i] = this.explored.get(i) ? exploredPixel : unexploredPixel;
+        }
+        overlay.markAllDirty();
+    }
+
+    /**
+     * Returns true if the given tile is visible to any viewer.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given tile is visible to any viewer.
+     */
+    public boolean isVisible(int x, int y) {
+        return visible.get(x, y);
+    }
+
+    /**
+     * Returns true if the given tile has ever been visible.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given tile has ever been visible.
+     */
+    public boolean isExplored(int x, int y) {
+        return explored.get(x, y);
+    }
+
+    /**
+     * Returns the grid of tiles visible to any viewer. The returned grid is live and must not be modified.
+     * 
+     * @return the grid of tiles visible to any viewer.
+     */
+    public BitGrid getVisible() {
+        return visible;
+    }
+
+    /**
+     * Returns the grid of tiles that have ever been visible. The returned grid is live and must not be modified.
+     * 
+     * @return the grid of tiles that have ever been visible.
+     */
+    public BitGrid getExplored() {
+        return explored;
+    }
+
+    /**
+     * Returns an unmodifiable view of the viewers of this fog of war.
+     * 
+     * @return an unmodifiable view of the viewers of this fog of war.
+     */
+    public List<Viewer> getViewers() {
+        return Collections.unmodifiableList(viewers);
+    }
+
+    /**
+     * Returns the mask of opaque tiles used by this fog of war.
+     * 
+     * @return the mask of opaque tiles used by this fog of war.
+     */
+    public TilePropertyMask getOpaqueMask() {
+        return opaque;
+    }
+
+    /**
+     * Unregisters this fog of war and its opaque mask from the map, they will no longer be kept in sync.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+        opaque.dispose();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, viewers=%s, visible=%s, explored=%s]", getClass().getSimpleName(), width, height, viewers.size(),
+                visible.cardinality(), explored.cardinality());
+    }
+
+    /**
+     * Splits the pending viewers over the common {@link ForkJoinPool}.
+     */
+    private class ComputeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        ComputeTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD / 2) {
+                computeRange(start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new ComputeTask(start, mid), new ComputeTask(mid, end));
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.github.maxstupo.flatengine.map.fov;
+
+import java.util.Arrays;
+
+import com.github.maxstupo.flatengine.util.BitGrid;
+
+/**
+ * This class computes the field of view of a tile using recursive shadowcasting. Each of the eight octants around the origin is scanned row by row
+ * outwards, and opaque tiles narrow the range of slopes scanned by the following rows. Opaque tiles are visible, but block the view behind them.
+ * <p>
+ * The visible tiles of the last computation are stored as cell indexes (<code>x + y * width</code>) within this caster. A caster isn't thread safe,
+ * each thread should use its own caster.
+ * 
+ * @author Maxstupo
+ */
+public class ShadowCaster {
+
+    /** Transforms the row and column of each octant into map offsets (xx, xy, yx, yy). */
+    private static final int[][] OCTANTS = { //
+            { 1, 0, 0, 1 }, { 0, 1, 1, 0 }, { 0, -1, 1, 0 }, { -1, 0, 0, 1 }, //
+            { -1, 0, 0, -1 }, { 0, -1, -1, 0 }, { 0, 1, -1, 0 }, { 1, 0, 0, -1 } };
+
+    private final BitGrid opaque;
+    private final int width;
+    private final int height;
+
+    private final int[] stamps;
+    private int stamp;
+
+    private int[] cells = new int[64];
+    private int count;
+
+    private int originX;
+    private int originY;
+    private int radius;
+    private int radiusSquared;
+
+    /**
+     * Create a new {@link ShadowCaster} object.
+     * 
+     * @param opaque
+     *            the grid of tiles that block the view.
+     */
+    public ShadowCaster(BitGrid opaque) {
+        this.opaque = opaque;
+        this.width = opaque.getWidth();
+        this.height = opaque.getHeight();
+        this.stamps = new int[width * height];
+    }
+
+    /**
+     * Computes the tiles visible from the given tile within the given radius. The result can be retrieved with {@link #getCells()} and
+     * {@link #getCount()}.
+     * 
+     * @param x
+     *            the x tile position of the origin.
+     * @param y
+     *            the y tile position of the origin.
+     * @param radius
+     *            the view distance, in tiles.
+     * @return the number of visible tiles.
+     */
+    public int compute(int x, int y, int radius) {
+        count = 0;
+        if (!opaque.isValid(x, y) || radius < 0)
+            return 0;
+
+        if (++stamp == 0) { // Stamp overflowed, old stamps could match again.
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+
+        this.originX = x;
+        this.originY = y;
+        this.radius = radius;
+        this.radiusSquared = radius * radius + radius; // Rounder edges than radius * radius.
+
+        add(x + y * width);
+        for (int[] octant : OCTANTS)
+            castLight(1, 1f, 0f, octant[0], octant[1], octant[2], octant[3]);
+        return count;
+    }
+
+    private void castLight(int row, float startSlope, float endSlope, int xx, int xy, int yx, int yy) {
+        if (startSlope < endSlope)
+            return;
+
+        float nextStart = 0;
+        for (int distance = row; distance <= radius; distance++) {
+            boolean blocked = false;
+            int dy = -distance;
+
+            for (int dx = -distance; dx <= 0; dx++) {
+                float leftSlope = (dx - 0.5f) / (dy + 0.5f);
+                float rightSlope = (dx + 0.5f) / (dy - 0.5f);
+
+                if (startSlope < rightSlope)
+                    continue;
+                if (endSlope > leftSlope)
+                    break;
+
+                int x = originX + dx * xx + dy * xy;
+                int y = originY + dx * yx + dy * yy;
+                boolean inside = x >= 0 && y >= 0 && x < width && y < height;
+
+                if (inside && dx * dx + dy * dy <= radiusSquared)
+                    add(x + y * width);
+
+                boolean wall = !inside || opaque.get(x + y * width);
+                if (blocked) {
+                    if (wall) {
+                        nextStart = rightSlope;
+                    } else {
+                        blocked = false;
+                        startSlope = nextStart;
+                    }
+                } else if (wall && distance < radius) {
+                    blocked = true;
+                    castLight(distance + 1, startSlope, leftSlope, xx, xy, yx, yy);
+                    nextStart = rightSlope;
+                }
+            }
+            if (blocked)
+                break;
+        }
+    }
+
+    private void add(int cell) {
+        if (stamps[cell] == stamp) // Tiles on the edge of two octants are visited twice.
+            return;
+        stamps[cell] = stamp;
+
+        if (count == cells.length)
+            cells = Arrays.copyOf(cells, count * 2);
+        cells[count++] = cell;
+    }
+
+    /**
+     * Returns the cell indexes (<code>x + y * width</code>) of the tiles visible from the last computation. Only the first {@link #getCount()}
+     * values are valid.
+     * 
+     * @return the cell indexes of the visible tiles.
+     */
+    public int[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the number of tiles visible from the last computation.
+     * 
+     * @return the number of tiles visible from the last computation.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the grid of tiles that block the view.
+     * 
+     * @return the grid of tiles that block the view.
+     */
+    public BitGrid getOpaque() {
+        return opaque;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, count=%s]", getClass().getSimpleName(), width, height, count);
+    }
+
+}
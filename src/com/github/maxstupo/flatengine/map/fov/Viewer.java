@@ -0,0 +1,143 @@
+package com.github.maxstupo.flatengine.map.fov;
+
+/**
+ * This class represents something that reveals a {@link FogOfWar} (e.g. a unit or a watchtower). Its field of view is only recomputed when it moves to
+ * another tile, changes view distance, or a tile it can see changes opacity.
+ * 
+ * @author Maxstupo
+ */
+public class Viewer {
+
+    private FogOfWar owner;
+
+    private int x;
+    private int y;
+    private int radius;
+
+    /** The cell indexes of the tiles currently revealed by this viewer. */
+    int[] cells = new int[0];
+    /** The number of tiles currently revealed by this viewer. */
+    int cellCount;
+
+    /** The cell indexes of the tiles computed by the pending update. */
+    int[] nextCells = new int[0];
+    /** The number of tiles computed by the pending update. */
+    int nextCellCount;
+
+    /** True if the field of view of this viewer needs to be recomputed. */
+    boolean dirty = true;
+
+    /**
+     * Create a new {@link Viewer} object.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @param radius
+     *            the view distance, in tiles.
+     * @throws IllegalArgumentException
+     *             if radius is negative.
+     */
+    public Viewer(int x, int y, int radius) throws IllegalArgumentException {
+        if (radius < 0)
+            throw new IllegalArgumentException("radius can't be negative: " + radius);
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+    }
+
+    /**
+     * Sets the tile position of this viewer.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     */
+    public void setPosition(int x, int y) {
+        if (this.x == x && this.y == y)
+            return;
+        this.x = x;
+        this.y = y;
+        dirty = true;
+    }
+
+    /**
+     * Sets the view distance of this viewer.
+     * 
+     * @param radius
+     *            the view distance, in tiles.
+     * @throws IllegalArgumentException
+     *             if radius is negative.
+     */
+    public void setRadius(int radius) throws IllegalArgumentException {
+        if (radius < 0)
+            throw new IllegalArgumentException("radius can't be negative: " + radius);
+        if (this.radius == radius)
+            return;
+        this.radius = radius;
+        dirty = true;
+    }
+
+    /**
+     * Sets the fog of war this viewer belongs to.
+     * 
+     * @param owner
+     *            the fog of war, or null if this viewer has been removed.
+     */
+    void setOwner(FogOfWar owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the fog of war this viewer belongs to.
+     * 
+     * @return the fog of war this viewer belongs to, or null if this viewer hasn't been added to a fog of war.
+     */
+    public FogOfWar getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the x tile position of this viewer.
+     * 
+     * @return the x tile position of this viewer.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y tile position of this viewer.
+     * 
+     * @return the y tile position of this viewer.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the view distance of this viewer, in tiles.
+     * 
+     * @return the view distance of this viewer, in tiles.
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns the number of tiles revealed by this viewer, as of the last {@link FogOfWar#update()}.
+     * 
+     * @return the number of tiles revealed by this viewer.
+     */
+    public int getVisibleCount() {
+        return cellCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [x=%s, y=%s, radius=%s, visibleCount=%s]", getClass().getSimpleName(), x, y, radius, cellCount);
+    }
+
+}
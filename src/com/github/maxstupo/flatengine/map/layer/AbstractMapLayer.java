@@ -22,6 +22,9 @@ public abstract class AbstractMapLayer {
     /** The id of this layer. */
     protected final String id;
 
+    /** Composites for each 8-bit alpha level, so changing the alpha every frame (e.g. fading) doesn't allocate. */
+    private static final AlphaComposite[] COMPOSITES = new AlphaComposite[256];
+
     private float alpha;
     private AlphaComposite composite;
 
@@ -93,7 +96,15 @@ public abstract class AbstractMapLayer {
      */
     public void setAlpha(float alpha) {
         this.alpha = UtilMath.clampF(alpha, 0, 1);
-        this.composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, this.alpha);
+        this.composite = getComposite(this.alpha);
+    }
+
+    private static AlphaComposite getComposite(float alpha) {
+        int level = Math.round(alpha * 255);
+        AlphaComposite composite = COMPOSITES[level];
+        if (composite == null) // Benign race, both threads create an equal composite.
+            COMPOSITES[level] = composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, level / 255f);
+        return composite;
     }
 
     /**
@@ -2,26 +2,56 @@ package com.github.maxstupo.flatengine.map.layer;
 
 import java.awt.Graphics2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.github.maxstupo.flatengine.map.Camera;
 import com.github.maxstupo.flatengine.map.MapProperties;
 import com.github.maxstupo.flatengine.map.TiledMap;
 import com.github.maxstupo.flatengine.map.object.MapObject;
 import com.github.maxstupo.flatengine.util.UtilGraphics;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+import com.github.maxstupo.flatengine.util.math.UtilMath;
 
 /**
- * This map layer class contains map objects, each object can have a shape. Rendering {@link ObjectLayer}s will render all objects using
- * {@link UtilGraphics#drawShape(Graphics2D, Camera, com.github.maxstupo.flatengine.util.math.AbstractBasicShape, java.awt.Color)
+ * This map layer class contains map objects, each object can have a shape. Rendering {@link ObjectLayer}s will render all objects within the camera
+ * viewport using {@link UtilGraphics#drawShape(Graphics2D, Camera, com.github.maxstupo.flatengine.util.math.AbstractBasicShape, java.awt.Color)
  * UtilGraphics.drawShape()}.
+ * <p>
+ * Objects are indexed by id, name and type as they are added, and the bounds of each object shape are stored in a static grid so rendering and area
+ * queries only visit nearby objects.
  * 
  * @author Maxstupo
  */
 public class ObjectLayer extends AbstractMapLayer {
 
+    /** The default size of each spatial index cell, in tiles. */
+    public static final int DEFAULT_CELL_SIZE = 8;
+
     private final List<MapObject> objects = new ArrayList<>();
 
+    private final Map<Integer, MapObject> objectsById = new HashMap<>();
+    private final Map<String, MapObject> objectsByName = new HashMap<>();
+    private final Map<String, List<MapObject>> objectsByType = new HashMap<>();
+
+    private int cellSize = DEFAULT_CELL_SIZE;
+    private int cellColumns;
+    private int cellRows;
+    private int[] cellStart = new int[0];
+    private int[] cellObjects = new int[0];
+
+    private float[] bounds = new float[0];
+    private int[] queryStamps = new int[0];
+    private int queryStamp;
+    private int[] queryResults = new int[0];
+
+    private boolean isIndexDirty = true;
+
+    private final Rectangle tempBounds = new Rectangle();
+
     /**
      * Create a new {@link ObjectLayer} object.
      * 
@@ -40,10 +70,187 @@ public class ObjectLayer extends AbstractMapLayer {
         super(map, id, alpha, isVisible, properties);
     }
 
+    /**
+     * Renders all map objects that are within the viewport of the given camera, in the order they were added.
+     */
     @Override
     public void render(Graphics2D g, Camera camera) {
-        for (MapObject obj : objects)
+        int count = query(camera.getX(), camera.getY(), camera.getViewportTileWidth(), camera.getViewportTileHeight());
+
+        for (int i = 0; i < count; i++) {
+            MapObject obj = objects.get(queryResults[i]);
             UtilGraphics.drawShape(g, camera, obj.getShape(), obj.getShapeColor());
+        }
+    }
+
+    /**
+     * Adds all map objects that have bounds overlapping the given rectangle to the given list, in the order they were added to this layer.
+     * 
+     * @param x
+     *            x position of the rectangle, top-left origin, in tiles.
+     * @param y
+     *            y position of the rectangle, top-left origin, in tiles.
+     * @param width
+     *            the width of the rectangle, in tiles.
+     * @param height
+     *            the height of the rectangle, in tiles.
+     * @param out
+     *            the list the map objects will be added to.
+     * @return the given list for chaining.
+     */
+    public List<MapObject> getObjectsInArea(float x, float y, float width, float height, List<MapObject> out) {
+        int count = query(x, y, width, height);
+        for (int i = 0; i < count; i++)
+            out.add(objects.get(queryResults[i]));
+        return out;
+    }
+
+    /**
+     * Queries the spatial index for all objects with bounds overlapping the given rectangle. The indexes of the objects are stored sorted in
+     * {@link #queryResults}.
+     * 
+     * @return the number of objects found.
+     */
+    private int query(float x, float y, float width, float height) {
+        if (isIndexDirty)
+            rebuildIndex();
+        if (objects.isEmpty())
+            return 0;
+
+        int minCx = UtilMath.clampI((int) Math.floor(x / cellSize), 0, cellColumns - 1);
+        int minCy = UtilMath.clampI((int) Math.floor(y / cellSize), 0, cellRows - 1);
+        int maxCx = UtilMath.clampI((int) Math.floor((x + width) / cellSize), 0, cellColumns - 1);
+        int maxCy = UtilMath.clampI((int) Math.floor((y + height) / cellSize), 0, cellRows - 1);
+
+        if (++queryStamp == 0) { // Stamp wrapped around, reset stamps to prevent false positives.
+            Arrays.fill(queryStamps, 0);
+            queryStamp = 1;
+        }
+
+        int count = 0;
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                int cell = cx + cy * cellColumns;
+
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int index = cellObjects[i];
+                    if (queryStamps[index] == queryStamp)
+                        continue;
+                    queryStamps[index] = queryStamp;
+
+                    int b = index * 4;
+                    if (bounds[b] > x + width || bounds[b + 1] > y + height || bounds[b + 2] < x || bounds[b + 3] < y)
+                        continue;
+
+                    queryResults[count++] = index;
+                }
+            }
+        }
+
+        Arrays.sort(queryResults, 0, count);
+        return count;
+    }
+
+    /**
+     * Rebuilds the static spatial index used for viewport culling and area queries. Map objects don't move, so the index only needs to be rebuilt
+     * after objects are added. This is called automatically when needed, but can be called after loading to avoid the cost on the first frame.
+     */
+    public void rebuildIndex() {
+        int count = objects.size();
+
+        if (bounds.length < count * 4) {
+            bounds = new float[count * 4];
+            queryStamps = new int[count];
+            queryResults = new int[count];
+        }
+
+        cellColumns = Math.max(1, (map.getWidth() + cellSize - 1) / cellSize);
+        cellRows = Math.max(1, (map.getHeight() + cellSize - 1) / cellSize);
+        int cells = cellColumns * cellRows;
+
+        // Counting pass to find the number of objects per cell, followed by a prefix sum into the cell start offsets.
+        cellStart = new int[cells + 1];
+        for (int i = 0; i < count; i++) {
+            MapObject obj = objects.get(i);
+            int b = i * 4;
+
+            if (obj.getShape() != null) {
+                obj.getShape().getBounds(tempBounds);
+                bounds[b] = tempBounds.getX();
+                bounds[b + 1] = tempBounds.getY();
+                bounds[b + 2] = tempBounds.getX() + tempBounds.getWidth();
+                bounds[b + 3] = tempBounds.getY() + tempBounds.getHeight();
+            } else { // Objects without shapes are never rendered or found by area queries.
+                bounds[b] = bounds[b + 1] = Float.POSITIVE_INFINITY;
+                bounds[b + 2] = bounds[b + 3] = Float.NEGATIVE_INFINITY;
+                continue;
+            }
+
+            forEachCell(b, cellStart, null, i);
+        }
+
+        for (int i = 0, total = 0; i <= cells; i++) {
+            int n = cellStart[i];
+            cellStart[i] = total;
+            total += n;
+        }
+
+        cellObjects = new int[cellStart[cells]];
+        int[] cursor = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < count; i++) {
+            if (objects.get(i).getShape() != null)
+                forEachCell(i * 4, cursor, cellObjects, i);
+        }
+
+        queryStamp = 0;
+        Arrays.fill(queryStamps, 0);
+        isIndexDirty = false;
+    }
+
+    /**
+     * Visits each cell the bounds starting at the given offset overlap. If items is null the counter of each cell is incremented, otherwise the
+     * given index is written into items at the position of the cell counter.
+     */
+    private void forEachCell(int b, int[] counters, int[] items, int index) {
+        int minCx = UtilMath.clampI((int) Math.floor(bounds[b] / cellSize), 0, cellColumns - 1);
+        int minCy = UtilMath.clampI((int) Math.floor(bounds[b + 1] / cellSize), 0, cellRows - 1);
+        int maxCx = UtilMath.clampI((int) Math.floor(bounds[b + 2] / cellSize), 0, cellColumns - 1);
+        int maxCy = UtilMath.clampI((int) Math.floor(bounds[b + 3] / cellSize), 0, cellRows - 1);
+
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                int cell = cx + cy * cellColumns;
+                if (items == null) {
+                    counters[cell]++;
+                } else {
+                    items[counters[cell]++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the size of each spatial index cell in tiles. Layers with many small objects benefit from smaller cells.
+     * 
+     * @param cellSize
+     *            the size of each cell in tiles, must be greater than zero.
+     * @throws IllegalArgumentException
+     *             if the given size is less than one.
+     */
+    public void setCellSize(int cellSize) throws IllegalArgumentException {
+        if (cellSize < 1)
+            throw new IllegalArgumentException("Cell size must be greater than zero: " + cellSize);
+        this.cellSize = cellSize;
+        this.isIndexDirty = true;
+    }
+
+    /**
+     * Returns the size of each spatial index cell in tiles.
+     * 
+     * @return the size of each spatial index cell in tiles.
+     */
+    public int getCellSize() {
+        return cellSize;
     }
 
     /**
@@ -51,16 +258,11 @@ public class ObjectLayer extends AbstractMapLayer {
      * 
      * @param type
      *            the type.
-     * @return a new list of all map objects with the given type.
+     * @return an unmodifiable list of all map objects with the given type, in the order they were added.
      */
     public List<MapObject> getAllOfType(String type) {
-        List<MapObject> list = new ArrayList<>();
-
-        for (MapObject obj : objects) {
-            if (obj.getType().equals(type))
-                list.add(obj);
-        }
-        return list;
+        List<MapObject> list = objectsByType.get(type);
+        return (list != null) ? Collections.unmodifiableList(list) : Collections.<MapObject> emptyList();
     }
 
     /**
@@ -71,11 +273,7 @@ public class ObjectLayer extends AbstractMapLayer {
      * @return the first map object with the given name.
      */
     public MapObject getByName(String name) {
-        for (MapObject obj : objects) {
-            if (obj.getName().equals(name))
-                return obj;
-        }
-        return null;
+        return objectsByName.get(name);
     }
 
     /**
@@ -86,11 +284,7 @@ public class ObjectLayer extends AbstractMapLayer {
      * @return the first map object with the given id.
      */
     public MapObject getById(int id) {
-        for (MapObject obj : objects) {
-            if (obj.getId() == id)
-                return obj;
-        }
-        return null;
+        return objectsById.get(id);
     }
 
     /**
@@ -100,8 +294,23 @@ public class ObjectLayer extends AbstractMapLayer {
      *            the map object to add.
      */
     public void addObject(MapObject obj) {
-        if (obj != null)
-            objects.add(obj);
+        if (obj == null)
+            return;
+        objects.add(obj);
+
+        if (!objectsById.containsKey(obj.getId()))
+            objectsById.put(obj.getId(), obj);
+        if (!objectsByName.containsKey(obj.getName()))
+            objectsByName.put(obj.getName(), obj);
+
+        List<MapObject> bucket = objectsByType.get(obj.getType());
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            objectsByType.put(obj.getType(), bucket);
+        }
+        bucket.add(obj);
+
+        isIndexDirty = true;
     }
 
     /**
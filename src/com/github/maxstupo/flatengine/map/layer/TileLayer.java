@@ -58,7 +58,8 @@ public class TileLayer extends AbstractMapLayer {
     }
 
     /**
-     * Sets the tile at the given x,y position.
+     * Sets the tile at the given x,y position. If the tile changed the map is notified via
+     * {@link TiledMap#fireTileChanged(TileLayer, int, int, int, int)}.
      * 
      * @param x
      *            the x tile position.
@@ -70,7 +71,28 @@ public class TileLayer extends AbstractMapLayer {
     public void setTileAt(int x, int y, int gid) {
         if (!Util.isValid(tiles, x, y))
             return;
+
+        int oldGid = tiles[x][y];
+        if (oldGid == gid)
+            return;
+
         tiles[x][y] = gid;
+        map.fireTileChanged(this, x, y, oldGid, gid);
+    }
+
+    /**
+     * Returns the global id of the tile at the given x,y position.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return the global id of the tile, or 0 if the given position is out of bounds.
+     */
+    public int getTileAt(int x, int y) {
+        if (!Util.isValid(tiles, x, y))
+            return 0;
+        return tiles[x][y];
     }
 
     /**
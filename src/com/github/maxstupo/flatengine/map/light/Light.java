@@ -0,0 +1,219 @@
+package com.github.maxstupo.flatengine.map.light;
+
+import java.awt.Color;
+
+/**
+ * This class represents a coloured point light positioned on a tile of a map. The light spreads outwards from its tile, losing intensity linearly
+ * until it reaches its radius, and doesn't spread through opaque tiles.
+ * <p>
+ * Once added to a {@link LightMap} any change to this light will only recompute the area of the light map it covers.
+ * 
+ * @author Maxstupo
+ */
+public class Light {
+
+    private LightMap owner;
+
+    private int x;
+    private int y;
+    private float radius;
+    private float intensity;
+    private Color color;
+
+    /** The upper left corner of the area this light covers, in tiles. */
+    int areaX;
+    /** The upper left corner of the area this light covers, in tiles. */
+    int areaY;
+    /** The width and height of the area this light covers, in tiles. */
+    int areaSize;
+    /** The light level of each tile within the area this light covers, between 0.0 - 1.0 */
+    float[] levels = new float[0];
+    /** The red light added to the light map at full level, kept so it can be removed after the color or intensity changes. */
+    float appliedRed;
+    /** The green light added to the light map at full level, kept so it can be removed after the color or intensity changes. */
+    float appliedGreen;
+    /** The blue light added to the light map at full level, kept so it can be removed after the color or intensity changes. */
+    float appliedBlue;
+
+    /**
+     * Create a new {@link Light} object with an intensity of 1.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @param radius
+     *            the radius of the light, in tiles.
+     * @param color
+     *            the color of the light.
+     */
+    public Light(int x, int y, float radius, Color color) {
+        this(x, y, radius, color, 1);
+    }
+
+    /**
+     * Create a new {@link Light} object.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @param radius
+     *            the radius of the light, in tiles.
+     * @param color
+     *            the color of the light.
+     * @param intensity
+     *            the intensity of the light at its center, usually between 0.0 - 1.0
+     * @throws IllegalArgumentException
+     *             if radius is negative or color is null.
+     */
+    public Light(int x, int y, float radius, Color color, float intensity) throws IllegalArgumentException {
+        if (radius < 0)
+            throw new IllegalArgumentException("radius can't be negative: " + radius);
+        if (color == null)
+            throw new IllegalArgumentException("color can't be null!");
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.color = color;
+        this.intensity = intensity;
+    }
+
+    /**
+     * Sets the tile position of this light.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     */
+    public void setPosition(int x, int y) {
+        if (this.x == x && this.y == y)
+            return;
+        this.x = x;
+        this.y = y;
+        changed();
+    }
+
+    /**
+     * Sets the radius of this light.
+     * 
+     * @param radius
+     *            the radius of the light, in tiles.
+     * @throws IllegalArgumentException
+     *             if radius is negative.
+     */
+    public void setRadius(float radius) throws IllegalArgumentException {
+        if (radius < 0)
+            throw new IllegalArgumentException("radius can't be negative: " + radius);
+        if (this.radius == radius)
+            return;
+        this.radius = radius;
+        changed();
+    }
+
+    /**
+     * Sets the intensity of this light.
+     * 
+     * @param intensity
+     *            the intensity of the light at its center, usually between 0.0 - 1.0
+     */
+    public void setIntensity(float intensity) {
+        if (this.intensity == intensity)
+            return;
+        this.intensity = intensity;
+        changed();
+    }
+
+    /**
+     * Sets the color of this light.
+     * 
+     * @param color
+     *            the color of the light.
+     * @throws IllegalArgumentException
+     *             if color is null.
+     */
+    public void setColor(Color color) throws IllegalArgumentException {
+        if (color == null)
+            throw new IllegalArgumentException("color can't be null!");
+        if (this.color.equals(color))
+            return;
+        this.color = color;
+        changed();
+    }
+
+    private void changed() {
+        if (owner != null)
+            owner.updateLight(this);
+    }
+
+    /**
+     * Sets the light map this light belongs to.
+     * 
+     * @param owner
+     *            the light map, or null if this light has been removed.
+     */
+    void setOwner(LightMap owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the light map this light belongs to.
+     * 
+     * @return the light map this light belongs to, or null if this light hasn't been added to a light map.
+     */
+    public LightMap getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the x tile position of this light.
+     * 
+     * @return the x tile position of this light.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y tile position of this light.
+     * 
+     * @return the y tile position of this light.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the radius of this light, in tiles.
+     * 
+     * @return the radius of this light, in tiles.
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns the intensity of this light at its center.
+     * 
+     * @return the intensity of this light at its center.
+     */
+    public float getIntensity() {
+        return intensity;
+    }
+
+    /**
+     * Returns the color of this light.
+     * 
+     * @return the color of this light.
+     */
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [x=%s, y=%s, radius=%s, intensity=%s, color=%s]", getClass().getSimpleName(), x, y, radius, intensity, color);
+    }
+
+}
@@ -0,0 +1,508 @@
+package com.github.maxstupo.flatengine.map.light;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.maxstupo.flatengine.map.Camera;
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TileOverlay;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.collision.TilePropertyMask;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.util.BitGrid;
+import com.github.maxstupo.flatengine.util.IntMinHeap;
+
+/**
+ * This class computes the light level of each tile of a map from a set of {@link Light}s. Each light floods outwards from its tile with linear
+ * attenuation, opaque tiles (tiles with the {@value #PROPERTY_OPAQUE} property set to true) are lit but stop the light spreading any further.
+ * <p>
+ * The contribution of each light is stored separately and summed into the light map, so moving a light or changing an occluder via
+ * {@link TileLayer#setTileAt(int, int, int)} only recomputes the lights that cover the changed area. The result is stored in an image with one pixel per
+ * tile that is drawn over the map by a smooth {@link TileOverlay}. When nothing has changed rendering is a single image draw.
+ * 
+ * @author Maxstupo
+ */
+public class LightMap implements ITileChangeListener {
+
+    /** The boolean tile property that marks a tile as blocking light. */
+    public static final String PROPERTY_OPAQUE = "opaque";
+
+    /** The default strength of the tint applied by colored light, between 0.0 - 1.0 */
+    public static final float DEFAULT_TINT_STRENGTH = 0.25f;
+
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+    private final TiledMap map;
+    private final TilePropertyMask opaque;
+    private final int width;
+    private final int height;
+
+    private final List<Light> lights = new ArrayList<>();
+
+    private final float[] red;
+    private final float[] green;
+    private final float[] blue;
+    private final int[] lightCounts;
+
+    private Color ambient = Color.BLACK;
+    private float tintStrength = DEFAULT_TINT_STRENGTH;
+
+    private final TileOverlay overlay;
+    private final int[] pixels;
+
+    private final int[] pixelsDirty = new int[4];
+
+    private float[] distances = new float[0];
+    private final IntMinHeap open = new IntMinHeap();
+
+    private int opaqueVersion;
+
+    /**
+     * Create a new {@link LightMap} object with a black ambient light, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     */
+    public LightMap(TiledMap map) {
+        this.map = map;
+        this.opaque = new TilePropertyMask(map, PROPERTY_OPAQUE);
+        this.opaqueVersion = opaque.getVersion();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+
+        this.red = new float[width * height];
+        this.green = new float[red.length];
+        this.blue = new float[red.length];
+        this.lightCounts = new int[red.length];
+
+        this.overlay = new TileOverlay(width, height, true);
+        this.pixels = overlay.getPixels();
+
+        clearDirty(pixelsDirty);
+        markAllDirty();
+        map.addTileListener(this);
+    }
+
+    /**
+     * Adds the given light to this light map.
+     * 
+     * @param light
+     *            the light.
+     * @return false if the light already belongs to a light map.
+     */
+    public boolean addLight(Light light) {
+        if (light.getOwner() != null)
+            return false;
+        light.setOwner(this);
+        lights.add(light);
+
+        computeLight(light);
+        applyLight(light, 1);
+        return true;
+    }
+
+    /**
+     * Removes the given light from this light map.
+     * 
+     * @param light
+     *            the light.
+     * @return false if the light doesn't belong to this light map.
+     */
+    public boolean removeLight(Light light) {
+        if (light.getOwner() != this)
+            return false;
+        applyLight(light, -1);
+        lights.remove(light);
+        light.setOwner(null);
+        return true;
+    }
+
+    /**
+     * Removes all lights from this light map.
+     */
+    public void clearLights() {
+        for (Light light : lights)
+            light.setOwner(null);
+        lights.clear();
+
+        Arrays.fill(red, 0);
+        Arrays.fill(green, 0);
+        Arrays.fill(blue, 0);
+        Arrays.fill(lightCounts, 0);
+        markAllDirty();
+    }
+
+    /**
+     * Recomputes the area covered by the given light. Called by {@link Light} when it changes.
+     * 
+     * @param light
+     *            the light.
+     */
+    void updateLight(Light light) {
+        applyLight(light, -1);
+        computeLight(light);
+        applyLight(light, 1);
+    }
+
+    /**
+     * Recomputes every light, and reloads which tiles are opaque. Should be called after adding tile layers or tilesets to the map.
+     */
+    public void rebuild() {
+        opaque.rebuild();
+        opaqueVersion = opaque.getVersion();
+
+        for (Light light : lights)
+            updateLight(light);
+    }
+
+    @Override
+    public void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        if (opaque.getVersion() == opaqueVersion) // The change didn't affect an occluder.
+            return;
+        opaqueVersion = opaque.getVersion();
+
+        for (int i = 0; i < lights.size(); i++) {
+            Light light = lights.get(i);
+            if (isLitNear(light, x, y))
+                updateLight(light);
+        }
+    }
+
+    /**
+     * Returns true if the given light reaches the given tile or any of its neighbours, only then can changing the tile change the light.
+     */
+    private boolean isLitNear(Light light, int x, int y) {
+        for (int ny = y - 1; ny <= y + 1; ny++) {
+            int ly = ny - light.areaY;
+            if (ly < 0 || ly >= light.areaSize)
+                continue;
+
+            for (int nx = x - 1; nx <= x + 1; nx++) {
+                int lx = nx - light.areaX;
+                if (lx >= 0 && lx < light.areaSize && light.levels[lx + ly * light.areaSize] > 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Floods the given light outwards from its tile and stores the light level of each tile it reaches.
+     */
+    private void computeLight(Light light) {
+        int reach = (int) Math.ceil(light.getRadius());
+        int size = reach * 2 + 1;
+        int cells = size * size;
+
+        light.areaX = light.getX() - reach;
+        light.areaY = light.getY() - reach;
+        light.areaSize = size;
+        if (light.levels.length != cells)
+            light.levels = new float[cells];
+        Arrays.fill(light.levels, 0);
+
+        if (!opaque.getGrid().isValid(light.getX(), light.getY()))
+            return;
+
+        if (distances.length < cells)
+            distances = new float[cells];
+        Arrays.fill(distances, 0, cells, Float.POSITIVE_INFINITY);
+
+        BitGrid grid = opaque.getGrid();
+        float radius = light.getRadius();
+
+        int start = reach + reach * size;
+        distances[start] = 0;
+        light.levels[start] = 1;
+        open.clear();
+        open.push(start, 0);
+
+        while (!open.isEmpty()) {
+            float distance = open.peekKey();
+            int index = open.pop();
+            if (distance > distances[index]) // Stale entry.
+                continue;
+
+            int lx = index % size;
+            int ly = index / size;
+            int x = light.areaX + lx;
+            int y = light.areaY + ly;
+
+            if (index != start && grid.get(x + y * width)) // Opaque tiles are lit but block the light.
+                continue;
+
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (dx == 0 && dy == 0)
+                        continue;
+
+                    int nlx = lx + dx;
+                    int nly = ly + dy;
+                    if (nlx < 0 || nly < 0 || nlx >= size || nly >= size || !grid.isValid(x + dx, y + dy))
+                        continue;
+
+                    boolean diagonal = dx != 0 && dy != 0;
+                    if (diagonal && (grid.get(x + dx + y * width) || grid.get(x + (y + dy) * width))) // Don't leak through wall corners.
+                        continue;
+
+                    float nd = distance + (diagonal ? DIAGONAL_COST : 1);
+                    int neighbour = nlx + nly * size;
+                    if (nd >= radius || nd >= distances[neighbour])
+                        continue;
+
+                    distances[neighbour] = nd;
+                    light.levels[neighbour] = 1 - nd / radius;
+                    open.push(neighbour, nd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds (sign = 1) or removes (sign = -1) the stored light levels of the given light to this light map. Removing uses the color and intensity the
+     * light was added with, as the light has already changed by the time it's updated.
+     */
+    private void applyLight(Light light, int sign) {
+        if (sign > 0) {
+            Color color = light.getColor();
+            float scale = light.getIntensity() / 255f;
+            light.appliedRed = color.getRed() * scale;
+            light.appliedGreen = color.getGreen() * scale;
+            light.appliedBlue = color.getBlue() * scale;
+        }
+        float r = sign * light.appliedRed;
+        float g = sign * light.appliedGreen;
+        float b = sign * light.appliedBlue;
+
+        int size = light.areaSize;
+        int minX = Math.max(0, light.areaX);
+        int minY = Math.max(0, light.areaY);
+        int maxX = Math.min(width, light.areaX + size);
+        int maxY = Math.min(height, light.areaY + size);
+        if (minX >= maxX || minY >= maxY)
+            return;
+
+        for (int y = minY; y < maxY; y++) {
+            int row = (y - light.areaY) * size - light.areaX;
+
+            for (int x = minX; x < maxX; x++) {
+                float level = light.levels[row + x];
+                if (level <= 0)
+                    continue;
+
+                int index = x + y * width;
+                lightCounts[index] += sign;
+
+                if (lightCounts[index] == 0) { // Reset rather than accumulate rounding errors.
+                    red[index] = 0;
+                    green[index] = 0;
+                    blue[index] = 0;
+                } else {
+                    red[index] += r * level;
+                    green[index] += g * level;
+                    blue[index] += b * level;
+                }
+            }
+        }
+        markDirty(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Renders this light map over the map using the given camera. Should be called after {@link TiledMap#renderForegroundLayers(Graphics2D, Camera)}.
+     * 
+     * @param g
+     *            the graphics context to render to.
+     * @param camera
+     *            the camera.
+     */
+    public void render(Graphics2D g, Camera camera) {
+        updatePixels();
+        overlay.render(g, camera);
+    }
+
+    /**
+     * Writes the light level of each changed tile into the light map image.
+     */
+    private void updatePixels() {
+        if (pixelsDirty[0] >= pixelsDirty[2])
+            return;
+
+        float ar = ambient.getRed() / 255f;
+        float ag = ambient.getGreen() / 255f;
+        float ab = ambient.getBlue() / 255f;
+
+        for (int y = pixelsDirty[1]; y < pixelsDirty[3]; y++) {
+            for (int x = pixelsDirty[0]; x < pixelsDirty[2]; x++) {
+                int index = x + y * width;
+                pixels[index] = toPixel(ar + red[index], ag + green[index], ab + blue[index]);
+            }
+        }
+        overlay.markDirty(pixelsDirty[0], pixelsDirty[1], pixelsDirty[2], pixelsDirty[3]);
+        clearDirty(pixelsDirty);
+    }
+
+    /**
+     * Converts a light level to a pixel, the alpha is how dark the tile is and the color is the hue of the light.
+     */
+    private int toPixel(float r, float g, float b) {
+        float max = Math.max(r, Math.max(g, b));
+        if (max <= 0)
+            return 0xFF000000;
+        float min = Math.max(0, Math.min(r, Math.min(g, b)));
+
+        float brightness = Math.min(1, max);
+        float saturation = 1 - min / max;
+        float alpha = (1 - brightness) + brightness * saturation * tintStrength;
+
+        int a = (int) (Math.min(1, alpha) * 255);
+        int pr = (int) (Math.max(0, r) / max * 255);
+        int pg = (int) (Math.max(0, g) / max * 255);
+        int pb = (int) (Math.max(0, b) / max * 255);
+        return (a << 24) | (pr << 16) | (pg << 8) | pb;
+    }
+
+    private void markDirty(int minX, int minY, int maxX, int maxY) {
+        pixelsDirty[0] = Math.min(pixelsDirty[0], minX);
+        pixelsDirty[1] = Math.min(pixelsDirty[1], minY);
+        pixelsDirty[2] = Math.max(pixelsDirty[2], maxX);
+        pixelsDirty[3] = Math.max(pixelsDirty[3], maxY);
+    }
+
+    private void markAllDirty() {
+        markDirty(0, 0, width, height);
+    }
+
+    private static void clearDirty(int[] rect) {
+        rect[0] = Integer.MAX_VALUE;
+        rect[1] = Integer.MAX_VALUE;
+        rect[2] = Integer.MIN_VALUE;
+        rect[3] = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns the brightness of the given tile including the ambient light, between 0.0 - 1.0
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return the brightness of the given tile, or 0 if the tile is out of bounds.
+     */
+    public float getBrightness(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            return 0;
+        int index = x + y * width;
+        float r = ambient.getRed() / 255f + red[index];
+        float g = ambient.getGreen() / 255f + green[index];
+        float b = ambient.getBlue() / 255f + blue[index];
+        return Math.min(1, Math.max(r, Math.max(g, b)));
+    }
+
+    /**
+     * Returns the red, green and blue light levels of the given tile summed from all lights, excluding the ambient light.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @param out
+     *            the array the levels are stored into, must have a length of at least 3.
+     * @return the given array, set to zero if the tile is out of bounds.
+     */
+    public float[] getLightLevels(int x, int y, float[] out) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            out[0] = out[1] = out[2] = 0;
+            return out;
+        }
+        int index = x + y * width;
+        out[0] = red[index];
+        out[1] = green[index];
+        out[2] = blue[index];
+        return out;
+    }
+
+    /**
+     * Unregisters this light map and its opaque mask from the map, they will no longer be kept in sync.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+        opaque.dispose();
+    }
+
+    /**
+     * Sets the light applied to all tiles, regardless of lights.
+     * 
+     * @param ambient
+     *            the ambient light color.
+     * @throws IllegalArgumentException
+     *             if ambient is null.
+     */
+    public void setAmbient(Color ambient) throws IllegalArgumentException {
+        if (ambient == null)
+            throw new IllegalArgumentException("ambient can't be null!");
+        if (this.ambient.equals(ambient))
+            return;
+        this.ambient = ambient;
+        markAllDirty();
+    }
+
+    /**
+     * Returns the light applied to all tiles, regardless of lights.
+     * 
+     * @return the ambient light color.
+     */
+    public Color getAmbient() {
+        return ambient;
+    }
+
+    /**
+     * Sets how strongly colored light tints the tiles it reaches.
+     * 
+     * @param tintStrength
+     *            the strength of the tint, between 0.0 - 1.0
+     */
+    public void setTintStrength(float tintStrength) {
+        if (this.tintStrength == tintStrength)
+            return;
+        this.tintStrength = tintStrength;
+        markAllDirty();
+    }
+
+    /**
+     * Returns how strongly colored light tints the tiles it reaches.
+     * 
+     * @return the strength of the tint, between 0.0 - 1.0
+     */
+    public float getTintStrength() {
+        return tintStrength;
+    }
+
+    /**
+     * Returns an unmodifiable view of the lights of this light map.
+     * 
+     * @return an unmodifiable view of the lights of this light map.
+     */
+    public List<Light> getLights() {
+        return Collections.unmodifiableList(lights);
+    }
+
+    /**
+     * Returns the mask of opaque tiles used by this light map.
+     * 
+     * @return the mask of opaque tiles used by this light map.
+     */
+    public TilePropertyMask getOpaqueMask() {
+        return opaque;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, lights=%s, ambient=%s, tintStrength=%s]", getClass().getSimpleName(), width, height, lights.size(), ambient,
+                tintStrength);
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.github.maxstupo.flatengine.map.path;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a flow field, the cost from every cell of a map to the nearest goal and the direction to step in to follow the cheapest path.
+ * Flow fields are created and kept up to date by a {@link FlowFieldGenerator}, any number of units can then sample a direction from their cell.
+ * 
+ * @author Maxstupo
+ */
+public class FlowField {
+
+    /** The direction of cells that are a goal, blocked or can't reach a goal. */
+    public static final int DIRECTION_NONE = -1;
+
+    static final int[] DIRECTIONS_X = { 1, -1, 0, 0, 1, 1, -1, -1 };
+    static final int[] DIRECTIONS_Y = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+    private final int width;
+    private final int height;
+    private final int[] goals;
+
+    final float[] costs;
+    final byte[] directions;
+
+    /**
+     * Create a new {@link FlowField} object with every cell unreachable.
+     * 
+     * @param width
+     *            the width of the map in tiles.
+     * @param height
+     *            the height of the map in tiles.
+     * @param goals
+     *            the goal cell indexes (<code>x + y * width</code>).
+     */
+    FlowField(int width, int height, int[] goals) {
+        this.width = width;
+        this.height = height;
+        this.goals = goals;
+        this.costs = new float[width * height];
+        this.directions = new byte[width * height];
+
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        Arrays.fill(directions, (byte) DIRECTION_NONE);
+    }
+
+    /**
+     * Returns the direction index to step in from the given cell, the index is valid for {@link #getDirectionX(int, int)} and
+     * {@link #getDirectionY(int, int)}.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return the direction index (0 - 7), or {@link #DIRECTION_NONE} if the cell is a goal, blocked, unreachable or out of bounds.
+     */
+    public int getDirection(int x, int y) {
+        if (!isValid(x, y))
+            return DIRECTION_NONE;
+        return directions[x + y * width];
+    }
+
+    /**
+     * Returns the x component of the step to take from the given cell.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return -1, 0 or 1.
+     */
+    public int getDirectionX(int x, int y) {
+        int direction = getDirection(x, y);
+        return (direction == DIRECTION_NONE) ? 0 : DIRECTIONS_X[direction];
+    }
+
+    /**
+     * Returns the y component of the step to take from the given cell.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return -1, 0 or 1.
+     */
+    public int getDirectionY(int x, int y) {
+        int direction = getDirection(x, y);
+        return (direction == DIRECTION_NONE) ? 0 : DIRECTIONS_Y[direction];
+    }
+
+    /**
+     * Returns the movement cost from the given cell to the nearest goal.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return the cost, or {@link Float#POSITIVE_INFINITY} if the cell can't reach a goal or is out of bounds.
+     */
+    public float getCost(int x, int y) {
+        if (!isValid(x, y))
+            return Float.POSITIVE_INFINITY;
+        return costs[x + y * width];
+    }
+
+    /**
+     * Returns true if a goal can be reached from the given cell.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if a goal can be reached from the given cell.
+     */
+    public boolean isReachable(int x, int y) {
+        return getCost(x, y) != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns true if the given cell is within this field.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given cell is within this field.
+     */
+    public boolean isValid(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Returns a copy of the goal cell indexes (<code>x + y * width</code>) of this field.
+     * 
+     * @return a copy of the goal cell indexes.
+     */
+    public int[] getGoals() {
+        return goals.clone();
+    }
+
+    int[] goals() {
+        return goals;
+    }
+
+    /**
+     * Returns the width of this field in tiles.
+     * 
+     * @return the width of this field in tiles.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of this field in tiles.
+     * 
+     * @return the height of this field in tiles.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, goals=%s]", getClass().getSimpleName(), width, height, Arrays.toString(goals));
+    }
+
+}
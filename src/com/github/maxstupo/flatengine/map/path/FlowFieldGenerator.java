@@ -0,0 +1,683 @@
+package com.github.maxstupo.flatengine.map.path;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.collision.TileCollisionGrid;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.util.BitGrid;
+import com.github.maxstupo.flatengine.util.IntMinHeap;
+import com.github.maxstupo.flatengine.util.ObjectSpatialPartitioner;
+
+/**
+ * This class generates {@link FlowField flow fields} over the walkable cells of a {@link TiledMap}, so many units heading to the same goals can share
+ * one search instead of finding a path each.
+ * <p>
+ * The map is divided into square chunks. Costs are computed by a multi-source Dijkstra search run one chunk at a time, seeded from the costs along the
+ * border of neighbouring chunks; whenever a chunk lowers the cost of a border cell its neighbours are searched again, until no costs change. Chunks are
+ * searched in rounds ordered by their lowest seed cost, so the search expands outward much like a single Dijkstra search and chunks are rarely searched
+ * twice. All chunks of a round are searched in parallel on a {@link ForkJoinPool}, and the result matches a single search over the whole map.
+ * <p>
+ * Generated fields are cached per set of goals and updated in place when a tile change affects walkability: only the cells whose cheapest path passed
+ * through a newly blocked cell are recomputed, and a newly walkable cell only propagates lower costs outward.
+ * 
+ * @author Maxstupo
+ */
+public class FlowFieldGenerator implements ITileChangeListener {
+
+    /** The default chunk size in tiles. */
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    /** The default maximum number of cached flow fields. */
+    public static final int DEFAULT_CACHE_CAPACITY = 16;
+
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+    private static final float INFINITY = Float.POSITIVE_INFINITY;
+
+    private static final int[] DIRECTIONS_X = FlowField.DIRECTIONS_X;
+    private static final int[] DIRECTIONS_Y = FlowField.DIRECTIONS_Y;
+
+    private final TiledMap map;
+    private final TileCollisionGrid collisionGrid;
+    private final BitGrid blocked;
+    private final ForkJoinPool pool;
+
+    private final int width;
+    private final int height;
+    private final int chunkSize;
+    private final int chunkColumns;
+    private final int chunkRows;
+
+    /** The directions a unit can step in from each cell, one bit per direction. */
+    private final byte[] steps;
+
+    private final Map<GoalKey, FlowField> cache = new LinkedHashMap<GoalKey, FlowField>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<GoalKey, FlowField> eldest) {
+            return size() > cacheCapacity;
+        }
+    };
+
+    private int cacheCapacity = DEFAULT_CACHE_CAPACITY;
+    private int lastGridVersion;
+
+    private final ThreadLocal<IntMinHeap> heaps = ThreadLocal.withInitial(() -> new IntMinHeap(256));
+    private int[] queue = new int[256];
+
+    /**
+     * Create a new {@link FlowFieldGenerator} object with a chunk size of {@value #DEFAULT_CHUNK_SIZE}, and registers it as a tile listener of the
+     * given map.
+     * 
+     * @param map
+     *            the map.
+     */
+    public FlowFieldGenerator(TiledMap map) {
+        this(map, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a new {@link FlowFieldGenerator} object with chunks matching the chunks of the given partitioner, and registers it as a tile listener of
+     * the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param partitioner
+     *            the partitioner, the chunk size is used so chunks line up with the chunks of the partitioner.
+     */
+    public FlowFieldGenerator(TiledMap map, ObjectSpatialPartitioner<?> partitioner) {
+        this(map, partitioner.getChunkSize());
+    }
+
+    /**
+     * Create a new {@link FlowFieldGenerator} object using the common {@link ForkJoinPool}, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param chunkSize
+     *            the size of each chunk in tiles.
+     */
+    public FlowFieldGenerator(TiledMap map, int chunkSize) {
+        this(map, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new {@link FlowFieldGenerator} object, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param chunkSize
+     *            the size of each chunk in tiles.
+     * @param pool
+     *            the pool chunks are searched on.
+     * @throws IllegalArgumentException
+     *             if the chunk size is less than one.
+     */
+    public FlowFieldGenerator(TiledMap map, int chunkSize, ForkJoinPool pool) throws IllegalArgumentException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be at least one: " + chunkSize);
+
+        this.map = map;
+        this.collisionGrid = map.getCollisionGrid();
+        this.blocked = collisionGrid.getBlockedGrid();
+        this.pool = pool;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.chunkSize = chunkSize;
+        this.chunkColumns = (width + chunkSize - 1) / chunkSize;
+        this.chunkRows = (height + chunkSize - 1) / chunkSize;
+        this.lastGridVersion = collisionGrid.getVersion();
+
+        this.steps = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                updateSteps(x, y);
+        }
+
+        map.addTileListener(this);
+    }
+
+    /**
+     * Returns the flow field towards the given goal, generating it if it isn't cached.
+     * 
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @return the flow field.
+     * @throws IllegalArgumentException
+     *             if the goal is out of bounds.
+     */
+    public FlowField getFlowField(int goalX, int goalY) throws IllegalArgumentException {
+        if (goalX < 0 || goalY < 0 || goalX >= width || goalY >= height)
+            throw new IllegalArgumentException("Goal is out of bounds: " + goalX + ", " + goalY);
+        return getFlowField(new int[] { goalX + goalY * width });
+    }
+
+    /**
+     * Returns the flow field towards the nearest of the given goals, generating it if it isn't cached. Goals that are blocked are ignored until they
+     * become walkable.
+     * 
+     * @param goals
+     *            the goal cell indexes (<code>x + y * width</code>), the array is not modified.
+     * @return the flow field.
+     * @throws IllegalArgumentException
+     *             if no goals are given or a goal is out of bounds.
+     */
+    public synchronized FlowField getFlowField(int[] goals) throws IllegalArgumentException {
+        if (goals.length == 0)
+            throw new IllegalArgumentException("At least one goal is required!");
+
+        int[] sorted = goals.clone();
+        Arrays.sort(sorted);
+
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] < 0 || sorted[i] >= width * height)
+                throw new IllegalArgumentException("Goal is out of bounds: " + sorted[i]);
+            if (count == 0 || sorted[count - 1] != sorted[i])
+                sorted[count++] = sorted[i];
+        }
+
+        GoalKey key = new GoalKey(Arrays.copyOf(sorted, count));
+        FlowField field = cache.get(key);
+        if (field == null) {
+            field = generate(key.goals);
+            if (cacheCapacity > 0)
+                cache.put(key, field);
+        }
+        return field;
+    }
+
+    private FlowField generate(int[] goals) {
+        FlowField field = new FlowField(width, height, goals);
+        BitSet active = new BitSet();
+
+        for (int goal : goals) {
+            if (blocked.get(goal))
+                continue;
+            field.costs[goal] = 0;
+            active.set(getChunkIndex(goal % width, goal / width));
+        }
+
+        BitSet touched = new BitSet();
+        propagate(field, active, (BitSet) active.clone(), touched);
+        updateDirections(field, touched);
+        return field;
+    }
+
+    /**
+     * Searches the active chunks in rounds until no border costs change. Each round searches the active chunks whose lowest seed cost is within one
+     * chunk of the lowest seed cost of all active chunks, the given chunks are searched first.
+     * 
+     * @param full
+     *            the chunks that must be seeded from all of their reachable cells, rather than just the cells lowered by their neighbours.
+     */
+    private void propagate(FlowField field, BitSet active, BitSet full, BitSet touched) {
+        float[] keys = new float[chunkColumns * chunkRows];
+        Arrays.fill(keys, INFINITY);
+        active.stream().forEach(chunk -> keys[chunk] = 0);
+
+        int[] chunks = new int[16];
+        while (!active.isEmpty()) {
+            float limit = INFINITY;
+            for (int chunk = active.nextSetBit(0); chunk >= 0; chunk = active.nextSetBit(chunk + 1))
+                limit = Math.min(limit, keys[chunk]);
+            limit += chunkSize;
+
+            int count = 0;
+            for (int chunk = active.nextSetBit(0); chunk >= 0; chunk = active.nextSetBit(chunk + 1)) {
+                if (keys[chunk] > limit)
+                    continue;
+                if (count == chunks.length)
+                    chunks = Arrays.copyOf(chunks, count * 2);
+                chunks[count++] = chunk;
+                active.clear(chunk);
+                keys[chunk] = INFINITY;
+            }
+
+            float[] lowered = new float[count];
+            runChunks(field, Arrays.copyOf(chunks, count), full, lowered);
+
+            for (int i = 0; i < count; i++) {
+                touched.set(chunks[i]);
+                full.clear(chunks[i]);
+                if (lowered[i] == INFINITY)
+                    continue;
+
+                int cx = chunks[i] % chunkColumns;
+                int cy = chunks[i] / chunkColumns;
+                for (int y = Math.max(0, cy - 1); y <= Math.min(chunkRows - 1, cy + 1); y++) {
+                    for (int x = Math.max(0, cx - 1); x <= Math.min(chunkColumns - 1, cx + 1); x++) {
+                        int neighbour = x + y * chunkColumns;
+                        if (neighbour == chunks[i])
+                            continue;
+                        active.set(neighbour);
+                        keys[neighbour] = Math.min(keys[neighbour], lowered[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void updateDirections(FlowField field, BitSet touched) {
+        // Cells next to a touched chunk may now have a cheaper neighbour.
+        BitSet chunks = new BitSet();
+        touched.stream().forEach(chunk -> {
+            chunks.set(chunk);
+            setNeighbourChunks(chunks, chunk);
+        });
+        runChunks(field, chunks.stream().toArray(), null, null);
+    }
+
+    /**
+     * Searches the given chunks, or updates their directions if no array for the results is given.
+     */
+    private void runChunks(FlowField field, int[] chunks, BitSet full, float[] lowered) {
+        if (chunks.length > 1 && pool.getParallelism() > 1) {
+            pool.invoke(new ChunkTask(field, chunks, full, lowered, 0, chunks.length));
+        } else {
+            runChunks(field, chunks, full, lowered, 0, chunks.length);
+        }
+    }
+
+    private void runChunks(FlowField field, int[] chunks, BitSet full, float[] lowered, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (lowered != null) {
+                lowered[i] = searchChunk(field, chunks[i], full.get(chunks[i]));
+            } else {
+                updateChunkDirections(field, chunks[i]);
+            }
+        }
+    }
+
+    /**
+     * Runs a Dijkstra search within the given chunk, seeded from the border cells lowered by the costs of the cells bordering the chunk (and every
+     * reachable cell of the chunk if full). Only cells of the given chunk are written, so chunks can be searched concurrently.
+     * 
+     * @return the lowest cost of the border cells that were lowered, or infinity if no border cell changed.
+     */
+    private float searchChunk(FlowField field, int chunk, boolean isFull) {
+        int x0 = (chunk % chunkColumns) * chunkSize;
+        int y0 = (chunk / chunkColumns) * chunkSize;
+        int x1 = Math.min(x0 + chunkSize, width);
+        int y1 = Math.min(y0 + chunkSize, height);
+
+        float[] costs = field.costs;
+        IntMinHeap heap = heaps.get();
+        heap.clear();
+
+        float lowered = INFINITY;
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int cell = x + y * width;
+                if (blocked.get(cell))
+                    continue;
+
+                float best = costs[cell];
+                boolean isLowered = false;
+
+                if (x == x0 || y == y0 || x == x1 - 1 || y == y1 - 1) {
+                    for (int d = 0; d < 8; d++) {
+                        int nx = x + DIRECTIONS_X[d];
+                        int ny = y + DIRECTIONS_Y[d];
+                        if ((nx < x0 || ny < y0 || nx >= x1 || ny >= y1) && canStep(x, y, d))
+                            best = Math.min(best, costs[nx + ny * width] + ((d >= 4) ? DIAGONAL_COST : 1));
+                    }
+
+                    if (best < costs[cell]) {
+                        costs[cell] = best;
+                        lowered = Math.min(lowered, best);
+                        isLowered = true;
+                    }
+                }
+
+                if (isLowered || (isFull && best != INFINITY))
+                    heap.push(cell, best);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            float cost = heap.peekKey();
+            int cell = heap.pop();
+            if (cost > costs[cell])
+                continue; // Stale heap entry.
+
+            int x = cell % width;
+            int y = cell / width;
+
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DIRECTIONS_X[d];
+                int ny = y + DIRECTIONS_Y[d];
+                if (nx < x0 || ny < y0 || nx >= x1 || ny >= y1 || !canStep(x, y, d))
+                    continue;
+
+                int neighbour = nx + ny * width;
+                float next = cost + ((d >= 4) ? DIAGONAL_COST : 1);
+                if (next < costs[neighbour]) {
+                    costs[neighbour] = next;
+                    heap.push(neighbour, next);
+
+                    if (nx == x0 || ny == y0 || nx == x1 - 1 || ny == y1 - 1)
+                        lowered = Math.min(lowered, next);
+                }
+            }
+        }
+        return lowered;
+    }
+
+    private void updateChunkDirections(FlowField field, int chunk) {
+        int x0 = (chunk % chunkColumns) * chunkSize;
+        int y0 = (chunk / chunkColumns) * chunkSize;
+        int x1 = Math.min(x0 + chunkSize, width);
+        int y1 = Math.min(y0 + chunkSize, height);
+
+        float[] costs = field.costs;
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int cell = x + y * width;
+                int direction = FlowField.DIRECTION_NONE;
+
+                if (costs[cell] != 0 && costs[cell] != INFINITY) {
+                    float best = INFINITY;
+                    for (int d = 0; d < 8; d++) {
+                        if (!canStep(x, y, d))
+                            continue;
+
+                        float cost = costs[x + DIRECTIONS_X[d] + (y + DIRECTIONS_Y[d]) * width] + ((d >= 4) ? DIAGONAL_COST : 1);
+                        if (cost < best) {
+                            best = cost;
+                            direction = d;
+                        }
+                    }
+                }
+                field.directions[cell] = (byte) direction;
+            }
+        }
+    }
+
+    /**
+     * Returns true if a unit can step from the given cell in the given direction. The cell must be within the map.
+     */
+    private boolean canStep(int x, int y, int direction) {
+        return (steps[x + y * width] & (1 << direction)) != 0;
+    }
+
+    /**
+     * Updates the directions a unit can step in from the given cell, diagonal steps can't cut corners.
+     */
+    private void updateSteps(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            return;
+
+        int mask = 0;
+        if (isWalkable(x, y)) {
+            for (int d = 0; d < 8; d++) {
+                int dx = DIRECTIONS_X[d];
+                int dy = DIRECTIONS_Y[d];
+                if (isWalkable(x + dx, y + dy) && (d < 4 || (isWalkable(x + dx, y) && isWalkable(x, y + dy))))
+                    mask |= 1 << d;
+            }
+        }
+        steps[x + y * width] = (byte) mask;
+    }
+
+    private void setNeighbourChunks(BitSet chunks, int chunk) {
+        int cx = chunk % chunkColumns;
+        int cy = chunk / chunkColumns;
+
+        for (int y = Math.max(0, cy - 1); y <= Math.min(chunkRows - 1, cy + 1); y++) {
+            for (int x = Math.max(0, cx - 1); x <= Math.min(chunkColumns - 1, cx + 1); x++)
+                chunks.set(x + y * chunkColumns);
+        }
+    }
+
+    private int getChunkIndex(int x, int y) {
+        return x / chunkSize + (y / chunkSize) * chunkColumns;
+    }
+
+    @Override
+    public synchronized void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        int version = collisionGrid.getVersion();
+        if (version == lastGridVersion)
+            return; // Collision unchanged.
+        lastGridVersion = version;
+
+        for (int d = 0; d < 8; d++)
+            updateSteps(x + DIRECTIONS_X[d], y + DIRECTIONS_Y[d]);
+        updateSteps(x, y);
+
+        boolean isBlocked = blocked.get(x, y);
+        for (FlowField field : cache.values()) {
+            if (isBlocked) {
+                updateBlocked(field, x, y);
+            } else {
+                updateWalkable(field, x, y);
+            }
+        }
+    }
+
+    /**
+     * Resets the costs of every cell whose cheapest path passed through the given cell, and searches them again.
+     */
+    private void updateBlocked(FlowField field, int x, int y) {
+        BitSet active = new BitSet();
+        int count = 0;
+
+        count = invalidate(field, x + y * width, count, active);
+
+        // Diagonal steps past the corner of the blocked cell are no longer allowed.
+        for (int d = 0; d < 8; d++) {
+            int nx = x + DIRECTIONS_X[d];
+            int ny = y + DIRECTIONS_Y[d];
+            int direction = field.getDirection(nx, ny);
+            if (direction < 4)
+                continue;
+
+            if ((nx + DIRECTIONS_X[direction] == x && ny == y) || (nx == x && ny + DIRECTIONS_Y[direction] == y))
+                count = invalidate(field, nx + ny * width, count, active);
+        }
+
+        // Walk back along the flow, invalidating every cell that stepped into an invalidated cell.
+        for (int i = 0; i < count; i++) {
+            int cell = queue[i];
+            int cx = cell % width;
+            int cy = cell / width;
+
+            for (int d = 0; d < 8; d++) {
+                int nx = cx + DIRECTIONS_X[d];
+                int ny = cy + DIRECTIONS_Y[d];
+                int direction = field.getDirection(nx, ny);
+
+                if (direction != FlowField.DIRECTION_NONE && nx + DIRECTIONS_X[direction] == cx && ny + DIRECTIONS_Y[direction] == cy)
+                    count = invalidate(field, nx + ny * width, count, active);
+            }
+        }
+
+        BitSet touched = new BitSet();
+        propagate(field, active, (BitSet) active.clone(), touched);
+        updateDirections(field, touched);
+    }
+
+    private int invalidate(FlowField field, int cell, int count, BitSet active) {
+        if (field.costs[cell] == INFINITY && field.directions[cell] == FlowField.DIRECTION_NONE)
+            return count;
+
+        field.costs[cell] = INFINITY;
+        field.directions[cell] = (byte) FlowField.DIRECTION_NONE;
+        active.set(getChunkIndex(cell % width, cell / width));
+
+        if (count == queue.length)
+            queue = Arrays.copyOf(queue, count * 2);
+        queue[count++] = cell;
+        return count;
+    }
+
+    /**
+     * Propagates lower costs outward from the given cell, that is now walkable.
+     */
+    private void updateWalkable(FlowField field, int x, int y) {
+        int cell = x + y * width;
+        if (Arrays.binarySearch(field.goals(), cell) >= 0)
+            field.costs[cell] = 0;
+
+        // Neighbouring chunks are searched too, the cell may allow diagonal steps between them.
+        BitSet active = new BitSet();
+        setNeighbourChunks(active, getChunkIndex(x, y));
+
+        BitSet touched = new BitSet();
+        propagate(field, active, (BitSet) active.clone(), touched);
+        updateDirections(field, touched);
+    }
+
+    /**
+     * Returns true if the given cell is within the map and not blocked.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given cell is walkable.
+     */
+    public boolean isWalkable(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && !blocked.get(x + y * width);
+    }
+
+    /**
+     * Removes all cached flow fields. Fields already returned are no longer updated by tile changes.
+     */
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Sets the maximum number of cached flow fields, the least recently used fields are removed first. Set to zero to disable caching.
+     * 
+     * @param cacheCapacity
+     *            the maximum number of cached flow fields.
+     */
+    public synchronized void setCacheCapacity(int cacheCapacity) {
+        this.cacheCapacity = Math.max(0, cacheCapacity);
+        cache.clear();
+    }
+
+    /**
+     * Returns the maximum number of cached flow fields.
+     * 
+     * @return the maximum number of cached flow fields.
+     */
+    public synchronized int getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    /**
+     * Returns the number of cached flow fields.
+     * 
+     * @return the number of cached flow fields.
+     */
+    public synchronized int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Unregisters this generator from the map and clears the cache.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+        clearCache();
+    }
+
+    /**
+     * Returns the size of each chunk in tiles.
+     * 
+     * @return the size of each chunk in tiles.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the map this generator covers.
+     * 
+     * @return the map this generator covers.
+     */
+    public TiledMap getMap() {
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [map=%s, chunkSize=%s, cacheCapacity=%s]", getClass().getSimpleName(), map, chunkSize, cacheCapacity);
+    }
+
+    /**
+     * The sorted, unique goal cells of a cached flow field.
+     */
+    private static final class GoalKey {
+
+        final int[] goals;
+        final int hash;
+
+        GoalKey(int[] goals) {
+            this.goals = goals;
+            this.hash = Arrays.hashCode(goals);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GoalKey && Arrays.equals(goals, ((GoalKey) obj).goals);
+        }
+    }
+
+    /**
+     * Splits a list of chunks over the pool, each chunk is either searched or has its directions updated.
+     */
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FlowField field;
+        private final int[] chunks;
+        private final BitSet full;
+        private final float[] lowered;
+        private final int start;
+        private final int end;
+
+        ChunkTask(FlowField field, int[] chunks, BitSet full, float[] lowered, int start, int end) {
+            this.field = field;
+            this.chunks = chunks;
+            this.full = full;
+            this.lowered = lowered;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                runChunks(field, chunks, full, lowered, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new ChunkTask(field, chunks, full, lowered, start, mid), new ChunkTask(field, chunks, full, lowered, mid, end));
+        }
+    }
+
+}
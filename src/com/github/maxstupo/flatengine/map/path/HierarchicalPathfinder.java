@@ -0,0 +1,898 @@
+package com.github.maxstupo.flatengine.map.path;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.collision.TileCollisionGrid;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.util.BitGrid;
+import com.github.maxstupo.flatengine.util.IntMinHeap;
+import com.github.maxstupo.flatengine.util.ObjectSpatialPartitioner;
+
+/**
+ * This class finds paths on large maps using hierarchical pathfinding (HPA*). The map is divided into square clusters, entrances between
+ * neighbouring clusters become nodes of an abstract graph, and the walking costs between the nodes of each cluster are precomputed. Searches run over
+ * the abstract graph and are then refined into tile cells one cluster at a time.
+ * <p>
+ * Paths are near optimal, they are usually a few percent longer than the paths found by a {@link Pathfinder}. Diagonal steps are allowed within a
+ * cluster (no corner cutting), while cluster borders are crossed with straight steps. The abstract search uses a weighted heuristic, trading a little
+ * path quality for far fewer expanded nodes, see {@link #setHeuristicWeight(float)}.
+ * <p>
+ * When a tile change affects walkability only the cluster containing the tile (and its neighbours if the tile is on a cluster border) is rebuilt,
+ * which happens lazily on the next search. Searching is thread safe.
+ * 
+ * @author Maxstupo
+ */
+public class HierarchicalPathfinder implements ITileChangeListener {
+
+    /** The default cluster size in tiles. */
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+    /** The default weight of the abstract search heuristic. */
+    public static final float DEFAULT_HEURISTIC_WEIGHT = 1.1f;
+
+    /** Entrances shorter than this become a single transition in their middle, longer entrances get a transition at both ends. */
+    private static final int MAX_SINGLE_TRANSITION_LENGTH = 6;
+
+    /** The minimum number of dirty clusters to rebuild in parallel. */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+    private static final float INFINITY = Float.POSITIVE_INFINITY;
+
+    private static final int[] DIRECTIONS_X = { 1, -1, 0, 0, 1, 1, -1, -1 };
+    private static final int[] DIRECTIONS_Y = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+    private final TiledMap map;
+    private final TileCollisionGrid collisionGrid;
+    private final BitGrid blocked;
+
+    private final int width;
+    private final int height;
+    private final int clusterSize;
+    private final int clusterColumns;
+    private final int clusterRows;
+
+    private final Cluster[] clusters;
+
+    /** The abstract node at each cell, or -1. */
+    private final int[] nodeAtCell;
+
+    private int[] nodeCell = new int[256];
+    private int[] nodeCluster = new int[256];
+    private int[] nodeLocal = new int[256];
+    private int nodeCapacity;
+    private int nodeCount;
+
+    private int[] freeNodes = new int[64];
+    private int freeNodeCount;
+
+    private final BitSet dirtyClusters = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int lastGridVersion;
+
+    private volatile float heuristicWeight = DEFAULT_HEURISTIC_WEIGHT;
+
+    private final ThreadLocal<SearchBuffers> localBuffers;
+    private final ThreadLocal<SearchBuffers> abstractBuffers = ThreadLocal.withInitial(() -> new SearchBuffers(0));
+
+    /**
+     * Create a new {@link HierarchicalPathfinder} object with clusters matching the chunks of the given partitioner, and registers it as a tile
+     * listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param partitioner
+     *            the partitioner, the chunk size is used as the cluster size so clusters line up with the chunks of the partitioner.
+     */
+    public HierarchicalPathfinder(TiledMap map, ObjectSpatialPartitioner<?> partitioner) {
+        this(map, partitioner.getChunkSize());
+    }
+
+    /**
+     * Create a new {@link HierarchicalPathfinder} object, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     * @param clusterSize
+     *            the size of each cluster in tiles.
+     * @throws IllegalArgumentException
+     *             if the cluster size is less than two.
+     */
+    public HierarchicalPathfinder(TiledMap map, int clusterSize) throws IllegalArgumentException {
+        if (clusterSize < 2)
+            throw new IllegalArgumentException("clusterSize must be at least two: " + clusterSize);
+
+        this.map = map;
+        this.collisionGrid = map.getCollisionGrid();
+        this.blocked = collisionGrid.getBlockedGrid();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.clusterSize = clusterSize;
+        this.clusterColumns = (width + clusterSize - 1) / clusterSize;
+        this.clusterRows = (height + clusterSize - 1) / clusterSize;
+        this.lastGridVersion = collisionGrid.getVersion();
+
+        this.nodeAtCell = new int[width * height];
+        Arrays.fill(nodeAtCell, -1);
+
+        this.clusters = new Cluster[clusterColumns * clusterRows];
+        for (int cy = 0; cy < clusterRows; cy++) {
+            for (int cx = 0; cx < clusterColumns; cx++) {
+                int x = cx * clusterSize;
+                int y = cy * clusterSize;
+                clusters[cx + cy * clusterColumns] = new Cluster(x, y, Math.min(clusterSize, width - x), Math.min(clusterSize, height - y));
+            }
+        }
+        this.localBuffers = ThreadLocal.withInitial(() -> new SearchBuffers(clusterSize * clusterSize));
+
+        dirtyClusters.set(0, clusters.length);
+        rebuildDirtyClusters();
+
+        map.addTileListener(this);
+    }
+
+    /**
+     * Finds a path of tile cells between the given cells.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @return the path, or null if the goal can't be reached or either cell is blocked.
+     */
+    public Path findPath(int startX, int startY, int goalX, int goalY) {
+        return findPath(startX, startY, goalX, goalY, true);
+    }
+
+    /**
+     * Finds the waypoints of a path between the given cells, without refining it into tile cells. The waypoints are the start cell, the cluster
+     * entrances passed through and the goal cell. Consecutive waypoints are either within the same cluster or neighbouring cells, and can be refined
+     * when needed with {@link #findLocalPath(int, int, int, int)}. This is much cheaper than {@link #findPath(int, int, int, int)} for very long paths.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @return the waypoints, or null if the goal can't be reached or either cell is blocked.
+     */
+    public Path findAbstractPath(int startX, int startY, int goalX, int goalY) {
+        return findPath(startX, startY, goalX, goalY, false);
+    }
+
+    /**
+     * Finds a path of tile cells between two cells of the same cluster, without leaving the cluster.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @return the path, or null if the cells are in different clusters, either cell is blocked or the goal can't be reached within the cluster.
+     */
+    public Path findLocalPath(int startX, int startY, int goalX, int goalY) {
+        if (!isWalkable(startX, startY) || !isWalkable(goalX, goalY))
+            return null;
+
+        int start = startX + startY * width;
+        int goal = goalX + goalY * width;
+
+        Cluster cluster = clusters[getClusterIndex(start)];
+        if (cluster != clusters[getClusterIndex(goal)])
+            return null;
+
+        SearchBuffers b = localBuffers.get();
+        float cost = searchCluster(b, cluster, start, goal);
+        if (cost == INFINITY)
+            return null;
+
+        b.cellCount = 0;
+        b.pushCell(start);
+        appendClusterPath(b, cluster, start, goal);
+        return new Path(Arrays.copyOf(b.cells, b.cellCount), width, cost);
+    }
+
+    private Path findPath(int startX, int startY, int goalX, int goalY, boolean refine) {
+        if (!isWalkable(startX, startY) || !isWalkable(goalX, goalY))
+            return null;
+
+        int start = startX + startY * width;
+        int goal = goalX + goalY * width;
+        if (start == goal)
+            return new Path(new int[] { start }, width, 0);
+
+        rebuildDirtyClusters();
+
+        lock.readLock().lock();
+        try {
+            SearchBuffers lb = localBuffers.get();
+            SearchBuffers ab = abstractBuffers.get();
+
+            Cluster startCluster = clusters[getClusterIndex(start)];
+            Cluster goalCluster = clusters[getClusterIndex(goal)];
+
+            if (startCluster == goalCluster) { // Try staying within the cluster first.
+                float cost = searchCluster(lb, startCluster, start, goal);
+                if (cost != INFINITY) {
+                    lb.cellCount = 0;
+                    lb.pushCell(start);
+                    if (refine) {
+                        appendClusterPath(lb, startCluster, start, goal);
+                    } else {
+                        lb.pushCell(goal);
+                    }
+                    return new Path(Arrays.copyOf(lb.cells, lb.cellCount), width, cost);
+                }
+            }
+
+            float cost = searchAbstract(lb, ab, startCluster, goalCluster, start, goal);
+            if (cost == INFINITY)
+                return null;
+
+            // Collect the waypoints, walking back from the goal.
+            int startNode = nodeCapacity;
+            int goalNode = nodeCapacity + 1;
+
+            ab.cellCount = 0;
+            ab.pushCell(goal);
+            for (int node = ab.parent[goalNode]; node != startNode; node = ab.parent[node]) {
+                if (nodeCell[node] != ab.cells[ab.cellCount - 1])
+                    ab.pushCell(nodeCell[node]);
+            }
+            if (start != ab.cells[ab.cellCount - 1])
+                ab.pushCell(start);
+
+            lb.cellCount = 0;
+            lb.pushCell(start);
+            for (int i = ab.cellCount - 2; i >= 0; i--) {
+                int from = ab.cells[i + 1];
+                int to = ab.cells[i];
+                Cluster cluster = clusters[getClusterIndex(from)];
+
+                if (refine && cluster == clusters[getClusterIndex(to)]) {
+                    searchCluster(lb, cluster, from, to);
+                    appendClusterPath(lb, cluster, from, to);
+                } else {
+                    lb.pushCell(to);
+                }
+            }
+            return new Path(Arrays.copyOf(lb.cells, lb.cellCount), width, cost);
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the abstract graph from the start to the goal, the start and goal are connected to the nodes of their clusters as temporary nodes
+     * <code>nodeCapacity</code> and <code>nodeCapacity + 1</code>.
+     * 
+     * @return the cost of the path, or infinity if the goal can't be reached.
+     */
+    private float searchAbstract(SearchBuffers lb, SearchBuffers ab, Cluster startCluster, Cluster goalCluster, int start, int goal) {
+        int startNode = nodeCapacity;
+        int goalNode = nodeCapacity + 1;
+
+        // Walking costs from the goal to the nodes of its cluster, movement costs are symmetric.
+        float[] goalCosts = ab.getCosts(goalCluster.nodeCount);
+        searchClusterNodes(lb, goalCluster, goal);
+        for (int i = 0; i < goalCluster.nodeCount; i++) {
+            int local = getLocalIndex(goalCluster, nodeCell[goalCluster.nodes[i]]);
+            goalCosts[i] = lb.isClosed(local) ? lb.g[local] : INFINITY;
+        }
+
+        searchClusterNodes(lb, startCluster, start);
+
+        ab.ensureCapacity(nodeCapacity + 2);
+        ab.begin();
+        ab.visit(startNode, 0, -1);
+        ab.open.push(startNode, heuristic(start, goal));
+
+        while (!ab.open.isEmpty()) {
+            int current = ab.open.pop();
+            if (ab.isClosed(current))
+                continue;
+            if (current == goalNode)
+                return ab.g[goalNode];
+            ab.close(current);
+
+            float g = ab.g[current];
+
+            if (current == startNode) {
+                for (int i = 0; i < startCluster.nodeCount; i++) {
+                    int node = startCluster.nodes[i];
+                    int local = getLocalIndex(startCluster, nodeCell[node]);
+                    if (lb.isClosed(local))
+                        relax(ab, current, node, lb.g[local], goal);
+                }
+                continue;
+            }
+
+            Cluster cluster = clusters[nodeCluster[current]];
+            int n = cluster.nodeCount;
+            int row = nodeLocal[current] * n;
+
+            for (int j = 0; j < n; j++) {
+                float distance = cluster.distances[row + j];
+                if (distance != INFINITY && j != nodeLocal[current])
+                    relax(ab, current, cluster.nodes[j], g + distance, goal);
+            }
+
+            if (cluster == goalCluster && goalCosts[nodeLocal[current]] != INFINITY)
+                relax(ab, current, goalNode, g + goalCosts[nodeLocal[current]], goal);
+
+            // Transitions into neighbouring clusters.
+            int cell = nodeCell[current];
+            int x = cell % width;
+            int y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DIRECTIONS_X[d];
+                int ny = y + DIRECTIONS_Y[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+                    continue;
+
+                int neighbour = nodeAtCell[nx + ny * width];
+                if (neighbour != -1 && nodeCluster[neighbour] != nodeCluster[current])
+                    relax(ab, current, neighbour, g + 1, goal);
+            }
+        }
+        return INFINITY;
+    }
+
+    /**
+     * Searches the given cluster from the given cell until all nodes of the cluster have been reached.
+     */
+    private void searchClusterNodes(SearchBuffers b, Cluster cluster, int from) {
+        b.beginTargets();
+        for (int i = 0; i < cluster.nodeCount; i++)
+            b.markTarget(getLocalIndex(cluster, nodeCell[cluster.nodes[i]]));
+        searchCluster(b, cluster, from, -1, cluster.nodeCount);
+    }
+
+    private void relax(SearchBuffers ab, int from, int node, float g, int goal) {
+        if (ab.isClosed(node))
+            return;
+        if (!ab.isVisited(node) || g < ab.g[node]) {
+            ab.visit(node, g, from);
+            ab.open.push(node, g + ((node == nodeCapacity + 1) ? 0 : heuristic(nodeCell[node], goal) * heuristicWeight));
+        }
+    }
+
+    private float searchCluster(SearchBuffers b, Cluster cluster, int from, int goal) {
+        return searchCluster(b, cluster, from, goal, 0);
+    }
+
+    /**
+     * Searches the given cluster from the given cell. If the goal is -1 the cluster is searched (Dijkstra) until the given number of marked
+     * targets have been reached, or the whole cluster if zero. The cost to each closed cell is left in the
+     * buffers.
+     * 
+     * @return the cost to the goal, or infinity if it can't be reached within the cluster (or no goal was given).
+     */
+    private float searchCluster(SearchBuffers b, Cluster cluster, int from, int goal, int targets) {
+        if (b.loadedCluster != cluster || b.loadedVersion != collisionGrid.getVersion())
+            loadCluster(b, cluster);
+
+        boolean[] open = b.walkable;
+        int cw = cluster.width;
+        int ch = cluster.height;
+        int goalLocal = (goal == -1) ? -1 : getLocalIndex(cluster, goal);
+        int goalX = goalLocal % cw;
+        int goalY = goalLocal / cw;
+
+        int start = getLocalIndex(cluster, from);
+
+        b.begin();
+        b.visit(start, 0, -1);
+        b.open.push(start, 0);
+
+        while (!b.open.isEmpty()) {
+            int current = b.open.pop();
+            if (b.isClosed(current))
+                continue;
+            if (current == goalLocal)
+                return b.g[current];
+            b.close(current);
+
+            if (targets > 0 && b.isTarget(current) && --targets == 0)
+                break;
+
+            int lx = current % cw;
+            int ly = current / cw;
+
+            for (int d = 0; d < 8; d++) {
+                int dx = DIRECTIONS_X[d];
+                int dy = DIRECTIONS_Y[d];
+                int nx = lx + dx;
+                int ny = ly + dy;
+
+                if (nx < 0 || ny < 0 || nx >= cw || ny >= ch)
+                    continue;
+
+                int neighbour = nx + ny * cw;
+                if (!open[neighbour] || (d >= 4 && (!open[current + dx] || !open[current + dy * cw])))
+                    continue; // Blocked, or cutting a corner.
+                if (b.isClosed(neighbour))
+                    continue;
+
+                float g = b.g[current] + ((d >= 4) ? DIAGONAL_COST : 1);
+                if (!b.isVisited(neighbour) || g < b.g[neighbour]) {
+                    b.visit(neighbour, g, current);
+                    b.open.push(neighbour, (goalLocal == -1) ? g : g + octile(Math.abs(nx - goalX), Math.abs(ny - goalY)));
+                }
+            }
+        }
+        return INFINITY;
+    }
+
+    /**
+     * Copies the walkable cells of the given cluster into the given buffers.
+     */
+    private void loadCluster(SearchBuffers b, Cluster cluster) {
+        b.loadedCluster = cluster;
+        b.loadedVersion = collisionGrid.getVersion();
+
+        for (int ly = 0; ly < cluster.height; ly++) {
+            int row = (cluster.y + ly) * width + cluster.x;
+            for (int lx = 0; lx < cluster.width; lx++)
+                b.walkable[lx + ly * cluster.width] = !blocked.get(row + lx);
+        }
+    }
+
+    private static boolean isOpen(SearchBuffers b, Cluster cluster) {
+        for (int i = 0; i < cluster.width * cluster.height; i++) {
+            if (!b.walkable[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the cells of the last cluster search to the given buffers, excluding the first cell.
+     */
+    private void appendClusterPath(SearchBuffers b, Cluster cluster, int from, int to) {
+        int offset = b.cellCount;
+        int local = getLocalIndex(cluster, to);
+        int first = getLocalIndex(cluster, from);
+
+        for (; local != first; local = b.parent[local])
+            b.pushCell(cluster.x + local % cluster.width + (cluster.y + local / cluster.width) * width);
+
+        // Cells were appended goal first.
+        for (int i = offset, j = b.cellCount - 1; i < j; i++, j--) {
+            int temp = b.cells[i];
+            b.cells[i] = b.cells[j];
+            b.cells[j] = temp;
+        }
+    }
+
+    /**
+     * Rebuilds the nodes and node distances of all dirty clusters.
+     */
+    private void rebuildDirtyClusters() {
+        synchronized (dirtyClusters) {
+            if (dirtyClusters.isEmpty())
+                return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int[] dirty;
+            synchronized (dirtyClusters) {
+                dirty = dirtyClusters.stream().toArray();
+                dirtyClusters.clear();
+            }
+
+            for (int index : dirty)
+                freeNodes(clusters[index]);
+            for (int index : dirty)
+                createNodes(index);
+
+            if (dirty.length >= PARALLEL_THRESHOLD) {
+                Arrays.stream(dirty).parallel().forEach(index -> computeDistances(clusters[index]));
+            } else {
+                for (int index : dirty)
+                    computeDistances(clusters[index]);
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void freeNodes(Cluster cluster) {
+        for (int i = 0; i < cluster.nodeCount; i++) {
+            int node = cluster.nodes[i];
+            nodeAtCell[nodeCell[node]] = -1;
+
+            if (freeNodeCount == freeNodes.length)
+                freeNodes = Arrays.copyOf(freeNodes, freeNodes.length * 2);
+            freeNodes[freeNodeCount++] = node;
+        }
+        nodeCount -= cluster.nodeCount;
+        cluster.nodeCount = 0;
+    }
+
+    private void createNodes(int index) {
+        Cluster cluster = clusters[index];
+
+        if (cluster.x > 0) // Left border.
+            createTransitions(index, cluster.x, cluster.y, -1, 0, 0, 1, cluster.height);
+        if (cluster.x + cluster.width < width) // Right border.
+            createTransitions(index, cluster.x + cluster.width - 1, cluster.y, 1, 0, 0, 1, cluster.height);
+        if (cluster.y > 0) // Top border.
+            createTransitions(index, cluster.x, cluster.y, 0, -1, 1, 0, cluster.width);
+        if (cluster.y + cluster.height < height) // Bottom border.
+            createTransitions(index, cluster.x, cluster.y + cluster.height - 1, 0, 1, 1, 0, cluster.width);
+    }
+
+    /**
+     * Creates the nodes for the entrances along one border of a cluster. An entrance is a run of cells that are walkable on both sides of the border.
+     * Both clusters sharing a border find the same entrances, so every node has a node on the other side of the border.
+     */
+    private void createTransitions(int index, int x, int y, int acrossX, int acrossY, int stepX, int stepY, int length) {
+        int runStart = -1;
+
+        for (int i = 0; i <= length; i++) {
+            boolean isOpen = i < length && isWalkable(x + stepX * i, y + stepY * i) && isWalkable(x + stepX * i + acrossX, y + stepY * i + acrossY);
+
+            if (isOpen && runStart == -1) {
+                runStart = i;
+
+            } else if (!isOpen && runStart != -1) {
+                int runEnd = i - 1;
+
+                if (runEnd - runStart + 1 < MAX_SINGLE_TRANSITION_LENGTH) {
+                    int middle = (runStart + runEnd) / 2;
+                    createNode(index, x + stepX * middle + (y + stepY * middle) * width);
+                } else {
+                    createNode(index, x + stepX * runStart + (y + stepY * runStart) * width);
+                    createNode(index, x + stepX * runEnd + (y + stepY * runEnd) * width);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private void createNode(int index, int cell) {
+        if (nodeAtCell[cell] != -1) // Corner cell shared by two borders.
+            return;
+
+        int node;
+        if (freeNodeCount > 0) {
+            node = freeNodes[--freeNodeCount];
+        } else {
+            if (nodeCapacity == nodeCell.length) {
+                nodeCell = Arrays.copyOf(nodeCell, nodeCapacity * 2);
+                nodeCluster = Arrays.copyOf(nodeCluster, nodeCapacity * 2);
+                nodeLocal = Arrays.copyOf(nodeLocal, nodeCapacity * 2);
+            }
+            node = nodeCapacity++;
+        }
+
+        Cluster cluster = clusters[index];
+        if (cluster.nodeCount == cluster.nodes.length)
+            cluster.nodes = Arrays.copyOf(cluster.nodes, Math.max(8, cluster.nodes.length * 2));
+
+        nodeCell[node] = cell;
+        nodeCluster[node] = index;
+        nodeLocal[node] = cluster.nodeCount;
+        nodeAtCell[cell] = node;
+        cluster.nodes[cluster.nodeCount++] = node;
+        nodeCount++;
+    }
+
+    private void computeDistances(Cluster cluster) {
+        int n = cluster.nodeCount;
+        if (cluster.distances.length < n * n)
+            cluster.distances = new float[n * n];
+
+        SearchBuffers b = localBuffers.get();
+        loadCluster(b, cluster);
+
+        if (isOpen(b, cluster)) { // Without obstacles the cost is the octile distance.
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    int from = nodeCell[cluster.nodes[i]];
+                    int to = nodeCell[cluster.nodes[j]];
+                    cluster.distances[i * n + j] = heuristic(from, to);
+                }
+            }
+            return;
+        }
+
+        // Costs are symmetric, so each search only needs to reach the nodes after it.
+        for (int i = 0; i < n; i++) {
+            cluster.distances[i * n + i] = 0;
+            if (i == n - 1)
+                break;
+
+            b.beginTargets();
+            for (int j = i + 1; j < n; j++)
+                b.markTarget(getLocalIndex(cluster, nodeCell[cluster.nodes[j]]));
+
+            searchCluster(b, cluster, nodeCell[cluster.nodes[i]], -1, n - 1 - i);
+
+            for (int j = i + 1; j < n; j++) {
+                int local = getLocalIndex(cluster, nodeCell[cluster.nodes[j]]);
+                float distance = b.isClosed(local) ? b.g[local] : INFINITY;
+                cluster.distances[i * n + j] = distance;
+                cluster.distances[j * n + i] = distance;
+            }
+        }
+    }
+
+    @Override
+    public void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        int version = collisionGrid.getVersion();
+        if (version == lastGridVersion)
+            return; // Collision unchanged.
+        lastGridVersion = version;
+
+        int cx = x / clusterSize;
+        int cy = y / clusterSize;
+
+        synchronized (dirtyClusters) {
+            dirtyClusters.set(cx + cy * clusterColumns);
+
+            // Border cells change the entrances of the neighbouring cluster too.
+            if (x % clusterSize == 0 && cx > 0)
+                dirtyClusters.set(cx - 1 + cy * clusterColumns);
+            if (x % clusterSize == clusterSize - 1 && cx < clusterColumns - 1)
+                dirtyClusters.set(cx + 1 + cy * clusterColumns);
+            if (y % clusterSize == 0 && cy > 0)
+                dirtyClusters.set(cx + (cy - 1) * clusterColumns);
+            if (y % clusterSize == clusterSize - 1 && cy < clusterRows - 1)
+                dirtyClusters.set(cx + (cy + 1) * clusterColumns);
+        }
+    }
+
+    /**
+     * Unregisters this pathfinder from the map, tile changes will no longer rebuild clusters.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+    }
+
+    /**
+     * Returns true if the given cell is within the map and not blocked.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given cell is walkable.
+     */
+    public boolean isWalkable(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && !blocked.get(x + y * width);
+    }
+
+    private int getClusterIndex(int cell) {
+        return (cell % width) / clusterSize + (cell / width) / clusterSize * clusterColumns;
+    }
+
+    private int getLocalIndex(Cluster cluster, int cell) {
+        return (cell % width - cluster.x) + (cell / width - cluster.y) * cluster.width;
+    }
+
+    private float heuristic(int from, int to) {
+        return octile(Math.abs(from % width - to % width), Math.abs(from / width - to / width));
+    }
+
+    private static float octile(int dx, int dy) {
+        return (dx + dy) + (DIAGONAL_COST - 2) * Math.min(dx, dy);
+    }
+
+    /**
+     * Sets the weight of the abstract search heuristic. A weight of one finds the shortest path through the abstract graph, higher weights expand
+     * fewer nodes but the path found may be up to the weight times longer. Defaults to {@link #DEFAULT_HEURISTIC_WEIGHT}.
+     * 
+     * @param heuristicWeight
+     *            the heuristic weight.
+     * @throws IllegalArgumentException
+     *             if the weight is less than one.
+     */
+    public void setHeuristicWeight(float heuristicWeight) throws IllegalArgumentException {
+        if (heuristicWeight < 1)
+            throw new IllegalArgumentException("heuristicWeight must be at least one: " + heuristicWeight);
+        this.heuristicWeight = heuristicWeight;
+    }
+
+    /**
+     * Returns the weight of the abstract search heuristic.
+     * 
+     * @return the weight of the abstract search heuristic.
+     */
+    public float getHeuristicWeight() {
+        return heuristicWeight;
+    }
+
+    /**
+     * Returns the number of nodes in the abstract graph.
+     * 
+     * @return the number of nodes in the abstract graph.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the size of each cluster in tiles.
+     * 
+     * @return the size of each cluster in tiles.
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Returns the number of cluster columns.
+     * 
+     * @return the number of cluster columns.
+     */
+    public int getClusterColumns() {
+        return clusterColumns;
+    }
+
+    /**
+     * Returns the number of cluster rows.
+     * 
+     * @return the number of cluster rows.
+     */
+    public int getClusterRows() {
+        return clusterRows;
+    }
+
+    /**
+     * Returns the map this pathfinder searches.
+     * 
+     * @return the map this pathfinder searches.
+     */
+    public TiledMap getMap() {
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [map=%s, clusterSize=%s, clusterColumns=%s, clusterRows=%s, nodeCount=%s]", getClass().getSimpleName(), map, clusterSize, clusterColumns, clusterRows, nodeCount);
+    }
+
+    /**
+     * A rectangle of tiles, its entrance nodes and the walking cost between each pair of nodes (row major, infinity if unreachable).
+     */
+    private static final class Cluster {
+
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        int[] nodes = new int[8];
+        int nodeCount;
+        float[] distances = new float[0];
+
+        Cluster(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * The per-thread state of a search, used for both cluster and abstract graph searches. Entries are stamped with the generation of the current
+     * search so the arrays never need clearing between searches.
+     */
+    private static final class SearchBuffers {
+
+        float[] g;
+        int[] parent;
+        int[] visited;
+        int[] closed;
+        int generation;
+
+        final IntMinHeap open = new IntMinHeap(64);
+
+        int[] cells = new int[64];
+        int cellCount;
+
+        float[] costs = new float[16];
+
+        final boolean[] walkable;
+        Cluster loadedCluster;
+        int loadedVersion;
+
+        int[] targets;
+        int targetGeneration;
+
+        SearchBuffers(int capacity) {
+            this.g = new float[capacity];
+            this.parent = new int[capacity];
+            this.visited = new int[capacity];
+            this.closed = new int[capacity];
+            this.walkable = new boolean[capacity];
+            this.targets = new int[capacity];
+        }
+
+        void ensureCapacity(int capacity) {
+            if (g.length >= capacity)
+                return;
+            capacity = Math.max(capacity, g.length + (g.length >> 1));
+            g = new float[capacity];
+            parent = new int[capacity];
+            visited = new int[capacity];
+            closed = new int[capacity];
+            generation = 0;
+        }
+
+        void begin() {
+            open.clear();
+            if (++generation == 0) {
+                Arrays.fill(visited, 0);
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+        }
+
+        void visit(int index, float cost, int from) {
+            g[index] = cost;
+            parent[index] = from;
+            visited[index] = generation;
+        }
+
+        boolean isVisited(int index) {
+            return visited[index] == generation;
+        }
+
+        void close(int index) {
+            closed[index] = generation;
+        }
+
+        boolean isClosed(int index) {
+            return closed[index] == generation;
+        }
+
+        void beginTargets() {
+            if (++targetGeneration == 0) {
+                Arrays.fill(targets, 0);
+                targetGeneration = 1;
+            }
+        }
+
+        void markTarget(int index) {
+            targets[index] = targetGeneration;
+        }
+
+        boolean isTarget(int index) {
+            return targets[index] == targetGeneration;
+        }
+
+        void pushCell(int cell) {
+            if (cellCount == cells.length)
+                cells = Arrays.copyOf(cells, cells.length * 2);
+            cells[cellCount++] = cell;
+        }
+
+        float[] getCosts(int count) {
+            if (costs.length < count)
+                costs = new float[Math.max(count, costs.length * 2)];
+            return costs;
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.github.maxstupo.flatengine.map.path;
+
+/**
+ * This interface is used for delivering the results of asynchronous path requests made to a {@link PathService}.
+ * 
+ * @author Maxstupo
+ */
+public interface IPathCallback {
+
+    /**
+     * Called from {@link PathService#dispatchResults()} when a path request has completed.
+     * 
+     * @param request
+     *            the request that completed.
+     * @param path
+     *            the path found, or null if the goal can't be reached.
+     */
+    void onPathComplete(PathRequest request, Path path);
+}
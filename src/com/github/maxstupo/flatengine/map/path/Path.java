@@ -0,0 +1,132 @@
+package com.github.maxstupo.flatengine.map.path;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an immutable path of tile cells, from the start cell to the goal cell (both inclusive). Paths are shared between all users
+ * of a {@link Pathfinder} cache and must not be modified.
+ * 
+ * @author Maxstupo
+ */
+public class Path {
+
+    private final int[] cells;
+    private final int mapWidth;
+    private final float cost;
+
+    /**
+     * Create a new {@link Path} object.
+     * 
+     * @param cells
+     *            the cell indexes (<code>x + y * mapWidth</code>) of the path, from start to goal. The array is not copied.
+     * @param mapWidth
+     *            the width of the map in tiles.
+     * @param cost
+     *            the total movement cost of the path.
+     */
+    public Path(int[] cells, int mapWidth, float cost) {
+        this.cells = cells;
+        this.mapWidth = mapWidth;
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the number of cells in this path.
+     * 
+     * @return the number of cells in this path.
+     */
+    public int getLength() {
+        return cells.length;
+    }
+
+    /**
+     * Returns the x tile position of the given step.
+     * 
+     * @param step
+     *            the step, between 0 and ({@link #getLength()} - 1).
+     * @return the x tile position of the given step.
+     */
+    public int getX(int step) {
+        return cells[step] % mapWidth;
+    }
+
+    /**
+     * Returns the y tile position of the given step.
+     * 
+     * @param step
+     *            the step, between 0 and ({@link #getLength()} - 1).
+     * @return the y tile position of the given step.
+     */
+    public int getY(int step) {
+        return cells[step] / mapWidth;
+    }
+
+    /**
+     * Returns the cell index (<code>x + y * mapWidth</code>) of the given step.
+     * 
+     * @param step
+     *            the step, between 0 and ({@link #getLength()} - 1).
+     * @return the cell index of the given step.
+     */
+    public int getCell(int step) {
+        return cells[step];
+    }
+
+    /**
+     * Returns true if this path passes through the given cell index.
+     * 
+     * @param cell
+     *            the cell index (<code>x + y * mapWidth</code>).
+     * @return true if this path passes through the given cell.
+     */
+    public boolean contains(int cell) {
+        for (int c : cells) {
+            if (c == cell)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the total movement cost of this path, straight steps cost 1 and diagonal steps cost sqrt(2).
+     * 
+     * @return the total movement cost of this path.
+     */
+    public float getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [length=%s, cost=%s]", getClass().getSimpleName(), cells.length, cost);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Arrays.hashCode(cells);
+        result = prime * result + Float.floatToIntBits(cost);
+        result = prime * result + mapWidth;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Path other = (Path) obj;
+        if (!Arrays.equals(cells, other.cells))
+            return false;
+        if (Float.floatToIntBits(cost) != Float.floatToIntBits(other.cost))
+            return false;
+        if (mapWidth != other.mapWidth)
+            return false;
+        return true;
+    }
+
+}
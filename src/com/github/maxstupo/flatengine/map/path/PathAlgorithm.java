@@ -0,0 +1,15 @@
+package com.github.maxstupo.flatengine.map.path;
+
+/**
+ * The search algorithm used by the {@link Pathfinder} class.
+ * 
+ * @author Maxstupo
+ */
+public enum PathAlgorithm {
+    /** A* search expanding every neighbouring cell. */
+    ASTAR,
+
+    /** Jump Point Search, an A* variant that skips over symmetric paths in open areas. Requires diagonal movement, otherwise A* is used. */
+    JPS
+
+}
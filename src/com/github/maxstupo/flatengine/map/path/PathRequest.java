@@ -0,0 +1,139 @@
+package com.github.maxstupo.flatengine.map.path;
+
+/**
+ * This class represents a path request queued in a {@link PathService}. The request is searched on a worker thread and its callback is invoked on
+ * the thread calling {@link PathService#dispatchResults()}.
+ * 
+ * @author Maxstupo
+ */
+public class PathRequest {
+
+    private final int startX;
+    private final int startY;
+    private final int goalX;
+    private final int goalY;
+
+    private final IPathCallback callback;
+
+    private volatile boolean isCancelled;
+    private volatile boolean isComplete;
+    private volatile Path path;
+
+    /**
+     * Create a new {@link PathRequest} object.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @param callback
+     *            the callback notified when the request completes, can be null.
+     */
+    public PathRequest(int startX, int startY, int goalX, int goalY, IPathCallback callback) {
+        this.startX = startX;
+        this.startY = startY;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        this.callback = callback;
+    }
+
+    /**
+     * Cancels this request. A cancelled request will not be searched if it hasn't started, and its callback will not be invoked.
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * Returns true if this request has been cancelled.
+     * 
+     * @return true if this request has been cancelled.
+     */
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Returns true if the search of this request has finished.
+     * 
+     * @return true if the search of this request has finished.
+     */
+    public boolean isComplete() {
+        return isComplete;
+    }
+
+    /**
+     * Sets the result of this request.
+     * 
+     * @param path
+     *            the path found, or null if the goal can't be reached.
+     */
+    void complete(Path path) {
+        this.path = path;
+        this.isComplete = true;
+    }
+
+    /**
+     * Returns the path found, or null if the goal can't be reached or the request hasn't {@link #isComplete() completed}.
+     * 
+     * @return the path found.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the callback notified when this request completes.
+     * 
+     * @return the callback, or null.
+     */
+    public IPathCallback getCallback() {
+        return callback;
+    }
+
+    /**
+     * Returns the x tile position to start from.
+     * 
+     * @return the x tile position to start from.
+     */
+    public int getStartX() {
+        return startX;
+    }
+
+    /**
+     * Returns the y tile position to start from.
+     * 
+     * @return the y tile position to start from.
+     */
+    public int getStartY() {
+        return startY;
+    }
+
+    /**
+     * Returns the x tile position of the goal.
+     * 
+     * @return the x tile position of the goal.
+     */
+    public int getGoalX() {
+        return goalX;
+    }
+
+    /**
+     * Returns the y tile position of the goal.
+     * 
+     * @return the y tile position of the goal.
+     */
+    public int getGoalY() {
+        return goalY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [startX=%s, startY=%s, goalX=%s, goalY=%s, isCancelled=%s, isComplete=%s]", getClass().getSimpleName(), startX, startY, goalX, goalY, isCancelled, isComplete);
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.github.maxstupo.flatengine.map.path;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class searches path requests on a pool of worker threads, so expensive searches don't stall the game loop. Completed requests are queued and
+ * their callbacks are invoked on the game thread by calling {@link #dispatchResults()} once per update.
+ * 
+ * @author Maxstupo
+ */
+public class PathService {
+
+    private final Pathfinder pathfinder;
+    private final ExecutorService executor;
+
+    private final Queue<PathRequest> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Create a new {@link PathService} object.
+     * 
+     * @param pathfinder
+     *            the pathfinder used to search requests.
+     * @param threads
+     *            the number of worker threads.
+     * @throws IllegalArgumentException
+     *             if threads is less than one.
+     */
+    public PathService(Pathfinder pathfinder, int threads) throws IllegalArgumentException {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least one: " + threads);
+        this.pathfinder = pathfinder;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PathService-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a new {@link PathService} object, using one worker thread per available processor except one (minimum of one).
+     * 
+     * @param pathfinder
+     *            the pathfinder used to search requests.
+     */
+    public PathService(Pathfinder pathfinder) {
+        this(pathfinder, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Queues a path request.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @param callback
+     *            the callback invoked from {@link #dispatchResults()} when the request completes, can be null.
+     * @return the request, that can be used to cancel or poll the result.
+     * @throws RejectedExecutionException
+     *             if this service has been shutdown.
+     */
+    public PathRequest request(int startX, int startY, int goalX, int goalY, IPathCallback callback) throws RejectedExecutionException {
+        PathRequest request = new PathRequest(startX, startY, goalX, goalY, callback);
+
+        pending.incrementAndGet();
+        try {
+            executor.execute(() -> search(request));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+        return request;
+    }
+
+    private void search(PathRequest request) {
+        try {
+            if (!request.isCancelled())
+                request.complete(pathfinder.findPath(request.getStartX(), request.getStartY(), request.getGoalX(), request.getGoalY()));
+        } finally {
+            completed.add(request);
+        }
+    }
+
+    /**
+     * Invokes the callbacks of all completed requests, skipping cancelled requests. Should be called from the game thread.
+     * 
+     * @return the number of callbacks invoked.
+     */
+    public int dispatchResults() {
+        int count = 0;
+
+        PathRequest request;
+        while ((request = completed.poll()) != null) {
+            pending.decrementAndGet();
+
+            if (request.isCancelled() || request.getCallback() == null)
+                continue;
+            request.getCallback().onPathComplete(request, request.getPath());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of requests that have not been dispatched yet.
+     * 
+     * @return the number of requests that have not been dispatched yet.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the worker threads. Queued requests that haven't started are discarded.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        completed.clear();
+        pending.set(0);
+    }
+
+    /**
+     * Returns the pathfinder used to search requests.
+     * 
+     * @return the pathfinder used to search requests.
+     */
+    public Pathfinder getPathfinder() {
+        return pathfinder;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [pathfinder=%s, pending=%s]", getClass().getSimpleName(), pathfinder, pending.get());
+    }
+
+}
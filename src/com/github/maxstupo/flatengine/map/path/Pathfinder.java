@@ -0,0 +1,605 @@
+package com.github.maxstupo.flatengine.map.path;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.maxstupo.flatengine.map.ITileChangeListener;
+import com.github.maxstupo.flatengine.map.TiledMap;
+import com.github.maxstupo.flatengine.map.collision.TileCollisionGrid;
+import com.github.maxstupo.flatengine.map.layer.TileLayer;
+import com.github.maxstupo.flatengine.util.BitGrid;
+import com.github.maxstupo.flatengine.util.IntMinHeap;
+
+/**
+ * This class finds paths between tile cells of a {@link TiledMap}, using the blocked cells of the map {@link TileCollisionGrid} as obstacles. Paths
+ * can be found using A* or Jump Point Search, diagonal steps are only taken if both neighbouring straight cells are walkable (no corner cutting).
+ * <p>
+ * Found paths are cached by start and goal cell. The cache is invalidated when a tile change affects the walkability of a cell: paths through a cell
+ * that became blocked are removed, and the whole cache is cleared when a cell becomes walkable as shorter paths may now exist.
+ * <p>
+ * Searching is thread safe, each thread searches using its own reusable buffers so repeated searches don't allocate (apart from the resulting path).
+ * Use a {@link PathService} to search on worker threads.
+ * 
+ * @author Maxstupo
+ */
+public class Pathfinder implements ITileChangeListener {
+
+    /** The default maximum number of cached paths. */
+    public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+    /** Cached in place of paths that don't exist, as failed searches are the most expensive. */
+    private static final Path NO_PATH = new Path(new int[0], 1, Float.POSITIVE_INFINITY);
+
+    private static final int[] DIRECTIONS_X = { 1, -1, 0, 0, 1, 1, -1, -1 };
+    private static final int[] DIRECTIONS_Y = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+    private final TiledMap map;
+    private final TileCollisionGrid collisionGrid;
+    private final BitGrid blocked;
+
+    private final int width;
+    private final int height;
+
+    private volatile PathAlgorithm algorithm = PathAlgorithm.JPS;
+    private volatile boolean isDiagonalAllowed = true;
+
+    private final Map<Long, Path> cache = new LinkedHashMap<Long, Path>(64, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<Long, Path> eldest) {
+            return size() > cacheCapacity;
+        }
+    };
+
+    private int cacheCapacity = DEFAULT_CACHE_CAPACITY;
+    private volatile int cacheGeneration;
+    private int lastGridVersion;
+
+    private final ThreadLocal<SearchBuffers> buffers = new ThreadLocal<SearchBuffers>() {
+
+        @Override
+        protected SearchBuffers initialValue() {
+            return new SearchBuffers(width * height);
+        }
+    };
+
+    /**
+     * Create a new {@link Pathfinder} object, and registers it as a tile listener of the given map.
+     * 
+     * @param map
+     *            the map.
+     */
+    public Pathfinder(TiledMap map) {
+        this.map = map;
+        this.collisionGrid = map.getCollisionGrid();
+        this.blocked = collisionGrid.getBlockedGrid();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.lastGridVersion = collisionGrid.getVersion();
+
+        map.addTileListener(this);
+    }
+
+    /**
+     * Finds a path between the given cells using the current {@link #getAlgorithm() algorithm}.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @return the path, or null if the goal can't be reached or either cell is blocked.
+     */
+    public Path findPath(int startX, int startY, int goalX, int goalY) {
+        return findPath(startX, startY, goalX, goalY, algorithm);
+    }
+
+    /**
+     * Finds a path between the given cells using the given algorithm.
+     * 
+     * @param startX
+     *            the x tile position to start from.
+     * @param startY
+     *            the y tile position to start from.
+     * @param goalX
+     *            the x tile position of the goal.
+     * @param goalY
+     *            the y tile position of the goal.
+     * @param algorithm
+     *            the search algorithm.
+     * @return the path, or null if the goal can't be reached or either cell is blocked.
+     */
+    public Path findPath(int startX, int startY, int goalX, int goalY, PathAlgorithm algorithm) {
+        if (!isWalkable(startX, startY) || !isWalkable(goalX, goalY))
+            return null;
+
+        int start = startX + startY * width;
+        int goal = goalX + goalY * width;
+        if (start == goal)
+            return new Path(new int[] { start }, width, 0);
+
+        Long key = ((long) start << 32) | goal;
+        int generation;
+
+        synchronized (cache) {
+            Path path = cache.get(key);
+            if (path != null)
+                return (path == NO_PATH) ? null : path;
+            generation = cacheGeneration;
+        }
+
+        boolean isDiagonal = isDiagonalAllowed;
+        SearchBuffers b = buffers.get();
+
+        Path path;
+        if (algorithm == PathAlgorithm.JPS && isDiagonal) {
+            path = searchJps(b, start, goal);
+        } else {
+            path = searchAStar(b, start, goal, isDiagonal);
+        }
+
+        synchronized (cache) {
+            if (generation == cacheGeneration) // Don't cache paths found while the map was being changed.
+                cache.put(key, (path != null) ? path : NO_PATH);
+        }
+        return path;
+    }
+
+    private Path searchAStar(SearchBuffers b, int start, int goal, boolean isDiagonal) {
+        b.begin();
+        b.visit(start, 0, -1);
+        b.open.push(start, heuristic(start, goal, isDiagonal));
+
+        int directions = isDiagonal ? 8 : 4;
+
+        while (!b.open.isEmpty()) {
+            int current = b.open.pop();
+            if (b.isClosed(current))
+                continue; // Stale heap entry.
+            if (current == goal)
+                return buildPath(b, start, goal);
+            b.close(current);
+
+            int x = current % width;
+            int y = current / width;
+
+            for (int d = 0; d < directions; d++) {
+                int dx = DIRECTIONS_X[d];
+                int dy = DIRECTIONS_Y[d];
+                int nx = x + dx;
+                int ny = y + dy;
+
+                if (!isWalkable(nx, ny))
+                    continue;
+                if (d >= 4 && (!isWalkable(x + dx, y) || !isWalkable(x, y + dy)))
+                    continue; // Don't cut corners.
+
+                int neighbour = nx + ny * width;
+                if (b.isClosed(neighbour))
+                    continue;
+
+                float g = b.g[current] + ((d >= 4) ? DIAGONAL_COST : 1);
+                if (!b.isVisited(neighbour) || g < b.g[neighbour]) {
+                    b.visit(neighbour, g, current);
+                    b.open.push(neighbour, g + heuristic(neighbour, goal, isDiagonal));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Path searchJps(SearchBuffers b, int start, int goal) {
+        b.begin();
+        b.visit(start, 0, -1);
+        b.open.push(start, heuristic(start, goal, true));
+
+        int goalX = goal % width;
+        int goalY = goal / width;
+
+        while (!b.open.isEmpty()) {
+            int current = b.open.pop();
+            if (b.isClosed(current))
+                continue;
+            if (current == goal)
+                return buildPath(b, start, goal);
+            b.close(current);
+
+            int x = current % width;
+            int y = current / width;
+            int parent = b.parent[current];
+
+            int count = findJpsNeighbours(b.neighbours, x, y, parent);
+            for (int i = 0; i < count; i++) {
+                int n = b.neighbours[i];
+                int jumpPoint = jump(n % width, n / width, Integer.signum(n % width - x), Integer.signum(n / width - y), goalX, goalY);
+                if (jumpPoint == -1 || b.isClosed(jumpPoint))
+                    continue;
+
+                float g = b.g[current] + octile(Math.abs(jumpPoint % width - x), Math.abs(jumpPoint / width - y));
+                if (!b.isVisited(jumpPoint) || g < b.g[jumpPoint]) {
+                    b.visit(jumpPoint, g, current);
+                    b.open.push(jumpPoint, g + heuristic(jumpPoint, goal, true));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the pruned neighbours of the given cell based on the direction travelled from its parent.
+     * 
+     * @return the number of neighbours written into the given array.
+     */
+    private int findJpsNeighbours(int[] out, int x, int y, int parent) {
+        int count = 0;
+
+        if (parent == -1) { // Start cell, all walkable neighbours.
+            for (int d = 0; d < 8; d++) {
+                int dx = DIRECTIONS_X[d];
+                int dy = DIRECTIONS_Y[d];
+                if (!isWalkable(x + dx, y + dy))
+                    continue;
+                if (d >= 4 && (!isWalkable(x + dx, y) || !isWalkable(x, y + dy)))
+                    continue;
+                out[count++] = (x + dx) + (y + dy) * width;
+            }
+            return count;
+        }
+
+        int dx = Integer.signum(x - parent % width);
+        int dy = Integer.signum(y - parent / width);
+
+        if (dx != 0 && dy != 0) {
+            boolean isVerticalWalkable = isWalkable(x, y + dy);
+            boolean isHorizontalWalkable = isWalkable(x + dx, y);
+
+            if (isVerticalWalkable)
+                out[count++] = x + (y + dy) * width;
+            if (isHorizontalWalkable)
+                out[count++] = (x + dx) + y * width;
+            if (isVerticalWalkable && isHorizontalWalkable)
+                out[count++] = (x + dx) + (y + dy) * width;
+
+        } else if (dx != 0) {
+            boolean isNextWalkable = isWalkable(x + dx, y);
+            boolean isDownWalkable = isWalkable(x, y + 1);
+            boolean isUpWalkable = isWalkable(x, y - 1);
+
+            if (isNextWalkable) {
+                out[count++] = (x + dx) + y * width;
+                if (isDownWalkable)
+                    out[count++] = (x + dx) + (y + 1) * width;
+                if (isUpWalkable)
+                    out[count++] = (x + dx) + (y - 1) * width;
+            }
+            if (isDownWalkable)
+                out[count++] = x + (y + 1) * width;
+            if (isUpWalkable)
+                out[count++] = x + (y - 1) * width;
+
+        } else {
+            boolean isNextWalkable = isWalkable(x, y + dy);
+            boolean isRightWalkable = isWalkable(x + 1, y);
+            boolean isLeftWalkable = isWalkable(x - 1, y);
+
+            if (isNextWalkable) {
+                out[count++] = x + (y + dy) * width;
+                if (isRightWalkable)
+                    out[count++] = (x + 1) + (y + dy) * width;
+                if (isLeftWalkable)
+                    out[count++] = (x - 1) + (y + dy) * width;
+            }
+            if (isRightWalkable)
+                out[count++] = (x + 1) + y * width;
+            if (isLeftWalkable)
+                out[count++] = (x - 1) + y * width;
+        }
+        return count;
+    }
+
+    /**
+     * Jumps from the given cell in the given direction until a jump point, the goal or an obstacle is found.
+     * 
+     * @return the cell index of the jump point, or -1 if no jump point was found.
+     */
+    private int jump(int x, int y, int dx, int dy, int goalX, int goalY) {
+        if (dx == 0 || dy == 0)
+            return jumpStraight(x, y, dx, dy, goalX, goalY);
+
+        while (true) {
+            if (!isWalkable(x, y))
+                return -1;
+            if (x == goalX && y == goalY)
+                return x + y * width;
+
+            // Moving diagonally, a cell is a jump point if a straight jump from it finds one.
+            if (jumpStraight(x + dx, y, dx, 0, goalX, goalY) != -1 || jumpStraight(x, y + dy, 0, dy, goalX, goalY) != -1)
+                return x + y * width;
+
+            if (!isWalkable(x + dx, y) || !isWalkable(x, y + dy))
+                return -1;
+
+            x += dx;
+            y += dy;
+        }
+    }
+
+    private int jumpStraight(int x, int y, int dx, int dy, int goalX, int goalY) {
+        while (true) {
+            if (!isWalkable(x, y))
+                return -1;
+            if (x == goalX && y == goalY)
+                return x + y * width;
+
+            if (dx != 0) {
+                if ((isWalkable(x, y - 1) && !isWalkable(x - dx, y - 1)) || (isWalkable(x, y + 1) && !isWalkable(x - dx, y + 1)))
+                    return x + y * width;
+            } else {
+                if ((isWalkable(x - 1, y) && !isWalkable(x - 1, y - dy)) || (isWalkable(x + 1, y) && !isWalkable(x + 1, y - dy)))
+                    return x + y * width;
+            }
+
+            x += dx;
+            y += dy;
+        }
+    }
+
+    /**
+     * Walks the parent links from the goal back to the start, filling in the cells between jump points.
+     */
+    private Path buildPath(SearchBuffers b, int start, int goal) {
+        int points = 0;
+        int length = 1;
+
+        for (int cell = goal; cell != -1; cell = b.parent[cell]) {
+            b.pushPoint(points++, cell);
+
+            int parent = b.parent[cell];
+            if (parent != -1)
+                length += Math.max(Math.abs(cell % width - parent % width), Math.abs(cell / width - parent / width));
+        }
+
+        int[] cells = new int[length];
+        int index = 0;
+        cells[index++] = start;
+
+        for (int i = points - 1; i > 0; i--) {
+            int from = b.points[i];
+            int to = b.points[i - 1];
+
+            int stepX = Integer.signum(to % width - from % width);
+            int stepY = Integer.signum(to / width - from / width);
+            int step = stepX + stepY * width;
+
+            for (int cell = from; cell != to;) {
+                cell += step;
+                cells[index++] = cell;
+            }
+        }
+        return new Path(cells, width, b.g[goal]);
+    }
+
+    private float heuristic(int from, int to, boolean isDiagonal) {
+        int dx = Math.abs(from % width - to % width);
+        int dy = Math.abs(from / width - to / width);
+        return isDiagonal ? octile(dx, dy) : (dx + dy);
+    }
+
+    private static float octile(int dx, int dy) {
+        return (dx + dy) + (DIAGONAL_COST - 2) * Math.min(dx, dy);
+    }
+
+    /**
+     * Returns true if the given cell is within the map and not blocked.
+     * 
+     * @param x
+     *            the x tile position.
+     * @param y
+     *            the y tile position.
+     * @return true if the given cell is walkable.
+     */
+    public boolean isWalkable(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && !blocked.get(x + y * width);
+    }
+
+    @Override
+    public void onTileChanged(TileLayer layer, int x, int y, int oldGid, int newGid) {
+        int version = collisionGrid.getVersion();
+        if (version == lastGridVersion)
+            return; // Collision unchanged.
+        lastGridVersion = version;
+
+        int cell = x + y * width;
+        boolean isBlocked = blocked.get(x, y);
+
+        synchronized (cache) {
+            cacheGeneration++;
+
+            if (!isBlocked) {
+                cache.clear();
+                return;
+            }
+
+            Iterator<Path> it = cache.values().iterator();
+            while (it.hasNext()) {
+                Path path = it.next();
+                if (path != NO_PATH && path.contains(cell))
+                    it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached paths.
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cacheGeneration++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Unregisters this pathfinder from the map, the cache will no longer be invalidated by tile changes.
+     */
+    public void dispose() {
+        map.removeTileListener(this);
+        clearCache();
+    }
+
+    /**
+     * Sets the maximum number of cached paths, the least recently used paths are removed first. Set to zero to disable caching.
+     * 
+     * @param cacheCapacity
+     *            the maximum number of cached paths.
+     */
+    public void setCacheCapacity(int cacheCapacity) {
+        synchronized (cache) {
+            this.cacheCapacity = Math.max(0, cacheCapacity);
+            cacheGeneration++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached paths.
+     * 
+     * @return the maximum number of cached paths.
+     */
+    public int getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    /**
+     * Returns the number of cached paths.
+     * 
+     * @return the number of cached paths.
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Sets the algorithm used by {@link #findPath(int, int, int, int)}. Defaults to {@link PathAlgorithm#JPS}.
+     * 
+     * @param algorithm
+     *            the search algorithm.
+     */
+    public void setAlgorithm(PathAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Returns the algorithm used by {@link #findPath(int, int, int, int)}.
+     * 
+     * @return the search algorithm.
+     */
+    public PathAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sets if paths can take diagonal steps. Enabled by default. Changing this clears the cache.
+     * 
+     * @param isDiagonalAllowed
+     *            true to allow diagonal steps.
+     */
+    public void setDiagonalAllowed(boolean isDiagonalAllowed) {
+        this.isDiagonalAllowed = isDiagonalAllowed;
+        clearCache();
+    }
+
+    /**
+     * Returns true if paths can take diagonal steps.
+     * 
+     * @return true if paths can take diagonal steps.
+     */
+    public boolean isDiagonalAllowed() {
+        return isDiagonalAllowed;
+    }
+
+    /**
+     * Returns the map this pathfinder searches.
+     * 
+     * @return the map this pathfinder searches.
+     */
+    public TiledMap getMap() {
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [map=%s, algorithm=%s, isDiagonalAllowed=%s, cacheCapacity=%s]", getClass().getSimpleName(), map, algorithm, isDiagonalAllowed, cacheCapacity);
+    }
+
+    /**
+     * The per-thread state of a search. Cells are marked visited/closed by stamping them with the generation of the current search, so the arrays
+     * never need clearing between searches.
+     */
+    private static final class SearchBuffers {
+
+        final float[] g;
+        final int[] parent;
+        final int[] visited;
+        final int[] closed;
+
+        final IntMinHeap open = new IntMinHeap(256);
+        final int[] neighbours = new int[8];
+
+        int[] points = new int[64];
+        int generation;
+
+        SearchBuffers(int cells) {
+            this.g = new float[cells];
+            this.parent = new int[cells];
+            this.visited = new int[cells];
+            this.closed = new int[cells];
+        }
+
+        void begin() {
+            open.clear();
+            if (++generation == 0) { // Wrapped around, clear stamps to prevent false positives.
+                Arrays.fill(visited, 0);
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+        }
+
+        void visit(int cell, float cost, int from) {
+            g[cell] = cost;
+            parent[cell] = from;
+            visited[cell] = generation;
+        }
+
+        boolean isVisited(int cell) {
+            return visited[cell] == generation;
+        }
+
+        void close(int cell) {
+            closed[cell] = generation;
+        }
+
+        boolean isClosed(int cell) {
+            return closed[cell] == generation;
+        }
+
+        void pushPoint(int index, int cell) {
+            if (index == points.length)
+                points = Arrays.copyOf(points, points.length * 2);
+            points[index] = cell;
+        }
+    }
+
+}
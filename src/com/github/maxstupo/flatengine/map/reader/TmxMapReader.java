@@ -27,6 +27,9 @@ import com.github.maxstupo.flatengine.util.Util;
 import com.github.maxstupo.flatengine.util.UtilXML;
 import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
 import com.github.maxstupo.flatengine.util.math.Circle;
+import com.github.maxstupo.flatengine.util.math.Ellipse;
+import com.github.maxstupo.flatengine.util.math.Polygon;
+import com.github.maxstupo.flatengine.util.math.Polyline;
 import com.github.maxstupo.flatengine.util.math.Rectangle;
 import com.github.maxstupo.flatengine.util.math.UtilMath;
 
@@ -70,6 +73,8 @@ public class TmxMapReader {
         readTilesets(map, doc, file);
         readMapTileLayers(map, doc, file);
         readMapObjects(map, doc, file);
+
+        map.buildCollisionGrid();
         return map;
 
     }
@@ -100,13 +105,18 @@ public class TmxMapReader {
                 float height = (float) (UtilXML.xpathGetNumber(n, "@height", 0) / map.getTileWidth());
 
                 AbstractBasicShape shape = null;
+                Node points;
                 if (UtilXML.xpathGetNode(n, "ellipse") != null) {
                     if (width == height) {
                         float radius = width / 2f;
-                        shape = new Circle(x - radius, y - radius, radius);
+                        shape = new Circle(x + radius, y + radius, radius);
                     } else {
-                        throw new RuntimeException("Ellipse shapes are not supported for map objects: " + mapFile + ", id: " + id + ", name: " + objectName);
+                        shape = new Ellipse(x + width / 2f, y + height / 2f, width / 2f, height / 2f);
                     }
+                } else if ((points = UtilXML.xpathGetNode(n, "polygon")) != null) {
+                    shape = new Polygon(x, y, readPoints(map, points, mapFile, id));
+                } else if ((points = UtilXML.xpathGetNode(n, "polyline")) != null) {
+                    shape = new Polyline(x, y, readPoints(map, points, mapFile, id));
                 } else {
                     shape = new Rectangle(x, y, width, height);
                 }
@@ -119,9 +129,29 @@ public class TmxMapReader {
         return ll;
     }
 
+    private static float[] readPoints(TiledMap map, Node node, String mapFile, int id) {
+        String points = UtilXML.xpathGetString(node, "@points", "").trim();
+        if (points.isEmpty())
+            throw new RuntimeException("A polygon or polyline has no points for map: '" + mapFile + "', id: " + id);
+
+        String[] pairs = points.split("\\s+");
+        float[] vertices = new float[pairs.length * 2];
+        for (int i = 0; i < pairs.length; i++) {
+            int comma = pairs[i].indexOf(',');
+            if (comma == -1)
+                throw new RuntimeException("Invalid point '" + pairs[i] + "' for map: '" + mapFile + "', id: " + id);
+
+            vertices[i * 2] = Float.parseFloat(pairs[i].substring(0, comma)) / map.getTileWidth();
+            vertices[i * 2 + 1] = Float.parseFloat(pairs[i].substring(comma + 1)) / map.getTileWidth();
+        }
+        return vertices;
+    }
+
     private static void readMapObjects(TiledMap map, Document doc, String mapFile) {
-        for (ObjectLayer layer : readObjects(map, doc, mapFile, "map", true))
+        for (ObjectLayer layer : readObjects(map, doc, mapFile, "map", true)) {
+            layer.rebuildIndex();
             map.addLayer(layer);
+        }
 
     }
 
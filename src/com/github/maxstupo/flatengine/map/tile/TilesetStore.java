@@ -122,6 +122,18 @@ public class TilesetStore {
         return tiles[gid];
     }
 
+    /**
+     * Returns the number of global ids covered by this store, all valid global ids are less than this value. If {@link #recacheTiles()} hasn't
+     * been called yet it will be.
+     * 
+     * @return the number of global ids covered by this store.
+     */
+    public int getGlobalIdCount() {
+        if (tiles == null)
+            recacheTiles();
+        return tiles.length;
+    }
+
     @Override
     public String toString() {
         return String.format("%s [currentFirstGid=%s, tilesets=%s]", getClass().getSimpleName(), currentFirstGid, tilesets);
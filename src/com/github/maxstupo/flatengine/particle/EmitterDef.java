@@ -0,0 +1,428 @@
+package com.github.maxstupo.flatengine.particle;
+
+/**
+ * This class defines a particle emitter: how often particles spawn, how they move and how they look over their lifetime. Positions, sizes and speeds
+ * are measured in tiles, times in seconds. Each value drawn at spawn time is picked uniformly between its min and max.
+ * <p>
+ * All particles of an emitter are drawn with one region of a sprite from the {@link com.github.maxstupo.flatengine.AssetManager AssetManager}. A
+ * definition shouldn't be changed while emitters created from it are alive.
+ * 
+ * @author Maxstupo
+ */
+public class EmitterDef {
+
+    private final String id;
+    private final String sprite;
+
+    private int regionX;
+    private int regionY;
+    private int regionWidth;
+    private int regionHeight;
+
+    private int maxParticles = 1024;
+    private float rate = 64;
+    private int burst;
+    private float duration = -1;
+
+    private float lifeMin = 1;
+    private float lifeMax = 1;
+    private float speedMin;
+    private float speedMax = 1;
+    private float angleMin;
+    private float angleMax = 360;
+    private float spread;
+
+    private float gravityX;
+    private float gravityY;
+    private float drag;
+
+    private float sizeStart = 0.25f;
+    private float sizeEnd = 0.25f;
+    private float alphaStart = 1;
+    private float alphaEnd;
+
+    /**
+     * Create a new {@link EmitterDef} object.
+     * 
+     * @param id
+     *            the id of this definition.
+     * @param sprite
+     *            the key of the sprite particles are drawn with.
+     * @throws IllegalArgumentException
+     *             if id or sprite is null.
+     */
+    public EmitterDef(String id, String sprite) throws IllegalArgumentException {
+        if (id == null || sprite == null)
+            throw new IllegalArgumentException("The id or sprite is null!");
+        this.id = id;
+        this.sprite = sprite;
+    }
+
+    /**
+     * Sets the region of the sprite particles are drawn with. A width or height of zero uses the whole sprite, which is the default.
+     * 
+     * @param x
+     *            the left edge of the region, in pixels.
+     * @param y
+     *            the top edge of the region, in pixels.
+     * @param width
+     *            the width of the region, in pixels.
+     * @param height
+     *            the height of the region, in pixels.
+     * @return this object for chaining.
+     */
+    public EmitterDef setRegion(int x, int y, int width, int height) {
+        this.regionX = x;
+        this.regionY = y;
+        this.regionWidth = width;
+        this.regionHeight = height;
+        return this;
+    }
+
+    /**
+     * Sets how particles are spawned.
+     * 
+     * @param maxParticles
+     *            the maximum number of live particles, the emitter preallocates storage for this many.
+     * @param rate
+     *            the number of particles spawned per second.
+     * @param burst
+     *            the number of particles spawned at once when the emitter starts.
+     * @param duration
+     *            the number of seconds particles are spawned for, or a negative value to spawn until the emitter is stopped.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if maxParticles is less than one, or rate or burst is negative.
+     */
+    public EmitterDef setEmission(int maxParticles, float rate, int burst, float duration) throws IllegalArgumentException {
+        if (maxParticles < 1 || rate < 0 || burst < 0)
+            throw new IllegalArgumentException("Invalid emission: maxParticles=" + maxParticles + ", rate=" + rate + ", burst=" + burst);
+        this.maxParticles = maxParticles;
+        this.rate = rate;
+        this.burst = burst;
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Sets the lifetime of particles.
+     * 
+     * @param min
+     *            the minimum lifetime, in seconds.
+     * @param max
+     *            the maximum lifetime, in seconds.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if min isn't positive or max is less than min.
+     */
+    public EmitterDef setLife(float min, float max) throws IllegalArgumentException {
+        if (min <= 0 || max < min)
+            throw new IllegalArgumentException("Invalid life range: " + min + ", " + max);
+        this.lifeMin = min;
+        this.lifeMax = max;
+        return this;
+    }
+
+    /**
+     * Sets the initial velocity of particles.
+     * 
+     * @param speedMin
+     *            the minimum speed, in tiles per second.
+     * @param speedMax
+     *            the maximum speed, in tiles per second.
+     * @param angleMin
+     *            the minimum direction, in degrees clockwise from the positive x axis.
+     * @param angleMax
+     *            the maximum direction, in degrees clockwise from the positive x axis.
+     * @return this object for chaining.
+     */
+    public EmitterDef setVelocity(float speedMin, float speedMax, float angleMin, float angleMax) {
+        this.speedMin = speedMin;
+        this.speedMax = speedMax;
+        this.angleMin = angleMin;
+        this.angleMax = angleMax;
+        return this;
+    }
+
+    /**
+     * Sets the size of the square area around the emitter position particles spawn in.
+     * 
+     * @param spread
+     *            the width and height of the spawn area, in tiles.
+     * @return this object for chaining.
+     */
+    public EmitterDef setSpread(float spread) {
+        this.spread = spread;
+        return this;
+    }
+
+    /**
+     * Sets the forces applied to particles.
+     * 
+     * @param gravityX
+     *            the x acceleration, in tiles per second squared.
+     * @param gravityY
+     *            the y acceleration, in tiles per second squared.
+     * @param drag
+     *            the fraction of velocity lost per second, zero for none.
+     * @return this object for chaining.
+     */
+    public EmitterDef setForces(float gravityX, float gravityY, float drag) {
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+        this.drag = drag;
+        return this;
+    }
+
+    /**
+     * Sets the size of particles, interpolated linearly over their lifetime.
+     * 
+     * @param start
+     *            the size when spawned, in tiles.
+     * @param end
+     *            the size when dying, in tiles.
+     * @return this object for chaining.
+     */
+    public EmitterDef setSize(float start, float end) {
+        this.sizeStart = start;
+        this.sizeEnd = end;
+        return this;
+    }
+
+    /**
+     * Sets the opacity of particles, interpolated linearly over their lifetime.
+     * 
+     * @param start
+     *            the opacity when spawned, between zero and one.
+     * @param end
+     *            the opacity when dying, between zero and one.
+     * @return this object for chaining.
+     */
+    public EmitterDef setAlpha(float start, float end) {
+        this.alphaStart = Math.max(0, Math.min(1, start));
+        this.alphaEnd = Math.max(0, Math.min(1, end));
+        return this;
+    }
+
+    /**
+     * Returns the id of this definition.
+     * 
+     * @return the id of this definition.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the key of the sprite particles are drawn with.
+     * 
+     * @return the key of the sprite particles are drawn with.
+     */
+    public String getSprite() {
+        return sprite;
+    }
+
+    /**
+     * Returns the left edge of the sprite region, in pixels.
+     * 
+     * @return the left edge of the sprite region.
+     */
+    public int getRegionX() {
+        return regionX;
+    }
+
+    /**
+     * Returns the top edge of the sprite region, in pixels.
+     * 
+     * @return the top edge of the sprite region.
+     */
+    public int getRegionY() {
+        return regionY;
+    }
+
+    /**
+     * Returns the width of the sprite region, in pixels.
+     * 
+     * @return the width of the sprite region, or zero for the whole sprite.
+     */
+    public int getRegionWidth() {
+        return regionWidth;
+    }
+
+    /**
+     * Returns the height of the sprite region, in pixels.
+     * 
+     * @return the height of the sprite region, or zero for the whole sprite.
+     */
+    public int getRegionHeight() {
+        return regionHeight;
+    }
+
+    /**
+     * Returns the maximum number of live particles.
+     * 
+     * @return the maximum number of live particles.
+     */
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    /**
+     * Returns the number of particles spawned per second.
+     * 
+     * @return the number of particles spawned per second.
+     */
+    public float getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the number of particles spawned at once when the emitter starts.
+     * 
+     * @return the number of particles spawned at once when the emitter starts.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Returns the number of seconds particles are spawned for.
+     * 
+     * @return the number of seconds particles are spawned for, or a negative value for no limit.
+     */
+    public float getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the minimum lifetime of particles, in seconds.
+     * 
+     * @return the minimum lifetime of particles.
+     */
+    public float getLifeMin() {
+        return lifeMin;
+    }
+
+    /**
+     * Returns the maximum lifetime of particles, in seconds.
+     * 
+     * @return the maximum lifetime of particles.
+     */
+    public float getLifeMax() {
+        return lifeMax;
+    }
+
+    /**
+     * Returns the minimum initial speed of particles, in tiles per second.
+     * 
+     * @return the minimum initial speed of particles.
+     */
+    public float getSpeedMin() {
+        return speedMin;
+    }
+
+    /**
+     * Returns the maximum initial speed of particles, in tiles per second.
+     * 
+     * @return the maximum initial speed of particles.
+     */
+    public float getSpeedMax() {
+        return speedMax;
+    }
+
+    /**
+     * Returns the minimum initial direction of particles, in degrees.
+     * 
+     * @return the minimum initial direction of particles.
+     */
+    public float getAngleMin() {
+        return angleMin;
+    }
+
+    /**
+     * Returns the maximum initial direction of particles, in degrees.
+     * 
+     * @return the maximum initial direction of particles.
+     */
+    public float getAngleMax() {
+        return angleMax;
+    }
+
+    /**
+     * Returns the size of the spawn area, in tiles.
+     * 
+     * @return the size of the spawn area.
+     */
+    public float getSpread() {
+        return spread;
+    }
+
+    /**
+     * Returns the x acceleration of particles, in tiles per second squared.
+     * 
+     * @return the x acceleration of particles.
+     */
+    public float getGravityX() {
+        return gravityX;
+    }
+
+    /**
+     * Returns the y acceleration of particles, in tiles per second squared.
+     * 
+     * @return the y acceleration of particles.
+     */
+    public float getGravityY() {
+        return gravityY;
+    }
+
+    /**
+     * Returns the fraction of velocity particles lose per second.
+     * 
+     * @return the fraction of velocity particles lose per second.
+     */
+    public float getDrag() {
+        return drag;
+    }
+
+    /**
+     * Returns the size of particles when spawned, in tiles.
+     * 
+     * @return the size of particles when spawned.
+     */
+    public float getSizeStart() {
+        return sizeStart;
+    }
+
+    /**
+     * Returns the size of particles when dying, in tiles.
+     * 
+     * @return the size of particles when dying.
+     */
+    public float getSizeEnd() {
+        return sizeEnd;
+    }
+
+    /**
+     * Returns the opacity of particles when spawned.
+     * 
+     * @return the opacity of particles when spawned.
+     */
+    public float getAlphaStart() {
+        return alphaStart;
+    }
+
+    /**
+     * Returns the opacity of particles when dying.
+     * 
+     * @return the opacity of particles when dying.
+     */
+    public float getAlphaEnd() {
+        return alphaEnd;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [id=%s, sprite=%s, maxParticles=%s, rate=%s, burst=%s, duration=%s]", getClass().getSimpleName(), id, sprite, maxParticles, rate, burst, duration);
+    }
+
+}
@@ -0,0 +1,409 @@
+package com.github.maxstupo.flatengine.particle;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.map.Camera;
+
+/**
+ * This class spawns, moves and draws the particles of a single {@link EmitterDef}. Particle state is stored in primitive arrays preallocated to the
+ * maximum particle count, and dead particles are removed by moving the last particle into their place, so a running emitter doesn't allocate.
+ * <p>
+ * Large emitters are moved in parallel over the common {@link ForkJoinPool}. When rendering, particles outside the camera viewport are skipped and the
+ * rest are drawn grouped by opacity, each opacity level using its own pre-faded copy of the sprite region so no composite changes are needed.
+ * 
+ * @author Maxstupo
+ */
+public class ParticleEmitter {
+
+    /** The number of opacity levels particles are drawn with. */
+    public static final int ALPHA_LEVELS = 16;
+
+    /** The minimum number of particles to move in parallel, and the number of particles moved per task. */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final EmitterDef def;
+    private final BufferedImage[] images;
+
+    private final float[] x;
+    private final float[] y;
+    private final float[] velocityX;
+    private final float[] velocityY;
+    private final float[] age;
+    private final float[] life;
+    private int count;
+
+    private float emitterX;
+    private float emitterY;
+    private float time;
+    private float spawnAccumulator;
+    private boolean isEmitting = true;
+
+    private int seed;
+
+    private final int[] levelStart = new int[ALPHA_LEVELS + 2];
+    private int[] drawOrder = new int[0];
+    private int[] drawLevel = new int[0];
+
+    /**
+     * Create a new {@link ParticleEmitter} object.
+     * 
+     * @param def
+     *            the definition of this emitter.
+     * @param image
+     *            the image particles are drawn with, usually a region of a sprite atlas.
+     * @param x
+     *            the x position, in tiles.
+     * @param y
+     *            the y position, in tiles.
+     */
+    public ParticleEmitter(EmitterDef def, BufferedImage image, float x, float y) {
+        this(def, createAlphaLevels(image), x, y);
+    }
+
+    /**
+     * Create a new {@link ParticleEmitter} object that shares the given opacity levels.
+     */
+    ParticleEmitter(EmitterDef def, BufferedImage[] images, float x, float y) {
+        this.def = def;
+        this.images = images;
+
+        int capacity = def.getMaxParticles();
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.velocityX = new float[capacity];
+        this.velocityY = new float[capacity];
+        this.age = new float[capacity];
+        this.life = new float[capacity];
+
+        this.emitterX = x;
+        this.emitterY = y;
+        this.seed = (int) System.nanoTime() | 1;
+
+        spawn(def.getBurst());
+    }
+
+    /**
+     * Creates a copy of the given image for each opacity level, index zero is fully transparent and never drawn.
+     * 
+     * @param image
+     *            the image.
+     * @return a copy of the given image for each opacity level.
+     */
+    static BufferedImage[] createAlphaLevels(BufferedImage image) {
+        BufferedImage[] levels = new BufferedImage[ALPHA_LEVELS + 1];
+        for (int level = 1; level <= ALPHA_LEVELS; level++) {
+            BufferedImage faded = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = faded.createGraphics();
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) level / ALPHA_LEVELS));
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            levels[level] = faded;
+        }
+        return levels;
+    }
+
+    /**
+     * Spawns new particles, moves all particles and removes dead particles.
+     * 
+     * @param delta
+     *            the time since the last update, in seconds.
+     */
+    public void update(float delta) {
+        if (isEmitting) {
+            time += delta;
+            if (def.getDuration() >= 0 && time >= def.getDuration())
+                isEmitting = false;
+
+            spawnAccumulator += def.getRate() * delta;
+            int spawnCount = (int) spawnAccumulator;
+            spawnAccumulator -= spawnCount;
+            spawn(spawnCount);
+        }
+
+        if (count >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new MoveTask(delta, 0, count));
+        } else {
+            move(delta, 0, count);
+        }
+
+        for (int i = count - 1; i >= 0; i--) {
+            if (age[i] < life[i])
+                continue;
+
+            int last = --count;
+            x[i] = x[last];
+            y[i] = y[last];
+            velocityX[i] = velocityX[last];
+            velocityY[i] = velocityY[last];
+            age[i] = age[last];
+            life[i] = life[last];
+        }
+    }
+
+    private void move(float delta, int start, int end) {
+        float damping = 1 / (1 + def.getDrag() * delta);
+        float gx = def.getGravityX() * delta;
+        float gy = def.getGravityY() * delta;
+
+        for (int i = start; i < end; i++) {
+            velocityX[i] = (velocityX[i] + gx) * damping;
+            velocityY[i] = (velocityY[i] + gy) * damping;
+            x[i] += velocityX[i] * delta;
+            y[i] += velocityY[i] * delta;
+            age[i] += delta;
+        }
+    }
+
+    /**
+     * Spawns the given number of particles at the emitter position, limited by the free capacity.
+     * 
+     * @param amount
+     *            the number of particles.
+     */
+    public void spawn(int amount) {
+        amount = Math.min(amount, x.length - count);
+        float spread = def.getSpread();
+
+        for (int n = 0; n < amount; n++) {
+            int i = count++;
+            double angle = Math.toRadians(lerp(def.getAngleMin(), def.getAngleMax(), nextFloat()));
+            float speed = lerp(def.getSpeedMin(), def.getSpeedMax(), nextFloat());
+
+            x[i] = emitterX + (nextFloat() - 0.5f) * spread;
+            y[i] = emitterY + (nextFloat() - 0.5f) * spread;
+            velocityX[i] = (float) Math.cos(angle) * speed;
+            velocityY[i] = (float) Math.sin(angle) * speed;
+            age[i] = 0;
+            life[i] = lerp(def.getLifeMin(), def.getLifeMax(), nextFloat());
+        }
+    }
+
+    /**
+     * Returns a pseudo random float between zero and one, using xorshift to avoid contention and allocation.
+     */
+    private float nextFloat() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return (seed >>> 8) / (float) (1 << 24);
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+
+    /**
+     * Renders all particles within the viewport of the given camera.
+     * 
+     * @param g
+     *            the graphics context to render to.
+     * @param camera
+     *            the camera.
+     */
+    public void render(Graphics2D g, Camera camera) {
+        if (count == 0)
+            return;
+
+        if (drawOrder.length < count) {
+            drawOrder = new int[x.length];
+            drawLevel = new int[x.length];
+        }
+
+        float tileSize = camera.getTileSize();
+        float minX = camera.getX();
+        float minY = camera.getY();
+        float maxX = minX + camera.getViewportTileWidth();
+        float maxY = minY + camera.getViewportTileHeight();
+
+        float sizeStart = def.getSizeStart();
+        float sizeEnd = def.getSizeEnd();
+        float alphaStart = def.getAlphaStart();
+        float alphaEnd = def.getAlphaEnd();
+
+        // Counting sort the visible particles by opacity level, the extra leading slot collects culled particles.
+        Arrays.fill(levelStart, 0);
+        for (int i = 0; i < count; i++) {
+            drawLevel[i] = level(i, minX, minY, maxX, maxY, sizeStart, sizeEnd, alphaStart, alphaEnd);
+            levelStart[drawLevel[i] + 1]++;
+        }
+        for (int level = 0; level <= ALPHA_LEVELS; level++)
+            levelStart[level + 1] += levelStart[level];
+        for (int i = count - 1; i >= 0; i--)
+            drawOrder[--levelStart[drawLevel[i] + 1]] = i;
+
+        int width = images[ALPHA_LEVELS].getWidth();
+        int height = images[ALPHA_LEVELS].getHeight();
+
+        for (int level = 1; level <= ALPHA_LEVELS; level++) {
+            BufferedImage image = images[level];
+            int end = (level == ALPHA_LEVELS) ? count : levelStart[level + 2];
+
+            for (int k = levelStart[level + 1]; k < end; k++) {
+                int i = drawOrder[k];
+                float size = lerp(sizeStart, sizeEnd, age[i] / life[i]);
+                int pixels = Math.max(1, Math.round(size * tileSize));
+                int px = Math.round((x[i] - minX - size * 0.5f) * tileSize);
+                int py = Math.round((y[i] - minY - size * 0.5f) * tileSize);
+
+                if (pixels == width && pixels == height) {
+                    g.drawImage(image, px, py, null);
+                } else {
+                    g.drawImage(image, px, py, pixels, pixels, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the opacity level of the given particle, or -1 if it's outside the viewport or fully transparent.
+     */
+    private int level(int i, float minX, float minY, float maxX, float maxY, float sizeStart, float sizeEnd, float alphaStart, float alphaEnd) {
+        float t = age[i] / life[i];
+        float half = lerp(sizeStart, sizeEnd, t) * 0.5f;
+        if (x[i] + half < minX || x[i] - half > maxX || y[i] + half < minY || y[i] - half > maxY)
+            return -1;
+
+        int level = Math.round(lerp(alphaStart, alphaEnd, t) * ALPHA_LEVELS);
+        return (level <= 0) ? -1 : Math.min(level, ALPHA_LEVELS);
+    }
+
+    /**
+     * Stops spawning particles, existing particles live out their lifetime.
+     */
+    public void stop() {
+        isEmitting = false;
+    }
+
+    /**
+     * Removes all particles and restarts spawning, including the initial burst.
+     */
+    public void restart() {
+        count = 0;
+        time = 0;
+        spawnAccumulator = 0;
+        isEmitting = true;
+        spawn(def.getBurst());
+    }
+
+    /**
+     * Restarts this emitter at the given position, used when a pooled emitter is reused.
+     */
+    void reset(float x, float y) {
+        setPosition(x, y);
+        restart();
+    }
+
+    /**
+     * Returns true if this emitter can be reused for the given definition, the particle arrays are sized from the definition when created.
+     */
+    boolean isReusableFor(EmitterDef def) {
+        return this.def == def && x.length == def.getMaxParticles();
+    }
+
+    /**
+     * Sets the position new particles spawn at.
+     * 
+     * @param x
+     *            the x position, in tiles.
+     * @param y
+     *            the y position, in tiles.
+     */
+    public void setPosition(float x, float y) {
+        this.emitterX = x;
+        this.emitterY = y;
+    }
+
+    /**
+     * Returns the x position new particles spawn at, in tiles.
+     * 
+     * @return the x position new particles spawn at.
+     */
+    public float getX() {
+        return emitterX;
+    }
+
+    /**
+     * Returns the y position new particles spawn at, in tiles.
+     * 
+     * @return the y position new particles spawn at.
+     */
+    public float getY() {
+        return emitterY;
+    }
+
+    /**
+     * Returns true if this emitter is still spawning particles.
+     * 
+     * @return true if this emitter is still spawning particles.
+     */
+    public boolean isEmitting() {
+        return isEmitting;
+    }
+
+    /**
+     * Returns true if this emitter has stopped spawning and all of its particles have died.
+     * 
+     * @return true if this emitter has stopped spawning and all of its particles have died.
+     */
+    public boolean isFinished() {
+        return !isEmitting && count == 0;
+    }
+
+    /**
+     * Returns the number of live particles.
+     * 
+     * @return the number of live particles.
+     */
+    public int getParticleCount() {
+        return count;
+    }
+
+    /**
+     * Returns the definition of this emitter.
+     * 
+     * @return the definition of this emitter.
+     */
+    public EmitterDef getDef() {
+        return def;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [def=%s, x=%s, y=%s, count=%s, isEmitting=%s]", getClass().getSimpleName(), def.getId(), emitterX, emitterY, count, isEmitting);
+    }
+
+    /**
+     * Splits moving the particles over the common {@link ForkJoinPool}.
+     */
+    private class MoveTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float delta;
+        private final int start;
+        private final int end;
+
+        MoveTask(float delta, int start, int end) {
+            this.delta = delta;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                move(delta, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new MoveTask(delta, start, mid), new MoveTask(delta, mid, end));
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+package com.github.maxstupo.flatengine.particle;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.github.maxstupo.flatengine.AssetManager;
+import com.github.maxstupo.flatengine.Sprite;
+import com.github.maxstupo.flatengine.map.Camera;
+import com.github.maxstupo.flatengine.util.UtilXML;
+
+/**
+ * This class stores {@link EmitterDef emitter definitions} and updates and renders the {@link ParticleEmitter emitters} created from them. Emitters
+ * that have finished are removed automatically.
+ * <p>
+ * Removed emitters are kept in a pool per definition and reused by {@link #spawn(String, float, float)}, so short lived bursts don't reallocate their
+ * particle arrays. A reference to an emitter must not be kept once it has finished or been removed, as it may be handed out again.
+ * <p>
+ * Definitions can be loaded from an xml file, similar to the {@link AssetManager} manifest:
+ * 
+ * <pre>
+ * &lt;particles&gt;
+ *     &lt;emitter id="smoke" sprite="particles" regionX="0" regionY="0" regionWidth="8" regionHeight="8"
+ *              maxParticles="4096" rate="200" burst="0" duration="-1" lifeMin="0.5" lifeMax="1.5"
+ *              speedMin="0.5" speedMax="1" angleMin="250" angleMax="290" spread="0.25"
+ *              gravityX="0" gravityY="-0.5" drag="0.2" sizeStart="0.25" sizeEnd="1" alphaStart="1" alphaEnd="0" /&gt;
+ * &lt;/particles&gt;
+ * </pre>
+ * 
+ * @author Maxstupo
+ */
+public class ParticleSystem {
+
+    private final AssetManager assets;
+
+    private final Map<String, EmitterDef> defs = new HashMap<>();
+    private final Map<String, BufferedImage[]> images = new HashMap<>();
+
+    private final List<ParticleEmitter> emitters = new ArrayList<>();
+    private final Map<String, List<ParticleEmitter>> pools = new HashMap<>();
+
+    /**
+     * Create a new {@link ParticleSystem} object.
+     * 
+     * @param assets
+     *            the asset manager the sprites of emitters are loaded from.
+     */
+    public ParticleSystem(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * Loads emitter definitions from the given xml file. Emitters without an id or sprite are skipped.
+     * 
+     * @param file
+     *            the xml file.
+     * @throws IllegalArgumentException
+     *             if file is null or an emitter has invalid values.
+     * @throws Exception
+     *             if the file can't be read.
+     */
+    public void loadFromXml(String file) throws IllegalArgumentException, Exception {
+        if (file == null)
+            throw new IllegalArgumentException("File is null or doesn't exist: " + file);
+
+        Document doc = UtilXML.loadDocument(file);
+
+        Node node;
+        NodeList nList = UtilXML.xpathGetNodeList(doc, "particles/emitter");
+        for (int i = 0; ((node = nList.item(i)) != null); i++) {
+            String id = UtilXML.xpathGetString(node, "@id", null);
+            String sprite = UtilXML.xpathGetString(node, "@sprite", null);
+
+            if (id == null || sprite == null)
+                continue;
+
+            EmitterDef def = new EmitterDef(id, sprite);
+            def.setRegion(getInt(node, "regionX", 0), getInt(node, "regionY", 0), getInt(node, "regionWidth", 0), getInt(node, "regionHeight", 0));
+            def.setEmission(getInt(node, "maxParticles", def.getMaxParticles()), getFloat(node, "rate", def.getRate()), getInt(node, "burst", def.getBurst()), getFloat(node, "duration", def.getDuration()));
+            def.setLife(getFloat(node, "lifeMin", def.getLifeMin()), getFloat(node, "lifeMax", def.getLifeMax()));
+            def.setVelocity(getFloat(node, "speedMin", def.getSpeedMin()), getFloat(node, "speedMax", def.getSpeedMax()), getFloat(node, "angleMin", def.getAngleMin()), getFloat(node, "angleMax", def.getAngleMax()));
+            def.setSpread(getFloat(node, "spread", def.getSpread()));
+            def.setForces(getFloat(node, "gravityX", def.getGravityX()), getFloat(node, "gravityY", def.getGravityY()), getFloat(node, "drag", def.getDrag()));
+            def.setSize(getFloat(node, "sizeStart", def.getSizeStart()), getFloat(node, "sizeEnd", def.getSizeEnd()));
+            def.setAlpha(getFloat(node, "alphaStart", def.getAlphaStart()), getFloat(node, "alphaEnd", def.getAlphaEnd()));
+            register(def);
+        }
+    }
+
+    private static float getFloat(Node node, String attribute, float defaultValue) {
+        return (float) UtilXML.xpathGetNumber(node, "@" + attribute, defaultValue);
+    }
+
+    private static int getInt(Node node, String attribute, int defaultValue) {
+        return (int) UtilXML.xpathGetNumber(node, "@" + attribute, defaultValue);
+    }
+
+    /**
+     * Registers the given emitter definition, replacing any definition with the same id.
+     * 
+     * @param def
+     *            the emitter definition.
+     */
+    public void register(EmitterDef def) {
+        defs.put(def.getId(), def);
+        images.remove(def.getId());
+        pools.remove(def.getId());
+    }
+
+    /**
+     * Starts an emitter from the definition with the given id, reusing a pooled emitter if one is free.
+     * 
+     * @param id
+     *            the id of the emitter definition.
+     * @param x
+     *            the x position, in tiles.
+     * @param y
+     *            the y position, in tiles.
+     * @return the started emitter.
+     * @throws IllegalArgumentException
+     *             if the id isn't registered, or the sprite of the definition isn't loaded.
+     */
+    public ParticleEmitter spawn(String id, float x, float y) throws IllegalArgumentException {
+        EmitterDef def = defs.get(id);
+        if (def == null)
+            throw new IllegalArgumentException("Emitter id '" + id + "' isn't registered!");
+
+        ParticleEmitter emitter = null;
+        List<ParticleEmitter> pool = pools.get(id);
+        while (emitter == null && pool != null && !pool.isEmpty()) {
+            ParticleEmitter free = pool.remove(pool.size() - 1);
+            if (free.isReusableFor(def)) // The max particles of the definition may have changed.
+                emitter = free;
+        }
+
+        if (emitter != null) {
+            emitter.reset(x, y);
+        } else {
+            emitter = new ParticleEmitter(def, getImages(def), x, y);
+        }
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    private void free(ParticleEmitter emitter) {
+        List<ParticleEmitter> pool = pools.get(emitter.getDef().getId());
+        if (pool == null) {
+            if (defs.get(emitter.getDef().getId()) != emitter.getDef()) // Definition replaced, don't keep its emitters.
+                return;
+            pool = new ArrayList<>();
+            pools.put(emitter.getDef().getId(), pool);
+        }
+        emitter.stop();
+        pool.add(emitter);
+    }
+
+    /**
+     * Returns the opacity levels of the sprite region of the given definition, created once and shared by all emitters of the definition.
+     */
+    private BufferedImage[] getImages(EmitterDef def) throws IllegalArgumentException {
+        BufferedImage[] levels = images.get(def.getId());
+        if (levels != null)
+            return levels;
+
+        Sprite sprite = assets.getSprite(def.getSprite());
+        if (sprite == null)
+            throw new IllegalArgumentException("Sprite '" + def.getSprite() + "' of emitter '" + def.getId() + "' isn't loaded!");
+
+        BufferedImage image = sprite.getImage();
+        if (def.getRegionWidth() > 0 && def.getRegionHeight() > 0)
+            image = image.getSubimage(def.getRegionX(), def.getRegionY(), def.getRegionWidth(), def.getRegionHeight());
+
+        levels = ParticleEmitter.createAlphaLevels(image);
+        images.put(def.getId(), levels);
+        return levels;
+    }
+
+    /**
+     * Updates all emitters, finished emitters are removed and returned to the pool.
+     * 
+     * @param delta
+     *            the time since the last update, in seconds.
+     */
+    public void update(float delta) {
+        for (int i = emitters.size() - 1; i >= 0; i--) {
+            ParticleEmitter emitter = emitters.get(i);
+            emitter.update(delta);
+
+            if (emitter.isFinished()) {
+                int last = emitters.size() - 1;
+                emitters.set(i, emitters.get(last));
+                emitters.remove(last);
+                free(emitter);
+            }
+        }
+    }
+
+    /**
+     * Renders the particles of all emitters within the viewport of the given camera.
+     * 
+     * @param g
+     *            the graphics context to render to.
+     * @param camera
+     *            the camera.
+     */
+    public void render(Graphics2D g, Camera camera) {
+        for (int i = 0; i < emitters.size(); i++)
+            emitters.get(i).render(g, camera);
+    }
+
+    /**
+     * Removes the given emitter and its particles, and returns it to the pool.
+     * 
+     * @param emitter
+     *            the emitter.
+     * @return true if the emitter was removed.
+     */
+    public boolean remove(ParticleEmitter emitter) {
+        if (!emitters.remove(emitter))
+            return false;
+        free(emitter);
+        return true;
+    }
+
+    /**
+     * Removes all emitters and returns them to the pool, registered definitions are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < emitters.size(); i++)
+            free(emitters.get(i));
+        emitters.clear();
+    }
+
+    /**
+     * Discards all pooled emitters, freeing their particle arrays.
+     */
+    public void clearPool() {
+        pools.clear();
+    }
+
+    /**
+     * Returns the number of pooled emitters waiting to be reused.
+     * 
+     * @return the number of pooled emitters.
+     */
+    public int getPooledCount() {
+        int total = 0;
+        for (List<ParticleEmitter> pool : pools.values())
+            total += pool.size();
+        return total;
+    }
+
+    /**
+     * Returns the emitter definition with the given id.
+     * 
+     * @param id
+     *            the id.
+     * @return the emitter definition with the given id, or null if the id isn't registered.
+     */
+    public EmitterDef getDef(String id) {
+        return defs.get(id);
+    }
+
+    /**
+     * Returns an unmodifiable list of all live emitters.
+     * 
+     * @return an unmodifiable list of all live emitters.
+     */
+    public List<ParticleEmitter> getEmitters() {
+        return Collections.unmodifiableList(emitters);
+    }
+
+    /**
+     * Returns the number of live particles over all emitters.
+     * 
+     * @return the number of live particles over all emitters.
+     */
+    public int getParticleCount() {
+        int total = 0;
+        for (int i = 0; i < emitters.size(); i++)
+            total += emitters.get(i).getParticleCount();
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [defs=%s, emitters=%s, particles=%s]", getClass().getSimpleName(), defs.size(), emitters.size(), getParticleCount());
+    }
+
+}
@@ -0,0 +1,673 @@
+package com.github.maxstupo.flatengine.steering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.maxstupo.flatengine.util.AbstractSpatialObject;
+import com.github.maxstupo.flatengine.util.ObjectChunk;
+import com.github.maxstupo.flatengine.util.ObjectSpatialPartitioner;
+
+/**
+ * This class moves groups of {@link AbstractSpatialObject objects} (agents) with neighbour aware steering. Each agent has a preferred velocity (e.g.
+ * from a path or flow field) that is adjusted by separation and alignment with its nearest neighbours, and then by reciprocal velocity obstacle (RVO)
+ * avoidance: a set of candidate velocities is sampled and the one with the best trade off between time to collision and closeness to the desired
+ * velocity is chosen.
+ * <p>
+ * Neighbours are found through the chunks of the {@link ObjectSpatialPartitioner}, and only the nearest {@link #setMaxNeighbours(int) few} within
+ * the neighbour radius are considered. Agent state is stored in primitive arrays indexed by agent, new velocities are computed in parallel (for large
+ * groups) into a second buffer so every agent sees the velocities of the previous update.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the object type.
+ */
+public class SteeringSystem<T extends AbstractSpatialObject<T>> {
+
+    /** The default maximum number of neighbours considered by each agent. */
+    public static final int DEFAULT_MAX_NEIGHBOURS = 8;
+
+    /** The minimum number of agents to update in parallel, and the number of agents updated per task. */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private static final float GOLDEN_ANGLE = (float) (Math.PI * (3 - Math.sqrt(5)));
+
+    private final ObjectSpatialPartitioner<T> partitioner;
+
+    private final Map<T, Integer> indices = new IdentityHashMap<>();
+    private final List<T> agents = new ArrayList<>();
+    private int count;
+
+    private float[] positionX = new float[64];
+    private float[] positionY = new float[64];
+    private float[] velocityX = new float[64];
+    private float[] velocityY = new float[64];
+    private float[] nextVelocityX = new float[64];
+    private float[] nextVelocityY = new float[64];
+    private float[] preferredX = new float[64];
+    private float[] preferredY = new float[64];
+    private float[] radius = new float[64];
+    private float[] maxSpeed = new float[64];
+
+    private float neighbourRadius = 3;
+    private int maxNeighbours = DEFAULT_MAX_NEIGHBOURS;
+
+    private float separationWeight = 1;
+    private float alignmentWeight = 0.25f;
+
+    private boolean isAvoidanceEnabled = true;
+    private float avoidanceWeight = 1;
+    private float timeHorizon = 2;
+    private int avoidanceSamples = 16;
+
+    private final ThreadLocal<Neighbours> neighbours = ThreadLocal.withInitial(Neighbours::new);
+
+    /**
+     * Create a new {@link SteeringSystem} object.
+     * 
+     * @param partitioner
+     *            the partitioner the agents are registered with, used to find neighbours.
+     */
+    public SteeringSystem(ObjectSpatialPartitioner<T> partitioner) {
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Adds the given object as an agent. The object should be registered with the partitioner of this system, otherwise other agents won't see it as
+     * a neighbour.
+     * 
+     * @param object
+     *            the object.
+     * @param radius
+     *            the radius of the agent.
+     * @param maxSpeed
+     *            the maximum speed of the agent, in units per second.
+     * @return the index of the agent, or -1 if the object is already an agent.
+     */
+    public int add(T object, float radius, float maxSpeed) {
+        if (indices.containsKey(object))
+            return -1;
+
+        if (count == positionX.length)
+            grow(count * 2);
+
+        int index = count++;
+        agents.add(object);
+        indices.put(object, index);
+
+        this.positionX[index] = object.getX();
+        this.positionY[index] = object.getY();
+        this.velocityX[index] = this.velocityY[index] = 0;
+        this.preferredX[index] = this.preferredY[index] = 0;
+        this.radius[index] = radius;
+        this.maxSpeed[index] = maxSpeed;
+        return index;
+    }
+
+    /**
+     * Removes the given agent. The last agent is moved into the index of the removed agent.
+     * 
+     * @param object
+     *            the object.
+     * @return true if the object was an agent.
+     */
+    public boolean remove(T object) {
+        Integer index = indices.remove(object);
+        if (index == null)
+            return false;
+
+        int last = --count;
+        T moved = agents.remove(last);
+
+        if (index != last) {
+            agents.set(index, moved);
+            indices.put(moved, index);
+
+            positionX[index] = positionX[last];
+            positionY[index] = positionY[last];
+            velocityX[index] = velocityX[last];
+            velocityY[index] = velocityY[last];
+            preferredX[index] = preferredX[last];
+            preferredY[index] = preferredY[last];
+            radius[index] = radius[last];
+            maxSpeed[index] = maxSpeed[last];
+        }
+        return true;
+    }
+
+    /**
+     * Removes all agents.
+     */
+    public void clear() {
+        indices.clear();
+        agents.clear();
+        count = 0;
+    }
+
+    private void grow(int capacity) {
+        positionX = Arrays.copyOf(positionX, capacity);
+        positionY = Arrays.copyOf(positionY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        nextVelocityX = Arrays.copyOf(nextVelocityX, capacity);
+        nextVelocityY = Arrays.copyOf(nextVelocityY, capacity);
+        preferredX = Arrays.copyOf(preferredX, capacity);
+        preferredY = Arrays.copyOf(preferredY, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+    }
+
+    /**
+     * Computes the velocities of all agents and moves them.
+     * 
+     * @param delta
+     *            the delta time, in seconds.
+     */
+    public void update(float delta) {
+        for (int i = 0; i < count; i++) { // Objects may have been moved since the last update.
+            T object = agents.get(i);
+            positionX[i] = object.getX();
+            positionY[i] = object.getY();
+        }
+
+        if (count > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new SteerTask(0, count));
+        } else {
+            steerRange(0, count);
+        }
+
+        float[] swap = velocityX;
+        velocityX = nextVelocityX;
+        nextVelocityX = swap;
+
+        swap = velocityY;
+        velocityY = nextVelocityY;
+        nextVelocityY = swap;
+
+        // Moving objects updates the partitioner, so it isn't done in parallel.
+        for (int i = 0; i < count; i++)
+            agents.get(i).setPosition(positionX[i] + velocityX[i] * delta, positionY[i] + velocityY[i] * delta);
+    }
+
+    private void steerRange(int start, int end) {
+        Neighbours n = neighbours.get();
+        for (int i = start; i < end; i++)
+            steer(i, n);
+    }
+
+    /**
+     * Computes the next velocity of the given agent, reading only the current state of all agents and writing only the next velocity of the given
+     * agent.
+     */
+    private void steer(int i, Neighbours n) {
+        float px = positionX[i];
+        float py = positionY[i];
+        float speed = maxSpeed[i];
+
+        findNeighbours(i, n);
+
+        float desiredX = preferredX[i];
+        float desiredY = preferredY[i];
+
+        if (n.count > 0) {
+            float separationX = 0;
+            float separationY = 0;
+            float averageX = 0;
+            float averageY = 0;
+
+            for (int k = 0; k < n.count; k++) {
+                int j = n.agents[k];
+                float dx = px - positionX[j];
+                float dy = py - positionY[j];
+                float distance = (float) Math.sqrt(n.distances[k]);
+
+                if (distance > 0) {
+                    float strength = 1 - distance / neighbourRadius; // Stronger the closer the neighbour.
+                    separationX += dx / distance * strength;
+                    separationY += dy / distance * strength;
+                }
+                averageX += velocityX[j];
+                averageY += velocityY[j];
+            }
+
+            desiredX += separationX * separationWeight * speed + (averageX / n.count - velocityX[i]) * alignmentWeight;
+            desiredY += separationY * separationWeight * speed + (averageY / n.count - velocityY[i]) * alignmentWeight;
+        }
+
+        float length = (float) Math.sqrt(desiredX * desiredX + desiredY * desiredY);
+        if (length > speed) {
+            desiredX = desiredX / length * speed;
+            desiredY = desiredY / length * speed;
+        }
+
+        if (isAvoidanceEnabled && n.count > 0) {
+            for (int k = 0; k < n.count; k++) {
+                int j = n.agents[k];
+                float relativeX = positionX[j] - px;
+                float relativeY = positionY[j] - py;
+                float combinedRadius = radius[i] + radius[j];
+
+                n.relativeX[k] = relativeX;
+                n.relativeY[k] = relativeY;
+                n.velocityX[k] = velocityX[i] + velocityX[j];
+                n.velocityY[k] = velocityY[i] + velocityY[j];
+                n.gaps[k] = relativeX * relativeX + relativeY * relativeY - combinedRadius * combinedRadius;
+            }
+
+            float bestX = desiredX;
+            float bestY = desiredY;
+            float bestPenalty = penalty(n, desiredX, desiredY, desiredX, desiredY, Float.MAX_VALUE);
+
+            float offset = i * GOLDEN_ANGLE; // Avoids agents choosing mirrored velocities and deadlocking.
+            for (int s = 0; s < avoidanceSamples; s++) {
+                float angle = offset + s * (float) (Math.PI * 2) / avoidanceSamples;
+                float sampleSpeed = (s % 2 == 0) ? speed : speed * 0.5f;
+                float cx = (float) Math.cos(angle) * sampleSpeed;
+                float cy = (float) Math.sin(angle) * sampleSpeed;
+
+                float penalty = penalty(n, cx, cy, desiredX, desiredY, bestPenalty);
+                if (penalty < bestPenalty) {
+                    bestPenalty = penalty;
+                    bestX = cx;
+                    bestY = cy;
+                }
+            }
+            desiredX = bestX;
+            desiredY = bestY;
+        }
+
+        nextVelocityX[i] = desiredX;
+        nextVelocityY[i] = desiredY;
+    }
+
+    /**
+     * Returns the penalty of the given candidate velocity, the distance from the desired velocity plus the avoidance weight divided by the time to
+     * the first collision with a neighbour (RVO), assuming each neighbour takes half the responsibility for avoiding the collision. Stops early once
+     * the penalty reaches the given limit.
+     */
+    private float penalty(Neighbours n, float cx, float cy, float desiredX, float desiredY, float limit) {
+        float dx = cx - desiredX;
+        float dy = cy - desiredY;
+        float penalty = (float) Math.sqrt(dx * dx + dy * dy);
+        if (penalty >= limit)
+            return penalty;
+
+        float firstCollision = Float.POSITIVE_INFINITY;
+        for (int k = 0; k < n.count; k++) {
+            float vx = 2 * cx - n.velocityX[k];
+            float vy = 2 * cy - n.velocityY[k];
+
+            float time = timeToCollision(n.relativeX[k], n.relativeY[k], vx, vy, n.gaps[k]);
+            if (time <= 0)
+                return Float.MAX_VALUE * 0.5f + penalty; // Overlapping and moving closer.
+
+            if (time < firstCollision) {
+                firstCollision = time;
+                if (firstCollision < timeHorizon && penalty + avoidanceWeight / firstCollision >= limit)
+                    return limit;
+            }
+        }
+
+        if (firstCollision < timeHorizon)
+            penalty += avoidanceWeight / firstCollision;
+        return penalty;
+    }
+
+    /**
+     * Returns the time until a circle at the origin moving with the given velocity touches a circle at the given position, zero if they overlap and
+     * are moving closer or infinity if they never touch. The gap is the squared distance between the circles minus their squared combined radius.
+     */
+    private static float timeToCollision(float px, float py, float vx, float vy, float gap) {
+        float c = gap;
+        float b = px * vx + py * vy;
+
+        if (c < 0) // Already overlapping.
+            return (b > 0) ? 0 : Float.POSITIVE_INFINITY;
+
+        float a = vx * vx + vy * vy;
+        float discriminant = b * b - a * c;
+        if (b <= 0 || discriminant <= 0)
+            return Float.POSITIVE_INFINITY;
+        return (b - (float) Math.sqrt(discriminant)) / a;
+    }
+
+    /**
+     * Finds the nearest agents within the neighbour radius of the given agent, sorted by distance.
+     */
+    private void findNeighbours(int i, Neighbours n) {
+        n.reset(maxNeighbours);
+
+        float px = positionX[i];
+        float py = positionY[i];
+        float radiusSquared = neighbourRadius * neighbourRadius;
+        int chunkSize = partitioner.getChunkSize();
+
+        int minX = (int) Math.floor((px - neighbourRadius) / chunkSize);
+        int minY = (int) Math.floor((py - neighbourRadius) / chunkSize);
+        int maxX = (int) Math.floor((px + neighbourRadius) / chunkSize);
+        int maxY = (int) Math.floor((py + neighbourRadius) / chunkSize);
+
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                ObjectChunk<T> chunk = partitioner.getChunk(cx, cy);
+                if (chunk == null)
+                    continue;
+
+                for (int k = 0; k < chunk.getObjectCount(); k++) {
+                    T object = chunk.getObject(k);
+
+                    // Distance check first, only close objects are looked up.
+                    float dx = object.getX() - px;
+                    float dy = object.getY() - py;
+                    float distanceSquared = dx * dx + dy * dy;
+                    if (distanceSquared >= radiusSquared)
+                        continue;
+
+                    Integer j = indices.get(object);
+                    if (j != null && j != i)
+                        n.offer(j, distanceSquared);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the preferred velocity of the given agent, the velocity it would move at without any neighbours.
+     * 
+     * @param index
+     *            the agent index.
+     * @param vx
+     *            the x velocity, in units per second.
+     * @param vy
+     *            the y velocity, in units per second.
+     */
+    public void setPreferredVelocity(int index, float vx, float vy) {
+        preferredX[index] = vx;
+        preferredY[index] = vy;
+    }
+
+    /**
+     * Sets the preferred velocity of the given agent to move towards the given position at its maximum speed, slowing down when within one unit.
+     * 
+     * @param index
+     *            the agent index.
+     * @param x
+     *            the x position to move towards.
+     * @param y
+     *            the y position to move towards.
+     */
+    public void setTarget(int index, float x, float y) {
+        T object = agents.get(index);
+        float dx = x - object.getX();
+        float dy = y - object.getY();
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+        if (distance == 0) {
+            setPreferredVelocity(index, 0, 0);
+        } else {
+            float speed = maxSpeed[index] * Math.min(1, distance);
+            setPreferredVelocity(index, dx / distance * speed, dy / distance * speed);
+        }
+    }
+
+    /**
+     * Returns the index of the given agent, indexes change when agents are removed.
+     * 
+     * @param object
+     *            the object.
+     * @return the index of the given agent, or -1 if the object isn't an agent.
+     */
+    public int indexOf(T object) {
+        Integer index = indices.get(object);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the object of the given agent.
+     * 
+     * @param index
+     *            the agent index.
+     * @return the object of the given agent.
+     */
+    public T getAgent(int index) {
+        return agents.get(index);
+    }
+
+    /**
+     * Returns the x velocity of the given agent, computed by the last update.
+     * 
+     * @param index
+     *            the agent index.
+     * @return the x velocity of the given agent, in units per second.
+     */
+    public float getVelocityX(int index) {
+        return velocityX[index];
+    }
+
+    /**
+     * Returns the y velocity of the given agent, computed by the last update.
+     * 
+     * @param index
+     *            the agent index.
+     * @return the y velocity of the given agent, in units per second.
+     */
+    public float getVelocityY(int index) {
+        return velocityY[index];
+    }
+
+    /**
+     * Sets the radius of the given agent.
+     * 
+     * @param index
+     *            the agent index.
+     * @param radius
+     *            the radius.
+     */
+    public void setRadius(int index, float radius) {
+        this.radius[index] = radius;
+    }
+
+    /**
+     * Sets the maximum speed of the given agent.
+     * 
+     * @param index
+     *            the agent index.
+     * @param maxSpeed
+     *            the maximum speed, in units per second.
+     */
+    public void setMaxSpeed(int index, float maxSpeed) {
+        this.maxSpeed[index] = maxSpeed;
+    }
+
+    /**
+     * Returns the number of agents.
+     * 
+     * @return the number of agents.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Sets the distance within which other agents are considered neighbours. Defaults to 3.
+     * 
+     * @param neighbourRadius
+     *            the neighbour radius.
+     * @throws IllegalArgumentException
+     *             if the radius isn't positive.
+     */
+    public void setNeighbourRadius(float neighbourRadius) throws IllegalArgumentException {
+        if (neighbourRadius <= 0)
+            throw new IllegalArgumentException("neighbourRadius must be positive: " + neighbourRadius);
+        this.neighbourRadius = neighbourRadius;
+    }
+
+    /**
+     * Sets the maximum number of nearest neighbours considered by each agent. Defaults to {@value #DEFAULT_MAX_NEIGHBOURS}.
+     * 
+     * @param maxNeighbours
+     *            the maximum number of neighbours.
+     * @throws IllegalArgumentException
+     *             if the maximum is less than one.
+     */
+    public void setMaxNeighbours(int maxNeighbours) throws IllegalArgumentException {
+        if (maxNeighbours < 1)
+            throw new IllegalArgumentException("maxNeighbours must be at least one: " + maxNeighbours);
+        this.maxNeighbours = maxNeighbours;
+    }
+
+    /**
+     * Sets how strongly agents steer away from close neighbours. Defaults to 1.
+     * 
+     * @param separationWeight
+     *            the separation weight.
+     */
+    public void setSeparationWeight(float separationWeight) {
+        this.separationWeight = separationWeight;
+    }
+
+    /**
+     * Sets how strongly agents match the average velocity of their neighbours. Defaults to 0.25.
+     * 
+     * @param alignmentWeight
+     *            the alignment weight.
+     */
+    public void setAlignmentWeight(float alignmentWeight) {
+        this.alignmentWeight = alignmentWeight;
+    }
+
+    /**
+     * Sets if velocity obstacle avoidance is enabled. Enabled by default.
+     * 
+     * @param isAvoidanceEnabled
+     *            true to enable avoidance.
+     */
+    public void setAvoidanceEnabled(boolean isAvoidanceEnabled) {
+        this.isAvoidanceEnabled = isAvoidanceEnabled;
+    }
+
+    /**
+     * Sets how strongly agents avoid imminent collisions, relative to keeping their desired velocity. Defaults to 1.
+     * 
+     * @param avoidanceWeight
+     *            the avoidance weight.
+     */
+    public void setAvoidanceWeight(float avoidanceWeight) {
+        this.avoidanceWeight = avoidanceWeight;
+    }
+
+    /**
+     * Sets how far ahead in time collisions are avoided. Defaults to 2 seconds.
+     * 
+     * @param timeHorizon
+     *            the time horizon, in seconds.
+     */
+    public void setTimeHorizon(float timeHorizon) {
+        this.timeHorizon = timeHorizon;
+    }
+
+    /**
+     * Sets the number of candidate velocities sampled by the avoidance. Defaults to 16.
+     * 
+     * @param avoidanceSamples
+     *            the number of samples.
+     * @throws IllegalArgumentException
+     *             if the number of samples is less than one.
+     */
+    public void setAvoidanceSamples(int avoidanceSamples) throws IllegalArgumentException {
+        if (avoidanceSamples < 1)
+            throw new IllegalArgumentException("avoidanceSamples must be at least one: " + avoidanceSamples);
+        this.avoidanceSamples = avoidanceSamples;
+    }
+
+    /**
+     * Returns the partitioner used to find neighbours.
+     * 
+     * @return the partitioner used to find neighbours.
+     */
+    public ObjectSpatialPartitioner<T> getPartitioner() {
+        return partitioner;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [count=%s, neighbourRadius=%s, maxNeighbours=%s, isAvoidanceEnabled=%s]", getClass().getSimpleName(), count, neighbourRadius, maxNeighbours, isAvoidanceEnabled);
+    }
+
+    /**
+     * The nearest neighbours of an agent, kept sorted by squared distance.
+     */
+    private static final class Neighbours {
+
+        int[] agents = new int[DEFAULT_MAX_NEIGHBOURS];
+        float[] distances = new float[DEFAULT_MAX_NEIGHBOURS];
+        int count;
+        int capacity;
+
+        // Per neighbour avoidance terms, relative to the agent.
+        float[] relativeX = new float[DEFAULT_MAX_NEIGHBOURS];
+        float[] relativeY = new float[DEFAULT_MAX_NEIGHBOURS];
+        float[] velocityX = new float[DEFAULT_MAX_NEIGHBOURS];
+        float[] velocityY = new float[DEFAULT_MAX_NEIGHBOURS];
+        float[] gaps = new float[DEFAULT_MAX_NEIGHBOURS];
+
+        void reset(int capacity) {
+            if (agents.length < capacity) {
+                agents = new int[capacity];
+                distances = new float[capacity];
+                relativeX = new float[capacity];
+                relativeY = new float[capacity];
+                velocityX = new float[capacity];
+                velocityY = new float[capacity];
+                gaps = new float[capacity];
+            }
+            this.capacity = capacity;
+            this.count = 0;
+        }
+
+        void offer(int agent, float distance) {
+            if (count == capacity && distance >= distances[count - 1])
+                return;
+
+            int i = (count == capacity) ? count - 1 : count++;
+            for (; i > 0 && distances[i - 1] > distance; i--) { // Insertion sort.
+                agents[i] = agents[i - 1];
+                distances[i] = distances[i - 1];
+            }
+            agents[i] = agent;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * Splits the agents over the common {@link ForkJoinPool}.
+     */
+    private class SteerTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        SteerTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                steerRange(start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new SteerTask(start, mid), new SteerTask(mid, end));
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.github.maxstupo.flatengine.tween;
+
+/**
+ * This class is the base of {@link Tween}s and {@link Timeline}s. Instances are pooled by their {@link TweenManager}: they are obtained from the
+ * manager, started with {@link #start()}, and returned to the pool once they complete or are killed, so a reference shouldn't be kept after that.
+ * <p>
+ * A pooled tween is handed out again by later calls to the manager, so a reference kept past completion may point at an unrelated tween. To kill a
+ * tween later, keep its {@link #getGeneration() generation} with the reference and call {@link #kill(int)}, which does nothing once the tween has
+ * been returned to the pool.
+ * 
+ * @author Maxstupo
+ */
+public abstract class AbstractTween {
+
+    /** The manager that owns this tween. */
+    protected final TweenManager manager;
+
+    private float delay;
+    private ITweenCallback callback;
+
+    private boolean isFinished;
+    private boolean isKilled;
+    private boolean isStarted;
+
+    private int generation;
+
+    /**
+     * Create a new {@link AbstractTween} object.
+     * 
+     * @param manager
+     *            the manager that owns this tween.
+     */
+    AbstractTween(TweenManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Sets the time before this tween starts, a tween reads the start values of its target when the delay ends.
+     * 
+     * @param delay
+     *            the delay, in seconds.
+     * @return this object for chaining.
+     */
+    public AbstractTween delay(float delay) {
+        this.delay = Math.max(0, delay);
+        return this;
+    }
+
+    /**
+     * Sets the callback notified when this tween completes.
+     * 
+     * @param callback
+     *            the callback, or null for none.
+     * @return this object for chaining.
+     */
+    public AbstractTween setCallback(ITweenCallback callback) {
+        this.callback = callback;
+        return this;
+    }
+
+    /**
+     * Adds this tween to the manager, it'll be updated by {@link TweenManager#update(float)} until it completes or is killed.
+     * 
+     * @return this object.
+     * @throws IllegalStateException
+     *             if this tween was already started, or was added to a timeline.
+     */
+    public AbstractTween start() throws IllegalStateException {
+        markStarted();
+        manager.add(this);
+        return this;
+    }
+
+    /**
+     * Marks this tween as started, it can't be started again or added to a timeline.
+     */
+    void markStarted() throws IllegalStateException {
+        if (isStarted)
+            throw new IllegalStateException("Tween was already started or added to a timeline: " + this);
+        isStarted = true;
+    }
+
+    /**
+     * Stops this tween, it's removed from the manager on the next update. The target keeps its current values.
+     */
+    public void kill() {
+        isKilled = true;
+    }
+
+    /**
+     * Stops this tween if it's still the tween with the given generation, a reference kept from an earlier use of this pooled tween is ignored.
+     * 
+     * @param generation
+     *            the generation returned by {@link #getGeneration()} when this tween was obtained.
+     * @return true if this tween was killed, false if it was returned to the pool since.
+     */
+    public boolean kill(int generation) {
+        if (this.generation != generation)
+            return false;
+        kill();
+        return true;
+    }
+
+    /**
+     * Advances this tween by the given time.
+     * 
+     * @param delta
+     *            the time to advance by, in seconds.
+     * @return the time left over after this tween completed, or a negative value if it hasn't completed.
+     */
+    final float update(float delta) {
+        if (isKilled || isFinished)
+            return delta;
+
+        if (delay > 0) {
+            delay -= delta;
+            if (delay > 0)
+                return -1;
+            delta = -delay;
+            delay = 0;
+        }
+
+        float left = step(delta);
+        if (left >= 0 && !isKilled) {
+            isFinished = true;
+            if (callback != null)
+                callback.onComplete(this);
+        }
+        return left;
+    }
+
+    /**
+     * Advances this tween by the given time, after its delay.
+     * 
+     * @param delta
+     *            the time to advance by, in seconds.
+     * @return the time left over after this tween completed, or a negative value if it hasn't completed.
+     */
+    abstract float step(float delta);
+
+    /**
+     * Kills this tween if it animates the given target.
+     */
+    abstract void killTarget(Object target);
+
+    /**
+     * Returns this tween and any child tweens to the pool.
+     */
+    abstract void free();
+
+    /**
+     * Clears the state common to all tweens, before returning to the pool.
+     */
+    void reset() {
+        generation++;
+        delay = 0;
+        callback = null;
+        isFinished = false;
+        isKilled = false;
+        isStarted = false;
+    }
+
+    /**
+     * Returns true if this tween has completed.
+     * 
+     * @return true if this tween has completed.
+     */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * Returns true if this tween was killed.
+     * 
+     * @return true if this tween was killed.
+     */
+    public boolean isKilled() {
+        return isKilled;
+    }
+
+    /**
+     * Returns the remaining delay, in seconds.
+     * 
+     * @return the remaining delay.
+     */
+    public float getDelay() {
+        return delay;
+    }
+
+    /**
+     * Returns the generation of this tween, it changes every time this tween is returned to the pool.
+     * 
+     * @return the generation of this tween.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns true if this tween hasn't been returned to the pool since it had the given generation.
+     * 
+     * @param generation
+     *            the generation returned by {@link #getGeneration()} when this tween was obtained.
+     * @return true if a reference from the given generation still refers to this tween.
+     */
+    public boolean isGeneration(int generation) {
+        return this.generation == generation;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.github.maxstupo.flatengine.tween;
+
+import com.github.maxstupo.flatengine.map.Camera;
+
+/**
+ * This class tweens the position a {@link Camera} is centered on, in tiles.
+ * 
+ * @author Maxstupo
+ */
+public class CameraAccessor implements ITweenAccessor<Camera> {
+
+    /** The x and y position the camera is centered on, in tiles. */
+    public static final int POSITION = 0;
+
+    /** The shared instance, this accessor has no state. */
+    public static final CameraAccessor INSTANCE = new CameraAccessor();
+
+    @Override
+    public int getValues(Camera target, int type, float[] values) {
+        values[0] = target.getX() + target.getViewportTileWidth() / 2f;
+        values[1] = target.getY() + target.getViewportTileHeight() / 2f;
+        return 2;
+    }
+
+    @Override
+    public void setValues(Camera target, int type, float[] values) {
+        target.targetPosition(values[0], values[1]);
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.github.maxstupo.flatengine.tween;
+
+/**
+ * The easing functions a {@link Tween} can use. Each function is sampled once into a lookup table when this class is loaded, so easing a value is a
+ * table lookup and a linear interpolation instead of calls to {@link Math#pow(double, double)} or {@link Math#sin(double)}.
+ * 
+ * @author Maxstupo
+ */
+public enum Easing {
+    /** No easing. */
+    LINEAR {
+        @Override
+        double compute(double t) {
+            return t;
+        }
+    },
+
+    /** Quadratic, accelerating from zero velocity. */
+    QUAD_IN {
+        @Override
+        double compute(double t) {
+            return t * t;
+        }
+    },
+
+    /** Quadratic, decelerating to zero velocity. */
+    QUAD_OUT {
+        @Override
+        double compute(double t) {
+            return t * (2 - t);
+        }
+    },
+
+    /** Quadratic, accelerating until halfway then decelerating. */
+    QUAD_IN_OUT {
+        @Override
+        double compute(double t) {
+            return (t < 0.5) ? 2 * t * t : -1 + (4 - 2 * t) * t;
+        }
+    },
+
+    /** Cubic, accelerating from zero velocity. */
+    CUBIC_IN {
+        @Override
+        double compute(double t) {
+            return t * t * t;
+        }
+    },
+
+    /** Cubic, decelerating to zero velocity. */
+    CUBIC_OUT {
+        @Override
+        double compute(double t) {
+            double f = t - 1;
+            return f * f * f + 1;
+        }
+    },
+
+    /** Cubic, accelerating until halfway then decelerating. */
+    CUBIC_IN_OUT {
+        @Override
+        double compute(double t) {
+            return (t < 0.5) ? 4 * t * t * t : (t - 1) * (2 * t - 2) * (2 * t - 2) + 1;
+        }
+    },
+
+    /** Sinusoidal, accelerating from zero velocity. */
+    SINE_IN {
+        @Override
+        double compute(double t) {
+            return 1 - Math.cos(t * Math.PI / 2);
+        }
+    },
+
+    /** Sinusoidal, decelerating to zero velocity. */
+    SINE_OUT {
+        @Override
+        double compute(double t) {
+            return Math.sin(t * Math.PI / 2);
+        }
+    },
+
+    /** Sinusoidal, accelerating until halfway then decelerating. */
+    SINE_IN_OUT {
+        @Override
+        double compute(double t) {
+            return -(Math.cos(Math.PI * t) - 1) / 2;
+        }
+    },
+
+    /** Exponential, accelerating from zero velocity. */
+    EXPO_IN {
+        @Override
+        double compute(double t) {
+            return (t == 0) ? 0 : Math.pow(2, 10 * (t - 1));
+        }
+    },
+
+    /** Exponential, decelerating to zero velocity. */
+    EXPO_OUT {
+        @Override
+        double compute(double t) {
+            return (t == 1) ? 1 : 1 - Math.pow(2, -10 * t);
+        }
+    },
+
+    /** Overshoots the end value then settles back to it. */
+    BACK_OUT {
+        @Override
+        double compute(double t) {
+            double s = 1.70158;
+            double f = t - 1;
+            return f * f * ((s + 1) * f + s) + 1;
+        }
+    },
+
+    /** Springs past the end value, oscillating until it settles. */
+    ELASTIC_OUT {
+        @Override
+        double compute(double t) {
+            if (t == 0 || t == 1)
+                return t;
+            return Math.pow(2, -10 * t) * Math.sin((t * 10 - 0.75) * (2 * Math.PI / 3)) + 1;
+        }
+    },
+
+    /** Bounces against the end value. */
+    BOUNCE_OUT {
+        @Override
+        double compute(double t) {
+            if (t < 1 / 2.75)
+                return 7.5625 * t * t;
+            if (t < 2 / 2.75)
+                return 7.5625 * (t -= 1.5 / 2.75) * t + 0.75;
+            if (t < 2.5 / 2.75)
+                return 7.5625 * (t -= 2.25 / 2.75) * t + 0.9375;
+            return 7.5625 * (t -= 2.625 / 2.75) * t + 0.984375;
+        }
+    };
+
+    /** The number of intervals in each lookup table. */
+    private static final int SAMPLES = 1024;
+
+    private final float[] table = new float[SAMPLES + 1];
+
+    private Easing() {
+        for (int i = 0; i <= SAMPLES; i++)
+            table[i] = (float) compute((double) i / SAMPLES);
+    }
+
+    /**
+     * Returns the exact value of this easing function, only used to fill the lookup table.
+     */
+    abstract double compute(double t);
+
+    /**
+     * Returns the eased progress for the given linear progress.
+     * 
+     * @param t
+     *            the linear progress, clamped between 0 and 1.
+     * @return the eased progress, zero at the start and one at the end, which may leave that range in between.
+     */
+    public float apply(float t) {
+        if (t <= 0)
+            return table[0];
+        if (t >= 1)
+            return table[SAMPLES];
+
+        float position = t * SAMPLES;
+        int index = (int) position;
+        float a = table[index];
+        return a + (table[index + 1] - a) * (position - index);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.github.maxstupo.flatengine.tween;
+
+/**
+ * This class tweens the elements of a float array, for values that have no object of their own. The tween type is the number of elements tweened,
+ * starting from the first.
+ * 
+ * @author Maxstupo
+ */
+public class FloatArrayAccessor implements ITweenAccessor<float[]> {
+
+    /** The shared instance, this accessor has no state. */
+    public static final FloatArrayAccessor INSTANCE = new FloatArrayAccessor();
+
+    @Override
+    public int getValues(float[] target, int type, float[] values) {
+        int count = Math.min(Math.min(type, target.length), Tween.MAX_VALUES);
+        System.arraycopy(target, 0, values, 0, count);
+        return count;
+    }
+
+    @Override
+    public void setValues(float[] target, int type, float[] values) {
+        System.arraycopy(values, 0, target, 0, Math.min(Math.min(type, target.length), Tween.MAX_VALUES));
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.github.maxstupo.flatengine.tween;
+
+/**
+ * This interface reads and writes the tweenable values of a target object. A tween type selects which values are read and written, e.g. position or
+ * size, and at most {@link Tween#MAX_VALUES} values are tweened at once.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the target type.
+ */
+public interface ITweenAccessor<T> {
+
+    /**
+     * Reads the current values of the given type from the target.
+     * 
+     * @param target
+     *            the target.
+     * @param type
+     *            the tween type.
+     * @param values
+     *            the array to write the values into.
+     * @return the number of values written.
+     */
+    int getValues(T target, int type, float[] values);
+
+    /**
+     * Writes the given values of the given type to the target.
+     * 
+     * @param target
+     *            the target.
+     * @param type
+     *            the tween type.
+     * @param values
+     *            the values, as many as {@link #getValues(Object, int, float[])} returns for the type.
+     */
+    void setValues(T target, int type, float[] values);
+
+}
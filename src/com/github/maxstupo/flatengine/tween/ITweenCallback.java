@@ -0,0 +1,19 @@
+package com.github.maxstupo.flatengine.tween;
+
+/**
+ * This interface is notified when a tween or timeline completes.
+ * 
+ * @author Maxstupo
+ */
+public interface ITweenCallback {
+
+    /**
+     * Called when the given tween completes, after its final values are written. The tween is returned to the pool straight after this call unless
+     * it's within a timeline, so no reference to it should be kept.
+     * 
+     * @param tween
+     *            the tween that completed.
+     */
+    void onComplete(AbstractTween tween);
+
+}
@@ -0,0 +1,29 @@
+package com.github.maxstupo.flatengine.tween;
+
+import com.github.maxstupo.flatengine.map.layer.AbstractMapLayer;
+
+/**
+ * This class tweens the transparency of an {@link AbstractMapLayer}.
+ * 
+ * @author Maxstupo
+ */
+public class MapLayerAccessor implements ITweenAccessor<AbstractMapLayer> {
+
+    /** The alpha, between 0.0 - 1.0. */
+    public static final int ALPHA = 0;
+
+    /** The shared instance, this accessor has no state. */
+    public static final MapLayerAccessor INSTANCE = new MapLayerAccessor();
+
+    @Override
+    public int getValues(AbstractMapLayer target, int type, float[] values) {
+        values[0] = target.getAlpha();
+        return 1;
+    }
+
+    @Override
+    public void setValues(AbstractMapLayer target, int type, float[] values) {
+        target.setAlpha(values[0]);
+    }
+
+}
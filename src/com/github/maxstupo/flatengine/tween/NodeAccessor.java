@@ -0,0 +1,53 @@
+package com.github.maxstupo.flatengine.tween;
+
+import com.github.maxstupo.flatengine.hgui.AbstractNode;
+
+/**
+ * This class tweens the local position and size of an {@link AbstractNode}, in pixels. Sizes are rounded to whole pixels when written.
+ * 
+ * @author Maxstupo
+ */
+public class NodeAccessor implements ITweenAccessor<AbstractNode> {
+
+    /** The local x and y position. */
+    public static final int POSITION = 0;
+
+    /** The width and height. */
+    public static final int SIZE = 1;
+
+    /** The shared instance, this accessor has no state. */
+    public static final NodeAccessor INSTANCE = new NodeAccessor();
+
+    @Override
+    public int getValues(AbstractNode target, int type, float[] values) {
+        switch (type) {
+            case SIZE:
+                values[0] = target.getWidth();
+                values[1] = target.getHeight();
+                return 2;
+
+            case POSITION:
+            default:
+                // Percentage positions are stored as fractions of the parent, but set in pixels.
+                boolean isPercentage = target.usePercentagePositions();
+                values[0] = isPercentage ? target.getLocalPositionX() * target.getParentWidth() : target.getLocalPositionX();
+                values[1] = isPercentage ? target.getLocalPositionY() * target.getParentHeight() : target.getLocalPositionY();
+                return 2;
+        }
+    }
+
+    @Override
+    public void setValues(AbstractNode target, int type, float[] values) {
+        switch (type) {
+            case SIZE:
+                target.setSize(Math.round(values[0]), Math.round(values[1]));
+                break;
+
+            case POSITION:
+            default:
+                target.setLocalPosition(values[0], values[1]);
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.github.maxstupo.flatengine.tween;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class plays a group of tweens and timelines, either one after another as a sequence, or all at once in parallel. Timelines can be nested, and
+ * the time left over when a child completes is carried into the next child so sequences don't drift.
+ * 
+ * <pre>
+ * manager.sequence().push(manager.tween(node, NodeAccessor.INSTANCE, NodeAccessor.POSITION, 0.3f).target(50, 20)).pushPause(1).push(...).start();
+ * </pre>
+ * 
+ * @author Maxstupo
+ */
+public class Timeline extends AbstractTween {
+
+    private final List<AbstractTween> children = new ArrayList<>();
+    private boolean isSequence;
+    private int current;
+
+    /**
+     * Create a new {@link Timeline} object, timelines are obtained from {@link TweenManager#sequence()} and {@link TweenManager#parallel()}.
+     */
+    Timeline(TweenManager manager) {
+        super(manager);
+    }
+
+    /**
+     * Sets if this timeline plays its children one after another, called when it's taken from the pool.
+     */
+    void setup(boolean isSequence) {
+        this.isSequence = isSequence;
+    }
+
+    /**
+     * Adds the given tween or timeline to the end of this timeline, the child is owned by this timeline from now on.
+     * 
+     * @param tween
+     *            the child.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if tween is null, this timeline, or from another manager.
+     * @throws IllegalStateException
+     *             if the child was already started or added to a timeline.
+     */
+    public Timeline push(AbstractTween tween) throws IllegalArgumentException, IllegalStateException {
+        if (tween == null || tween == this || tween.manager != manager)
+            throw new IllegalArgumentException("Invalid timeline child: " + tween);
+        tween.markStarted();
+        children.add(tween);
+        return this;
+    }
+
+    /**
+     * Adds a pause to the end of this timeline. Pauses only make sense within sequences.
+     * 
+     * @param duration
+     *            the duration of the pause, in seconds.
+     * @return this object for chaining.
+     */
+    public Timeline pushPause(float duration) {
+        return push(manager.sequence().delay(duration));
+    }
+
+    @Override
+    public Timeline delay(float delay) {
+        super.delay(delay);
+        return this;
+    }
+
+    @Override
+    public Timeline setCallback(ITweenCallback callback) {
+        super.setCallback(callback);
+        return this;
+    }
+
+    @Override
+    float step(float delta) {
+        if (isSequence) {
+            while (current < children.size()) {
+                float left = children.get(current).update(delta);
+                if (left < 0)
+                    return -1;
+                delta = left;
+                current++;
+            }
+            return delta;
+        }
+
+        boolean isDone = true;
+        float least = delta;
+        for (int i = 0; i < children.size(); i++) {
+            AbstractTween child = children.get(i);
+            if (child.isFinished() || child.isKilled())
+                continue;
+
+            float left = child.update(delta);
+            if (left < 0) {
+                isDone = false;
+            } else {
+                least = Math.min(least, left);
+            }
+        }
+        return isDone ? least : -1;
+    }
+
+    @Override
+    void killTarget(Object target) {
+        for (int i = 0; i < children.size(); i++)
+            children.get(i).killTarget(target);
+    }
+
+    @Override
+    void free() {
+        for (int i = 0; i < children.size(); i++)
+            children.get(i).free();
+        manager.freeTimeline(this);
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        children.clear();
+        isSequence = false;
+        current = 0;
+    }
+
+    /**
+     * Returns the number of children in this timeline.
+     * 
+     * @return the number of children in this timeline.
+     */
+    public int size() {
+        return children.size();
+    }
+
+    /**
+     * Returns true if this timeline plays its children one after another.
+     * 
+     * @return true if this timeline plays its children one after another.
+     */
+    public boolean isSequence() {
+        return isSequence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [children=%s, isSequence=%s, current=%s]", getClass().getSimpleName(), children.size(), isSequence, current);
+    }
+
+}
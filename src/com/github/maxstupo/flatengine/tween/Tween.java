@@ -0,0 +1,295 @@
+package com.github.maxstupo.flatengine.tween;
+
+import java.util.Arrays;
+
+/**
+ * This class changes up to {@link #MAX_VALUES} values of a target object from their current values to end values over a duration, using an
+ * {@link Easing} function. The values are read and written through an {@link ITweenAccessor} into float arrays owned by the tween, so a pooled tween
+ * doesn't allocate when it's started.
+ * 
+ * <pre>
+ * manager.tween(camera, CameraAccessor.INSTANCE, CameraAccessor.POSITION, 0.5f).target(10, 4).ease(Easing.QUAD_OUT).start();
+ * </pre>
+ * 
+ * @author Maxstupo
+ */
+public class Tween extends AbstractTween {
+
+    /** The maximum number of values a tween can change at once. */
+    public static final int MAX_VALUES = 4;
+
+    private Object target;
+    private ITweenAccessor<Object> accessor;
+    private int type;
+    private float duration;
+    private Easing easing = Easing.LINEAR;
+
+    private final float[] startValues = new float[MAX_VALUES];
+    private final float[] endValues = new float[MAX_VALUES];
+    private final float[] values = new float[MAX_VALUES];
+    private int count;
+    private boolean isRelative;
+    private boolean isInitialized;
+
+    private int repeats;
+    private boolean isYoyo;
+    private boolean isReversed;
+    private float elapsed;
+
+    /**
+     * Create a new {@link Tween} object, tweens are obtained from {@link TweenManager#tween(Object, ITweenAccessor, int, float)}.
+     */
+    Tween(TweenManager manager) {
+        super(manager);
+    }
+
+    /**
+     * Sets what this tween animates, called when it's taken from the pool.
+     */
+    @SuppressWarnings("unchecked")
+    void setup(Object target, ITweenAccessor<?> accessor, int type, float duration) {
+        this.target = target;
+        this.accessor = (ITweenAccessor<Object>) accessor;
+        this.type = type;
+        this.duration = duration;
+    }
+
+    /**
+     * Sets the end value of a single value type.
+     * 
+     * @param value
+     *            the end value.
+     * @return this object for chaining.
+     */
+    public Tween target(float value) {
+        endValues[0] = value;
+        return this;
+    }
+
+    /**
+     * Sets the end values of a two value type.
+     * 
+     * @param value1
+     *            the first end value.
+     * @param value2
+     *            the second end value.
+     * @return this object for chaining.
+     */
+    public Tween target(float value1, float value2) {
+        endValues[0] = value1;
+        endValues[1] = value2;
+        return this;
+    }
+
+    /**
+     * Sets the end values of a three value type.
+     * 
+     * @param value1
+     *            the first end value.
+     * @param value2
+     *            the second end value.
+     * @param value3
+     *            the third end value.
+     * @return this object for chaining.
+     */
+    public Tween target(float value1, float value2, float value3) {
+        endValues[0] = value1;
+        endValues[1] = value2;
+        endValues[2] = value3;
+        return this;
+    }
+
+    /**
+     * Sets the end values of a four value type.
+     * 
+     * @param value1
+     *            the first end value.
+     * @param value2
+     *            the second end value.
+     * @param value3
+     *            the third end value.
+     * @param value4
+     *            the fourth end value.
+     * @return this object for chaining.
+     */
+    public Tween target(float value1, float value2, float value3, float value4) {
+        endValues[0] = value1;
+        endValues[1] = value2;
+        endValues[2] = value3;
+        endValues[3] = value4;
+        return this;
+    }
+
+    /**
+     * Sets the end values.
+     * 
+     * @param values
+     *            the end values.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if more than {@link #MAX_VALUES} values are given.
+     */
+    public Tween target(float... values) throws IllegalArgumentException {
+        if (values.length > MAX_VALUES)
+            throw new IllegalArgumentException("A tween can change at most " + MAX_VALUES + " values: " + values.length);
+        System.arraycopy(values, 0, endValues, 0, values.length);
+        return this;
+    }
+
+    /**
+     * Sets if the end values are added to the start values, instead of replacing them.
+     * 
+     * @param isRelative
+     *            true if the end values are relative to the start values.
+     * @return this object for chaining.
+     */
+    public Tween relative(boolean isRelative) {
+        this.isRelative = isRelative;
+        return this;
+    }
+
+    /**
+     * Sets the easing function of this tween, {@link Easing#LINEAR} by default.
+     * 
+     * @param easing
+     *            the easing function.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if easing is null.
+     */
+    public Tween ease(Easing easing) throws IllegalArgumentException {
+        if (easing == null)
+            throw new IllegalArgumentException("easing can't be null!");
+        this.easing = easing;
+        return this;
+    }
+
+    /**
+     * Sets the number of times this tween repeats after playing once.
+     * 
+     * @param count
+     *            the number of repeats, or a negative value to repeat until killed.
+     * @param isYoyo
+     *            true to play every other repeat backwards.
+     * @return this object for chaining.
+     */
+    public Tween repeat(int count, boolean isYoyo) {
+        this.repeats = count;
+        this.isYoyo = isYoyo;
+        return this;
+    }
+
+    @Override
+    public Tween delay(float delay) {
+        super.delay(delay);
+        return this;
+    }
+
+    @Override
+    public Tween setCallback(ITweenCallback callback) {
+        super.setCallback(callback);
+        return this;
+    }
+
+    @Override
+    float step(float delta) {
+        if (!isInitialized) {
+            count = accessor.getValues(target, type, startValues);
+            if (isRelative) {
+                for (int i = 0; i < count; i++)
+                    endValues[i] += startValues[i];
+            }
+            isInitialized = true;
+        }
+
+        if (duration <= 0) {
+            apply(isReversed ? 0 : 1);
+            return delta;
+        }
+
+        elapsed += delta;
+        while (elapsed >= duration) {
+            if (repeats == 0) {
+                apply(isReversed ? 0 : 1);
+                return elapsed - duration;
+            }
+
+            elapsed -= duration;
+            if (repeats > 0)
+                repeats--;
+            if (isYoyo)
+                isReversed = !isReversed;
+        }
+
+        float progress = elapsed / duration;
+        apply(isReversed ? 1 - progress : progress);
+        return -1;
+    }
+
+    private void apply(float progress) {
+        float eased = easing.apply(progress);
+        for (int i = 0; i < count; i++)
+            values[i] = startValues[i] + (endValues[i] - startValues[i]) * eased;
+        accessor.setValues(target, type, values);
+    }
+
+    @Override
+    void killTarget(Object target) {
+        if (this.target == target)
+            kill();
+    }
+
+    @Override
+    void free() {
+        manager.freeTween(this);
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        target = null;
+        accessor = null;
+        easing = Easing.LINEAR;
+        Arrays.fill(endValues, 0);
+        count = 0;
+        isRelative = false;
+        isInitialized = false;
+        repeats = 0;
+        isYoyo = false;
+        isReversed = false;
+        elapsed = 0;
+    }
+
+    /**
+     * Returns the target of this tween.
+     * 
+     * @return the target of this tween.
+     */
+    public Object getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the tween type, passed to the accessor.
+     * 
+     * @return the tween type.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the duration of one play of this tween, in seconds.
+     * 
+     * @return the duration of one play of this tween.
+     */
+    public float getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [target=%s, type=%s, duration=%s, easing=%s, elapsed=%s]", getClass().getSimpleName(), target, type, duration, easing, elapsed);
+    }
+
+}
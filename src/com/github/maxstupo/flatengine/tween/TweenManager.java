@@ -0,0 +1,188 @@
+package com.github.maxstupo.flatengine.tween;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class updates tweens and timelines, and pools them so starting a tween doesn't allocate once the pools have grown to the number of tweens used
+ * at once. Completed and killed tweens are returned to the pool during {@link #update(float)}.
+ * <p>
+ * Tweens started later are updated later, so when two tweens change the same values the newest one wins.
+ * 
+ * @author Maxstupo
+ */
+public class TweenManager {
+
+    private final List<AbstractTween> active = new ArrayList<>();
+
+    private final List<Tween> tweenPool = new ArrayList<>();
+    private final List<Timeline> timelinePool = new ArrayList<>();
+
+    private boolean isUpdating;
+    private final List<AbstractTween> added = new ArrayList<>();
+
+    /**
+     * Create a new {@link TweenManager} object with empty pools.
+     */
+    public TweenManager() {
+        this(0);
+    }
+
+    /**
+     * Create a new {@link TweenManager} object.
+     * 
+     * @param poolSize
+     *            the number of tweens to preallocate.
+     */
+    public TweenManager(int poolSize) {
+        for (int i = 0; i < poolSize; i++)
+            tweenPool.add(new Tween(this));
+    }
+
+    /**
+     * Returns a tween from the pool, it's updated once {@link AbstractTween#start() started} or added to a timeline.
+     * 
+     * @param <T>
+     *            the target type.
+     * @param target
+     *            the target object.
+     * @param accessor
+     *            the accessor that reads and writes the values of the target.
+     * @param type
+     *            the tween type, passed to the accessor.
+     * @param duration
+     *            the duration, in seconds.
+     * @return a tween from the pool.
+     * @throws IllegalArgumentException
+     *             if target or accessor is null.
+     */
+    public <T> Tween tween(T target, ITweenAccessor<? super T> accessor, int type, float duration) throws IllegalArgumentException {
+        if (target == null || accessor == null)
+            throw new IllegalArgumentException("The target or accessor is null!");
+
+        Tween tween = tweenPool.isEmpty() ? new Tween(this) : tweenPool.remove(tweenPool.size() - 1);
+        tween.reset(); // Discards changes made through stale references while it was pooled.
+        tween.setup(target, accessor, type, duration);
+        return tween;
+    }
+
+    /**
+     * Returns a timeline from the pool that plays its children one after another.
+     * 
+     * @return a timeline from the pool.
+     */
+    public Timeline sequence() {
+        return timeline(true);
+    }
+
+    /**
+     * Returns a timeline from the pool that plays its children at once.
+     * 
+     * @return a timeline from the pool.
+     */
+    public Timeline parallel() {
+        return timeline(false);
+    }
+
+    private Timeline timeline(boolean isSequence) {
+        Timeline timeline = timelinePool.isEmpty() ? new Timeline(this) : timelinePool.remove(timelinePool.size() - 1);
+        timeline.reset();
+        timeline.setup(isSequence);
+        return timeline;
+    }
+
+    /**
+     * Adds a started tween, tweens started during an update are first updated on the next update.
+     */
+    void add(AbstractTween tween) {
+        if (isUpdating) {
+            added.add(tween);
+        } else {
+            active.add(tween);
+        }
+    }
+
+    /**
+     * Updates all started tweens, returning completed and killed tweens to the pool.
+     * 
+     * @param delta
+     *            the time since the last update, in seconds.
+     */
+    public void update(float delta) {
+        isUpdating = true;
+
+        int kept = 0;
+        for (int i = 0; i < active.size(); i++) {
+            AbstractTween tween = active.get(i);
+            if (tween.update(delta) >= 0 || tween.isKilled()) {
+                tween.free();
+            } else {
+                active.set(kept++, tween); // Compact in place to keep the start order.
+            }
+        }
+        while (active.size() > kept)
+            active.remove(active.size() - 1);
+
+        isUpdating = false;
+        for (int i = 0; i < added.size(); i++)
+            active.add(added.get(i));
+        added.clear();
+    }
+
+    /**
+     * Kills every tween that animates the given target, including tweens within timelines.
+     * 
+     * @param target
+     *            the target object.
+     */
+    public void killTweensOf(Object target) {
+        for (int i = 0; i < active.size(); i++)
+            active.get(i).killTarget(target);
+        for (int i = 0; i < added.size(); i++)
+            added.get(i).killTarget(target);
+    }
+
+    /**
+     * Kills every started tween.
+     */
+    public void killAll() {
+        for (int i = 0; i < active.size(); i++)
+            active.get(i).kill();
+        for (int i = 0; i < added.size(); i++)
+            added.get(i).kill();
+    }
+
+    void freeTween(Tween tween) {
+        tween.reset();
+        tweenPool.add(tween);
+    }
+
+    void freeTimeline(Timeline timeline) {
+        timeline.reset();
+        timelinePool.add(timeline);
+    }
+
+    /**
+     * Returns the number of started tweens and timelines.
+     * 
+     * @return the number of started tweens and timelines.
+     */
+    public int getActiveCount() {
+        return active.size() + added.size();
+    }
+
+    /**
+     * Returns the number of tweens waiting in the pool.
+     * 
+     * @return the number of tweens waiting in the pool.
+     */
+    public int getPoolSize() {
+        return tweenPool.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [active=%s, tweenPool=%s, timelinePool=%s]", getClass().getSimpleName(), getActiveCount(), tweenPool.size(), timelinePool.size());
+    }
+
+}
@@ -3,7 +3,9 @@ package com.github.maxstupo.flatengine.util;
 import com.github.maxstupo.flatengine.util.math.Vector2f;
 
 /**
- * The base class that all objects must derive from to be added to a {@link ObjectSpatialPartitioner}. The class provides a position and an id.
+ * The base class that all objects must derive from to be added to a {@link ISpatialIndex} such as {@link ObjectSpatialPartitioner}. The class provides
+ * a position, optional extents around the position and an id. While registered the object also carries the {@link HandleRegistry handle} given
+ * to it by its index, which is used for lookups instead of the id.
  * 
  * @author Maxstupo
  * @param <T>
@@ -12,19 +14,23 @@ import com.github.maxstupo.flatengine.util.math.Vector2f;
  */
 public abstract class AbstractSpatialObject<T extends AbstractSpatialObject<T>> {
 
-    private final ObjectSpatialPartitioner<T> partitioner;
+    private final ISpatialIndex<T> partitioner;
     private final Vector2f position = new Vector2f();
     private final Vector2f oldPosition = new Vector2f();
     private final String id;
+    private int handle = HandleRegistry.NULL_HANDLE;
+
+    private float halfWidth;
+    private float halfHeight;
 
     /**
      * 
      * @param partitioner
-     *            the partitioner that owns this object.
+     *            the spatial index that owns this object.
      * @param id
-     *            the id of this object.
+     *            the id of this object, only used for debugging and may be null.
      */
-    public AbstractSpatialObject(ObjectSpatialPartitioner<T> partitioner, String id) {
+    public AbstractSpatialObject(ISpatialIndex<T> partitioner, String id) {
         this.partitioner = partitioner;
         this.id = id;
     }
@@ -43,10 +49,51 @@ public abstract class AbstractSpatialObject<T extends AbstractSpatialObject<T>>
         oldPosition.set(position);
         position.set(x, y);
 
-        partitioner.updateObject((T) this);
+        partitioner.update((T) this);
+        return this;
+    }
+
+    /**
+     * Sets the extents of this object around its position, and updates this object within the partitioner. Objects are points by default.
+     * 
+     * @param halfWidth
+     *            half the width of this object.
+     * @param halfHeight
+     *            half the height of this object.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if halfWidth or halfHeight is negative.
+     */
+    @SuppressWarnings("unchecked")
+    public AbstractSpatialObject<T> setExtents(float halfWidth, float halfHeight) throws IllegalArgumentException {
+        if (halfWidth < 0 || halfHeight < 0)
+            throw new IllegalArgumentException("Extents can't be negative: " + halfWidth + ", " + halfHeight);
+        this.halfWidth = halfWidth;
+        this.halfHeight = halfHeight;
+
+        oldPosition.set(position);
+        partitioner.update((T) this);
         return this;
     }
 
+    /**
+     * Returns half the width of this object.
+     * 
+     * @return half the width of this object.
+     */
+    public float getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * Returns half the height of this object.
+     * 
+     * @return half the height of this object.
+     */
+    public float getHalfHeight() {
+        return halfHeight;
+    }
+
     /**
      * Sets the x position of this object, and updates this object within the partitioner.
      * 
@@ -108,12 +155,40 @@ public abstract class AbstractSpatialObject<T extends AbstractSpatialObject<T>>
     /**
      * Returns the partitioner that owns this object.
      * 
-     * @return the partitioner that owns this object.
+     * @return the partitioner that owns this object, or null if this object is owned by another type of {@link ISpatialIndex}.
      */
     public ObjectSpatialPartitioner<T> getPartitioner() {
+        return (partitioner instanceof ObjectSpatialPartitioner) ? (ObjectSpatialPartitioner<T>) partitioner : null;
+    }
+
+    /**
+     * Returns the spatial index that owns this object.
+     * 
+     * @return the spatial index that owns this object.
+     */
+    public ISpatialIndex<T> getIndex() {
         return partitioner;
     }
 
+    /**
+     * Returns the handle given to this object by its index.
+     * 
+     * @return the handle given to this object by its index, or {@link HandleRegistry#NULL_HANDLE} if this object isn't registered.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Sets the handle of this object, called by the index when this object is added or removed.
+     * 
+     * @param handle
+     *            the handle.
+     */
+    void setHandle(int handle) {
+        this.handle = handle;
+    }
+
     /**
      * Returns the id of this object.
      * 
@@ -125,7 +200,7 @@ public abstract class AbstractSpatialObject<T extends AbstractSpatialObject<T>>
 
     @Override
     public String toString() {
-        return String.format("%s [partitioner=%s, position=%s, oldPosition=%s, id=%s]", getClass().getSimpleName(), partitioner, position, oldPosition, id);
+        return String.format("%s [partitioner=%s, position=%s, oldPosition=%s, id=%s, handle=%s]", getClass().getSimpleName(), partitioner, position, oldPosition, id, handle);
     }
 
     @Override
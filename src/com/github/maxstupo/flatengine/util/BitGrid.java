@@ -0,0 +1,252 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a fixed size grid of bits, packed into an array of longs. Used for fast flag lookups per grid cell (e.g. solid, opaque or
+ * visible tiles) without the memory overhead of a <code>boolean[][]</code>.
+ * 
+ * @author Maxstupo
+ */
+public class BitGrid {
+
+    private final int width;
+    private final int height;
+
+    private final long[] words;
+
+    /**
+     * Create a new {@link BitGrid} object with all bits cleared.
+     * 
+     * @param width
+     *            the number of cells in width.
+     * @param height
+     *            the number of cells in height.
+     */
+    public BitGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.words = new long[(width * height + 63) >>> 6];
+    }
+
+    /**
+     * Create a new {@link BitGrid} object that is a copy of the given grid.
+     * 
+     * @param grid
+     *            the grid to copy.
+     */
+    public BitGrid(BitGrid grid) {
+        this.width = grid.width;
+        this.height = grid.height;
+        this.words = grid.words.clone();
+    }
+
+    /**
+     * Returns the bit at the given cell, or the given value if the cell is out of bounds.
+     * 
+     * @param x
+     *            the x cell position.
+     * @param y
+     *            the y cell position.
+     * @param outOfBounds
+     *            the value returned if the given cell is out of bounds.
+     * @return the bit at the given cell.
+     */
+    public boolean get(int x, int y, boolean outOfBounds) {
+        if (!isValid(x, y))
+            return outOfBounds;
+        return get(x + y * width);
+    }
+
+    /**
+     * Returns the bit at the given cell, or false if the cell is out of bounds.
+     * 
+     * @param x
+     *            the x cell position.
+     * @param y
+     *            the y cell position.
+     * @return the bit at the given cell.
+     */
+    public boolean get(int x, int y) {
+        return get(x, y, false);
+    }
+
+    /**
+     * Returns the bit at the given cell index (<code>x + y * width</code>). No bounds checking is done.
+     * 
+     * @param index
+     *            the cell index.
+     * @return the bit at the given cell index.
+     */
+    public boolean get(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bit at the given cell. If the cell is out of bounds this method does nothing.
+     * 
+     * @param x
+     *            the x cell position.
+     * @param y
+     *            the y cell position.
+     * @param value
+     *            the value of the bit.
+     * @return true if the bit changed.
+     */
+    public boolean set(int x, int y, boolean value) {
+        if (!isValid(x, y))
+            return false;
+        return set(x + y * width, value);
+    }
+
+    /**
+     * Sets the bit at the given cell index (<code>x + y * width</code>). No bounds checking is done.
+     * 
+     * @param index
+     *            the cell index.
+     * @param value
+     *            the value of the bit.
+     * @return true if the bit changed.
+     */
+    public boolean set(int index, boolean value) {
+        int word = index >>> 6;
+        long old = words[word];
+
+        if (value) {
+            words[word] |= (1L << index);
+        } else {
+            words[word] &= ~(1L << index);
+        }
+        return old != words[word];
+    }
+
+    /**
+     * Sets all bits to the given value.
+     * 
+     * @param value
+     *            the value of all bits.
+     */
+    public void fill(boolean value) {
+        Arrays.fill(words, value ? -1L : 0L);
+
+        int tail = (width * height) & 63;
+        if (value && tail != 0) // Keep bits past the last cell cleared.
+            words[words.length - 1] = (1L << tail) - 1;
+    }
+
+    /**
+     * Sets all bits of this grid to the bits of the given grid. Both grids must be the same size.
+     * 
+     * @param grid
+     *            the grid to copy bits from.
+     * @throws IllegalArgumentException
+     *             if the given grid is a different size.
+     */
+    public void set(BitGrid grid) throws IllegalArgumentException {
+        if (grid.width != width || grid.height != height)
+            throw new IllegalArgumentException("BitGrid sizes don't match!");
+        System.arraycopy(grid.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * Sets each bit of this grid to the logical OR of this grid and the given grid. Both grids must be the same size.
+     * 
+     * @param grid
+     *            the grid to combine with.
+     * @throws IllegalArgumentException
+     *             if the given grid is a different size.
+     */
+    public void or(BitGrid grid) throws IllegalArgumentException {
+        if (grid.width != width || grid.height != height)
+            throw new IllegalArgumentException("BitGrid sizes don't match!");
+        for (int i = 0; i < words.length; i++)
+            words[i] |= grid.words[i];
+    }
+
+    /**
+     * Returns true if the given cell is within this grid.
+     * 
+     * @param x
+     *            the x cell position.
+     * @param y
+     *            the y cell position.
+     * @return true if the given cell is within this grid.
+     */
+    public boolean isValid(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Returns the number of set bits.
+     * 
+     * @return the number of set bits.
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Returns the backing array of this grid. Cell <code>x,y</code> is stored in bit <code>(x + y * width) % 64</code> of word
+     * <code>(x + y * width) / 64</code>.
+     * 
+     * @return the backing array of this grid.
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * Returns the number of cells in width.
+     * 
+     * @return the number of cells in width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of cells in height.
+     * 
+     * @return the number of cells in height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [width=%s, height=%s, cardinality=%s]", getClass().getSimpleName(), width, height, cardinality());
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + height;
+        result = prime * result + width;
+        result = prime * result + Arrays.hashCode(words);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        BitGrid other = (BitGrid) obj;
+        if (height != other.height)
+            return false;
+        if (width != other.width)
+            return false;
+        if (!Arrays.equals(words, other.words))
+            return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,563 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class draws text by copying pre-rendered glyphs, instead of sending strings through the font rasteriser. Each glyph of a font is rendered
+ * once in white, the first time it's drawn, into a page of a shared atlas image along with its advance width. The white glyphs are the coverage of
+ * each pixel, a string is composed from them with a plain image copy per character and then tinted to the text color, so one atlas serves every
+ * color.
+ * <p>
+ * {@link #renderString(String, Color)} composes a string into a new image that can be drawn with one copy each frame, as {@link
+ * com.github.maxstupo.flatengine.hgui.GuiText GuiText} does. With the software pipeline composing is slower than
+ * {@link Graphics2D#drawString(String, int, int)}, which has its own glyph cache, so it only pays off for text that is drawn more often than it
+ * changes.
+ * <p>
+ * The shared atlases are limited to {@value #MAX_ATLASES} fonts, the least recently used atlas is discarded first.
+ * <p>
+ * Glyphs are placed at their advance widths, so kerning and ligatures aren't applied, matching {@link Graphics2D#drawString(String, int, int)} with
+ * default font attributes. Text is read by code point, only characters of the basic multilingual plane are kept in the atlas, others such as emoji
+ * are drawn with {@link Graphics2D#drawString(String, int, int)} at their place in the string. This class isn't thread safe, atlases should only be used from the render thread.
+ * 
+ * @author Maxstupo
+ */
+public class GlyphAtlas {
+
+    /** The minimum width and height of an atlas page, in pixels. */
+    private static final int PAGE_SIZE = 512;
+
+    /** The maximum number of shared atlases kept by {@link #get(Font, boolean)}. */
+    public static final int MAX_ATLASES = 32;
+
+    private static final Map<Key, GlyphAtlas> ATLASES = new LinkedHashMap<Key, GlyphAtlas>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, GlyphAtlas> eldest) {
+            return size() > MAX_ATLASES;
+        }
+    };
+
+    private final Font font;
+    private final boolean isAntialiased;
+
+    private final FontMetrics metrics;
+    private final int ascent;
+    private final int height;
+
+    private final List<BufferedImage> pages = new ArrayList<>();
+    private final int pageSize;
+    private Graphics2D pageGraphics;
+    private int shelfX;
+    private int shelfY;
+    private int shelfHeight;
+
+    /** The glyph data indexed by character, grown to the highest character drawn. */
+    private int[] advances = new int[256];
+    private int[] pageIndexes = new int[256];
+    private int[] atlasX = new int[256];
+    private int[] atlasY = new int[256];
+    private int[] offsetX = new int[256];
+    private int[] offsetY = new int[256];
+    private int[] widths = new int[256];
+    private int[] heights = new int[256];
+    private boolean[] isLoaded = new boolean[256];
+
+    /** The bounds of the last string measured by {@link #measure(String)}, relative to the string origin. */
+    private int boundsLeft;
+    private int boundsTop;
+    private int boundsRight;
+    private int boundsBottom;
+
+    /** The image strings are composed and tinted in by {@link #drawString(Graphics2D, String, int, int)}. */
+    private BufferedImage scratch;
+    private Graphics2D scratchGraphics;
+
+    private GlyphAtlas(Font font, boolean isAntialiased) {
+        this.font = font;
+        this.isAntialiased = isAntialiased;
+
+        this.metrics = TextMetrics.getFontMetrics(font, isAntialiased, false);
+        this.ascent = metrics.getAscent();
+        this.height = metrics.getHeight();
+        this.pageSize = Math.max(PAGE_SIZE, Integer.highestOneBit(Math.max(1, height * 4)) * 2);
+    }
+
+    /**
+     * Returns the shared atlas of the given font, creating it if needed. The text antialiasing is taken from the given graphics context so glyphs
+     * look the same as text drawn by it.
+     * 
+     * @param g
+     *            the graphics context the text will be drawn to.
+     * @param font
+     *            the font.
+     * @return the shared atlas of the given font.
+     * @throws IllegalArgumentException
+     *             if font is null.
+     */
+    public static GlyphAtlas get(Graphics2D g, Font font) throws IllegalArgumentException {
+        return get(font, isAntialiased(g));
+    }
+
+    /**
+     * Returns the shared atlas of the given font, creating it if needed.
+     * 
+     * @param font
+     *            the font.
+     * @param isAntialiased
+     *            true to render antialiased glyphs.
+     * @return the shared atlas of the given font.
+     * @throws IllegalArgumentException
+     *             if font is null.
+     */
+    public static GlyphAtlas get(Font font, boolean isAntialiased) throws IllegalArgumentException {
+        if (font == null)
+            throw new IllegalArgumentException("font can't be null!");
+
+        Key key = new Key(font, isAntialiased);
+        GlyphAtlas atlas = ATLASES.get(key);
+        if (atlas == null) {
+            atlas = new GlyphAtlas(font, isAntialiased);
+            ATLASES.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Returns true if the given graphics context draws antialiased text, see {@link TextMetrics#isAntialiased(Graphics2D)}.
+     * 
+     * @param g
+     *            the graphics context.
+     * @return true if the given graphics context draws antialiased text.
+     */
+    public static boolean isAntialiased(Graphics2D g) {
+        return TextMetrics.isAntialiased(g);
+    }
+
+    /**
+     * Discards all shared atlases, atlases already held keep working.
+     */
+    public static void clearAtlases() {
+        ATLASES.clear();
+    }
+
+    private void applyHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, isAntialiased ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+    }
+
+    /**
+     * Draws the given string in the current color of the graphics context with the origin being the top-left of the string, like
+     * {@link UtilGraphics#drawString(java.awt.Graphics, String, int, int)}. The string is composed and tinted in an image reused between calls, then
+     * drawn with a single copy.
+     * 
+     * @param g
+     *            the graphics context to draw to.
+     * @param text
+     *            the text to draw.
+     * @param x
+     *            the x position.
+     * @param y
+     *            the y position.
+     */
+    public void drawString(Graphics2D g, String text, int x, int y) {
+        if (text == null || text.isEmpty())
+            return;
+
+        measure(text);
+        int w = boundsRight - boundsLeft;
+        int h = boundsBottom - boundsTop;
+        if (scratch == null || scratch.getWidth() < w || scratch.getHeight() < h) {
+            if (scratchGraphics != null)
+                scratchGraphics.dispose();
+            int width = (scratch == null) ? w : Math.max(w, scratch.getWidth());
+            int height = (scratch == null) ? h : Math.max(h, scratch.getHeight());
+            scratch = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            scratchGraphics = scratch.createGraphics();
+            applyHints(scratchGraphics);
+            scratchGraphics.setFont(font);
+        }
+
+        scratchGraphics.setComposite(AlphaComposite.Clear);
+        scratchGraphics.fillRect(0, 0, w, h);
+        scratchGraphics.setComposite(AlphaComposite.SrcOver);
+        drawGlyphs(scratchGraphics, text, -boundsLeft, -boundsTop);
+        tint(scratchGraphics, g.getColor(), w, h);
+
+        int dx = x + boundsLeft;
+        int dy = y + boundsTop;
+        g.drawImage(scratch, dx, dy, dx + w, dy + h, 0, 0, w, h, null);
+    }
+
+    /**
+     * Draws the white glyphs of the given string with the origin being the top-left of the string. The graphics context must have the font and hints
+     * of this atlas, for characters outside of the atlas.
+     */
+    private void drawGlyphs(Graphics2D g, String text, int x, int y) {
+        g.setColor(Color.WHITE);
+        int penX = x;
+        for (int i = 0; i < text.length();) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c > Character.MAX_VALUE) {
+                g.drawString(new String(Character.toChars(c)), penX, y + ascent);
+                penX += metrics.charWidth(c);
+                continue;
+            }
+            if (c >= isLoaded.length || !isLoaded[c])
+                loadGlyph((char) c);
+
+            int w = widths[c];
+            if (w > 0) {
+                int h = heights[c];
+                int dx = penX + offsetX[c];
+                int dy = y + offsetY[c];
+                int sx = atlasX[c];
+                int sy = atlasY[c];
+                g.drawImage(pages.get(pageIndexes[c]), dx, dy, dx + w, dy + h, sx, sy, sx + w, sy + h, null);
+            }
+            penX += advances[c];
+        }
+    }
+
+    /**
+     * Tints the white glyphs in the given area to the given color, keeping their coverage.
+     */
+    private static void tint(Graphics2D g, Color color, int w, int h) {
+        g.setComposite(AlphaComposite.SrcIn);
+        g.setColor(color);
+        g.fillRect(0, 0, w, h);
+        g.setComposite(AlphaComposite.SrcOver);
+    }
+
+    /**
+     * Returns a new image of the given string, for text that doesn't change so it can be drawn with a single image copy. The image should be drawn at
+     * the string position moved by {@link #getStringOffsetX(String)} and {@link #getStringOffsetY(String)}.
+     * 
+     * @param text
+     *            the text, or null for an empty 1x1 image.
+     * @param color
+     *            the text color.
+     * @return a new image of the given string.
+     * @throws IllegalArgumentException
+     *             if color is null.
+     */
+    public BufferedImage renderString(String text, Color color) throws IllegalArgumentException {
+        if (color == null)
+            throw new IllegalArgumentException("color can't be null!");
+        if (text == null)
+            return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        measure(text);
+        int w = Math.max(1, boundsRight - boundsLeft);
+        int h = Math.max(1, boundsBottom - boundsTop);
+
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        applyHints(g);
+        g.setFont(font);
+        drawGlyphs(g, text, -boundsLeft, -boundsTop);
+        tint(g, color, w, h);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Measures the pixel bounds of the given string into {@link #boundsLeft} etc, loading any missing glyphs.
+     */
+    private void measure(String text) {
+        int left = getStringOffsetX(text);
+        int right = 0;
+        int top = 0;
+        int bottom = height;
+
+        int penX = 0;
+        for (int i = 0; i < text.length();) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c > Character.MAX_VALUE) {
+                Rectangle bounds = getOutsideBounds(c);
+                if (!bounds.isEmpty()) {
+                    right = Math.max(right, penX + bounds.x + bounds.width);
+                    top = Math.min(top, bounds.y);
+                    bottom = Math.max(bottom, bounds.y + bounds.height);
+                }
+                penX += metrics.charWidth(c);
+                continue;
+            }
+            if (c >= isLoaded.length || !isLoaded[c])
+                loadGlyph((char) c);
+            if (widths[c] > 0) {
+                right = Math.max(right, penX + offsetX[c] + widths[c]);
+                top = Math.min(top, offsetY[c]);
+                bottom = Math.max(bottom, offsetY[c] + heights[c]);
+            }
+            penX += advances[c];
+        }
+        right = Math.max(right, penX);
+
+        boundsLeft = left;
+        boundsTop = top;
+        boundsRight = right;
+        boundsBottom = bottom;
+    }
+
+    /**
+     * Returns the x position of the left edge of the image from {@link #renderString(String, Color)}, relative to the string origin. Glyphs that overhang to
+     * the left make this negative.
+     * 
+     * @param text
+     *            the text, or null.
+     * @return the x position of the image relative to the string origin, zero or less.
+     */
+    public int getStringOffsetX(String text) {
+        if (text == null || text.isEmpty())
+            return 0;
+
+        int c = text.codePointAt(0);
+        if (c > Character.MAX_VALUE)
+            return Math.min(0, getOutsideBounds(c).x);
+        if (c >= isLoaded.length || !isLoaded[c])
+            loadGlyph((char) c);
+        return Math.min(0, offsetX[c]);
+    }
+
+    /**
+     * Returns the y position of the top edge of the image from {@link #renderString(String, Color)}, relative to the string origin.
+     * 
+     * @param text
+     *            the text, or null.
+     * @return the y position of the image relative to the string origin, zero or less.
+     */
+    public int getStringOffsetY(String text) {
+        if (text == null)
+            return 0;
+
+        int top = 0;
+        for (int i = 0; i < text.length();) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c > Character.MAX_VALUE) {
+                Rectangle bounds = getOutsideBounds(c);
+                if (!bounds.isEmpty())
+                    top = Math.min(top, bounds.y);
+                continue;
+            }
+            if (c >= isLoaded.length || !isLoaded[c])
+                loadGlyph((char) c);
+            if (widths[c] > 0)
+                top = Math.min(top, offsetY[c]);
+        }
+        return top;
+    }
+
+    /**
+     * Returns the advance width of the given string, using the cached advance of each glyph.
+     * 
+     * @param text
+     *            the text.
+     * @return the advance width of the given string, in pixels.
+     */
+    public int stringWidth(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length();) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c > Character.MAX_VALUE) {
+                width += metrics.charWidth(c);
+                continue;
+            }
+            if (c >= isLoaded.length || !isLoaded[c])
+                loadGlyph((char) c);
+            width += advances[c];
+        }
+        return width;
+    }
+
+    /**
+     * Returns the padded pixel bounds of a character outside of the atlas relative to its origin, like the bounds of an atlas glyph.
+     */
+    private Rectangle getOutsideBounds(int codePoint) {
+        FontRenderContext frc = metrics.getFontRenderContext();
+        Rectangle bounds = font.createGlyphVector(frc, new String(Character.toChars(codePoint))).getPixelBounds(frc, 0, ascent);
+        if (!bounds.isEmpty())
+            bounds.grow(1, 1);
+        return bounds;
+    }
+
+    /**
+     * Renders the given character into the atlas.
+     */
+    private void loadGlyph(char c) {
+        if (c >= isLoaded.length) {
+            int capacity = Math.min(Character.MAX_VALUE + 1, Math.max(c + 1, isLoaded.length * 2));
+            advances = Arrays.copyOf(advances, capacity);
+            pageIndexes = Arrays.copyOf(pageIndexes, capacity);
+            atlasX = Arrays.copyOf(atlasX, capacity);
+            atlasY = Arrays.copyOf(atlasY, capacity);
+            offsetX = Arrays.copyOf(offsetX, capacity);
+            offsetY = Arrays.copyOf(offsetY, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            isLoaded = Arrays.copyOf(isLoaded, capacity);
+        }
+
+        isLoaded[c] = true;
+        advances[c] = metrics.charWidth(c);
+
+        String glyph = String.valueOf(c);
+        FontRenderContext frc = metrics.getFontRenderContext();
+        Rectangle bounds = font.createGlyphVector(frc, glyph).getPixelBounds(frc, 0, ascent);
+        if (bounds.isEmpty() || Character.isWhitespace(c) || Character.isISOControl(c))
+            return; // Nothing visible to draw, only advance.
+
+        // One pixel of padding so filtered or antialiased edges aren't clipped.
+        int w = bounds.width + 2;
+        int h = bounds.height + 2;
+        if (!reserve(w, h))
+            return;
+
+        widths[c] = w;
+        heights[c] = h;
+        offsetX[c] = bounds.x - 1;
+        offsetY[c] = bounds.y - 1;
+        pageIndexes[c] = pages.size() - 1;
+        atlasX[c] = shelfX;
+        atlasY[c] = shelfY;
+
+        pageGraphics.drawString(glyph, shelfX - offsetX[c], shelfY - offsetY[c] + ascent);
+        shelfX += w;
+    }
+
+    /**
+     * Moves the packing position to space for a glyph of the given size, starting a new shelf or page when needed.
+     * 
+     * @return false if the glyph is larger than a page.
+     */
+    private boolean reserve(int w, int h) {
+        if (w > pageSize || h > pageSize)
+            return false;
+
+        if (pageGraphics != null && shelfX + w > pageSize) {
+            shelfX = 0;
+            shelfY += shelfHeight;
+            shelfHeight = 0;
+        }
+
+        if (pageGraphics == null || shelfY + h > pageSize) {
+            if (pageGraphics != null)
+                pageGraphics.dispose();
+
+            BufferedImage page = new BufferedImage(pageSize, pageSize, BufferedImage.TYPE_INT_ARGB_PRE);
+            pages.add(page);
+            pageGraphics = page.createGraphics();
+            applyHints(pageGraphics);
+            pageGraphics.setFont(font);
+            pageGraphics.setColor(Color.WHITE);
+            shelfX = 0;
+            shelfY = 0;
+            shelfHeight = 0;
+        }
+
+        shelfHeight = Math.max(shelfHeight, h);
+        return true;
+    }
+
+    /**
+     * Returns the font of this atlas.
+     * 
+     * @return the font of this atlas.
+     */
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Returns true if the glyphs of this atlas are antialiased.
+     * 
+     * @return true if the glyphs of this atlas are antialiased.
+     */
+    public boolean isAntialiased() {
+        return isAntialiased;
+    }
+
+    /**
+     * Returns the font metrics used to measure the glyphs of this atlas.
+     * 
+     * @return the font metrics of this atlas.
+     */
+    public FontMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of atlas pages.
+     * 
+     * @return the number of atlas pages.
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [font=%s, isAntialiased=%s, pages=%s]", getClass().getSimpleName(), font, isAntialiased, pages.size());
+    }
+
+    /**
+     * The key of a shared atlas.
+     */
+    private static class Key {
+
+        private final Font font;
+        private final boolean isAntialiased;
+
+        Key(Font font, boolean isAntialiased) {
+            this.font = font;
+            this.isAntialiased = isAntialiased;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((font == null) ? 0 : font.hashCode());
+            result = prime * result + (isAntialiased ? 1231 : 1237);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            if (font == null) {
+                if (other.font != null)
+                    return false;
+            } else if (!font.equals(other.font))
+                return false;
+            if (isAntialiased != other.isAntialiased)
+                return false;
+            return true;
+        }
+    }
+
+}
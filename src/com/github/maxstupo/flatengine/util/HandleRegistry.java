@@ -0,0 +1,304 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.util.Arrays;
+
+/**
+ * This class is a registry that gives each registered object an int handle. Handles are made of a slot index and a generation, the generation of a
+ * slot is incremented each time it's freed so a handle kept after its object was removed is detected as stale rather than returning whichever object
+ * reused the slot.
+ * <p>
+ * A generation has {@value #GENERATION_BITS} bits, so instead of wrapping around to a generation a stale handle may still hold, a slot is retired
+ * once all {@value #MAX_GENERATION} generations were used and never reused. A registry can therefore hand out at most {@value #MAX_SIZE} times
+ * {@value #MAX_GENERATION} handles over its lifetime, after which {@link #add(Object)} throws once the remaining slots are in use.
+ * <p>
+ * Free slots are kept in a primitive free-list and the registered objects are packed densely, so {@link #get(int)}, {@link #add(Object)} and
+ * {@link #remove(int)} are O(1) and iterating with {@link #getDense(int)} only visits registered objects.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the object type.
+ */
+public class HandleRegistry<T> {
+
+    /** A handle that never refers to an object. */
+    public static final int NULL_HANDLE = 0;
+
+    /** The number of low bits of a handle used for the slot index. */
+    public static final int INDEX_BITS = 24;
+
+    /** The maximum number of objects that can be registered at once. */
+    public static final int MAX_SIZE = 1 << INDEX_BITS;
+
+    /** The number of high bits of a handle used for the generation. */
+    public static final int GENERATION_BITS = 32 - INDEX_BITS;
+
+    /** The last generation of a slot, generations start at one so {@link #NULL_HANDLE} is never valid. */
+    public static final int MAX_GENERATION = (1 << GENERATION_BITS) - 1;
+
+    /** The generation of a retired slot, which no handle has. */
+    private static final int RETIRED = -1;
+
+    private static final int INDEX_MASK = MAX_SIZE - 1;
+
+    private int[] generations;
+    private int[] slotToDense;
+
+    private Object[] dense;
+    private int[] denseToSlot;
+    private int size;
+
+    private int[] freeSlots;
+    private int freeCount;
+    private int nextSlot;
+    private int retiredCount;
+
+    /**
+     * Create a new {@link HandleRegistry} object with a capacity of 64 objects.
+     */
+    public HandleRegistry() {
+        this(64);
+    }
+
+    /**
+     * Create a new {@link HandleRegistry} object.
+     * 
+     * @param capacity
+     *            the initial number of objects, the registry will grow when needed.
+     */
+    public HandleRegistry(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.generations = new int[capacity];
+        this.slotToDense = new int[capacity];
+        this.dense = new Object[capacity];
+        this.denseToSlot = new int[capacity];
+        this.freeSlots = new int[capacity];
+    }
+
+    /**
+     * Registers the given object.
+     * 
+     * @param t
+     *            the object.
+     * @return the handle of the object.
+     * @throws IllegalArgumentException
+     *             if t is null.
+     * @throws IllegalStateException
+     *             if every slot is registered or retired.
+     */
+    public int add(T t) throws IllegalArgumentException, IllegalStateException {
+        if (t == null)
+            throw new IllegalArgumentException("t can't be null!");
+
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (nextSlot == MAX_SIZE)
+                throw new IllegalStateException("Registry is full: size=" + size + ", retired=" + retiredCount);
+            slot = nextSlot++;
+            if (slot == generations.length)
+                grow();
+            generations[slot] = 1;
+        }
+
+        slotToDense[slot] = size;
+        denseToSlot[size] = slot;
+        dense[size++] = t;
+        return (generations[slot] << INDEX_BITS) | slot;
+    }
+
+    /**
+     * Unregisters the object of the given handle, the handle and any copies of it become stale.
+     * 
+     * @param handle
+     *            the handle.
+     * @return the removed object, or null if the handle was stale.
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int handle) {
+        if (!isValid(handle))
+            return null;
+
+        int slot = handle & INDEX_MASK;
+        int index = slotToDense[slot];
+        T removed = (T) dense[index];
+
+        int last = --size; // Move the last object into the gap to keep the objects packed.
+        dense[index] = dense[last];
+        denseToSlot[index] = denseToSlot[last];
+        slotToDense[denseToSlot[index]] = index;
+        dense[last] = null;
+
+        if (generations[slot] == MAX_GENERATION) { // Reusing the slot would wrap to a generation stale handles may still hold.
+            generations[slot] = RETIRED;
+            retiredCount++;
+            return removed;
+        }
+        generations[slot]++;
+
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+        return removed;
+    }
+
+    /**
+     * Returns the object of the given handle.
+     * 
+     * @param handle
+     *            the handle.
+     * @return the object of the given handle, or null if the handle is stale.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int handle) {
+        return isValid(handle) ? (T) dense[slotToDense[handle & INDEX_MASK]] : null;
+    }
+
+    /**
+     * Replaces the object of the given handle, the handle stays valid.
+     *
+     * @param handle
+     *            the handle.
+     * @param t
+     *            the new object.
+     * @return the previous object, or null if the handle is stale and nothing was replaced.
+     * @throws IllegalArgumentException
+     *             if t is null.
+     */
+    @SuppressWarnings("unchecked")
+    public T set(int handle, T t) throws IllegalArgumentException {
+        if (t == null)
+            throw new IllegalArgumentException("t can't be null!");
+        if (!isValid(handle))
+            return null;
+
+        int index = slotToDense[handle & INDEX_MASK];
+        T previous = (T) dense[index];
+        dense[index] = t;
+        return previous;
+    }
+
+    /**
+     * Returns true if the given handle refers to a registered object.
+     * 
+     * @param handle
+     *            the handle.
+     * @return true if the given handle refers to a registered object.
+     */
+    public boolean isValid(int handle) {
+        int slot = handle & INDEX_MASK;
+        if (slot >= nextSlot || generations[slot] != (handle >>> INDEX_BITS))
+            return false;
+
+        int index = slotToDense[slot]; // A free slot's generation is already that of its next handle.
+        return index < size && denseToSlot[index] == slot;
+    }
+
+    /**
+     * Unregisters all objects, making all handles stale.
+     */
+    public void clear() {
+        while (size > 0)
+            remove(getDenseHandle(size - 1));
+    }
+
+    private void grow() {
+        int capacity = generations.length * 2;
+        generations = Arrays.copyOf(generations, capacity);
+        slotToDense = Arrays.copyOf(slotToDense, capacity);
+        dense = Arrays.copyOf(dense, capacity);
+        denseToSlot = Arrays.copyOf(denseToSlot, capacity);
+    }
+
+    /**
+     * Returns the object at the given dense index. Registered objects are packed between zero and {@link #size()}, and the order changes as objects
+     * are removed.
+     * 
+     * @param index
+     *            the dense index.
+     * @return the object at the given dense index.
+     */
+    @SuppressWarnings("unchecked")
+    public T getDense(int index) {
+        return (T) dense[index];
+    }
+
+    /**
+     * Returns the dense index of the object of the given handle. Removing an object moves the last object into its dense index, which lets callers
+     * keep parallel arrays packed in the same order.
+     * 
+     * @param handle
+     *            the handle.
+     * @return the dense index of the object of the given handle, or -1 if the handle is stale.
+     */
+    public int denseIndexOf(int handle) {
+        return isValid(handle) ? slotToDense[handle & INDEX_MASK] : -1;
+    }
+
+    /**
+     * Returns the handle of the object at the given dense index.
+     * 
+     * @param index
+     *            the dense index.
+     * @return the handle of the object at the given dense index.
+     */
+    public int getDenseHandle(int index) {
+        int slot = denseToSlot[index];
+        return (generations[slot] << INDEX_BITS) | slot;
+    }
+
+    /**
+     * Returns the number of registered objects.
+     * 
+     * @return the number of registered objects.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots retired after using all of their generations, they are never reused.
+     * 
+     * @return the number of retired slots.
+     */
+    public int getRetiredCount() {
+        return retiredCount;
+    }
+
+    /**
+     * Returns true if no objects are registered.
+     * 
+     * @return true if no objects are registered.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the slot index of the given handle.
+     * 
+     * @param handle
+     *            the handle.
+     * @return the slot index of the given handle.
+     */
+    public static int indexOf(int handle) {
+        return handle & INDEX_MASK;
+    }
+
+    /**
+     * Returns the generation of the given handle.
+     * 
+     * @param handle
+     *            the handle.
+     * @return the generation of the given handle.
+     */
+    public static int generationOf(int handle) {
+        return handle >>> INDEX_BITS;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [size=%s, slots=%s, freeCount=%s, retiredCount=%s]", getClass().getSimpleName(), size, nextSlot, freeCount, retiredCount);
+    }
+
+}
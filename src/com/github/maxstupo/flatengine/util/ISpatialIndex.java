@@ -0,0 +1,76 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.util.List;
+
+/**
+ * This interface is used for structures that index {@link AbstractSpatialObject}s by position, so games can pick the structure that suits their
+ * workload. An {@link ObjectSpatialPartitioner} suits evenly spread point objects, a {@link LooseQuadtree} suits clumped objects and objects with
+ * large extents.
+ * <p>
+ * Objects notify their index through {@link #update(AbstractSpatialObject)} each time they move.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the object type.
+ */
+public interface ISpatialIndex<T extends AbstractSpatialObject<T>> {
+
+    /**
+     * Adds the given object.
+     * 
+     * @param t
+     *            the object.
+     * @return false if the object has already been added.
+     */
+    boolean add(T t);
+
+    /**
+     * Removes the given object.
+     * 
+     * @param t
+     *            the object to remove.
+     * @return false if the object isn't registered.
+     */
+    boolean remove(T t);
+
+    /**
+     * Updates where the given object is stored based on its position and extents. If the object isn't registered this method does nothing.
+     * 
+     * @param t
+     *            the object.
+     */
+    void update(T t);
+
+    /**
+     * Returns true if the given object is registered.
+     * 
+     * @param t
+     *            the object to check.
+     * @return true if the given object is registered.
+     */
+    boolean hasRegistered(T t);
+
+    /**
+     * Adds all objects overlapping the given rectangle to the given list.
+     * 
+     * @param x
+     *            x position of the rectangle, top-left origin.
+     * @param y
+     *            y position of the rectangle, top-left origin.
+     * @param width
+     *            the width of the rectangle.
+     * @param height
+     *            the height of the rectangle.
+     * @param out
+     *            the list the objects will be added to.
+     * @return the number of objects added.
+     */
+    int query(float x, float y, float width, float height, List<? super T> out);
+
+    /**
+     * Returns the number of registered objects.
+     * 
+     * @return the number of registered objects.
+     */
+    int size();
+}
@@ -0,0 +1,135 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.util.Arrays;
+
+/**
+ * This class is a binary min-heap of int values ordered by float keys, backed by primitive arrays so pushing and popping doesn't allocate or box.
+ * Used as the open set of grid searches, where the values are cell indexes and the keys are costs.
+ * <p>
+ * The heap doesn't support updating the key of a value, instead the value can be pushed again with the new key and stale entries skipped when popped.
+ * 
+ * @author Maxstupo
+ */
+public class IntMinHeap {
+
+    private int[] values;
+    private float[] keys;
+    private int size;
+
+    /**
+     * Create a new {@link IntMinHeap} object with a capacity of 64.
+     */
+    public IntMinHeap() {
+        this(64);
+    }
+
+    /**
+     * Create a new {@link IntMinHeap} object.
+     * 
+     * @param capacity
+     *            the initial capacity, the heap will grow when needed.
+     */
+    public IntMinHeap(int capacity) {
+        this.values = new int[Math.max(1, capacity)];
+        this.keys = new float[values.length];
+    }
+
+    /**
+     * Adds the given value to this heap.
+     * 
+     * @param value
+     *            the value.
+     * @param key
+     *            the key used to order the value.
+     */
+    public void push(int value, float key) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+
+        int i = size++;
+        while (i > 0) { // Sift up.
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key)
+                break;
+            values[i] = values[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        values[i] = value;
+        keys[i] = key;
+    }
+
+    /**
+     * Removes and returns the value with the smallest key.
+     * 
+     * @return the value with the smallest key.
+     * @throws IllegalStateException
+     *             if this heap is empty.
+     */
+    public int pop() throws IllegalStateException {
+        if (size == 0)
+            throw new IllegalStateException("Heap is empty!");
+
+        int result = values[0];
+        int value = values[--size];
+        float key = keys[size];
+
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) { // Sift down.
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                child++;
+            if (key <= keys[child])
+                break;
+            values[i] = values[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+        values[i] = value;
+        keys[i] = key;
+        return result;
+    }
+
+    /**
+     * Returns the smallest key within this heap.
+     * 
+     * @return the smallest key, or {@link Float#POSITIVE_INFINITY} if this heap is empty.
+     */
+    public float peekKey() {
+        return (size > 0) ? keys[0] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Removes all values from this heap.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns true if this heap is empty.
+     * 
+     * @return true if this heap is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of values within this heap.
+     * 
+     * @return the number of values within this heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [size=%s, capacity=%s]", getClass().getSimpleName(), size, values.length);
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash map from primitive long keys to non-null values, using open addressing with linear probing so lookups don't box keys or
+ * allocate entries. Removal shifts the following entries back instead of leaving tombstones, so lookups stay fast as entries come and go.
+ * <p>
+ * The slots can be iterated without allocating using {@link #capacity()}, {@link #keyAt(int)} and {@link #valueAt(int)}.
+ * 
+ * @author Maxstupo
+ * @param <V>
+ *            the value type.
+ */
+public class LongHashMap<V> {
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Create a new {@link LongHashMap} object with a capacity of 16 entries.
+     */
+    public LongHashMap() {
+        this(16);
+    }
+
+    /**
+     * Create a new {@link LongHashMap} object.
+     * 
+     * @param expectedSize
+     *            the number of entries expected, the map will grow when needed.
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value of the given key.
+     * 
+     * @param key
+     *            the key.
+     * @return the value of the given key, or null if there isn't one.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slot(key);; slot = (slot + 1) & mask) {
+            Object value = values[slot];
+            if (value == null || keys[slot] == key)
+                return (V) value;
+        }
+    }
+
+    /**
+     * Sets the value of the given key.
+     * 
+     * @param key
+     *            the key.
+     * @param value
+     *            the value.
+     * @return the previous value of the given key, or null if there wasn't one.
+     * @throws IllegalArgumentException
+     *             if value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) throws IllegalArgumentException {
+        if (value == null)
+            throw new IllegalArgumentException("value can't be null!");
+
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                Object previous = values[slot];
+                values[slot] = value;
+                return (V) previous;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > values.length)
+            rehash(values.length * 2);
+        return null;
+    }
+
+    /**
+     * Removes the given key.
+     * 
+     * @param key
+     *            the key.
+     * @return the value of the removed key, or null if there wasn't one.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                break;
+        }
+
+        Object removed = values[slot];
+        if (removed == null)
+            return null;
+
+        // Shift back following entries that can't be reached from their home slot once this slot is empty.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return (V) removed;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+
+            int slot = slot(oldKeys[i]);
+            while (values[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private int slot(long key) {
+        key ^= key >>> 33; // Finalizer of MurmurHash3, spreads packed coordinates over all bits.
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if this map has no entries.
+     * 
+     * @return true if this map has no entries.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of slots, used to iterate over the entries with {@link #keyAt(int)} and {@link #valueAt(int)}.
+     * 
+     * @return the number of slots.
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the key within the given slot, only valid if {@link #valueAt(int)} isn't null.
+     * 
+     * @param slot
+     *            the slot, from zero to {@link #capacity()} exclusive.
+     * @return the key within the given slot.
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Returns the value within the given slot.
+     * 
+     * @param slot
+     *            the slot, from zero to {@link #capacity()} exclusive.
+     * @return the value within the given slot, or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [size=%s, capacity=%s]", getClass().getSimpleName(), size, values.length);
+    }
+
+}
@@ -0,0 +1,261 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is a loose quadtree of {@link AbstractSpatialObject}s with extents. The bounds of each node are loosened to twice their size, so an
+ * object is stored in the deepest node at least as large as the object that contains its position. Finding the node of an object is a walk down a
+ * single path without testing siblings, and moving objects only change node when they cross a node boundary or change size.
+ * <p>
+ * Works well with clumped objects and objects of widely varying sizes. Objects positioned outside the bounds of the tree are stored in the root node,
+ * which is always visited by queries.
+ * 
+ * @author Maxstupo
+ * @param <T>
+ *            the object type.
+ */
+public class LooseQuadtree<T extends AbstractSpatialObject<T>> implements ISpatialIndex<T> {
+
+    /** The default maximum depth of the tree. */
+    public static final int DEFAULT_MAX_DEPTH = 6;
+
+    private final float x;
+    private final float y;
+    private final float size;
+    private final int maxDepth;
+
+    private final Node<T> root;
+    private final Map<T, Node<T>> locations = new IdentityHashMap<>();
+
+    /**
+     * Create a new {@link LooseQuadtree} object with a max depth of {@value #DEFAULT_MAX_DEPTH}.
+     * 
+     * @param x
+     *            x position of the area covered by the tree, top-left origin.
+     * @param y
+     *            y position of the area covered by the tree, top-left origin.
+     * @param width
+     *            the width of the area covered by the tree.
+     * @param height
+     *            the height of the area covered by the tree.
+     * @throws IllegalArgumentException
+     *             if width or height isn't positive.
+     */
+    public LooseQuadtree(float x, float y, float width, float height) throws IllegalArgumentException {
+        this(x, y, width, height, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Create a new {@link LooseQuadtree} object.
+     * 
+     * @param x
+     *            x position of the area covered by the tree, top-left origin.
+     * @param y
+     *            y position of the area covered by the tree, top-left origin.
+     * @param width
+     *            the width of the area covered by the tree.
+     * @param height
+     *            the height of the area covered by the tree.
+     * @param maxDepth
+     *            the maximum depth of the tree, the smallest nodes are the size of the area divided by 2<sup>maxDepth</sup>.
+     * @throws IllegalArgumentException
+     *             if width or height isn't positive, or maxDepth is negative.
+     */
+    public LooseQuadtree(float x, float y, float width, float height, int maxDepth) throws IllegalArgumentException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("The area must have a positive size: " + width + "x" + height);
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth can't be negative: " + maxDepth);
+
+        this.x = x;
+        this.y = y;
+        this.size = Math.max(width, height);
+        this.maxDepth = maxDepth;
+        this.root = new Node<>(null, x, y, size, 0);
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (locations.containsKey(t))
+            return false;
+
+        Node<T> node = findNode(t);
+        node.add(t);
+        locations.put(t, node);
+        return true;
+    }
+
+    @Override
+    public boolean remove(T t) {
+        Node<T> node = locations.remove(t);
+        if (node == null)
+            return false;
+
+        node.remove(t);
+        return true;
+    }
+
+    @Override
+    public void update(T t) {
+        Node<T> node = locations.get(t);
+        if (node == null)
+            return;
+
+        Node<T> target = findNode(t);
+        if (target == node)
+            return;
+
+        target.add(t); // Added first, so removing can't prune the branch of the target.
+        node.remove(t);
+        locations.put(t, target);
+    }
+
+    /**
+     * Returns the deepest node at least as large as the given object containing its position, creating nodes as needed.
+     */
+    private Node<T> findNode(T t) {
+        float px = t.getX();
+        float py = t.getY();
+        if (px < x || py < y || px >= x + size || py >= y + size)
+            return root;
+
+        float extent = Math.max(t.getHalfWidth(), t.getHalfHeight()) * 2;
+        Node<T> node = root;
+        while (node.depth < maxDepth && node.size * 0.5f >= extent) {
+            float half = node.size * 0.5f;
+            int quadrant = ((px >= node.x + half) ? 1 : 0) | ((py >= node.y + half) ? 2 : 0);
+            node = node.getChild(quadrant);
+        }
+        return node;
+    }
+
+    @Override
+    public int query(float x, float y, float width, float height, List<? super T> out) {
+        return query(root, x, y, x + width, y + height, out);
+    }
+
+    private int query(Node<T> node, float minX, float minY, float maxX, float maxY, List<? super T> out) {
+        if (node.total == 0)
+            return 0;
+
+        if (node != root) { // The root also holds objects outside the tree, so its bounds aren't tested.
+            float loose = node.size * 0.5f;
+            if (node.x - loose > maxX || node.y - loose > maxY || node.x + node.size + loose < minX || node.y + node.size + loose < minY)
+                return 0;
+        }
+
+        int found = 0;
+        for (int i = 0; i < node.objects.size(); i++) {
+            T t = node.objects.get(i);
+            if (t.getX() - t.getHalfWidth() <= maxX && t.getX() + t.getHalfWidth() >= minX && t.getY() - t.getHalfHeight() <= maxY && t.getY() + t.getHalfHeight() >= minY) {
+                out.add(t);
+                found++;
+            }
+        }
+
+        if (node.children != null) {
+            for (Node<T> child : node.children) {
+                if (child != null)
+                    found += query(child, minX, minY, maxX, maxY, out);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean hasRegistered(T t) {
+        return locations.containsKey(t);
+    }
+
+    @Override
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * Returns the maximum depth of the tree.
+     * 
+     * @return the maximum depth of the tree.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [x=%s, y=%s, size=%s, maxDepth=%s, objects=%s]", getClass().getSimpleName(), x, y, size, maxDepth, size());
+    }
+
+    /**
+     * A node of the tree, empty child nodes are removed as objects leave them.
+     */
+    private static class Node<T> {
+
+        final Node<T> parent;
+        final float x;
+        final float y;
+        final float size;
+        final int depth;
+
+        final List<T> objects = new ArrayList<>(0);
+        Node<T>[] children;
+
+        /** The number of objects within this node and all of its children. */
+        int total;
+
+        Node(Node<T> parent, float x, float y, float size, int depth) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.depth = depth;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Node<T> getChild(int quadrant) {
+            if (children == null)
+                children = new Node[4];
+
+            Node<T> child = children[quadrant];
+            if (child == null) {
+                float half = size * 0.5f;
+                child = new Node<>(this, x + ((quadrant & 1) != 0 ? half : 0), y + ((quadrant & 2) != 0 ? half : 0), half, depth + 1);
+                children[quadrant] = child;
+            }
+            return child;
+        }
+
+        void add(T t) {
+            objects.add(t);
+            for (Node<T> node = this; node != null; node = node.parent)
+                node.total++;
+        }
+
+        void remove(T t) {
+            for (int i = 0; i < objects.size(); i++) {
+                if (objects.get(i) == t) { // Objects are compared by identity, their equality depends on their position.
+                    objects.set(i, objects.get(objects.size() - 1));
+                    objects.remove(objects.size() - 1);
+                    break;
+                }
+            }
+
+            for (Node<T> node = this; node != null; node = node.parent) {
+                node.total--;
+                if (node.total == 0 && node.parent != null)
+                    node.parent.removeChild(node);
+            }
+        }
+
+        void removeChild(Node<T> child) {
+            for (int i = 0; i < 4; i++) {
+                if (children[i] == child)
+                    children[i] = null;
+            }
+        }
+    }
+
+}
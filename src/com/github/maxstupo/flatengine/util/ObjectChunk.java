@@ -54,7 +54,13 @@ public class ObjectChunk<T extends AbstractSpatialObject<T>> {
      * @return true if the object was removed.
      */
     protected boolean remove(T t) {
-        return objects.remove(t);
+        for (int i = objects.size() - 1; i >= 0; i--) {
+            if (objects.get(i) == t) { // Identity, objects with equal ids and positions may share a chunk.
+                objects.remove(i);
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -93,6 +99,26 @@ public class ObjectChunk<T extends AbstractSpatialObject<T>> {
         return Collections.unmodifiableList(objects);
     }
 
+    /**
+     * Returns the number of objects stored within this chunk.
+     * 
+     * @return the number of objects stored within this chunk.
+     */
+    public int getObjectCount() {
+        return objects.size();
+    }
+
+    /**
+     * Returns the object at the given index, used to iterate over this chunk without creating a list view.
+     * 
+     * @param index
+     *            the index, from zero to {@link #getObjectCount()} exclusive.
+     * @return the object at the given index.
+     */
+    public T getObject(int index) {
+        return objects.get(index);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
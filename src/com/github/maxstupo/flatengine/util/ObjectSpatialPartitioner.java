@@ -1,7 +1,6 @@
 package com.github.maxstupo.flatengine.util;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,24 +11,48 @@ import com.github.maxstupo.flatengine.map.Camera;
  * This class allows for objects to be partitioned into a grid (chunks) which can increase performance. Rather than iterating over all objects, the
  * partitioner will allow iterating over select chunks. Using methods such as {@link #getObjectsInRectangle(int, int, int, int)},
  * {@link #getObjectsInArea(int, int, int)}, etc..
+ * <p>
+ * Chunks are stored sparsely in a hash map keyed by their packed chunk coordinates. They are created when the first object enters them and freed when
+ * the last object leaves, so memory scales with the occupied area and objects may be at any position, including negative positions outside the grid
+ * size.
+ * <p>
+ * The partitioner stores objects by their position only, so {@link #query(float, float, float, float, List)} treats all objects as points. Use a
+ * {@link LooseQuadtree} for objects with large extents.
+ * <p>
+ * Registered objects are looked up by the int {@link AbstractSpatialObject#getHandle() handle} given to them by a {@link HandleRegistry}. Lookups by
+ * {@link AbstractSpatialObject#getId() id} are only meant for debugging, and are only fast while the id index is
+ * {@link #setIdIndexEnabled(boolean) enabled}.
  * 
  * @author Maxstupo
  * @param <T>
  *            the object type.
  */
-public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
+public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> implements ISpatialIndex<T> {
 
     private final int gridWidth;
     private final int gridHeight;
     private final int chunkSize;
 
-    private final ObjectChunk<T>[][] chunks;
+    private final LongHashMap<ObjectChunk<T>> chunks = new LongHashMap<>();
 
-    private final Map<String, T> registeredObjects = new HashMap<>();
+    private final HandleRegistry<T> registeredObjects = new HandleRegistry<>();
+    private Map<String, T> objectsById;
     private final List<T> objects = new ArrayList<>();
 
     /**
-     * Create a new {@link ObjectSpatialPartitioner} object.
+     * Create a new {@link ObjectSpatialPartitioner} object for an unbounded world.
+     * 
+     * @param chunkSize
+     *            the number of units that make a chunk.
+     * @throws IllegalArgumentException
+     *             if chunkSize is less than one.
+     */
+    public ObjectSpatialPartitioner(int chunkSize) throws IllegalArgumentException {
+        this(0, 0, chunkSize);
+    }
+
+    /**
+     * Create a new {@link ObjectSpatialPartitioner} object. The grid size is the area usually occupied, objects outside it are still stored.
      * 
      * @param gridWidth
      *            the number of units in width.
@@ -37,19 +60,15 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      *            the number of units in height.
      * @param chunkSize
      *            the number of units that make a chunk.
+     * @throws IllegalArgumentException
+     *             if chunkSize is less than one.
      */
-    @SuppressWarnings("unchecked")
-    public ObjectSpatialPartitioner(int gridWidth, int gridHeight, int chunkSize) {
+    public ObjectSpatialPartitioner(int gridWidth, int gridHeight, int chunkSize) throws IllegalArgumentException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be greater than zero: " + chunkSize);
         this.gridWidth = gridWidth;
         this.gridHeight = gridHeight;
         this.chunkSize = chunkSize;
-        this.chunks = new ObjectChunk[getChunkColumns()][getChunkRows()];
-
-        for (int i = 0; i < chunks.length; i++) {
-            for (int j = 0; j < chunks[0].length; j++) {
-                this.chunks[i][j] = new ObjectChunk<>(this, i, j);
-            }
-        }
     }
 
     /**
@@ -57,12 +76,17 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * 
      * @param t
      *            the object.
-     * @return false if the object {@link AbstractSpatialObject#getId() id} has already been registered.
+     * @return false if the object has already been registered, or the id index is enabled and the object {@link AbstractSpatialObject#getId() id} has
+     *         already been registered.
      */
+    @Override
     public boolean add(T t) {
-        if (hasRegistered(t))
+        if (hasRegistered(t) || (objectsById != null && t.getId() != null && objectsById.containsKey(t.getId())))
             return false;
-        registeredObjects.put(t.getId(), t);
+
+        t.setHandle(registeredObjects.add(t));
+        if (objectsById != null && t.getId() != null)
+            objectsById.put(t.getId(), t);
         addObjectToChunkGrid(t);
         return true;
     }
@@ -72,26 +96,31 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * 
      * @param t
      *            the object to remove.
-     * @return false if the object {@link AbstractSpatialObject#getId() id} isn't registered.
+     * @return false if the object isn't registered.
      */
+    @Override
     public boolean remove(T t) {
         if (!hasRegistered(t))
             return false;
 
-        int cx = getChunkXPositionOf(t);
-        int cy = getChunkYPositionOf(t);
-        ObjectChunk<T> chunk = getChunk(cx, cy);
-
-        if (chunk != null) {
-            if (chunk.remove(t)) {
-                registeredObjects.remove(t.getId());
-                return true;
-            }
-
+        if (removeFromChunk(t, getChunkXPositionOf(t), getChunkYPositionOf(t))) {
+            registeredObjects.remove(t.getHandle());
+            t.setHandle(HandleRegistry.NULL_HANDLE);
+            if (objectsById != null && t.getId() != null)
+                objectsById.remove(t.getId(), t);
+            return true;
         }
         return false;
     }
 
+    /**
+     * Updates what chunk the object is stored in based on the position of the object. If the object isn't registered this method does nothing.
+     */
+    @Override
+    public void update(T t) {
+        updateObject(t);
+    }
+
     /**
      * Updates what chunk the object is stored in based on the position of the object. If the object isn't registered this method does nothing.
      * 
@@ -101,30 +130,51 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
     protected void updateObject(T t) {
         int cx = getChunkXPositionOf(t);
         int cy = getChunkYPositionOf(t);
-        int oldcx = getChunkXPositionOf(t);
-        int oldcy = getChunkYPositionOf(t);
+        int oldcx = getOldChunkXPositionOf(t);
+        int oldcy = getOldChunkYPositionOf(t);
 
         if ((cx == oldcx && cy == oldcy) || !hasRegistered(t)) // Object hasn't moved chunks, or isn't registered.
             return;
 
-        ObjectChunk<T> oldChunk = getChunk(oldcx, oldcy);
-        if (oldChunk != null) {
-            oldChunk.remove(t);
+        if (removeFromChunk(t, oldcx, oldcy))
             addObjectToChunkGrid(t);
-
-        }
     }
 
     private ObjectChunk<T> addObjectToChunkGrid(T t) {
         int cx = getChunkXPositionOf(t);
         int cy = getChunkYPositionOf(t);
+        long key = key(cx, cy);
 
-        ObjectChunk<T> chunk = getChunk(cx, cy);
-        if (chunk != null)
-            chunk.add(t);
+        ObjectChunk<T> chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new ObjectChunk<>(this, cx, cy);
+            chunks.put(key, chunk);
+        }
+        chunk.add(t);
         return chunk;
     }
 
+    /**
+     * Removes the given object from the given chunk, freeing the chunk if it becomes empty.
+     */
+    private boolean removeFromChunk(T t, int cx, int cy) {
+        long key = key(cx, cy);
+        ObjectChunk<T> chunk = chunks.get(key);
+        if (chunk == null || !chunk.remove(t))
+            return false;
+
+        if (chunk.getObjectCount() == 0)
+            chunks.remove(key);
+        return true;
+    }
+
+    /**
+     * Packs the given chunk position into a single key.
+     */
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
     /**
      * Returns all objects from all chunks within the defined 'radius' of the square with the center being the given object.
      * 
@@ -169,20 +219,54 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
     public List<T> getObjectsInRectangle(int cx, int cy, int cw, int ch) {
         objects.clear();
 
-        int minX = Math.max(cx, 0);
-        int maxX = Math.min(cx + cw, getChunkColumns());
-        int minY = Math.max(cy, 0);
-        int maxY = Math.min(cy + ch, getChunkRows());
+        if ((long) cw * ch > chunks.size()) { // Fewer chunks exist than the rectangle covers, so visit the existing chunks instead.
+            for (int slot = 0; slot < chunks.capacity(); slot++) {
+                ObjectChunk<T> chunk = chunks.valueAt(slot);
+                if (chunk != null && chunk.getX() >= cx && chunk.getX() < cx + cw && chunk.getY() >= cy && chunk.getY() < cy + ch)
+                    objects.addAll(chunk.getObjects());
+            }
+            return objects;
+        }
 
-        for (int x = minX; x < maxX; x++) {
-            for (int y = minY; y < maxY; y++) {
+        for (int x = cx; x < cx + cw; x++) {
+            for (int y = cy; y < cy + ch; y++) {
                 ObjectChunk<T> chunk = getChunk(x, y);
-                objects.addAll(chunk.getObjects());
+                if (chunk != null)
+                    objects.addAll(chunk.getObjects());
             }
         }
         return objects;
     }
 
+    /**
+     * Adds all objects with a position within the given rectangle to the given list, visiting only the chunks the rectangle overlaps.
+     */
+    @Override
+    public int query(float x, float y, float width, float height, List<? super T> out) {
+        int minX = (int) Math.floor(x / chunkSize);
+        int minY = (int) Math.floor(y / chunkSize);
+        int maxX = (int) Math.floor((x + width) / chunkSize);
+        int maxY = (int) Math.floor((y + height) / chunkSize);
+
+        int found = 0;
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                ObjectChunk<T> chunk = getChunk(cx, cy);
+                if (chunk == null)
+                    continue;
+
+                for (int i = 0; i < chunk.getObjectCount(); i++) {
+                    T t = chunk.getObject(i);
+                    if (t.getX() >= x && t.getY() >= y && t.getX() <= x + width && t.getY() <= y + height) {
+                        out.add(t);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
     /**
      * Returns all objects visible to the given camera.
      * 
@@ -191,12 +275,10 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * @return a list of objects visible to the camera.
      */
     public List<T> getObjectsVisible(Camera camera) {
-        int[][] points = camera.getGridPoints(gridWidth, gridHeight);
-
-        int cw = Math.abs(points[0][1] - points[0][0]) / chunkSize + 1;
-        int ch = Math.abs(points[1][1] - points[1][0]) / chunkSize + 1;
-        int cx = points[0][0];
-        int cy = points[1][0];
+        int cx = (int) Math.floor(camera.getX() / chunkSize);
+        int cy = (int) Math.floor(camera.getY() / chunkSize);
+        int cw = (int) Math.floor((camera.getX() + camera.getViewportTileWidth()) / chunkSize) - cx + 1;
+        int ch = (int) Math.floor((camera.getY() + camera.getViewportTileHeight()) / chunkSize) - cy + 1;
 
         return getObjectsInRectangle(cx, cy, cw, ch);
     }
@@ -209,7 +291,7 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * @return the x chunk position of the given object.
      */
     public int getChunkXPositionOf(T t) {
-        return (int) (t.getX() / chunkSize);
+        return (int) Math.floor(t.getX() / chunkSize);
     }
 
     /**
@@ -220,7 +302,7 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * @return the y chunk position of the given object.
      */
     public int getChunkYPositionOf(T t) {
-        return (int) (t.getY() / chunkSize);
+        return (int) Math.floor(t.getY() / chunkSize);
     }
 
     /**
@@ -231,7 +313,7 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * @return the old x chunk position of the given object.
      */
     public int getOldChunkXPositionOf(T t) {
-        return (int) (t.getOldX() / chunkSize);
+        return (int) Math.floor(t.getOldX() / chunkSize);
     }
 
     /**
@@ -242,7 +324,7 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * @return the old y chunk position of the given object.
      */
     public int getOldChunkYPositionOf(T t) {
-        return (int) (t.getOldY() / chunkSize);
+        return (int) Math.floor(t.getOldY() / chunkSize);
     }
 
     /**
@@ -252,12 +334,19 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      *            the x chunk position.
      * @param cy
      *            the y chunk position.
-     * @return the chunk or null if the given position is invalid.
+     * @return the chunk or null if no objects are within the chunk.
      */
     public ObjectChunk<T> getChunk(int cx, int cy) {
-        if (!Util.isValid(chunks, cx, cy))
-            return null;
-        return chunks[cx][cy];
+        return chunks.get(key(cx, cy));
+    }
+
+    /**
+     * Returns the number of chunks containing objects.
+     * 
+     * @return the number of chunks containing objects.
+     */
+    public int getChunkCount() {
+        return chunks.size();
     }
 
     /**
@@ -267,8 +356,9 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      *            the object to check.
      * @return true if the given object is registered.
      */
+    @Override
     public boolean hasRegistered(T t) {
-        return hasRegistered(t.getId());
+        return registeredObjects.get(t.getHandle()) == t;
     }
 
     /**
@@ -279,30 +369,103 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
      * @return true if the given id is registered.
      */
     public boolean hasRegistered(String id) {
-        return registeredObjects.containsKey(id);
+        return getById(id) != null;
+    }
+
+    /**
+     * Returns the object with the given handle.
+     * 
+     * @param handle
+     *            the handle.
+     * @return the object with the given handle, or null if the handle is stale.
+     */
+    public T get(int handle) {
+        return registeredObjects.get(handle);
+    }
+
+    /**
+     * Returns the object with the given id. Searches all objects unless the id index is {@link #setIdIndexEnabled(boolean) enabled}.
+     * 
+     * @param id
+     *            the id.
+     * @return the object with the given id, or null if no object has the given id.
+     */
+    public T getById(String id) {
+        if (objectsById != null)
+            return objectsById.get(id);
+
+        for (int i = 0; i < registeredObjects.size(); i++) {
+            T t = registeredObjects.getDense(i);
+            if (id == null ? t.getId() == null : id.equals(t.getId()))
+                return t;
+        }
+        return null;
     }
 
     /**
-     * Returns the number of chunk rows.
+     * Enables or disables the secondary index of objects by {@link AbstractSpatialObject#getId() id}. While enabled {@link #getById(String)} is a map
+     * lookup and {@link #add(AbstractSpatialObject)} rejects objects with an id that is already registered. Disabled by default.
+     * 
+     * @param enabled
+     *            true to enable the id index.
+     */
+    public void setIdIndexEnabled(boolean enabled) {
+        if (!enabled) {
+            objectsById = null;
+        } else if (objectsById == null) {
+            objectsById = new HashMap<>();
+            for (int i = 0; i < registeredObjects.size(); i++) {
+                T t = registeredObjects.getDense(i);
+                if (t.getId() != null)
+                    objectsById.putIfAbsent(t.getId(), t);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the secondary index of objects by id is enabled.
+     * 
+     * @return true if the secondary index of objects by id is enabled.
+     */
+    public boolean isIdIndexEnabled() {
+        return objectsById != null;
+    }
+
+    @Override
+    public int size() {
+        return registeredObjects.size();
+    }
+
+    /**
+     * Returns the number of chunk rows covering the grid height, including a partially covered last row.
      * 
      * @return the number of chunk rows.
      */
     public int getChunkRows() {
-        return gridHeight / chunkSize;
+        return (gridHeight + chunkSize - 1) / chunkSize;
     }
 
     /**
-     * Returns the number of chunk columns.
+     * Returns the number of chunk columns covering the grid width, including a partially covered last column.
      * 
      * @return the number of chunk columns.
      */
     public int getChunkColumns() {
-        return gridWidth / chunkSize;
+        return (gridWidth + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * Returns the number of units that make a chunk.
+     * 
+     * @return the number of units that make a chunk.
+     */
+    public int getChunkSize() {
+        return chunkSize;
     }
 
     @Override
     public String toString() {
-        return String.format("%s [gridWidth=%s, gridHeight=%s, chunkSize=%s, registeredObjects=%s]", getClass().getSimpleName(), gridWidth, gridHeight, chunkSize, registeredObjects);
+        return String.format("%s [gridWidth=%s, gridHeight=%s, chunkSize=%s, registeredObjects=%s, chunks=%s]", getClass().getSimpleName(), gridWidth, gridHeight, chunkSize, registeredObjects.size(), chunks.size());
     }
 
     @Override
@@ -310,10 +473,17 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
         final int prime = 31;
         int result = 1;
         result = prime * result + chunkSize;
-        result = prime * result + Arrays.deepHashCode(chunks);
         result = prime * result + gridHeight;
         result = prime * result + gridWidth;
-        result = prime * result + ((registeredObjects == null) ? 0 : registeredObjects.hashCode());
+        result = prime * result + registeredObjects.size();
+
+        int chunksHash = 0; // Summed, as the slot order depends on the insertion history.
+        for (int slot = 0; slot < chunks.capacity(); slot++) {
+            ObjectChunk<T> chunk = chunks.valueAt(slot);
+            if (chunk != null)
+                chunksHash += chunk.hashCode();
+        }
+        result = prime * result + chunksHash;
         return result;
     }
 
@@ -328,17 +498,19 @@ public class ObjectSpatialPartitioner<T extends AbstractSpatialObject<T>> {
         ObjectSpatialPartitioner<?> other = (ObjectSpatialPartitioner<?>) obj;
         if (chunkSize != other.chunkSize)
             return false;
-        if (!Arrays.deepEquals(chunks, other.chunks))
-            return false;
         if (gridHeight != other.gridHeight)
             return false;
         if (gridWidth != other.gridWidth)
             return false;
-        if (registeredObjects == null) {
-            if (other.registeredObjects != null)
-                return false;
-        } else if (!registeredObjects.equals(other.registeredObjects))
+        if (registeredObjects.size() != other.registeredObjects.size() || chunks.size() != other.chunks.size())
             return false;
+
+        // Every registered object is in exactly one chunk, so equal chunks hold equal objects.
+        for (int slot = 0; slot < chunks.capacity(); slot++) {
+            ObjectChunk<T> chunk = chunks.valueAt(slot);
+            if (chunk != null && !chunk.equals(other.chunks.get(chunks.keyAt(slot))))
+                return false;
+        }
         return true;
     }
 }
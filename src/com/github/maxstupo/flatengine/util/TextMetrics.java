@@ -0,0 +1,234 @@
+package com.github.maxstupo.flatengine.util;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class measures text without a graphics context, so layout can run off the render thread. The {@link FontMetrics} of each font are created
+ * once, and the widths of measured strings are remembered per font in a bounded least recently used map, so measuring the same labels again is a map
+ * lookup.
+ * <p>
+ * At most {@value #MAX_FONTS} fonts are cached, the least recently used font is discarded first, so deriving a font per size doesn't grow the cache
+ * without limit.
+ * <p>
+ * Metrics depend on the text antialiasing and fractional metrics rendering hints, so each combination is cached separately. Graphics transforms are
+ * ignored, GUI text is drawn untransformed. This class is thread safe.
+ * 
+ * @author Maxstupo
+ */
+public final class TextMetrics {
+
+    /** The maximum number of string widths remembered per font. */
+    public static final int MAX_CACHED_WIDTHS = 2048;
+
+    /** The maximum number of fonts cached. */
+    public static final int MAX_FONTS = 32;
+
+    /** The cached entries of each font, indexed by the rendering hints, see {@link #hintIndex(boolean, boolean)}. Guarded by itself. */
+    private static final Map<Font, FontEntry[]> FONTS = new LinkedHashMap<Font, FontEntry[]>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Font, FontEntry[]> eldest) {
+            return size() > MAX_FONTS;
+        }
+    };
+
+    private TextMetrics() {
+    }
+
+    private static int hintIndex(boolean isAntialiased, boolean usesFractionalMetrics) {
+        return (isAntialiased ? 1 : 0) | (usesFractionalMetrics ? 2 : 0);
+    }
+
+    private static FontEntry getEntry(Font font, boolean isAntialiased, boolean usesFractionalMetrics) {
+        int index = hintIndex(isAntialiased, usesFractionalMetrics);
+        synchronized (FONTS) {
+            FontEntry[] entries = FONTS.get(font);
+            if (entries == null) {
+                entries = new FontEntry[4];
+                FONTS.put(font, entries);
+            }
+
+            FontEntry entry = entries[index];
+            if (entry == null)
+                entry = entries[index] = new FontEntry(font, isAntialiased, usesFractionalMetrics);
+            return entry;
+        }
+    }
+
+    private static FontEntry getEntry(Graphics g, Font font) {
+        if (g instanceof Graphics2D) {
+            Graphics2D g2d = (Graphics2D) g;
+            boolean usesFractionalMetrics = g2d.getRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS) == RenderingHints.VALUE_FRACTIONALMETRICS_ON;
+            return getEntry(font, isAntialiased(g2d), usesFractionalMetrics);
+        }
+        return getEntry(font, false, false);
+    }
+
+    /**
+     * Returns true if the given graphics context draws antialiased text. Every text antialiasing hint other than off and default antialiases, the LCD
+     * and GASP hints are measured and drawn as plain antialiased text.
+     * 
+     * @param g
+     *            the graphics context.
+     * @return true if the given graphics context draws antialiased text.
+     */
+    public static boolean isAntialiased(Graphics2D g) {
+        Object hint = g.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
+        return hint != null && hint != RenderingHints.VALUE_TEXT_ANTIALIAS_OFF && hint != RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT;
+    }
+
+    /**
+     * Returns the cached metrics of the given font, without text antialiasing or fractional metrics.
+     * 
+     * @param font
+     *            the font.
+     * @return the cached metrics of the given font.
+     */
+    public static FontMetrics getFontMetrics(Font font) {
+        return getEntry(font, false, false).metrics;
+    }
+
+    /**
+     * Returns the cached metrics of the given font.
+     * 
+     * @param font
+     *            the font.
+     * @param isAntialiased
+     *            true if the text is antialiased.
+     * @param usesFractionalMetrics
+     *            true if fractional metrics are used.
+     * @return the cached metrics of the given font.
+     */
+    public static FontMetrics getFontMetrics(Font font, boolean isAntialiased, boolean usesFractionalMetrics) {
+        return getEntry(font, isAntialiased, usesFractionalMetrics).metrics;
+    }
+
+    /**
+     * Returns the cached metrics of the given font, with the text rendering hints of the given graphics context.
+     * 
+     * @param g
+     *            the graphics context the text will be drawn to.
+     * @param font
+     *            the font.
+     * @return the cached metrics of the given font.
+     */
+    public static FontMetrics getFontMetrics(Graphics g, Font font) {
+        return getEntry(g, font).metrics;
+    }
+
+    /**
+     * Returns the advance width of the given string, without text antialiasing or fractional metrics.
+     * 
+     * @param font
+     *            the font.
+     * @param text
+     *            the text.
+     * @return the advance width of the given string, in pixels.
+     */
+    public static int stringWidth(Font font, String text) {
+        return getEntry(font, false, false).stringWidth(text);
+    }
+
+    /**
+     * Returns the advance width of the given string, with the text rendering hints of the given graphics context.
+     * 
+     * @param g
+     *            the graphics context the text will be drawn to.
+     * @param font
+     *            the font.
+     * @param text
+     *            the text.
+     * @return the advance width of the given string, in pixels.
+     */
+    public static int stringWidth(Graphics g, Font font, String text) {
+        return getEntry(g, font).stringWidth(text);
+    }
+
+    /**
+     * Sets the given dimension to the bounds of the given string, measured the same way as {@link UtilGraphics#getStringBounds(Graphics, String, Font)}
+     * without text antialiasing or fractional metrics.
+     * 
+     * @param font
+     *            the font.
+     * @param text
+     *            the text, or null for empty bounds.
+     * @param bounds
+     *            the dimension to set.
+     * @return the given dimension.
+     */
+    public static Dimension getStringBounds(Font font, String text, Dimension bounds) {
+        if (text == null) {
+            bounds.setSize(0, 0);
+        } else {
+            FontEntry entry = getEntry(font, false, false);
+            bounds.setSize(entry.stringWidth(text) + 2, entry.metrics.getHeight() + 2);
+        }
+        return bounds;
+    }
+
+    /**
+     * Discards all cached metrics and string widths.
+     */
+    public static void clear() {
+        synchronized (FONTS) {
+            FONTS.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached fonts.
+     * 
+     * @return the number of cached fonts.
+     */
+    public static int getFontCount() {
+        synchronized (FONTS) {
+            return FONTS.size();
+        }
+    }
+
+    /**
+     * The metrics and remembered string widths of a font.
+     */
+    private static class FontEntry {
+
+        final FontMetrics metrics;
+
+        private final Map<String, Integer> widths = new LinkedHashMap<String, Integer>(64, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > MAX_CACHED_WIDTHS;
+            }
+        };
+
+        FontEntry(Font font, boolean isAntialiased, boolean usesFractionalMetrics) {
+            Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, isAntialiased ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, usesFractionalMetrics ? RenderingHints.VALUE_FRACTIONALMETRICS_ON : RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+            this.metrics = g.getFontMetrics(font);
+            g.dispose();
+        }
+
+        synchronized int stringWidth(String text) {
+            Integer width = widths.get(text);
+            if (width == null) {
+                width = metrics.stringWidth(text);
+                widths.put(text, width);
+            }
+            return width;
+        }
+    }
+
+}
@@ -10,7 +10,10 @@ import java.awt.image.BufferedImage;
 
 import com.github.maxstupo.flatengine.map.Camera;
 import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.AbstractPolyShape;
 import com.github.maxstupo.flatengine.util.math.Circle;
+import com.github.maxstupo.flatengine.util.math.Ellipse;
+import com.github.maxstupo.flatengine.util.math.Polygon;
 import com.github.maxstupo.flatengine.util.math.Rectangle;
 import com.github.maxstupo.flatengine.util.math.Vector2i;
 
@@ -22,6 +25,10 @@ public final class UtilGraphics {
 
     private static final Dimension dimension = new Dimension(0, 0);
 
+    /** The vertex buffers reused by {@link #drawShape(Graphics2D, Camera, AbstractBasicShape, Color)}, shapes are only drawn from the render thread. */
+    private static int[] xPoints = new int[16];
+    private static int[] yPoints = new int[16];
+
     private UtilGraphics() {
     }
 
@@ -94,14 +101,55 @@ public final class UtilGraphics {
             Circle circle = (Circle) shape;
 
             if (camera != null) {
-                Vector2i pos = camera.getRenderLocation(circle.getX(), circle.getY());
+                Vector2i pos = camera.getRenderLocation(circle.getX() - circle.getRadius(), circle.getY() - circle.getRadius());
 
                 g.fillOval(pos.x, pos.y, (int) (circle.getDiameter() * camera.getTileSize()), (int) (circle.getDiameter() * camera.getTileSize()));
             } else {
 
-                g.fillOval((int) circle.getX(), (int) circle.getY(), (int) circle.getDiameter(), (int) circle.getDiameter());
+                g.fillOval((int) (circle.getX() - circle.getRadius()), (int) (circle.getY() - circle.getRadius()), (int) circle.getDiameter(), (int) circle.getDiameter());
+            }
+
+        } else if (shape instanceof Ellipse) {
+
+            Ellipse ellipse = (Ellipse) shape;
+            float scale = (camera != null) ? camera.getTileSize() : 1;
+
+            if (camera != null) {
+                Vector2i pos = camera.getRenderLocation(ellipse.getX() - ellipse.getRadiusX(), ellipse.getY() - ellipse.getRadiusY());
+
+                g.fillOval(pos.x, pos.y, (int) (ellipse.getRadiusX() * 2 * scale), (int) (ellipse.getRadiusY() * 2 * scale));
+            } else {
+
+                g.fillOval((int) (ellipse.getX() - ellipse.getRadiusX()), (int) (ellipse.getY() - ellipse.getRadiusY()), (int) (ellipse.getRadiusX() * 2), (int) (ellipse.getRadiusY() * 2));
+            }
+
+        } else if (shape instanceof AbstractPolyShape) {
+
+            AbstractPolyShape poly = (AbstractPolyShape) shape;
+            float scale = (camera != null) ? camera.getTileSize() : 1;
+            int originX = (int) poly.getX();
+            int originY = (int) poly.getY();
+            if (camera != null) {
+                Vector2i pos = camera.getRenderLocation(poly.getX(), poly.getY());
+                originX = pos.x;
+                originY = pos.y;
+            }
+
+            int count = poly.getVertexCount();
+            if (xPoints.length < count) {
+                xPoints = new int[Math.max(count, xPoints.length * 2)];
+                yPoints = new int[xPoints.length];
+            }
+            for (int i = 0; i < count; i++) {
+                xPoints[i] = originX + (int) (poly.getVertexX(i) * scale);
+                yPoints[i] = originY + (int) (poly.getVertexY(i) * scale);
             }
 
+            if (shape instanceof Polygon) {
+                g.fillPolygon(xPoints, yPoints, count);
+            } else {
+                g.drawPolyline(xPoints, yPoints, count);
+            }
         }
 
     }
@@ -170,15 +218,39 @@ public final class UtilGraphics {
      * @param font
      *            the font to use when doing the check, if null the current font of the graphics context will be used instead.
      * @return a new {@link Dimension} object containing the width and height of the given string.
+     * @see TextMetrics
      */
     public static Dimension getStringBounds(Graphics g, String text, Font font) {
-        if (text == null)
-            return new Dimension();
-        FontMetrics metrics = (font != null) ? g.getFontMetrics(font) : g.getFontMetrics();
-        int height = metrics.getHeight();
-        int adv = metrics.stringWidth(text);
+        return getStringBounds(g, text, font, new Dimension());
+    }
+
+    /**
+     * Sets the given {@link Dimension} to the bounds of the given string using the given font, without allocating. The font metrics and string
+     * widths are cached by {@link TextMetrics}.
+     * 
+     * @param g
+     *            the graphics context to draw to.
+     * @param text
+     *            the text to check.
+     * @param font
+     *            the font to use when doing the check, if null the current font of the graphics context will be used instead.
+     * @param bounds
+     *            the dimension to set, owned by the caller.
+     * @return the given dimension, containing the width and height of the given string.
+     */
+    public static Dimension getStringBounds(Graphics g, String text, Font font, Dimension bounds) {
+        if (text == null) {
+            bounds.setSize(0, 0);
+            return bounds;
+        }
+        if (font == null)
+            font = g.getFont();
+
+        int height = TextMetrics.getFontMetrics(g, font).getHeight();
+        int adv = TextMetrics.stringWidth(g, font, text);
 
-        return new Dimension(adv + 2, height + 2);
+        bounds.setSize(adv + 2, height + 2);
+        return bounds;
     }
 
     /**
@@ -196,8 +268,9 @@ public final class UtilGraphics {
      *            the array of each line of text.
      */
     public static void drawString(Graphics g, int x, int y, int spacing, String... lines) {
+        Dimension lineBounds = new Dimension();
         for (int i = 0; i < lines.length; i++) {
-            Dimension lineBounds = getStringBounds(g, lines[i]);
+            getStringBounds(g, lines[i], null, lineBounds);
 
             int lx = x;
             int ly = y + (lineBounds.height + spacing) * i;
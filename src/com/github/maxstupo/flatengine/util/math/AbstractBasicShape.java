@@ -44,6 +44,19 @@ public abstract class AbstractBasicShape {
         return AbstractBasicShape.intersects(this, shape);
     }
 
+    /**
+     * Returns true if the given shape intersects this shape, and stores the minimum translation that separates them.
+     * 
+     * @param shape
+     *            the shape to check.
+     * @param out
+     *            the penetration result, the normal points from this shape towards the given shape.
+     * @return true if the given shape intersects this shape.
+     */
+    public boolean intersects(AbstractBasicShape shape, Penetration out) {
+        return ShapeDispatcher.intersects(this, shape, out);
+    }
+
     /**
      * Returns true if this shape contains the given shape.
      * 
@@ -55,6 +68,28 @@ public abstract class AbstractBasicShape {
         return AbstractBasicShape.contains(this, shape);
     }
 
+    /**
+     * Sets the given rectangle to the axis-aligned bounding box of this shape. Shapes without an area return a zero sized box at their position.
+     * 
+     * @param out
+     *            the rectangle to store the bounds in.
+     * @return the given rectangle for chaining.
+     */
+    public Rectangle getBounds(Rectangle out) {
+        out.setPosition(x, y);
+        out.setSize(0, 0);
+        return out;
+    }
+
+    /**
+     * Returns the type of this shape, used to select the tests between two shapes.
+     * 
+     * @return the type of this shape.
+     */
+    public ShapeType getType() {
+        return ShapeType.POINT;
+    }
+
     @Override
     public String toString() {
         return String.format("%s [x=%s, y=%s]", getClass().getSimpleName(), x, y);
@@ -143,7 +178,7 @@ public abstract class AbstractBasicShape {
     }
 
     /**
-     * Returns true if the given shape contains the shapeToTest.
+     * Returns true if the given shape contains the shapeToTest, using the tests registered with {@link ShapeDispatcher}.
      * 
      * @param shape
      *            the shape that might contain another.
@@ -152,37 +187,11 @@ public abstract class AbstractBasicShape {
      * @return true if the given shape contains the shapeToTest.
      */
     public static boolean contains(AbstractBasicShape shape, AbstractBasicShape shapeToTest) {
-        if (shape instanceof Rectangle) {
-
-            Rectangle rectangle = (Rectangle) shape;
-
-            if (shapeToTest instanceof Circle) { // Check if rectangle contains circle
-                return rectangle.contains((Circle) shapeToTest);
-
-            } else if (shapeToTest instanceof Rectangle) { // Check if rectangle contains rectangle
-                return rectangle.contains((Rectangle) shapeToTest);
-
-            }
-
-        } else if (shape instanceof Circle) {
-
-            Circle circle = (Circle) shape;
-
-            if (shapeToTest instanceof Circle) { // Check if circle contains circle
-                return circle.contains((Circle) shapeToTest);
-
-            } else if (shapeToTest instanceof Rectangle) { // Check if circle contains rectangle
-                return circle.contains((Rectangle) shapeToTest);
-
-            }
-
-        }
-
-        return false;
+        return ShapeDispatcher.contains(shape, shapeToTest);
     }
 
     /**
-     * Returns true if the given shapeToTest intersects the given shape.
+     * Returns true if the given shapeToTest intersects the given shape, using the tests registered with {@link ShapeDispatcher}.
      * 
      * @param shape
      *            the shape.
@@ -191,33 +200,7 @@ public abstract class AbstractBasicShape {
      * @return true if the given shape contains the shapeToTest.
      */
     public static boolean intersects(AbstractBasicShape shape, AbstractBasicShape shapeToTest) {
-        if (shape instanceof Rectangle) {
-
-            Rectangle rectangle = (Rectangle) shape;
-
-            if (shapeToTest instanceof Circle) { // Check if rectangle intersects circle
-                return rectangle.intersects((Circle) shapeToTest);
-
-            } else if (shapeToTest instanceof Rectangle) { // Check if rectangle intersects rectangle
-                return rectangle.intersects((Rectangle) shapeToTest);
-
-            }
-
-        } else if (shape instanceof Circle) {
-
-            Circle circle = (Circle) shape;
-
-            if (shapeToTest instanceof Circle) { // Check if circle intersects circle
-                return circle.intersects((Circle) shapeToTest);
-
-            } else if (shapeToTest instanceof Rectangle) { // Check if circle intersects rectangle
-                return circle.intersects((Rectangle) shapeToTest);
-
-            }
-
-        }
-
-        return false;
+        return ShapeDispatcher.intersects(shape, shapeToTest);
     }
 
 }
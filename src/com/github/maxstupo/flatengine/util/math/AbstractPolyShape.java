@@ -0,0 +1,176 @@
+package com.github.maxstupo.flatengine.util.math;
+
+import java.util.Arrays;
+
+/**
+ * This class is the base for shapes made of a list of vertices (e.g. polygons and polylines). The vertices are relative to the position of the shape,
+ * and are split into convex parts so they can be tested with the separating axis theorem.
+ * 
+ * @author Maxstupo
+ */
+public abstract class AbstractPolyShape extends AbstractBasicShape {
+
+    /** The vertices of this shape relative to its position, stored as x,y pairs. */
+    protected float[] vertices;
+
+    /** The vertices of each convex part, stored as x,y pairs relative to the position of this shape. */
+    float[] partVertices = new float[0];
+    /** The index into {@link #partVertices} each convex part starts at. */
+    int[] partOffsets = new int[0];
+    /** The number of vertices of each convex part. */
+    int[] partSizes = new int[0];
+
+    private float minX;
+    private float minY;
+    private float maxX;
+    private float maxY;
+
+    /**
+     * Create a new {@link AbstractPolyShape} object.
+     * 
+     * @param x
+     *            the x position of this shape.
+     * @param y
+     *            the y position of this shape.
+     * @param vertices
+     *            the vertices relative to the position, stored as x,y pairs.
+     * @throws IllegalArgumentException
+     *             if vertices is null, empty or has an odd length.
+     */
+    public AbstractPolyShape(float x, float y, float[] vertices) throws IllegalArgumentException {
+        super(x, y);
+        setVertices(vertices);
+    }
+
+    /**
+     * Sets the vertices of this shape, and recomputes its convex parts.
+     * 
+     * @param vertices
+     *            the vertices relative to the position, stored as x,y pairs. The array is copied.
+     * @return this object for chaining.
+     * @throws IllegalArgumentException
+     *             if vertices is null, empty or has an odd length.
+     */
+    public AbstractPolyShape setVertices(float[] vertices) throws IllegalArgumentException {
+        if (vertices == null || vertices.length < 2 || vertices.length % 2 != 0)
+            throw new IllegalArgumentException("vertices must be a non-empty list of x,y pairs!");
+        this.vertices = vertices.clone();
+
+        minX = minY = Float.POSITIVE_INFINITY;
+        maxX = maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertices.length; i += 2) {
+            minX = Math.min(minX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            maxX = Math.max(maxX, vertices[i]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+        }
+
+        buildParts();
+        return this;
+    }
+
+    /**
+     * Splits the vertices of this shape into convex parts, using {@link #setParts(float[], int[], int[])}.
+     */
+    protected abstract void buildParts();
+
+    /**
+     * Sets the convex parts of this shape.
+     * 
+     * @param partVertices
+     *            the vertices of each part, stored as x,y pairs relative to the position of this shape.
+     * @param partOffsets
+     *            the index into partVertices each part starts at.
+     * @param partSizes
+     *            the number of vertices of each part.
+     */
+    protected void setParts(float[] partVertices, int[] partOffsets, int[] partSizes) {
+        this.partVertices = partVertices;
+        this.partOffsets = partOffsets;
+        this.partSizes = partSizes;
+    }
+
+    @Override
+    public Rectangle getBounds(Rectangle out) {
+        out.setPosition(x + minX, y + minY);
+        out.setSize(maxX - minX, maxY - minY);
+        return out;
+    }
+
+    /**
+     * Returns the number of vertices of this shape.
+     * 
+     * @return the number of vertices of this shape.
+     */
+    public int getVertexCount() {
+        return vertices.length / 2;
+    }
+
+    /**
+     * Returns the x position of the given vertex, relative to the position of this shape.
+     * 
+     * @param index
+     *            the vertex index.
+     * @return the x position of the given vertex.
+     */
+    public float getVertexX(int index) {
+        return vertices[index * 2];
+    }
+
+    /**
+     * Returns the y position of the given vertex, relative to the position of this shape.
+     * 
+     * @param index
+     *            the vertex index.
+     * @return the y position of the given vertex.
+     */
+    public float getVertexY(int index) {
+        return vertices[index * 2 + 1];
+    }
+
+    /**
+     * Returns a copy of the vertices of this shape relative to its position, stored as x,y pairs.
+     * 
+     * @return a copy of the vertices of this shape.
+     */
+    public float[] getVertices() {
+        return vertices.clone();
+    }
+
+    /**
+     * Returns the number of convex parts of this shape.
+     * 
+     * @return the number of convex parts of this shape.
+     */
+    public int getPartCount() {
+        return partSizes.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [x=%s, y=%s, vertices=%s]", getClass().getSimpleName(), x, y, Arrays.toString(vertices));
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + Arrays.hashCode(vertices);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        AbstractPolyShape other = (AbstractPolyShape) obj;
+        if (!Arrays.equals(vertices, other.vertices))
+            return false;
+        return true;
+    }
+
+}
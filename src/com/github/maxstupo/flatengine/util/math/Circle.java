@@ -154,6 +154,13 @@ public class Circle extends AbstractBasicShape {
         return (dx * dx + dy * dy <= (radius * radius));
     }
 
+    @Override
+    public Rectangle getBounds(Rectangle out) {
+        out.setPosition(x - radius, y - radius);
+        out.setSize(radius * 2f, radius * 2f);
+        return out;
+    }
+
     /**
      * Returns the diameter of this circle.
      * 
@@ -195,6 +202,11 @@ public class Circle extends AbstractBasicShape {
         return this;
     }
 
+    @Override
+    public ShapeType getType() {
+        return ShapeType.CIRCLE;
+    }
+
     @Override
     public String toString() {
         return String.format("%s [radius=%s, x=%s, y=%s]", getClass().getSimpleName(), radius, x, y);
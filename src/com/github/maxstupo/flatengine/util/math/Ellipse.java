@@ -0,0 +1,133 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This class represents a 2D axis-aligned ellipse shape.
+ * 
+ * @author Maxstupo
+ */
+public class Ellipse extends AbstractBasicShape {
+
+    /** The radius of this ellipse along the x axis. */
+    protected float radiusX;
+
+    /** The radius of this ellipse along the y axis. */
+    protected float radiusY;
+
+    /**
+     * Create a new {@link Ellipse} shape object, with all zero values.
+     */
+    public Ellipse() {
+        this(0, 0, 0, 0);
+    }
+
+    /**
+     * Create a new {@link Ellipse} shape object.
+     * 
+     * @param cx
+     *            the center point of the ellipse along the x axis.
+     * @param cy
+     *            the center point of the ellipse along the y axis.
+     * @param radiusX
+     *            the radius of the ellipse along the x axis.
+     * @param radiusY
+     *            the radius of the ellipse along the y axis.
+     */
+    public Ellipse(float cx, float cy, float radiusX, float radiusY) {
+        super(cx, cy);
+        this.radiusX = radiusX;
+        this.radiusY = radiusY;
+    }
+
+    /**
+     * Returns true if the given point is within this ellipse.
+     * 
+     * @param px
+     *            the x position of the point.
+     * @param py
+     *            the y position of the point.
+     * @return true if the given point is within this ellipse.
+     */
+    public boolean contains(float px, float py) {
+        if (radiusX <= 0 || radiusY <= 0)
+            return false;
+        float dx = (px - x) / radiusX;
+        float dy = (py - y) / radiusY;
+        return dx * dx + dy * dy <= 1;
+    }
+
+    @Override
+    public Rectangle getBounds(Rectangle out) {
+        out.setPosition(x - radiusX, y - radiusY);
+        out.setSize(radiusX * 2f, radiusY * 2f);
+        return out;
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.ELLIPSE;
+    }
+
+    /**
+     * Returns the radius of this ellipse along the x axis.
+     * 
+     * @return the radius of this ellipse along the x axis.
+     */
+    public float getRadiusX() {
+        return radiusX;
+    }
+
+    /**
+     * Returns the radius of this ellipse along the y axis.
+     * 
+     * @return the radius of this ellipse along the y axis.
+     */
+    public float getRadiusY() {
+        return radiusY;
+    }
+
+    /**
+     * Sets the radii of this ellipse.
+     * 
+     * @param radiusX
+     *            the radius along the x axis.
+     * @param radiusY
+     *            the radius along the y axis.
+     * @return this object for chaining.
+     */
+    public Ellipse setRadius(float radiusX, float radiusY) {
+        this.radiusX = radiusX;
+        this.radiusY = radiusY;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [radiusX=%s, radiusY=%s, x=%s, y=%s]", getClass().getSimpleName(), radiusX, radiusY, x, y);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + Float.floatToIntBits(radiusX);
+        result = prime * result + Float.floatToIntBits(radiusY);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Ellipse other = (Ellipse) obj;
+        if (Float.floatToIntBits(radiusX) != Float.floatToIntBits(other.radiusX))
+            return false;
+        if (Float.floatToIntBits(radiusY) != Float.floatToIntBits(other.radiusY))
+            return false;
+        return true;
+    }
+
+}
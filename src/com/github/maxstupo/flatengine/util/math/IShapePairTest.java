@@ -0,0 +1,22 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This interface is used for the entries of the {@link ShapeDispatcher} tables, testing a specific pair of shape types.
+ * 
+ * @author Maxstupo
+ */
+public interface IShapePairTest {
+
+    /**
+     * Tests the given shapes.
+     * 
+     * @param a
+     *            the first shape.
+     * @param b
+     *            the second shape.
+     * @param out
+     *            the penetration result, or null if only a boolean result is needed.
+     * @return the result of the test.
+     */
+    boolean test(AbstractBasicShape a, AbstractBasicShape b, Penetration out);
+}
@@ -0,0 +1,98 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This class stores the minimum translation needed to separate two intersecting shapes, see
+ * {@link ShapeDispatcher#intersects(AbstractBasicShape, AbstractBasicShape, Penetration)}. The normal points from the first shape towards the second,
+ * so moving the first shape by <code>-normal * depth</code> (or the second by <code>normal * depth</code>) separates them.
+ * <p>
+ * Results are meant to be reused between tests to avoid allocation, and also hold the scratch buffers used by the tests. A result must not be shared
+ * between threads.
+ * 
+ * @author Maxstupo
+ */
+public class Penetration {
+
+    /** The x component of the separation normal. */
+    public float normalX;
+
+    /** The y component of the separation normal. */
+    public float normalY;
+
+    /** The distance along the normal the shapes overlap by. */
+    public float depth;
+
+    /** Scratch vertices for the first rectangle of a test. */
+    final float[] rectA = new float[8];
+
+    /** Scratch vertices for the second rectangle of a test. */
+    final float[] rectB = new float[8];
+
+    /** Scratch vertices for transformed polygons, grown when needed. */
+    float[] scratch = new float[32];
+
+    /** The convex part vertices of the first (index 0) and second (index 1) shape of a test. */
+    final float[][] partVertices = new float[2][];
+    /** The convex part offsets of the first and second shape of a test. */
+    final int[][] partOffsets = new int[2][];
+    /** The convex part sizes of the first and second shape of a test. */
+    final int[][] partSizes = new int[2][];
+    /** The position added to the part vertices of the first and second shape of a test. */
+    final float[] partX = new float[2];
+    /** The position added to the part vertices of the first and second shape of a test. */
+    final float[] partY = new float[2];
+
+    /**
+     * Resets this result to represent no overlap.
+     * 
+     * @return this object for chaining.
+     */
+    public Penetration reset() {
+        normalX = normalY = 0;
+        depth = 0;
+        return this;
+    }
+
+    /**
+     * Sets this result.
+     * 
+     * @param normalX
+     *            the x component of the separation normal.
+     * @param normalY
+     *            the y component of the separation normal.
+     * @param depth
+     *            the distance along the normal the shapes overlap by.
+     * @return this object for chaining.
+     */
+    public Penetration set(float normalX, float normalY, float depth) {
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * Reverses the normal of this result, swapping which shape it points from.
+     * 
+     * @return this object for chaining.
+     */
+    public Penetration flip() {
+        normalX = -normalX;
+        normalY = -normalY;
+        return this;
+    }
+
+    /**
+     * Returns the scratch buffer, grown to at least the given length.
+     */
+    float[] scratch(int length) {
+        if (scratch.length < length)
+            scratch = new float[Math.max(length, scratch.length * 2)];
+        return scratch;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [normalX=%s, normalY=%s, depth=%s]", getClass().getSimpleName(), normalX, normalY, depth);
+    }
+
+}
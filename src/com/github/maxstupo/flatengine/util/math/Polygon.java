@@ -0,0 +1,254 @@
+package com.github.maxstupo.flatengine.util.math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a closed polygon shape. Convex polygons are a single convex part, concave polygons are split into triangles using ear
+ * clipping when their vertices are set, and the triangles are merged back into as few convex parts as possible.
+ * 
+ * @author Maxstupo
+ */
+public class Polygon extends AbstractPolyShape {
+
+    private static final float EPSILON = 1e-7f;
+
+    private boolean isConvex;
+
+    /**
+     * Create a new {@link Polygon} shape object.
+     * 
+     * @param x
+     *            the x position of this polygon.
+     * @param y
+     *            the y position of this polygon.
+     * @param vertices
+     *            the corners of the polygon relative to the position in either winding order, stored as x,y pairs.
+     * @throws IllegalArgumentException
+     *             if vertices is null, empty or has an odd length.
+     */
+    public Polygon(float x, float y, float... vertices) throws IllegalArgumentException {
+        super(x, y, vertices);
+    }
+
+    @Override
+    protected void buildParts() {
+        int count = getVertexCount();
+        isConvex = count <= 3 || checkConvex();
+
+        if (isConvex) {
+            setParts(vertices.clone(), new int[] { 0 }, new int[] { count });
+        } else {
+            triangulate();
+        }
+    }
+
+    private boolean checkConvex() {
+        int count = getVertexCount();
+        int sign = 0;
+
+        for (int i = 0; i < count; i++) {
+            float cross = cross(i, (i + 1) % count, (i + 2) % count);
+            if (Math.abs(cross) <= EPSILON)
+                continue;
+
+            int s = cross > 0 ? 1 : -1;
+            if (sign != 0 && s != sign)
+                return false;
+            sign = s;
+        }
+        return true;
+    }
+
+    /**
+     * Splits this polygon into triangles by repeatedly removing ears, triangles made of three consecutive corners that contain no other corner. The
+     * triangles are then merged into larger convex parts, so fewer parts need testing.
+     */
+    private void triangulate() {
+        int count = getVertexCount();
+        int[] indices = new int[count];
+
+        float area = 0;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            area += vertices[i * 2] * vertices[j * 2 + 1] - vertices[j * 2] * vertices[i * 2 + 1];
+        }
+        for (int i = 0; i < count; i++) // Wind the corners so ears have a positive cross product.
+            indices[i] = (area > 0) ? i : count - 1 - i;
+
+        List<int[]> parts = new ArrayList<>(count - 2);
+
+        int remaining = count;
+        int i = 0;
+        int attempts = 0;
+        while (remaining > 3) {
+            int prev = indices[(i + remaining - 1) % remaining];
+            int current = indices[i];
+            int next = indices[(i + 1) % remaining];
+
+            if (isEar(indices, remaining, prev, current, next)) {
+                parts.add(new int[] { prev, current, next });
+                System.arraycopy(indices, i + 1, indices, i, remaining - i - 1);
+                remaining--;
+                i %= remaining;
+                attempts = 0;
+
+            } else if (++attempts > remaining) { // Self intersecting or degenerate, fall back to a fan of the remaining corners.
+                for (int j = 1; j < remaining - 1; j++)
+                    parts.add(new int[] { indices[0], indices[j], indices[j + 1] });
+                remaining = 0;
+
+            } else {
+                i = (i + 1) % remaining;
+            }
+        }
+        if (remaining == 3)
+            parts.add(new int[] { indices[0], indices[1], indices[2] });
+
+        mergeParts(parts);
+
+        int total = 0;
+        for (int[] part : parts)
+            total += part.length;
+
+        float[] partVertices = new float[total * 2];
+        int[] offsets = new int[parts.size()];
+        int[] sizes = new int[parts.size()];
+        int offset = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            int[] part = parts.get(p);
+            offsets[p] = offset;
+            sizes[p] = part.length;
+            for (int corner : part) {
+                partVertices[offset++] = vertices[corner * 2];
+                partVertices[offset++] = vertices[corner * 2 + 1];
+            }
+        }
+        setParts(partVertices, offsets, sizes);
+    }
+
+    /**
+     * Merges pairs of parts sharing an edge while the merged part stays convex (Hertel-Mehlhorn).
+     */
+    private void mergeParts(List<int[]> parts) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+
+            search: for (int a = 0; a < parts.size(); a++) {
+                for (int b = a + 1; b < parts.size(); b++) {
+                    int[] part = merge(parts.get(a), parts.get(b));
+                    if (part == null)
+                        continue;
+
+                    parts.set(a, part);
+                    parts.remove(b);
+                    merged = true;
+                    break search;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the union of the given parts if they share an edge and the union is convex, otherwise null.
+     */
+    private int[] merge(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int from = a[i];
+            int to = a[(i + 1) % a.length];
+
+            for (int j = 0; j < b.length; j++) {
+                if (b[j] != to || b[(j + 1) % b.length] != from)
+                    continue;
+
+                int[] part = new int[a.length + b.length - 2];
+                int index = 0;
+                for (int k = 1; k <= a.length; k++) // From the end of the shared edge around to its start.
+                    part[index++] = a[(i + k) % a.length];
+                for (int k = 2; k < b.length; k++)
+                    part[index++] = b[(j + k) % b.length];
+
+                for (int k = 0; k < part.length; k++) {
+                    if (cross(part[k], part[(k + 1) % part.length], part[(k + 2) % part.length]) < -EPSILON)
+                        return null;
+                }
+                return part;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEar(int[] indices, int remaining, int a, int b, int c) {
+        if (cross(a, b, c) <= EPSILON)
+            return false;
+
+        for (int i = 0; i < remaining; i++) {
+            int p = indices[i];
+            if (p == a || p == b || p == c)
+                continue;
+            if (insideTriangle(vertices[p * 2], vertices[p * 2 + 1], a, b, c))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean insideTriangle(float px, float py, int a, int b, int c) {
+        float ax = vertices[a * 2], ay = vertices[a * 2 + 1];
+        float bx = vertices[b * 2], by = vertices[b * 2 + 1];
+        float cx = vertices[c * 2], cy = vertices[c * 2 + 1];
+
+        float d1 = (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+        float d2 = (cx - bx) * (py - by) - (cy - by) * (px - bx);
+        float d3 = (ax - cx) * (py - cy) - (ay - cy) * (px - cx);
+        return d1 >= 0 && d2 >= 0 && d3 >= 0;
+    }
+
+    private float cross(int a, int b, int c) {
+        float abx = vertices[b * 2] - vertices[a * 2];
+        float aby = vertices[b * 2 + 1] - vertices[a * 2 + 1];
+        float bcx = vertices[c * 2] - vertices[b * 2];
+        float bcy = vertices[c * 2 + 1] - vertices[b * 2 + 1];
+        return abx * bcy - aby * bcx;
+    }
+
+    /**
+     * Returns true if the given point is within this polygon, using the even-odd rule.
+     * 
+     * @param px
+     *            the x position of the point.
+     * @param py
+     *            the y position of the point.
+     * @return true if the given point is within this polygon.
+     */
+    public boolean contains(float px, float py) {
+        float lx = px - x;
+        float ly = py - y;
+
+        boolean inside = false;
+        int count = getVertexCount();
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            float xi = vertices[i * 2], yi = vertices[i * 2 + 1];
+            float xj = vertices[j * 2], yj = vertices[j * 2 + 1];
+
+            if ((yi > ly) != (yj > ly) && lx < (xj - xi) * (ly - yi) / (yj - yi) + xi)
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * Returns true if this polygon is convex.
+     * 
+     * @return true if this polygon is convex.
+     */
+    public boolean isConvex() {
+        return isConvex;
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.POLYGON;
+    }
+
+}
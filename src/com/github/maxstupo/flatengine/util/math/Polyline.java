@@ -0,0 +1,52 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This class represents an open chain of line segments. Each segment is a convex part, so a polyline intersects a shape if any of its segments do.
+ * 
+ * @author Maxstupo
+ */
+public class Polyline extends AbstractPolyShape {
+
+    /**
+     * Create a new {@link Polyline} shape object.
+     * 
+     * @param x
+     *            the x position of this polyline.
+     * @param y
+     *            the y position of this polyline.
+     * @param vertices
+     *            the points of the polyline relative to the position, stored as x,y pairs.
+     * @throws IllegalArgumentException
+     *             if vertices is null, empty or has an odd length.
+     */
+    public Polyline(float x, float y, float... vertices) throws IllegalArgumentException {
+        super(x, y, vertices);
+    }
+
+    @Override
+    protected void buildParts() {
+        int count = getVertexCount();
+        if (count == 1) {
+            setParts(vertices.clone(), new int[] { 0 }, new int[] { 1 });
+            return;
+        }
+
+        int segments = count - 1;
+        float[] parts = new float[segments * 4];
+        int[] offsets = new int[segments];
+        int[] sizes = new int[segments];
+
+        for (int i = 0; i < segments; i++) {
+            System.arraycopy(vertices, i * 2, parts, i * 4, 4);
+            offsets[i] = i * 4;
+            sizes[i] = 2;
+        }
+        setParts(parts, offsets, sizes);
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.POLYLINE;
+    }
+
+}
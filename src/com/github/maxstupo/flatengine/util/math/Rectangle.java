@@ -177,6 +177,18 @@ public class Rectangle extends AbstractBasicShape {
         return (dx * dx + dy * dy <= (radius * radius));
     }
 
+    @Override
+    public Rectangle getBounds(Rectangle out) {
+        out.setPosition(x, y);
+        out.setSize(width, height);
+        return out;
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.RECTANGLE;
+    }
+
     @Override
     public String toString() {
         return String.format("%s [x=%s, y=%s, width=%s, height=%s]", getClass().getSimpleName(), x, y, width, height);
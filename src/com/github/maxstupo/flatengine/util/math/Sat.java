@@ -0,0 +1,230 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This class implements the separating axis theorem for convex vertex lists, circles and ellipses. Each test projects both shapes onto a set of
+ * axes, if any projection doesn't overlap the shapes are separated, otherwise the axis with the smallest overlap is the penetration.
+ * <p>
+ * Vertex lists are given as an array of x,y pairs with a float offset, vertex count and position added to every vertex. A list of two vertices is a
+ * segment and a list of one vertex is a point. Ellipses against polygons are tested exactly by scaling the polygon so the ellipse becomes a unit
+ * circle, ellipses against circles or ellipses use a fixed set of sampled axes.
+ * 
+ * @author Maxstupo
+ */
+final class Sat {
+
+    private static final float EPSILON = 1e-6f;
+
+    /** The number of axes sampled when testing an ellipse against a circle or another ellipse. */
+    private static final int ROUND_AXES = 16;
+
+    private static final float[] ROUND_AXES_X = new float[ROUND_AXES];
+    private static final float[] ROUND_AXES_Y = new float[ROUND_AXES];
+
+    static {
+        for (int i = 0; i < ROUND_AXES; i++) {
+            double angle = Math.PI * i / ROUND_AXES;
+            ROUND_AXES_X[i] = (float) Math.cos(angle);
+            ROUND_AXES_Y[i] = (float) Math.sin(angle);
+        }
+    }
+
+    private Sat() {
+    }
+
+    /**
+     * Tests two convex vertex lists.
+     */
+    static boolean polygons(float[] a, int aOffset, int aCount, float ax, float ay, float[] b, int bOffset, int bCount, float bx, float by, Penetration out) {
+        if (aCount < 2 && bCount < 2) { // Two points have no axes.
+            float dx = b[bOffset] + bx - a[aOffset] - ax;
+            float dy = b[bOffset + 1] + by - a[aOffset + 1] - ay;
+            out.set(1, 0, 0);
+            return Math.abs(dx) <= EPSILON && Math.abs(dy) <= EPSILON;
+        }
+
+        out.depth = Float.POSITIVE_INFINITY;
+        return edgeAxes(a, aOffset, aCount, a, aOffset, aCount, ax, ay, b, bOffset, bCount, bx, by, out)
+                && edgeAxes(b, bOffset, bCount, a, aOffset, aCount, ax, ay, b, bOffset, bCount, bx, by, out);
+    }
+
+    /**
+     * Tests a convex vertex list against an axis-aligned ellipse, or a circle if both radii are equal.
+     */
+    static boolean polygonRound(float[] a, int aOffset, int aCount, float ax, float ay, float cx, float cy, float rx, float ry, Penetration out) {
+        if (rx == ry)
+            return polygonCircle(a, aOffset, aCount, ax, ay, cx, cy, rx, out);
+        if (rx <= 0 || ry <= 0)
+            return false;
+
+        float[] scaled = out.scratch(aCount * 2);
+        for (int i = 0; i < aCount; i++) { // Scale the polygon so the ellipse becomes a unit circle at the origin.
+            scaled[i * 2] = (a[aOffset + i * 2] + ax - cx) / rx;
+            scaled[i * 2 + 1] = (a[aOffset + i * 2 + 1] + ay - cy) / ry;
+        }
+        if (!polygonCircle(scaled, 0, aCount, 0, 0, 0, 0, 1, out))
+            return false;
+
+        float nx = out.normalX / rx; // Normals transform by the inverse transpose of the scale.
+        float ny = out.normalY / ry;
+        float length = (float) Math.sqrt(nx * nx + ny * ny);
+        out.set(nx / length, ny / length, out.depth / length);
+        return true;
+    }
+
+    private static boolean polygonCircle(float[] a, int aOffset, int aCount, float ax, float ay, float cx, float cy, float radius, Penetration out) {
+        out.depth = Float.POSITIVE_INFINITY;
+        if (!edgeAxes(a, aOffset, aCount, a, aOffset, aCount, ax, ay, null, 0, 0, cx, cy, radius, radius, out))
+            return false;
+
+        float closest = Float.POSITIVE_INFINITY;
+        float axisX = 0;
+        float axisY = 0;
+        for (int i = 0; i < aCount; i++) {
+            float dx = cx - (a[aOffset + i * 2] + ax);
+            float dy = cy - (a[aOffset + i * 2 + 1] + ay);
+            float distance = dx * dx + dy * dy;
+            if (distance < closest) {
+                closest = distance;
+                axisX = dx;
+                axisY = dy;
+            }
+        }
+
+        float length = (float) Math.sqrt(closest);
+        if (length > EPSILON && !axis(axisX / length, axisY / length, a, aOffset, aCount, ax, ay, null, 0, 0, cx, cy, radius, radius, out))
+            return false;
+
+        if (out.depth == Float.POSITIVE_INFINITY) // A point at the center of the circle.
+            out.set(1, 0, radius);
+        return true;
+    }
+
+    /**
+     * Tests two axis-aligned ellipses, which are circles if both radii are equal. Two circles are tested exactly, otherwise a fixed set of axes is
+     * sampled so the result may report an intersection for ellipses that are very slightly apart.
+     */
+    static boolean rounds(float ax, float ay, float arx, float ary, float bx, float by, float brx, float bry, Penetration out) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+        if (arx == ary && brx == bry) {
+            float depth = arx + brx - distance;
+            if (depth < 0)
+                return false;
+            if (distance > EPSILON) {
+                out.set(dx / distance, dy / distance, depth);
+            } else {
+                out.set(1, 0, depth);
+            }
+            return true;
+        }
+
+        out.depth = Float.POSITIVE_INFINITY;
+        if (distance > EPSILON && !roundAxis(dx / distance, dy / distance, ax, ay, arx, ary, bx, by, brx, bry, out))
+            return false;
+        for (int i = 0; i < ROUND_AXES; i++) {
+            if (!roundAxis(ROUND_AXES_X[i], ROUND_AXES_Y[i], ax, ay, arx, ary, bx, by, brx, bry, out))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean roundAxis(float nx, float ny, float ax, float ay, float arx, float ary, float bx, float by, float brx, float bry, Penetration out) {
+        float ca = ax * nx + ay * ny;
+        float ha = extent(nx, ny, arx, ary);
+        float cb = bx * nx + by * ny;
+        float hb = extent(nx, ny, brx, bry);
+        return offer(nx, ny, ca - ha, ca + ha, cb - hb, cb + hb, out);
+    }
+
+    /**
+     * Tests the edge normals of vertex list s, projecting vertex list a against either vertex list b or, if b is null, the ellipse at bx,by with
+     * radii brx,bry.
+     */
+    private static boolean edgeAxes(float[] s, int sOffset, int sCount, float[] a, int aOffset, int aCount, float ax, float ay, float[] b, int bOffset, int bCount, float bx, float by, float brx,
+            float bry, Penetration out) {
+        if (sCount < 2)
+            return true;
+
+        int edges = (sCount == 2) ? 1 : sCount;
+        for (int i = 0; i < edges; i++) {
+            int j = (i + 1) % sCount;
+            float ex = s[sOffset + j * 2] - s[sOffset + i * 2];
+            float ey = s[sOffset + j * 2 + 1] - s[sOffset + i * 2 + 1];
+            float length = (float) Math.sqrt(ex * ex + ey * ey);
+            if (length <= EPSILON)
+                continue;
+            ex /= length;
+            ey /= length;
+
+            if (!axis(ey, -ex, a, aOffset, aCount, ax, ay, b, bOffset, bCount, bx, by, brx, bry, out))
+                return false;
+            if (sCount == 2 && !axis(ex, ey, a, aOffset, aCount, ax, ay, b, bOffset, bCount, bx, by, brx, bry, out)) // Segments can be separated along their direction.
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean edgeAxes(float[] s, int sOffset, int sCount, float[] a, int aOffset, int aCount, float ax, float ay, float[] b, int bOffset, int bCount, float bx, float by,
+            Penetration out) {
+        return edgeAxes(s, sOffset, sCount, a, aOffset, aCount, ax, ay, b, bOffset, bCount, bx, by, 0, 0, out);
+    }
+
+    private static boolean axis(float nx, float ny, float[] a, int aOffset, int aCount, float ax, float ay, float[] b, int bOffset, int bCount, float bx, float by, float brx, float bry,
+            Penetration out) {
+        float minA = Float.POSITIVE_INFINITY;
+        float maxA = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < aCount; i++) {
+            float p = (a[aOffset + i * 2] + ax) * nx + (a[aOffset + i * 2 + 1] + ay) * ny;
+            minA = Math.min(minA, p);
+            maxA = Math.max(maxA, p);
+        }
+
+        float minB;
+        float maxB;
+        if (b == null) {
+            float center = bx * nx + by * ny;
+            float extent = extent(nx, ny, brx, bry);
+            minB = center - extent;
+            maxB = center + extent;
+        } else {
+            minB = Float.POSITIVE_INFINITY;
+            maxB = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < bCount; i++) {
+                float p = (b[bOffset + i * 2] + bx) * nx + (b[bOffset + i * 2 + 1] + by) * ny;
+                minB = Math.min(minB, p);
+                maxB = Math.max(maxB, p);
+            }
+        }
+        return offer(nx, ny, minA, maxA, minB, maxB, out);
+    }
+
+    /**
+     * Returns the half length of the projection of an axis-aligned ellipse onto the given axis.
+     */
+    private static float extent(float nx, float ny, float rx, float ry) {
+        float px = rx * nx;
+        float py = ry * ny;
+        return (float) Math.sqrt(px * px + py * py);
+    }
+
+    /**
+     * Records the overlap of two projections if it's the smallest so far, choosing the direction that pushes b out of a the least.
+     */
+    private static boolean offer(float nx, float ny, float minA, float maxA, float minB, float maxB, Penetration out) {
+        float forward = maxA - minB;
+        float backward = maxB - minA;
+        if (forward < 0 || backward < 0)
+            return false;
+
+        if (forward <= backward) {
+            if (forward < out.depth)
+                out.set(nx, ny, forward);
+        } else if (backward < out.depth) {
+            out.set(-nx, -ny, backward);
+        }
+        return true;
+    }
+
+}
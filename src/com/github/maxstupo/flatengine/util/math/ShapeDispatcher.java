@@ -0,0 +1,432 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This class dispatches shape tests through tables indexed by the {@link ShapeType} of both shapes, rather than chains of <code>instanceof</code>
+ * checks. Polygonal shapes (points, rectangles, polygons and polylines) are tested with the separating axis theorem over their convex parts, and
+ * round shapes (circles and ellipses) use their exact projections.
+ * <p>
+ * Tests that return a {@link Penetration} don't allocate, the penetration object also holds the scratch buffers. Tests without a penetration use a
+ * per-thread penetration, so all tests are safe to call from multiple threads as long as the shapes aren't modified.
+ * 
+ * @author Maxstupo
+ */
+public final class ShapeDispatcher {
+
+    /** The number of points sampled around circles and ellipses when testing if they are contained by a shape without an exact test. */
+    private static final int ROUND_SAMPLES = 16;
+
+    private static final int TYPES = ShapeType.values().length;
+
+    private static final IShapePairTest[][] INTERSECTS = new IShapePairTest[TYPES][TYPES];
+    private static final IShapePairTest[][] CONTAINS = new IShapePairTest[TYPES][TYPES];
+
+    private static final ThreadLocal<Penetration> SCRATCH = ThreadLocal.withInitial(Penetration::new);
+
+    private static final float[] POINT_VERTEX = { 0, 0 };
+    private static final int[] SINGLE_OFFSET = { 0 };
+    private static final int[] POINT_SIZE = { 1 };
+    private static final int[] RECTANGLE_SIZE = { 4 };
+
+    private static final ShapeType[] POLYGONAL = { ShapeType.POINT, ShapeType.RECTANGLE, ShapeType.POLYGON, ShapeType.POLYLINE };
+    private static final ShapeType[] ROUND = { ShapeType.CIRCLE, ShapeType.ELLIPSE };
+    private static final ShapeType[] CONTAINERS = { ShapeType.RECTANGLE, ShapeType.CIRCLE, ShapeType.ELLIPSE, ShapeType.POLYGON };
+
+    static {
+        for (ShapeType a : POLYGONAL) {
+            for (ShapeType b : POLYGONAL)
+                registerIntersects(a, b, ShapeDispatcher::polygonal);
+            for (ShapeType b : ROUND)
+                registerIntersects(a, b, ShapeDispatcher::polygonalRound);
+        }
+        for (ShapeType a : ROUND) {
+            for (ShapeType b : ROUND)
+                registerIntersects(a, b, ShapeDispatcher::rounds);
+        }
+
+        // Exact boolean tests of the original shapes, penetrations still use the separating axis tests.
+        registerIntersects(ShapeType.RECTANGLE, ShapeType.RECTANGLE, (a, b, out) -> (out == null) ? ((Rectangle) a).intersects((Rectangle) b) : polygonal(a, b, out));
+        registerIntersects(ShapeType.RECTANGLE, ShapeType.CIRCLE, (a, b, out) -> (out == null) ? ((Rectangle) a).intersects((Circle) b) : polygonalRound(a, b, out));
+        registerIntersects(ShapeType.CIRCLE, ShapeType.CIRCLE, (a, b, out) -> (out == null) ? ((Circle) a).intersects((Circle) b) : rounds(a, b, out));
+
+        for (ShapeType container : CONTAINERS) {
+            for (ShapeType shape : ShapeType.values())
+                registerContains(container, shape, (a, b, out) -> containsSamples(a, b));
+        }
+        registerContains(ShapeType.RECTANGLE, ShapeType.RECTANGLE, (a, b, out) -> ((Rectangle) a).contains((Rectangle) b));
+        registerContains(ShapeType.RECTANGLE, ShapeType.CIRCLE, (a, b, out) -> ((Rectangle) a).contains((Circle) b));
+        registerContains(ShapeType.CIRCLE, ShapeType.CIRCLE, (a, b, out) -> ((Circle) a).contains((Circle) b));
+        registerContains(ShapeType.CIRCLE, ShapeType.RECTANGLE, (a, b, out) -> ((Circle) a).contains((Rectangle) b));
+        registerContains(ShapeType.RECTANGLE, ShapeType.ELLIPSE, (a, b, out) -> {
+            Ellipse e = (Ellipse) b;
+            return ((Rectangle) a).contains(e.getX() - e.getRadiusX(), e.getY() - e.getRadiusY(), e.getRadiusX() * 2f, e.getRadiusY() * 2f);
+        });
+        registerContains(ShapeType.POLYGON, ShapeType.CIRCLE, (a, b, out) -> polygonContainsCircle((Polygon) a, (Circle) b));
+    }
+
+    private ShapeDispatcher() {
+    }
+
+    /**
+     * Sets the test used for intersections between the given shape types. The test is also registered for the swapped types, with the penetration
+     * normal flipped.
+     * 
+     * @param a
+     *            the type of the first shape.
+     * @param b
+     *            the type of the second shape.
+     * @param test
+     *            the test, or null to remove the test.
+     */
+    public static void registerIntersects(ShapeType a, ShapeType b, IShapePairTest test) {
+        INTERSECTS[a.ordinal()][b.ordinal()] = test;
+        if (a == b)
+            return;
+
+        INTERSECTS[b.ordinal()][a.ordinal()] = (test == null) ? null : (x, y, out) -> {
+            boolean hit = test.test(y, x, out);
+            if (hit && out != null)
+                out.flip();
+            return hit;
+        };
+    }
+
+    /**
+     * Sets the test used to check if a shape of the given container type contains a shape of the given type.
+     * 
+     * @param container
+     *            the type of the containing shape.
+     * @param shape
+     *            the type of the contained shape.
+     * @param test
+     *            the test, the penetration given to it is always null. Set to null to remove the test.
+     */
+    public static void registerContains(ShapeType container, ShapeType shape, IShapePairTest test) {
+        CONTAINS[container.ordinal()][shape.ordinal()] = test;
+    }
+
+    /**
+     * Returns true if the given shapes intersect.
+     * 
+     * @param a
+     *            the first shape.
+     * @param b
+     *            the second shape.
+     * @return true if the given shapes intersect, or false if there is no test for the shape types.
+     */
+    public static boolean intersects(AbstractBasicShape a, AbstractBasicShape b) {
+        return intersects(a, b, null);
+    }
+
+    /**
+     * Returns true if the given shapes intersect, and stores the minimum translation that separates them.
+     * 
+     * @param a
+     *            the first shape.
+     * @param b
+     *            the second shape.
+     * @param out
+     *            the penetration result, the normal points from a towards b. Set to null if only a boolean result is needed.
+     * @return true if the given shapes intersect, or false if there is no test for the shape types.
+     */
+    public static boolean intersects(AbstractBasicShape a, AbstractBasicShape b, Penetration out) {
+        IShapePairTest test = INTERSECTS[a.getType().ordinal()][b.getType().ordinal()];
+        return test != null && test.test(a, b, out);
+    }
+
+    /**
+     * Returns true if the given container shape contains the given shape. Circles and ellipses within shapes without an exact test are checked
+     * using points sampled around their edge.
+     * 
+     * @param container
+     *            the shape that might contain another.
+     * @param shape
+     *            the shape.
+     * @return true if the container contains the shape, or false if there is no test for the shape types.
+     */
+    public static boolean contains(AbstractBasicShape container, AbstractBasicShape shape) {
+        IShapePairTest test = CONTAINS[container.getType().ordinal()][shape.getType().ordinal()];
+        return test != null && test.test(container, shape, null);
+    }
+
+    /**
+     * Stores the convex parts of the given polygonal shape into the given slot of the penetration.
+     */
+    private static void resolveParts(AbstractBasicShape shape, int slot, Penetration p) {
+        switch (shape.getType()) {
+            case RECTANGLE:
+                Rectangle r = (Rectangle) shape;
+                float[] v = (slot == 0) ? p.rectA : p.rectB;
+                v[0] = r.getX();
+                v[1] = r.getY();
+                v[2] = r.getX() + r.getWidth();
+                v[3] = r.getY();
+                v[4] = r.getX() + r.getWidth();
+                v[5] = r.getY() + r.getHeight();
+                v[6] = r.getX();
+                v[7] = r.getY() + r.getHeight();
+                p.partVertices[slot] = v;
+                p.partOffsets[slot] = SINGLE_OFFSET;
+                p.partSizes[slot] = RECTANGLE_SIZE;
+                p.partX[slot] = 0;
+                p.partY[slot] = 0;
+                break;
+
+            case POLYGON:
+            case POLYLINE:
+                AbstractPolyShape poly = (AbstractPolyShape) shape;
+                p.partVertices[slot] = poly.partVertices;
+                p.partOffsets[slot] = poly.partOffsets;
+                p.partSizes[slot] = poly.partSizes;
+                p.partX[slot] = poly.getX();
+                p.partY[slot] = poly.getY();
+                break;
+
+            default:
+                p.partVertices[slot] = POINT_VERTEX;
+                p.partOffsets[slot] = SINGLE_OFFSET;
+                p.partSizes[slot] = POINT_SIZE;
+                p.partX[slot] = shape.getX();
+                p.partY[slot] = shape.getY();
+                break;
+        }
+    }
+
+    private static boolean polygonal(AbstractBasicShape a, AbstractBasicShape b, Penetration out) {
+        boolean penetration = out != null;
+        Penetration p = penetration ? out : SCRATCH.get();
+        resolveParts(a, 0, p);
+        resolveParts(b, 1, p);
+
+        float[] av = p.partVertices[0];
+        int[] aOffsets = p.partOffsets[0];
+        int[] aSizes = p.partSizes[0];
+        float[] bv = p.partVertices[1];
+        int[] bOffsets = p.partOffsets[1];
+        int[] bSizes = p.partSizes[1];
+
+        boolean hit = false;
+        float normalX = 0;
+        float normalY = 0;
+        float depth = 0;
+
+        for (int i = 0; i < aSizes.length; i++) {
+            for (int j = 0; j < bSizes.length; j++) {
+                if (!Sat.polygons(av, aOffsets[i], aSizes[i], p.partX[0], p.partY[0], bv, bOffsets[j], bSizes[j], p.partX[1], p.partY[1], p))
+                    continue;
+                if (!penetration)
+                    return true;
+
+                if (!hit || p.depth > depth) { // Concave shapes resolve the deepest overlapping part.
+                    normalX = p.normalX;
+                    normalY = p.normalY;
+                    depth = p.depth;
+                }
+                hit = true;
+            }
+        }
+
+        if (hit)
+            p.set(normalX, normalY, depth);
+        return hit;
+    }
+
+    private static boolean polygonalRound(AbstractBasicShape a, AbstractBasicShape b, Penetration out) {
+        boolean penetration = out != null;
+        Penetration p = penetration ? out : SCRATCH.get();
+        resolveParts(a, 0, p);
+
+        float rx = radiusX(b);
+        float ry = radiusY(b);
+        float[] av = p.partVertices[0];
+        int[] aOffsets = p.partOffsets[0];
+        int[] aSizes = p.partSizes[0];
+        float ax = p.partX[0];
+        float ay = p.partY[0];
+
+        boolean hit = false;
+        float normalX = 0;
+        float normalY = 0;
+        float depth = 0;
+
+        for (int i = 0; i < aSizes.length; i++) {
+            if (!Sat.polygonRound(av, aOffsets[i], aSizes[i], ax, ay, b.getX(), b.getY(), rx, ry, p))
+                continue;
+            if (!penetration)
+                return true;
+
+            if (!hit || p.depth > depth) {
+                normalX = p.normalX;
+                normalY = p.normalY;
+                depth = p.depth;
+            }
+            hit = true;
+        }
+
+        if (hit)
+            p.set(normalX, normalY, depth);
+        return hit;
+    }
+
+    private static boolean rounds(AbstractBasicShape a, AbstractBasicShape b, Penetration out) {
+        Penetration p = (out != null) ? out : SCRATCH.get();
+        return Sat.rounds(a.getX(), a.getY(), radiusX(a), radiusY(a), b.getX(), b.getY(), radiusX(b), radiusY(b), p);
+    }
+
+    private static float radiusX(AbstractBasicShape shape) {
+        return (shape instanceof Ellipse) ? ((Ellipse) shape).getRadiusX() : ((Circle) shape).getRadius();
+    }
+
+    private static float radiusY(AbstractBasicShape shape) {
+        return (shape instanceof Ellipse) ? ((Ellipse) shape).getRadiusY() : ((Circle) shape).getRadius();
+    }
+
+    private static boolean polygonContainsCircle(Polygon polygon, Circle circle) {
+        if (!polygon.contains(circle.getX(), circle.getY()))
+            return false;
+
+        float cx = circle.getX() - polygon.getX();
+        float cy = circle.getY() - polygon.getY();
+        float radiusSquared = circle.getRadius() * circle.getRadius();
+
+        int count = polygon.getVertexCount();
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            if (segmentDistanceSquared(cx, cy, polygon.vertices[j * 2], polygon.vertices[j * 2 + 1], polygon.vertices[i * 2], polygon.vertices[i * 2 + 1]) < radiusSquared)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that every point sampled from the outline of the given shape is within the container. Concave polygon containers also check the
+     * outline doesn't cross any of their edges.
+     */
+    private static boolean containsSamples(AbstractBasicShape container, AbstractBasicShape shape) {
+        Penetration p = SCRATCH.get();
+        int count = samplePoints(shape, p);
+        float[] points = p.scratch;
+
+        for (int i = 0; i < count; i++) {
+            if (!contains(container, points[i * 2], points[i * 2 + 1]))
+                return false;
+        }
+
+        if (container instanceof Polygon && !((Polygon) container).isConvex() && count > 1) {
+            Polygon polygon = (Polygon) container;
+            boolean closed = shape.getType() != ShapeType.POLYLINE;
+            int edges = closed ? count : count - 1;
+            int vertices = polygon.getVertexCount();
+
+            for (int i = 0; i < edges; i++) {
+                int next = (i + 1) % count;
+                for (int j = 0, k = vertices - 1; j < vertices; k = j++) {
+                    if (segmentsCross(points[i * 2], points[i * 2 + 1], points[next * 2], points[next * 2 + 1], //
+                            polygon.getX() + polygon.vertices[k * 2], polygon.getY() + polygon.vertices[k * 2 + 1], //
+                            polygon.getX() + polygon.vertices[j * 2], polygon.getY() + polygon.vertices[j * 2 + 1]))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores points along the outline of the given shape into the scratch buffer of the given penetration, and returns the number of points.
+     */
+    private static int samplePoints(AbstractBasicShape shape, Penetration p) {
+        switch (shape.getType()) {
+            case RECTANGLE: {
+                Rectangle r = (Rectangle) shape;
+                float[] points = p.scratch(8);
+                points[0] = r.getX();
+                points[1] = r.getY();
+                points[2] = r.getX() + r.getWidth();
+                points[3] = r.getY();
+                points[4] = r.getX() + r.getWidth();
+                points[5] = r.getY() + r.getHeight();
+                points[6] = r.getX();
+                points[7] = r.getY() + r.getHeight();
+                return 4;
+            }
+            case CIRCLE:
+            case ELLIPSE: {
+                float[] points = p.scratch(ROUND_SAMPLES * 2);
+                float rx = radiusX(shape);
+                float ry = radiusY(shape);
+                for (int i = 0; i < ROUND_SAMPLES; i++) {
+                    double angle = Math.PI * 2 * i / ROUND_SAMPLES;
+                    points[i * 2] = shape.getX() + (float) Math.cos(angle) * rx;
+                    points[i * 2 + 1] = shape.getY() + (float) Math.sin(angle) * ry;
+                }
+                return ROUND_SAMPLES;
+            }
+            case POLYGON:
+            case POLYLINE: {
+                AbstractPolyShape poly = (AbstractPolyShape) shape;
+                int count = poly.getVertexCount();
+                float[] points = p.scratch(count * 2);
+                for (int i = 0; i < count; i++) {
+                    points[i * 2] = poly.getX() + poly.vertices[i * 2];
+                    points[i * 2 + 1] = poly.getY() + poly.vertices[i * 2 + 1];
+                }
+                return count;
+            }
+            default: {
+                float[] points = p.scratch(2);
+                points[0] = shape.getX();
+                points[1] = shape.getY();
+                return 1;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given shape contains the given point. Shapes without an area never contain a point.
+     * 
+     * @param container
+     *            the shape.
+     * @param px
+     *            the x position of the point.
+     * @param py
+     *            the y position of the point.
+     * @return true if the given shape contains the given point.
+     */
+    public static boolean contains(AbstractBasicShape container, float px, float py) {
+        switch (container.getType()) {
+            case RECTANGLE:
+                return ((Rectangle) container).contains(px, py);
+            case CIRCLE:
+                Circle c = (Circle) container;
+                float dx = px - c.getX();
+                float dy = py - c.getY();
+                return dx * dx + dy * dy <= c.getRadius() * c.getRadius();
+            case ELLIPSE:
+                return ((Ellipse) container).contains(px, py);
+            case POLYGON:
+                return ((Polygon) container).contains(px, py);
+            default:
+                return false;
+        }
+    }
+
+    private static float segmentDistanceSquared(float px, float py, float ax, float ay, float bx, float by) {
+        float abx = bx - ax;
+        float aby = by - ay;
+        float lengthSquared = abx * abx + aby * aby;
+        float t = (lengthSquared > 0) ? UtilMath.clampF(((px - ax) * abx + (py - ay) * aby) / lengthSquared, 0, 1) : 0;
+        float dx = ax + abx * t - px;
+        float dy = ay + aby * t - py;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns true if the given segments cross, touching segments don't count.
+     */
+    private static boolean segmentsCross(float ax, float ay, float bx, float by, float cx, float cy, float dx, float dy) {
+        float d1 = (dx - cx) * (ay - cy) - (dy - cy) * (ax - cx);
+        float d2 = (dx - cx) * (by - cy) - (dy - cy) * (bx - cx);
+        float d3 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        float d4 = (bx - ax) * (dy - ay) - (by - ay) * (dx - ax);
+        return ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0));
+    }
+
+}
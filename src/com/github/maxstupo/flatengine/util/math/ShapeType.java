@@ -0,0 +1,29 @@
+package com.github.maxstupo.flatengine.util.math;
+
+/**
+ * This enum lists the shape types known to {@link ShapeDispatcher}, each {@link AbstractBasicShape} subclass returns its type from
+ * {@link AbstractBasicShape#getType()}.
+ * 
+ * @author Maxstupo
+ */
+public enum ShapeType {
+
+    /** A shape without an area, only its position is used. */
+    POINT,
+
+    /** An axis-aligned {@link Rectangle}. */
+    RECTANGLE,
+
+    /** A {@link Circle}. */
+    CIRCLE,
+
+    /** An axis-aligned {@link Ellipse}. */
+    ELLIPSE,
+
+    /** A closed {@link Polygon}, which may be concave. */
+    POLYGON,
+
+    /** An open {@link Polyline}. */
+    POLYLINE;
+
+}
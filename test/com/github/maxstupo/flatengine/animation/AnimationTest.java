@@ -0,0 +1,183 @@
+package com.github.maxstupo.flatengine.animation;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.github.maxstupo.flatengine.Sprite;
+
+/**
+ * Checks the constant time frame lookup of {@link Animation} against a linear walk over the frames of one cycle, for each {@link PlayMode} and random
+ * frame durations, that an {@link Animator} fires the events of every frame passed by a large update, and that compiled animations are shared and
+ * can't have their play mode changed. Throws an {@link AssertionError} on the first mismatch.
+ * 
+ * @author Maxstupo
+ */
+public class AnimationTest {
+
+    public static void main(String[] args) {
+        Random rand = new Random(1);
+        for (int n = 0; n < 500; n++) {
+            int count = 1 + rand.nextInt(12);
+            float[] durations = new float[count];
+            for (int i = 0; i < count; i++)
+                durations[i] = (rand.nextInt(4) == 0) ? 0.01f + rand.nextFloat() * 2 : 0.05f + rand.nextFloat() * 0.2f;
+
+            Animation animation = new Animation(durations, new Sprite[count], null, null);
+            for (PlayMode mode : new PlayMode[] { PlayMode.LOOP, PlayMode.ONCE, PlayMode.PINGPONG, PlayMode.REVERSED })
+                checkLookup(animation.withPlayMode(mode), durations, mode);
+        }
+
+        for (int seed = 0; seed < 200; seed++)
+            checkFrameEvents(seed);
+        checkShared();
+        System.out.println("AnimationTest passed");
+    }
+
+    /**
+     * Samples the middle of every frame of several cycles, and compares the frame with the expected sequence of frames.
+     */
+    private static void checkLookup(Animation animation, float[] durations, PlayMode mode) {
+        int count = durations.length;
+        List<Integer> sequence = new ArrayList<>();
+        switch (mode) {
+            case REVERSED:
+                for (int i = count - 1; i >= 0; i--)
+                    sequence.add(i);
+                break;
+            case PINGPONG:
+                for (int i = 0; i < count; i++)
+                    sequence.add(i);
+                for (int i = count - 2; i >= 1; i--)
+                    sequence.add(i);
+                break;
+            default:
+                for (int i = 0; i < count; i++)
+                    sequence.add(i);
+                break;
+        }
+
+        double cycle = 0;
+        for (int frame : sequence)
+            cycle += durations[frame];
+        check(Math.abs(cycle - animation.getCycleDuration()) < 1e-4, mode + ": cycle duration " + animation.getCycleDuration() + ", expected " + cycle);
+
+        boolean isLooping = mode == PlayMode.LOOP || mode == PlayMode.PINGPONG;
+        for (int loop = isLooping ? -2 : 0; loop < (isLooping ? 3 : 1); loop++) {
+            double start = loop * cycle;
+            for (int frame : sequence) {
+                float time = (float) (start + durations[frame] * 0.5);
+                int actual = animation.getKeyFrameIndex(time);
+                check(actual == frame, mode + " with " + count + " frames: frame " + actual + " at " + time + ", expected " + frame);
+                start += durations[frame];
+            }
+        }
+
+        if (!isLooping) {
+            int last = sequence.get(sequence.size() - 1);
+            check(animation.getKeyFrameIndex((float) cycle * 2) == last, mode + ": doesn't stop on frame " + last);
+            check(animation.isAnimationFinished((float) cycle * 2), mode + ": doesn't finish");
+        }
+    }
+
+    /**
+     * Updates one state with random steps up to a cycle long, comparing the fired frame events with the frame changes found by sampling the
+     * animation finer than its shortest frame.
+     */
+    private static void checkFrameEvents(long seed) {
+        Random rand = new Random(seed);
+        int count = 1 + rand.nextInt(8);
+        float[] durations = new float[count];
+        float shortest = Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            durations[i] = 0.02f + rand.nextFloat() * 0.3f;
+            shortest = Math.min(shortest, durations[i]);
+        }
+        PlayMode mode = PlayMode.values()[rand.nextInt(PlayMode.values().length)];
+        Animation animation = new Animation(durations, new Sprite[count], null, null).withPlayMode(mode);
+
+        Animator<Object> animator = new Animator<>(null);
+        int id = animator.addAnimation(animation);
+        int[] events = new int[count];
+        for (int frame = 0; frame < count; frame++) {
+            events[frame] = rand.nextInt(4) == 0 ? 0 : frame + 1;
+            animator.setFrameEvent(id, frame, events[frame]);
+        }
+
+        List<Integer> fired = new ArrayList<>();
+        animator.setListener((a, n, handles, animations, ids) -> {
+            for (int i = 0; i < n; i++) {
+                if (ids[i] != Animator.EVENT_FINISHED)
+                    fired.add(ids[i]);
+            }
+        });
+        int handle = animator.create(new Object(), id);
+        boolean isLooping = mode != PlayMode.ONCE && mode != PlayMode.REVERSED;
+        if (isLooping && rand.nextBoolean())
+            animator.setSpeed(handle, -1);
+
+        for (int update = 0; update < 20; update++) {
+            float from = animator.getTime(handle);
+            float step = rand.nextFloat() * animation.getCycleDuration() * 0.999f;
+            float to = from + step * animator.getSpeed(handle);
+            if (!isLooping || mode == PlayMode.RANDOM)
+                to = Math.max(0, to);
+
+            List<Integer> expected = new ArrayList<>();
+            int shown = animator.getKeyFrameIndex(handle);
+            int samples = (int) Math.ceil(Math.abs(to - from) / (shortest * 0.25f)) + 1;
+            for (int s = 1; s <= samples; s++) {
+                int frame = animation.getKeyFrameIndex(from + (to - from) * s / samples);
+                if (frame != shown) {
+                    shown = frame;
+                    if (events[frame] != 0)
+                        expected.add(events[frame]);
+                }
+            }
+
+            fired.clear();
+            animator.update(step);
+            check(fired.equals(expected) || isNearBoundary(animation, to, shortest), mode + " seed " + seed + ": fired " + fired + ", expected " + expected + " from " + from + " to " + to + " of " + Arrays.toString(durations));
+        }
+    }
+
+    /**
+     * Returns true if the given time is within float rounding of a frame change, where the sampled and fired frames may differ.
+     */
+    private static boolean isNearBoundary(Animation animation, float time, float shortest) {
+        float epsilon = shortest * 1e-3f;
+        return animation.getKeyFrameIndex(time - epsilon) != animation.getKeyFrameIndex(time + epsilon);
+    }
+
+    private static void checkShared() {
+        ImageSetStore store = new ImageSetStore(new ImageSet("set", new BufferedImage(64, 16, BufferedImage.TYPE_INT_ARGB), 16, 16, 0, 0));
+        AnimationDef def = AnimationDef.sequence("set", PlayMode.PINGPONG, 0.1f, 0, 3, 0, 0, 0, 0);
+
+        Animation animation = def.createAnimation(store);
+        check(animation == def.createAnimation(store), "compiled animation isn't shared");
+        check(animation.getKeyFrameCount() == 4 && animation.getPlayMode() == PlayMode.PINGPONG, "compiled animation doesn't match its definition");
+
+        boolean isRejected = false;
+        try {
+            animation.setPlayMode(PlayMode.LOOP);
+        } catch (IllegalStateException e) {
+            isRejected = true;
+        }
+        check(isRejected && animation.getPlayMode() == PlayMode.PINGPONG, "play mode of a shared animation was changed");
+
+        Animation looping = animation.withPlayMode(PlayMode.LOOP);
+        looping.setPlayMode(PlayMode.ONCE);
+        check(looping.getKeyFrame(1) == animation.getKeyFrameAt(3) && animation.getPlayMode() == PlayMode.PINGPONG, "play mode copy isn't independent");
+
+        check(store.removeCompiled(def) && store.getCompiledCount() == 0, "compiled animation wasn't removed");
+        check(def.createAnimation(store) != animation, "removed compiled animation is still used");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+}
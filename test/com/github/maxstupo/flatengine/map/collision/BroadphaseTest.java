@@ -0,0 +1,131 @@
+package com.github.maxstupo.flatengine.map.collision;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.github.maxstupo.flatengine.util.math.AbstractBasicShape;
+import com.github.maxstupo.flatengine.util.math.Circle;
+import com.github.maxstupo.flatengine.util.math.Rectangle;
+
+/**
+ * Checks every {@link IBroadphase} against a brute-force pair search over random scenes of static and dynamic shapes, including moving, adding and
+ * removing proxies between ticks. Throws an {@link AssertionError} on the first mismatch.
+ * 
+ * @author Maxstupo
+ */
+public class BroadphaseTest {
+
+    private static final int SCENES = 300;
+    private static final int TICKS = 4;
+
+    public static void main(String[] args) {
+        staticPastLastDynamic(new GridBroadphase());
+        staticPastLastDynamic(new SweepAndPruneBroadphase());
+
+        Random rand = new Random(1);
+        for (int scene = 0; scene < SCENES; scene++) {
+            long seed = rand.nextLong();
+            randomScene(new GridBroadphase(1 + new Random(seed).nextInt(8)), seed);
+            randomScene(new SweepAndPruneBroadphase(), seed);
+        }
+        System.out.println("BroadphaseTest passed");
+    }
+
+    /**
+     * A static proxy whose left edge lies past the left edge of every dynamic proxy must still be paired.
+     */
+    private static void staticPastLastDynamic(IBroadphase broadphase) {
+        broadphase.add(new Rectangle(0, 0, 10, 10), false);
+        broadphase.add(new Rectangle(5, 5, 1, 1), true);
+        broadphase.update();
+
+        PairList pairs = new PairList();
+        check(broadphase.findPairs(pairs) == 1, broadphase, "expected 1 pair, found " + pairs.size());
+    }
+
+    private static void randomScene(IBroadphase broadphase, long seed) {
+        Random rand = new Random(seed);
+        List<AbstractBasicShape> shapes = new ArrayList<>();
+        List<Integer> proxies = new ArrayList<>();
+        List<Boolean> statics = new ArrayList<>();
+
+        int count = 1 + rand.nextInt(60);
+        for (int i = 0; i < count; i++)
+            addShape(broadphase, rand, shapes, proxies, statics);
+
+        PairList pairs = new PairList();
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (int i = 0; i < shapes.size(); i++) {
+                if (!statics.get(i))
+                    shapes.get(i).setPosition(shapes.get(i).getX() + rand.nextFloat() * 4 - 2, shapes.get(i).getY() + rand.nextFloat() * 4 - 2);
+            }
+            if (!shapes.isEmpty() && rand.nextInt(3) == 0) {
+                int index = rand.nextInt(shapes.size());
+                check(broadphase.remove(proxies.get(index)), broadphase, "remove failed");
+                shapes.remove(index);
+                proxies.remove(index);
+                statics.remove(index);
+            }
+            if (rand.nextInt(3) == 0)
+                addShape(broadphase, rand, shapes, proxies, statics);
+
+            broadphase.update();
+            broadphase.findPairs(pairs);
+
+            Set<Long> found = new HashSet<>();
+            for (int i = 0; i < pairs.size(); i++)
+                check(found.add(key(pairs.getA(i), pairs.getB(i))), broadphase, "duplicate pair, seed " + seed);
+
+            Set<Long> expected = bruteForce(shapes, proxies, statics);
+            check(found.equals(expected), broadphase, "seed " + seed + ", tick " + tick + ": expected " + expected.size() + " pairs, found " + found.size());
+        }
+    }
+
+    private static void addShape(IBroadphase broadphase, Random rand, List<AbstractBasicShape> shapes, List<Integer> proxies, List<Boolean> statics) {
+        float x = rand.nextFloat() * 40 - 10;
+        float y = rand.nextFloat() * 40 - 10;
+
+        AbstractBasicShape shape;
+        if (rand.nextBoolean()) {
+            shape = new Rectangle(x, y, 0.5f + rand.nextFloat() * (rand.nextInt(8) == 0 ? 20 : 4), 0.5f + rand.nextFloat() * 4);
+        } else {
+            shape = new Circle(x, y, 0.25f + rand.nextFloat() * 3);
+        }
+        boolean isStatic = rand.nextBoolean();
+
+        shapes.add(shape);
+        proxies.add(broadphase.add(shape, isStatic));
+        statics.add(isStatic);
+    }
+
+    private static Set<Long> bruteForce(List<AbstractBasicShape> shapes, List<Integer> proxies, List<Boolean> statics) {
+        Set<Long> pairs = new HashSet<>();
+        Rectangle a = new Rectangle();
+        Rectangle b = new Rectangle();
+
+        for (int i = 0; i < shapes.size(); i++) {
+            shapes.get(i).getBounds(a);
+            for (int j = i + 1; j < shapes.size(); j++) {
+                if (statics.get(i) && statics.get(j))
+                    continue;
+                shapes.get(j).getBounds(b);
+                if (a.getX() <= b.getX() + b.getWidth() && a.getX() + a.getWidth() >= b.getX() && a.getY() <= b.getY() + b.getHeight() && a.getY() + a.getHeight() >= b.getY())
+                    pairs.add(key(proxies.get(i), proxies.get(j)));
+            }
+        }
+        return pairs;
+    }
+
+    private static long key(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private static void check(boolean condition, IBroadphase broadphase, String message) {
+        if (!condition)
+            throw new AssertionError(broadphase.getClass().getSimpleName() + ": " + message);
+    }
+
+}
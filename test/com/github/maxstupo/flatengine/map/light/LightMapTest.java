@@ -0,0 +1,124 @@
+package com.github.maxstupo.flatengine.map.light;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.github.maxstupo.flatengine.map.MapProperties;
+import com.github.maxstupo.flatengine.map.TiledMap;
+
+/**
+ * Checks that adding, updating and removing lights of a {@link LightMap} is symmetric, a light map changed incrementally must match one built from
+ * scratch with the same lights. Throws an {@link AssertionError} on the first mismatch.
+ * 
+ * @author Maxstupo
+ */
+public class LightMapTest {
+
+    private static final int SIZE = 24;
+    private static final float EPSILON = 1e-4f;
+
+    public static void main(String[] args) {
+        overlappingColorChange();
+        for (int seed = 0; seed < 100; seed++)
+            randomChanges(seed);
+        System.out.println("LightMapTest passed");
+    }
+
+    /**
+     * Changing the color of a light overlapping another must remove its old color.
+     */
+    private static void overlappingColorChange() {
+        LightMap lightMap = new LightMap(createMap());
+        Light red = new Light(5, 5, 4, Color.RED);
+        lightMap.addLight(red);
+        lightMap.addLight(new Light(5, 5, 4, Color.WHITE));
+
+        float[] levels = lightMap.getLightLevels(5, 5, new float[3]);
+        check(near(levels[0], 2) && near(levels[2], 1), "red and white: " + levels[0] + ", " + levels[2]);
+
+        red.setColor(Color.BLUE);
+        lightMap.getLightLevels(5, 5, levels);
+        check(near(levels[0], 1) && near(levels[2], 2), "blue and white: " + levels[0] + ", " + levels[2]);
+
+        red.setIntensity(0.5f);
+        lightMap.getLightLevels(5, 5, levels);
+        check(near(levels[0], 1) && near(levels[2], 1.5f), "half blue and white: " + levels[0] + ", " + levels[2]);
+    }
+
+    private static void randomChanges(long seed) {
+        Random rand = new Random(seed);
+        LightMap lightMap = new LightMap(createMap());
+        List<Light> lights = new ArrayList<>();
+
+        for (int step = 0; step < 200; step++) {
+            int action = lights.isEmpty() ? 0 : rand.nextInt(6);
+            Light light = lights.isEmpty() ? null : lights.get(rand.nextInt(lights.size()));
+
+            switch (action) {
+                case 0:
+                    light = new Light(rand.nextInt(SIZE + 4) - 2, rand.nextInt(SIZE + 4) - 2, rand.nextFloat() * 6, randomColor(rand), rand.nextFloat());
+                    lightMap.addLight(light);
+                    lights.add(light);
+                    break;
+                case 1:
+                    lightMap.removeLight(light);
+                    lights.remove(light);
+                    break;
+                case 2:
+                    light.setPosition(rand.nextInt(SIZE), rand.nextInt(SIZE));
+                    break;
+                case 3:
+                    light.setRadius(rand.nextFloat() * 6);
+                    break;
+                case 4:
+                    light.setColor(randomColor(rand));
+                    break;
+                default:
+                    light.setIntensity(rand.nextFloat());
+                    break;
+            }
+        }
+
+        LightMap reference = new LightMap(createMap());
+        for (Light light : lights)
+            reference.addLight(new Light(light.getX(), light.getY(), light.getRadius(), light.getColor(), light.getIntensity()));
+        compare(lightMap, reference, "seed " + seed);
+
+        for (Light light : new ArrayList<>(lights))
+            lightMap.removeLight(light);
+        compare(lightMap, new LightMap(createMap()), "seed " + seed + " after removing all");
+    }
+
+    private static void compare(LightMap actual, LightMap expected, String message) {
+        float[] a = new float[3];
+        float[] b = new float[3];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                actual.getLightLevels(x, y, a);
+                expected.getLightLevels(x, y, b);
+                for (int i = 0; i < 3; i++)
+                    check(Math.abs(a[i] - b[i]) < EPSILON, message + ": tile " + x + "," + y + " channel " + i + " is " + a[i] + ", expected " + b[i]);
+            }
+        }
+    }
+
+    private static TiledMap createMap() {
+        return new TiledMap("test", "test", SIZE, SIZE, 32, 32, Color.BLACK, new MapProperties());
+    }
+
+    private static Color randomColor(Random rand) {
+        return new Color(rand.nextInt(256), rand.nextInt(256), rand.nextInt(256));
+    }
+
+    private static boolean near(float value, float expected) {
+        return Math.abs(value - expected) < EPSILON;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.github.maxstupo.flatengine.tween;
+
+/**
+ * Checks that a reference kept to a completed, pooled tween can't change the unrelated tween the pool hands it out as next. Throws an
+ * {@link AssertionError} on the first mismatch.
+ * 
+ * @author Maxstupo
+ */
+public class TweenManagerTest {
+
+    public static void main(String[] args) {
+        TweenManager manager = new TweenManager();
+        float[] values = new float[4];
+
+        Tween stale = manager.tween(values, FloatArrayAccessor.INSTANCE, 4, 0.1f).target(1, 2, 3, 4);
+        int generation = stale.getGeneration();
+        stale.start();
+        manager.update(0.2f);
+        check(values[0] == 1 && values[3] == 4, "tween didn't reach its end values");
+        check(!stale.isGeneration(generation), "completed tween kept its generation");
+
+        stale.delay(5);
+        stale.kill();
+
+        Tween tween = manager.tween(values, FloatArrayAccessor.INSTANCE, 4, 1).target(0, 0, 0, 0);
+        check(tween == stale, "pool didn't hand out the completed tween");
+        check(!tween.isKilled() && tween.getDelay() == 0, "changes made while pooled were kept");
+        check(!stale.kill(generation) && !tween.isKilled(), "stale kill stopped an unrelated tween");
+
+        int current = tween.getGeneration();
+        tween.start();
+        manager.update(0.5f);
+        check(values[0] == 0.5f && manager.getActiveCount() == 1, "unrelated tween didn't play");
+
+        check(tween.kill(current), "current kill was ignored");
+        manager.update(0.1f);
+        check(manager.getActiveCount() == 0 && values[0] == 0.5f, "killed tween kept playing");
+
+        System.out.println("TweenManagerTest passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.github.maxstupo.flatengine.util;
+
+/**
+ * Checks that a stale {@link HandleRegistry} handle never becomes valid again, however often its slot is reused. Throws an {@link AssertionError} on
+ * the first mismatch.
+ * 
+ * @author Maxstupo
+ */
+public class HandleRegistryTest {
+
+    public static void main(String[] args) {
+        HandleRegistry<String> registry = new HandleRegistry<>(1);
+        int stale = registry.add("first");
+        check(registry.remove(stale).equals("first"), "remove didn't return the object");
+
+        for (int n = 0; n < HandleRegistry.MAX_GENERATION * 3; n++) {
+            int handle = registry.add("object " + n);
+            check(!registry.isValid(stale) && registry.get(stale) == null, "stale handle is valid again after " + n + " reuses");
+            check(HandleRegistry.generationOf(handle) != 0, "handle " + n + " has generation zero");
+            check(registry.get(handle).equals("object " + n), "handle " + n + " doesn't refer to its object");
+            check(registry.remove(handle) != null && registry.get(handle) == null, "handle " + n + " is still valid after removal");
+        }
+
+        check(registry.getRetiredCount() == 3, "expected 3 retired slots, found " + registry.getRetiredCount());
+        check(!registry.isValid(HandleRegistry.NULL_HANDLE), "null handle is valid");
+        System.out.println("HandleRegistryTest passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+}